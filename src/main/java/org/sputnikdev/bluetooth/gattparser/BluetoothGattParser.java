@@ -22,16 +22,27 @@ package org.sputnikdev.bluetooth.gattparser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException.Reason;
+import org.sputnikdev.bluetooth.gattparser.compiler.CharacteristicParserCompiler;
+import org.sputnikdev.bluetooth.gattparser.compiler.CompiledCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.decoder.GattDecoders;
+import org.sputnikdev.bluetooth.gattparser.metrics.GattFlightRecorder;
+import org.sputnikdev.bluetooth.gattparser.metrics.GattParserMetrics;
 import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
 import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.CharacteristicLayout;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.gattparser.spec.Service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class encapsulates functionality for reading and writing Bluetooth GATT characteristics
@@ -65,11 +76,32 @@ import java.util.Map;
  */
 public class BluetoothGattParser {
 
+    /**
+     * The default ATT MTU (Bluetooth Core v5, Vol 3, Part F, 3.2.8).
+     */
+    public static final int DEFAULT_ATT_MTU = 23;
+    /**
+     * The maximum length of an attribute value (Bluetooth Core v5, Vol 3, Part F, 3.2.9).
+     */
+    public static final int MAX_ATTRIBUTE_VALUE_LENGTH = 512;
+    /**
+     * The default threshold (in nanoseconds) of slow decode flight recorder events,
+     * see {@link #setSlowDecodeThreshold(long, TimeUnit)}.
+     */
+    public static final long DEFAULT_SLOW_DECODE_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int WRITE_REQUEST_HEADER_SIZE = 3;
+    private static final int PREPARE_WRITE_REQUEST_HEADER_SIZE = 5;
+
     private final Logger logger = LoggerFactory.getLogger(GenericCharacteristicParser.class);
 
     private BluetoothGattSpecificationReader specificationReader;
-    private final Map<String, CharacteristicParser> customParsers = new HashMap<>();
+    private final Map<String, CharacteristicParser> customParsers = new ConcurrentHashMap<>();
+    private final AtomicInteger parsersVersion = new AtomicInteger();
+    private final Map<Characteristic, CharacteristicDecoder> decoders = new ConcurrentHashMap<>();
     private CharacteristicParser defaultParser;
+    private volatile GattParserMetrics metrics = GattParserMetrics.NOOP;
+    private volatile long slowDecodeThreshold = DEFAULT_SLOW_DECODE_THRESHOLD;
 
     BluetoothGattParser(BluetoothGattSpecificationReader specificationReader, CharacteristicParser defaultParser) {
         this.specificationReader = specificationReader;
@@ -104,7 +136,46 @@ public class BluetoothGattParser {
      * @throws CharacteristicFormatException if a characteristic cannot be parsed
      */
     public GattResponse parse(String characteristicUUID, byte[] raw) throws CharacteristicFormatException {
-        return new GattResponse(parseFields(characteristicUUID, raw));
+        String shortUUID = getShortUUID(characteristicUUID);
+        return parse(shortUUID, specificationReader.getCharacteristicByUUID(shortUUID), getParser(shortUUID), raw);
+    }
+
+    GattResponse parse(String characteristicUUID, Characteristic characteristic, CharacteristicParser parser,
+                       byte[] raw) {
+        GattParserMetrics metrics = this.metrics;
+        boolean traced = GattFlightRecorder.isSlowDecodeEnabled();
+        if (!metrics.isEnabled() && !traced) {
+            return new GattResponse(parseFields(characteristicUUID, characteristic, parser, raw));
+        }
+        long started = System.nanoTime();
+        GattResponse response;
+        try {
+            response = new GattResponse(parseFields(characteristicUUID, characteristic, parser, raw));
+        } catch (RuntimeException ex) {
+            long elapsed = System.nanoTime() - started;
+            metrics.failed(characteristicUUID, GattParserMetrics.Operation.PARSE, ex);
+            traceDecode(traced, characteristicUUID, parser, raw.length, true, elapsed);
+            throw ex;
+        }
+        long elapsed = System.nanoTime() - started;
+        metrics.parsed(characteristicUUID, raw.length, elapsed);
+        traceDecode(traced, characteristicUUID, parser, raw.length, false, elapsed);
+        return response;
+    }
+
+    /**
+     * Returns a handle of a given characteristic, see {@link CharacteristicHandle}. The characteristic specification,
+     * its parser and field layout are looked up once, so that values can be parsed and serialized through the handle
+     * with no registry lookups. It is advised to obtain a handle per characteristic (e.g. when a device gets
+     * connected) and reuse it.
+     *
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @return a characteristic handle
+     * @throws CharacteristicFormatException if the characteristic is not known
+     */
+    public CharacteristicHandle getHandle(String characteristicUUID) {
+        String shortUUID = getShortUUID(characteristicUUID);
+        return new CharacteristicHandle(this, shortUUID, bind(shortUUID));
     }
 
     /**
@@ -157,6 +228,8 @@ public class BluetoothGattParser {
      * and filled by user (see {@link GattRequest#setField}) for a further communication to a bluetooth device.
      * Some of the fields can be mandatory so they have to be set before serialization,
      * check {@link GattRequest#getRequiredFieldHolders()} and {@link BluetoothGattParser#validate(GattRequest)}.
+     * Note that the default parser truncates the result to fit the default ATT MTU,
+     * see {@link #serialize(GattRequest, boolean, int)} for a negotiated ATT MTU and long writes.
      *
      * @param gattRequest a GATT request object
      * @param strict dictates whether validation has to be performed before serialization
@@ -168,17 +241,327 @@ public class BluetoothGattParser {
         if (strict && !validate(gattRequest)) {
             throw new IllegalArgumentException("GATT request is not valid");
         }
-        synchronized (customParsers) {
-            String characteristicUUID = getShortUUID(gattRequest.getCharacteristicUUID());
-            if (strict && !isValidForWrite(characteristicUUID)) {
-                throw new CharacteristicFormatException(
-                        "Characteristic is not valid for write: " + characteristicUUID);
+        String characteristicUUID = getShortUUID(gattRequest.getCharacteristicUUID());
+        if (strict && !isValidForWrite(characteristicUUID)) {
+            throw new CharacteristicFormatException(
+                    Reason.NOT_VALID_FOR_WRITE, "Characteristic is not valid for write: " + characteristicUUID);
+        }
+        return serialize(characteristicUUID, getParser(characteristicUUID), gattRequest, false);
+    }
+
+    /**
+     * Performs serialization of a GATT request prepared by {@link BluetoothGattParser#prepare(String)}
+     * and filled by user (see {@link GattRequest#setField}) for a further communication to a bluetooth device
+     * with a negotiated ATT MTU. Unlike {@link #serialize(GattRequest, boolean)}, the resulting value is not
+     * truncated to fit the default ATT MTU. If the value fits into a single ATT Write Request, then a single fragment
+     * is returned, otherwise the value is split into fragments for ATT Prepare Write Requests
+     * (see {@link #fragment(byte[], int)}).
+     *
+     * @param gattRequest a GATT request object
+     * @param strict dictates whether validation has to be performed before serialization
+     *               (see {@link BluetoothGattParser#validate(GattRequest)})
+     * @param mtu negotiated ATT MTU
+     * @return serialized fields as a list of fragments ready to send to a bluetooth device
+     * @throws IllegalArgumentException if provided GATT request is not valid and strict parameter is set to true
+     * or if provided MTU is less than the default ATT MTU
+     * @throws CharacteristicFormatException if the serialized value is longer than the maximum length of
+     * an attribute value
+     */
+    public List<GattWriteFragment> serialize(GattRequest gattRequest, boolean strict, int mtu) {
+        if (mtu < DEFAULT_ATT_MTU) {
+            throw new IllegalArgumentException("ATT MTU cannot be less than " + DEFAULT_ATT_MTU + ": " + mtu);
+        }
+        if (strict && !validate(gattRequest)) {
+            throw new IllegalArgumentException("GATT request is not valid");
+        }
+        String characteristicUUID = getShortUUID(gattRequest.getCharacteristicUUID());
+        if (strict && !isValidForWrite(characteristicUUID)) {
+            throw new CharacteristicFormatException(
+                    Reason.NOT_VALID_FOR_WRITE, "Characteristic is not valid for write: " + characteristicUUID);
+        }
+        return fragment(serialize(characteristicUUID, getParser(characteristicUUID), gattRequest, true), mtu);
+    }
+
+    byte[] serialize(String characteristicUUID, CharacteristicParser parser, GattRequest gattRequest,
+                     boolean longWrite) {
+        GattParserMetrics metrics = this.metrics;
+        if (!metrics.isEnabled()) {
+            return serialize(parser, gattRequest, longWrite);
+        }
+        long started = System.nanoTime();
+        try {
+            byte[] value = serialize(parser, gattRequest, longWrite);
+            metrics.serialized(characteristicUUID, value.length, System.nanoTime() - started);
+            return value;
+        } catch (RuntimeException ex) {
+            metrics.failed(characteristicUUID, GattParserMetrics.Operation.SERIALIZE, ex);
+            throw ex;
+        }
+    }
+
+    private static byte[] serialize(CharacteristicParser parser, GattRequest gattRequest, boolean longWrite) {
+        return longWrite ? parser.serialize(gattRequest.getAllFieldHolders(), Integer.MAX_VALUE)
+                : parser.serialize(gattRequest.getAllFieldHolders());
+    }
+
+    /**
+     * Splits a characteristic value into fragments which can be sent to a bluetooth device with a given ATT MTU.
+     * If the value fits into a single ATT Write Request (MTU - 3 bytes), then a single fragment with zero offset is
+     * returned. Otherwise the value is split into the minimal number of fragments to be sent via
+     * ATT Prepare Write Requests (MTU - 5 bytes each) at their offsets followed by an ATT Execute Write Request.
+     *
+     * @param value a characteristic value
+     * @param mtu negotiated ATT MTU
+     * @return a list of fragments
+     * @throws IllegalArgumentException if provided MTU is less than the default ATT MTU
+     * @throws CharacteristicFormatException if the value is longer than the maximum length of an attribute value
+     */
+    public List<GattWriteFragment> fragment(byte[] value, int mtu) {
+        if (mtu < DEFAULT_ATT_MTU) {
+            throw new IllegalArgumentException("ATT MTU cannot be less than " + DEFAULT_ATT_MTU + ": " + mtu);
+        }
+        if (value.length > MAX_ATTRIBUTE_VALUE_LENGTH) {
+            throw new CharacteristicFormatException(Reason.VALUE_TOO_LONG,
+                    "Characteristic value is too long: " + value.length
+                    + " bytes. Maximum length: " + MAX_ATTRIBUTE_VALUE_LENGTH + " bytes.");
+        }
+        if (value.length <= mtu - WRITE_REQUEST_HEADER_SIZE) {
+            return Collections.singletonList(new GattWriteFragment(0, value));
+        }
+        int size = mtu - PREPARE_WRITE_REQUEST_HEADER_SIZE;
+        List<GattWriteFragment> fragments = new ArrayList<>((value.length + size - 1) / size);
+        for (int offset = 0; offset < value.length; offset += size) {
+            fragments.add(new GattWriteFragment(offset,
+                    Arrays.copyOfRange(value, offset, Math.min(value.length, offset + size))));
+        }
+        return fragments;
+    }
+
+    /**
+     * Compiles a reusable write template from a GATT request prepared by {@link BluetoothGattParser#prepare(String)}
+     * and filled by user (see {@link GattRequest#setField}). Values of all fields but variable ones are frozen into
+     * the template, variable fields become slots which can be set for each write,
+     * see {@link GattWriteTemplate.Payload}. Note that the op code field (if any) is frozen too,
+     * therefore it has to be set in the request before compiling the template.
+     * Variable fields must be of a fixed size and of a boolean, integer or IEEE754 floating point type.
+     * Templates are supported only by the default characteristic parser.
+     *
+     * @param gattRequest a GATT request object
+     * @param variableFields names of fields to be set for each write, they define slot indexes
+     * @return a write template
+     * @throws IllegalArgumentException if a mandatory field is not set or a variable field cannot be used as a slot
+     * @throws CharacteristicFormatException if the characteristic is not valid for write or
+     * it is handled by a custom parser
+     */
+    public GattWriteTemplate compile(GattRequest gattRequest, String... variableFields) {
+        List<String> variables = Arrays.asList(variableFields);
+        for (FieldHolder holder : gattRequest.getRequiredFieldHolders()) {
+            if (!holder.isValueSet() && !variables.contains(holder.getField().getName())) {
+                throw new IllegalArgumentException("GATT request is not valid; field is not set: "
+                        + holder.getField().getName());
+            }
+        }
+        String characteristicUUID = getShortUUID(gattRequest.getCharacteristicUUID());
+        if (!isValidForWrite(characteristicUUID)) {
+            throw new CharacteristicFormatException(
+                    Reason.NOT_VALID_FOR_WRITE, "Characteristic is not valid for write: " + characteristicUUID);
+        }
+        CharacteristicParser parser = getParser(characteristicUUID);
+        if (parser instanceof TypedCharacteristicParser) {
+            parser = ((TypedCharacteristicParser<?>) parser).getDelegate();
+        }
+        if (!(parser instanceof GenericCharacteristicParser)) {
+            throw new CharacteristicFormatException(
+                    Reason.UNSUPPORTED_OPERATION,
+                    "Write templates are not supported by custom parsers: " + characteristicUUID);
+        }
+        long started = System.nanoTime();
+        GattWriteTemplate template = ((GenericCharacteristicParser) parser).compile(characteristicUUID,
+                gattRequest.getAllFieldHolders(), variables);
+        if (GattFlightRecorder.isCompileEnabled()) {
+            GattFlightRecorder.compiled(characteristicUUID, parser.getClass().getName(), "write template",
+                    template.getLength(), System.nanoTime() - started);
+        }
+        return template;
+    }
+
+    /**
+     * Compiles a parser for a given characteristic at runtime and registers it, see
+     * {@link CharacteristicParserCompiler}. This is mainly useful for user-defined characteristics loaded via
+     * {@link BluetoothGattParser#loadExtensionsFromFolder(String)} as bundled characteristics are handled by parsers
+     * generated at build time. The compiled parser is bound to the current specification of the characteristic,
+     * if the specification is reloaded, values are parsed by the default parser until the characteristic
+     * is compiled again. Nothing is registered if the characteristic cannot be compiled.
+     *
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @return a compiled parser or the default parser if the characteristic cannot be compiled
+     * @throws CharacteristicFormatException if the characteristic is not valid for read or
+     * it is handled by a custom parser
+     */
+    public CharacteristicParser compileParser(String characteristicUUID) {
+        String shortUUID = getShortUUID(characteristicUUID);
+        if (!isValidForRead(shortUUID)) {
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic is not valid for read: " + shortUUID);
+        }
+        CharacteristicParser parser = getParser(shortUUID);
+        if (parser instanceof TypedCharacteristicParser) {
+            parser = ((TypedCharacteristicParser<?>) parser).getDelegate();
+        }
+        if (!(parser instanceof GenericCharacteristicParser)) {
+            throw new CharacteristicFormatException(
+                    Reason.UNSUPPORTED_OPERATION,
+                    "Compiled parsers are not supported for custom parsers: " + shortUUID);
+        }
+        CharacteristicParser compiled = CharacteristicParserCompiler.compile(getCharacteristic(shortUUID), parser);
+        if (compiled != parser) {
+            customParsers.put(shortUUID, compiled);
+            parsersVersion.incrementAndGet();
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns a decoder of raw field values of a given characteristic, see {@link CharacteristicDecoder}.
+     * <br>If the characteristic is handled by the default parser, it gets compiled
+     * (see {@link CharacteristicParserCompiler}) and values are decoded with no intermediate field holders.
+     * Otherwise (e.g. the characteristic contains field references or it is handled by a custom parser)
+     * values are parsed as usual and then looked up by field names.
+     * Decoders are cached per characteristic specification, so that the same decoder is returned until
+     * the specification is reloaded or a parser is registered. A decoder is bound to the specification
+     * it was created for, it must be obtained again if the specification is reloaded.
+     *
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @return a characteristic decoder
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     */
+    public CharacteristicDecoder getDecoder(String characteristicUUID) {
+        String shortUUID = getShortUUID(characteristicUUID);
+        if (!isValidForRead(shortUUID)) {
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic is not valid for read: " + shortUUID);
+        }
+        Characteristic characteristic = getCharacteristic(shortUUID);
+        CharacteristicDecoder decoder = decoders.get(characteristic);
+        if (decoder == null || decoder.getGeneration() != specificationReader.getGeneration()
+                || decoder.getParsersVersion() != parsersVersion.get()) {
+            decoder = createDecoder(shortUUID, characteristic);
+            decoders.put(characteristic, decoder);
+        }
+        return decoder;
+    }
+
+    private CharacteristicDecoder createDecoder(String shortUUID, Characteristic characteristic) {
+        int version = parsersVersion.get();
+        CharacteristicParser parser = getParser(shortUUID);
+        if (!(parser instanceof CompiledCharacteristicParser)
+                || ((CompiledCharacteristicParser) parser).getCharacteristic() != characteristic) {
+            if (parser instanceof TypedCharacteristicParser) {
+                parser = ((TypedCharacteristicParser<?>) parser).getDelegate();
             }
-            if (customParsers.containsKey(characteristicUUID)) {
-                return customParsers.get(characteristicUUID).serialize(gattRequest.getAllFieldHolders());
+            if (parser instanceof GenericCharacteristicParser) {
+                parser = CharacteristicParserCompiler.compile(characteristic, parser);
             }
-            return defaultParser.serialize(gattRequest.getAllFieldHolders());
         }
+        // compiled characteristics do not have references, so that their layout fields are the value fields
+        CharacteristicLayout layout = specificationReader.getLayout(characteristic);
+        if (parser instanceof CompiledCharacteristicParser) {
+            return new CharacteristicDecoder(shortUUID, layout, ((CompiledCharacteristicParser) parser)::decode,
+                    true, version);
+        }
+        List<Field> fields = layout.getFields();
+        return new CharacteristicDecoder(shortUUID, layout, raw -> {
+            LinkedHashMap<String, FieldHolder> holders = parseFields(shortUUID, raw);
+            Object[] values = new Object[fields.size()];
+            for (int i = 0; i < values.length; i++) {
+                FieldHolder holder = holders.get(fields.get(i).getName());
+                values[i] = holder != null ? holder.getRawValue() : null;
+            }
+            return values;
+        }, false, version);
+    }
+
+    /**
+     * Returns a decoder of values of the repeated field of a given characteristic into primitive arrays,
+     * see {@link RepeatedFieldDecoder}. It is advised to create a decoder per characteristic and reuse it
+     * along with its target arrays.
+     *
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @return a repeated field decoder
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     * @throws IllegalArgumentException if the characteristic does not have a repeated field
+     */
+    public RepeatedFieldDecoder getRepeatedFieldDecoder(String characteristicUUID) {
+        String shortUUID = getShortUUID(characteristicUUID);
+        if (!isValidForRead(shortUUID)) {
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic is not valid for read: " + shortUUID);
+        }
+        return new RepeatedFieldDecoder(shortUUID, getFields(shortUUID));
+    }
+
+    /**
+     * Binds a characteristic to a user class, so that characteristic values can be parsed directly into instances
+     * of the class, see {@link CharacteristicBinding}. The binding is resolved once, it is advised to create
+     * a binding per characteristic and class and reuse it. Values are decoded by a characteristic decoder,
+     * see {@link #getDecoder(String)}.
+     *
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @param type a class to bind to
+     * @param <T> type of a bound class
+     * @return a characteristic binding
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     * @throws IllegalArgumentException if the class cannot be bound to the characteristic
+     */
+    public <T> CharacteristicBinding<T> bind(String characteristicUUID, Class<T> type) {
+        return new CharacteristicBinding<>(type, getDecoder(characteristicUUID));
+    }
+
+    /**
+     * Looks up a characteristic specification, its parser and layout.
+     * @param characteristicUUID short UUID of a GATT characteristic
+     * @return resolved binding
+     */
+    CharacteristicHandle.Binding bind(String characteristicUUID) {
+        // versions are read first, so that a concurrent change makes the binding outdated rather than lost
+        int generation = specificationReader.getGeneration();
+        int version = parsersVersion.get();
+        Characteristic characteristic = specificationReader.getCharacteristicByUUID(characteristicUUID);
+        if (characteristic == null) {
+            throw new CharacteristicFormatException(Reason.UNKNOWN_CHARACTERISTIC,
+                    "Unknown characteristic: " + characteristicUUID);
+        }
+        return new CharacteristicHandle.Binding(generation, version, characteristic, getParser(characteristicUUID),
+                characteristic.getValue() != null ? specificationReader.getLayout(characteristic) : null);
+    }
+
+    /**
+     * Checks whether a binding is up to date, i.e. no specification has been overridden
+     * and no parser has been registered since it was resolved.
+     * @param binding a binding
+     * @return true if the binding is up to date
+     */
+    boolean isCurrent(CharacteristicHandle.Binding binding) {
+        return binding.getGeneration() == specificationReader.getGeneration()
+                && binding.getParsersVersion() == parsersVersion.get();
+    }
+
+    /**
+     * Returns a JSON encoder of parsed values of a given characteristic, see {@link GattJsonEncoder}.
+     * Field names, units and enumeration labels are escaped once, it is advised to create an encoder
+     * per characteristic and reuse it.
+     *
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @return a JSON encoder
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     */
+    public GattJsonEncoder getJsonEncoder(String characteristicUUID) {
+        String shortUUID = getShortUUID(characteristicUUID);
+        if (!isValidForRead(shortUUID)) {
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic is not valid for read: " + shortUUID);
+        }
+        return new GattJsonEncoder(shortUUID, getFields(shortUUID));
     }
 
     /**
@@ -217,9 +600,59 @@ public class BluetoothGattParser {
      * @param parser a new instance of a characteristic parser
      */
     public void registerParser(String characteristicUUID, CharacteristicParser parser) {
-        synchronized (customParsers) {
-            customParsers.put(getShortUUID(characteristicUUID), parser);
-        }
+        customParsers.put(getShortUUID(characteristicUUID), parser);
+        parsersVersion.incrementAndGet();
+    }
+
+    /**
+     * Registers typed parsers generated at build time for bundled characteristics
+     * (see {@link TypedCharacteristicParser}). Already registered custom parsers are not replaced.
+     */
+    void registerTypedParsers() {
+        GattDecoders.create(defaultParser).forEach((uuid, parser) -> customParsers.putIfAbsent(uuid, parser));
+        parsersVersion.incrementAndGet();
+    }
+
+    /**
+     * Sets a metrics implementation which gets notified about each parse and serialize operation,
+     * e.g. {@link org.sputnikdev.bluetooth.gattparser.metrics.GattMetricsRegistry}.
+     * Nothing is measured by default.
+     *
+     * @param metrics a metrics implementation or null to disable metrics
+     */
+    public void setMetrics(GattParserMetrics metrics) {
+        this.metrics = metrics != null ? metrics : GattParserMetrics.NOOP;
+    }
+
+    /**
+     * Returns the current metrics implementation.
+     *
+     * @return the current metrics implementation, {@link GattParserMetrics#NOOP} if metrics are disabled
+     */
+    public GattParserMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets a threshold of slow decode flight recorder events: if parsing of a characteristic value takes longer
+     * than the threshold, then a "org.sputnikdev.bluetooth.gattparser.SlowDecode" event is emitted
+     * (see {@link GattFlightRecorder}). The default threshold is 1 millisecond.
+     *
+     * @param threshold threshold
+     * @param unit threshold time unit
+     */
+    public void setSlowDecodeThreshold(long threshold, TimeUnit unit) {
+        slowDecodeThreshold = unit.toNanos(threshold);
+    }
+
+    /**
+     * Returns the threshold of slow decode flight recorder events.
+     *
+     * @param unit time unit
+     * @return the threshold of slow decode flight recorder events in a given time unit
+     */
+    public long getSlowDecodeThreshold(TimeUnit unit) {
+        return unit.convert(slowDecodeThreshold, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -339,16 +772,31 @@ public class BluetoothGattParser {
 
     private LinkedHashMap<String, FieldHolder> parseFields(String characteristicUUID, byte[] raw) {
         characteristicUUID = getShortUUID(characteristicUUID);
-        synchronized (customParsers) {
-            if (!isValidForRead(characteristicUUID)) {
-                throw new CharacteristicFormatException("Characteristic is not valid for read: " + characteristicUUID);
-            }
-            Characteristic characteristic = specificationReader.getCharacteristicByUUID(characteristicUUID);
-            if (customParsers.containsKey(characteristicUUID)) {
-                return customParsers.get(characteristicUUID).parse(characteristic, raw);
-            }
-            return defaultParser.parse(characteristic, raw);
+        return parseFields(characteristicUUID, specificationReader.getCharacteristicByUUID(characteristicUUID),
+                getParser(characteristicUUID), raw);
+    }
+
+    private static LinkedHashMap<String, FieldHolder> parseFields(String characteristicUUID,
+                                                                  Characteristic characteristic,
+                                                                  CharacteristicParser parser, byte[] raw) {
+        if (characteristic == null || !characteristic.isValidForRead()) {
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic is not valid for read: " + characteristicUUID);
         }
+        return parser.parse(characteristic, raw);
+    }
+
+    private void traceDecode(boolean traced, String characteristicUUID, CharacteristicParser parser,
+                             int payloadLength, boolean failed, long elapsed) {
+        if (traced && elapsed >= slowDecodeThreshold) {
+            GattFlightRecorder.slowDecode(characteristicUUID, parser.getClass().getName(),
+                    payloadLength, failed, elapsed);
+        }
+    }
+
+    private CharacteristicParser getParser(String characteristicUUID) {
+        CharacteristicParser parser = customParsers.get(characteristicUUID);
+        return parser != null ? parser : defaultParser;
     }
 
 }
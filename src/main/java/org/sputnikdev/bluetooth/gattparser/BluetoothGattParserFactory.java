@@ -27,6 +27,9 @@ import org.sputnikdev.bluetooth.gattparser.num.RealNumberFormatter;
 import org.sputnikdev.bluetooth.gattparser.num.TwosComplementNumberFormatter;
 import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * A factory class for some main objects in the library:
  * {@link BluetoothGattParser}, {@link BluetoothGattSpecificationReader}.
@@ -42,8 +45,12 @@ public final class BluetoothGattParserFactory {
     private static final FloatingPointNumberFormatter IEEE_11073_FLOATING_POINT_NUMBER_FORMATTER =
             new IEEE11073FloatingPointNumberFormatter();
 
+    // an explicit lock rather than a monitor, so that virtual threads do not pin their carriers
+    private static final Lock LOCK = new ReentrantLock();
+
     private static volatile BluetoothGattSpecificationReader reader;
     private static volatile BluetoothGattParser defaultParser;
+    private static volatile StringCache stringCache;
 
     private BluetoothGattParserFactory() { }
 
@@ -54,10 +61,13 @@ public final class BluetoothGattParserFactory {
      */
     public static BluetoothGattSpecificationReader getSpecificationReader() {
         if (reader == null) {
-            synchronized (BluetoothGattParserFactory.class) {
+            LOCK.lock();
+            try {
                 if (reader == null) {
                     reader = new BluetoothGattSpecificationReader();
                 }
+            } finally {
+                LOCK.unlock();
             }
         }
         return reader;
@@ -69,11 +79,17 @@ public final class BluetoothGattParserFactory {
      */
     public static BluetoothGattParser getDefault() {
         if (defaultParser == null) {
-            synchronized (BluetoothGattParserFactory.class) {
+            LOCK.lock();
+            try {
                 if (defaultParser == null) {
                     BluetoothGattSpecificationReader reader = getSpecificationReader();
-                    defaultParser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+                    BluetoothGattParser parser =
+                            new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+                    parser.registerTypedParsers();
+                    defaultParser = parser;
                 }
+            } finally {
+                LOCK.unlock();
             }
         }
         return defaultParser;
@@ -103,4 +119,21 @@ public final class BluetoothGattParserFactory {
         return IEEE_11073_FLOATING_POINT_NUMBER_FORMATTER;
     }
 
+    /**
+     * Sets a cache of decoded string field values, which is shared by all parsers (including generated and
+     * compiled decoders). Caching is disabled by default.
+     * @param cache a string cache or null to disable caching
+     */
+    public static void setStringCache(StringCache cache) {
+        stringCache = cache;
+    }
+
+    /**
+     * Returns the cache of decoded string field values.
+     * @return the string cache or null if caching is disabled
+     */
+    public static StringCache getStringCache() {
+        return stringCache;
+    }
+
 }
@@ -0,0 +1,387 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binding of a characteristic to a user class. Characteristic values are decoded directly into instances
+ * of the class, no intermediate field holders and maps are created when the characteristic can be compiled
+ * (see {@link org.sputnikdev.bluetooth.gattparser.compiler.CharacteristicParserCompiler}).
+ * A binding is created by {@link BluetoothGattParser#bind(String, Class)}, it is resolved once into method handles
+ * and it is thread safe. Values are decoded by a {@link CharacteristicDecoder}.
+ * <br>Characteristic fields are bound in one of the following ways:
+ * <ul>
+ * <li>to parameters of a constructor which parameters are all annotated with {@link GattField}</li>
+ * <li>to fields annotated with {@link GattField}, the class must have a no-arg constructor</li>
+ * <li>if no field is annotated, to fields which names match names of characteristic fields ignoring case
+ * and non-alphanumeric characters (e.g. "heartRateMeasurementValueUint8" matches
+ * "Heart Rate Measurement Value (uint8)"), the class must have a no-arg constructor</li>
+ * </ul>
+ * Supported types of bound parameters and fields are: primitive numbers and booleans and their wrappers,
+ * {@link BigInteger}, {@link BigDecimal}, {@link String}, byte[] (for struct fields) and {@link Object}
+ * (raw values). Numbers are converted the same way as by {@link FieldHolder} getters, i.e. multipliers,
+ * exponents and offsets are applied. Absent fields are bound as nulls (zeros or false for primitive types).
+ *
+ * @param <T> type of a bound class
+ */
+public final class CharacteristicBinding<T> {
+
+    private static final MethodHandle ELEMENT = MethodHandles.arrayElementGetter(Object[].class);
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
+
+    private final Class<T> type;
+    private final CharacteristicDecoder decoder;
+    // (Object[])Object
+    private final MethodHandle factory;
+    // (Object, Object[])void
+    private final MethodHandle[] setters;
+
+    /**
+     * Creates and resolves a new binding.
+     * @param type a class to bind to
+     * @param decoder a decoder of the characteristic
+     * @throws IllegalArgumentException if the class cannot be bound to the characteristic
+     */
+    CharacteristicBinding(Class<T> type, CharacteristicDecoder decoder) {
+        this.type = type;
+        this.decoder = decoder;
+        List<Field> fields = decoder.getFields();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<?> constructor = getAnnotatedConstructor(type);
+            if (constructor != null) {
+                factory = getFactory(lookup, constructor, decoder);
+                setters = new MethodHandle[0];
+            } else {
+                Constructor<T> noArgConstructor;
+                try {
+                    noArgConstructor = type.getDeclaredConstructor();
+                } catch (NoSuchMethodException ex) {
+                    throw new IllegalArgumentException("Class " + type.getName() + " must have either "
+                            + "a constructor with all parameters annotated with @GattField or a no-arg constructor");
+                }
+                noArgConstructor.setAccessible(true);
+                factory = MethodHandles.dropArguments(lookup.unreflectConstructor(noArgConstructor), 0,
+                        Object[].class).asType(FACTORY_TYPE);
+                setters = getSetters(lookup, type, decoder);
+            }
+        } catch (IllegalAccessException | SecurityException ex) {
+            throw new IllegalArgumentException("Class cannot be bound: " + type.getName(), ex);
+        }
+    }
+
+    /**
+     * Returns UUID of the bound characteristic.
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return decoder.getCharacteristicUUID();
+    }
+
+    /**
+     * Returns the bound class.
+     * @return the bound class
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Parses a characteristic value into a new instance of the bound class.
+     * @param raw byte array of data received from bluetooth device
+     * @return a new instance of the bound class
+     * @throws CharacteristicFormatException if provided data cannot be parsed
+     */
+    public T parse(byte[] raw) throws CharacteristicFormatException {
+        Object[] values = decoder.decode(raw);
+        try {
+            Object target = factory.invokeExact(values);
+            for (MethodHandle setter : setters) {
+                setter.invokeExact(target, values);
+            }
+            return type.cast(target);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Could not create an instance of " + type.getName(), ex);
+        }
+    }
+
+    private static Constructor<?> getAnnotatedConstructor(Class<?> type) {
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (constructor.getParameterCount() > 0 && getAnnotations(constructor) != null) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private static GattField[] getAnnotations(Constructor<?> constructor) {
+        Parameter[] parameters = constructor.getParameters();
+        GattField[] annotations = new GattField[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            annotations[i] = parameters[i].getAnnotation(GattField.class);
+            if (annotations[i] == null) {
+                return null;
+            }
+        }
+        return annotations;
+    }
+
+    private static MethodHandle getFactory(MethodHandles.Lookup lookup, Constructor<?> constructor,
+                                           CharacteristicDecoder decoder) throws IllegalAccessException {
+        List<Field> fields = decoder.getFields();
+        GattField[] annotations = getAnnotations(constructor);
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        MethodHandle[] getters = new MethodHandle[parameterTypes.length];
+        for (int i = 0; i < getters.length; i++) {
+            getters[i] = getGetter(lookup, fields, getIndex(decoder, annotations[i].value()), parameterTypes[i]);
+        }
+        constructor.setAccessible(true);
+        MethodHandle factory = MethodHandles.filterArguments(lookup.unreflectConstructor(constructor), 0, getters);
+        // all parameters are read from the same array of values
+        return MethodHandles.permuteArguments(factory, FACTORY_TYPE.changeReturnType(constructor.getDeclaringClass()),
+                new int[getters.length]).asType(FACTORY_TYPE);
+    }
+
+    private static MethodHandle[] getSetters(MethodHandles.Lookup lookup, Class<?> type,
+                                             CharacteristicDecoder decoder) throws IllegalAccessException {
+        List<Field> fields = decoder.getFields();
+        List<java.lang.reflect.Field> candidates = new ArrayList<>();
+        boolean annotated = false;
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (java.lang.reflect.Field field : clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic()) {
+                    continue;
+                }
+                candidates.add(field);
+                annotated |= field.isAnnotationPresent(GattField.class);
+            }
+        }
+        List<MethodHandle> setters = new ArrayList<>();
+        for (java.lang.reflect.Field field : candidates) {
+            int index;
+            if (annotated) {
+                GattField annotation = field.getAnnotation(GattField.class);
+                if (annotation == null) {
+                    continue;
+                }
+                index = getIndex(decoder, annotation.value());
+            } else {
+                index = getIndexByJavaName(fields, field.getName());
+                if (index < 0) {
+                    continue;
+                }
+            }
+            field.setAccessible(true);
+            MethodHandle setter = MethodHandles.filterArguments(lookup.unreflectSetter(field), 1,
+                    getGetter(lookup, fields, index, field.getType()));
+            setters.add(setter.asType(SETTER_TYPE));
+        }
+        if (setters.isEmpty()) {
+            throw new IllegalArgumentException("No fields of class " + type.getName()
+                    + " match characteristic fields");
+        }
+        return setters.toArray(new MethodHandle[setters.size()]);
+    }
+
+    // returns (Object[])X where X is the target type
+    private static MethodHandle getGetter(MethodHandles.Lookup lookup, List<Field> fields, int index,
+                                          Class<?> targetType) throws IllegalAccessException {
+        Field field = fields.get(index);
+        MethodHandle getter = MethodHandles.insertArguments(ELEMENT, 1, index);
+        MethodHandle converter = getConverter(lookup, field, targetType);
+        if (converter == null) {
+            throw new IllegalArgumentException("Field \"" + field.getName() + "\" cannot be bound to "
+                    + targetType.getName());
+        }
+        return MethodHandles.filterReturnValue(getter, converter);
+    }
+
+    // returns (Object)X where X is the target type or null if the field cannot be converted to the target type
+    private static MethodHandle getConverter(MethodHandles.Lookup lookup, Field field, Class<?> targetType)
+            throws IllegalAccessException {
+        if (targetType == Object.class) {
+            return MethodHandles.identity(Object.class);
+        }
+        FieldFormat format = field.getFormat();
+        String name;
+        if (targetType == String.class) {
+            name = "toString";
+        } else if (targetType == boolean.class || targetType == Boolean.class) {
+            name = format != null && format.isBoolean() ? "toBoolean" : null;
+        } else if (targetType == byte[].class) {
+            name = format != null && format.isStruct() ? "toBytes" : null;
+        } else if (format == null || !format.isNumber()) {
+            name = null;
+        } else if (targetType == int.class || targetType == Integer.class) {
+            name = "toInteger";
+        } else if (targetType == long.class || targetType == Long.class) {
+            name = "toLong";
+        } else if (targetType == float.class || targetType == Float.class) {
+            name = "toFloat";
+        } else if (targetType == double.class || targetType == Double.class) {
+            name = "toDouble";
+        } else if (targetType == BigInteger.class) {
+            name = "toBigInteger";
+        } else if (targetType == BigDecimal.class) {
+            name = "toBigDecimal";
+        } else {
+            name = null;
+        }
+        if (name == null) {
+            return null;
+        }
+        if (targetType.isPrimitive()) {
+            // absent fields are bound as default values of primitive types
+            name += "Value";
+        }
+        try {
+            MethodHandle converter = lookup.findStatic(CharacteristicBinding.class, name,
+                    MethodType.methodType(targetType, Object.class, double.class, double.class));
+            return MethodHandles.insertArguments(converter, 1,
+                    FieldHolder.getMultiplier(field), FieldHolder.getOffset(field));
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Integer toInteger(Object value, double multiplier, double offset) {
+        if (value == null) {
+            return null;
+        }
+        int result = ((Number) value).intValue();
+        return multiplier != 1.0 || offset != 0.0 ? (int) Math.round(result * multiplier + offset) : result;
+    }
+
+    private static int toIntegerValue(Object value, double multiplier, double offset) {
+        Integer result = toInteger(value, multiplier, offset);
+        return result != null ? result : 0;
+    }
+
+    private static Long toLong(Object value, double multiplier, double offset) {
+        if (value == null) {
+            return null;
+        }
+        long result = ((Number) value).longValue();
+        return multiplier != 1.0 || offset != 0.0 ? Math.round(result * multiplier + offset) : result;
+    }
+
+    private static long toLongValue(Object value, double multiplier, double offset) {
+        Long result = toLong(value, multiplier, offset);
+        return result != null ? result : 0L;
+    }
+
+    private static Float toFloat(Object value, double multiplier, double offset) {
+        return value != null ? (float) (((Number) value).floatValue() * multiplier + offset) : null;
+    }
+
+    private static float toFloatValue(Object value, double multiplier, double offset) {
+        Float result = toFloat(value, multiplier, offset);
+        return result != null ? result : 0F;
+    }
+
+    private static Double toDouble(Object value, double multiplier, double offset) {
+        return value != null ? ((Number) value).doubleValue() * multiplier + offset : null;
+    }
+
+    private static double toDoubleValue(Object value, double multiplier, double offset) {
+        Double result = toDouble(value, multiplier, offset);
+        return result != null ? result : 0D;
+    }
+
+    private static BigInteger toBigInteger(Object value, double multiplier, double offset) {
+        BigDecimal result = toBigDecimal(value, multiplier, offset);
+        return result != null ? result.setScale(0, RoundingMode.HALF_UP).toBigInteger() : null;
+    }
+
+    private static BigDecimal toBigDecimal(Object value, double multiplier, double offset) {
+        if (value == null) {
+            return null;
+        }
+        BigDecimal result = value instanceof BigInteger ? new BigDecimal((BigInteger) value)
+                : value instanceof Double || value instanceof Float ? new BigDecimal(value.toString())
+                : BigDecimal.valueOf(((Number) value).longValue());
+        return result.multiply(BigDecimal.valueOf(multiplier)).add(BigDecimal.valueOf(offset));
+    }
+
+    private static Boolean toBoolean(Object value, double multiplier, double offset) {
+        return (Boolean) value;
+    }
+
+    private static boolean toBooleanValue(Object value, double multiplier, double offset) {
+        return value != null && (Boolean) value;
+    }
+
+    private static String toString(Object value, double multiplier, double offset) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static byte[] toBytes(Object value, double multiplier, double offset) {
+        return (byte[]) value;
+    }
+
+    private static int getIndex(CharacteristicDecoder decoder, String name) {
+        int index = decoder.getIndex(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown characteristic field: " + name);
+        }
+        return index;
+    }
+
+    private static int getIndexByJavaName(List<Field> fields, String javaName) {
+        String normalized = normalize(javaName);
+        for (int i = fields.size() - 1; i >= 0; i--) {
+            if (fields.get(i).getName() != null && normalized.equals(normalize(fields.get(i).getName()))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.CharacteristicLayout;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Decodes values of a characteristic into arrays of raw field values, one element per field
+ * (see {@link #getFields()}), absent fields are represented by nulls. Values are the same as raw values of
+ * field holders (see {@link FieldHolder#getRawValue()}), i.e. multipliers and exponents are not applied.
+ * <br>A decoder is created by {@link BluetoothGattParser#getDecoder(String)}. If the characteristic can be compiled
+ * (see {@link org.sputnikdev.bluetooth.gattparser.compiler.CharacteristicParserCompiler}), values are decoded
+ * with no intermediate field holders and maps. It is a building block for bulk consumers of decoded values,
+ * e.g. {@link CharacteristicBinding}.
+ * <br>Threadsafe.
+ */
+public final class CharacteristicDecoder {
+
+    private final String characteristicUUID;
+    private final CharacteristicLayout layout;
+    private final Function<byte[], Object[]> decoder;
+    private final boolean compiled;
+    private final int parsersVersion;
+
+    CharacteristicDecoder(String characteristicUUID, CharacteristicLayout layout, Function<byte[], Object[]> decoder,
+                          boolean compiled, int parsersVersion) {
+        this.characteristicUUID = characteristicUUID;
+        this.layout = layout;
+        this.decoder = decoder;
+        this.compiled = compiled;
+        this.parsersVersion = parsersVersion;
+    }
+
+    /**
+     * Returns UUID of the characteristic.
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns field specifications in the order of decoded values.
+     * @return field specifications
+     */
+    public List<Field> getFields() {
+        return layout.getFields();
+    }
+
+    /**
+     * Returns an index of a field in the order of decoded values, see {@link CharacteristicLayout#getIndex(String)}.
+     * @param fieldName field name
+     * @return field index or -1 if the characteristic does not have such a field
+     */
+    public int getIndex(String fieldName) {
+        return layout.getIndex(fieldName);
+    }
+
+    /**
+     * Checks whether values are decoded by a compiled parser.
+     * @return true if values are decoded by a compiled parser, false if they are parsed into field holders first
+     */
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    int getGeneration() {
+        return layout.getGeneration();
+    }
+
+    int getParsersVersion() {
+        return parsersVersion;
+    }
+
+    /**
+     * Decodes a characteristic value.
+     * @param raw byte array of data received from bluetooth device
+     * @return raw values of fields in the same order as {@link #getFields()}, nulls for absent fields
+     * @throws CharacteristicFormatException if provided data cannot be parsed
+     */
+    public Object[] decode(byte[] raw) throws CharacteristicFormatException {
+        return decoder.apply(raw);
+    }
+
+}
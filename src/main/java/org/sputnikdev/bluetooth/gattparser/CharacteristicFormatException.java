@@ -22,29 +22,97 @@ package org.sputnikdev.bluetooth.gattparser;
 
 /**
  * This exception is thrown if a characteristic value could be parsed or serialized.
+ * The reason of the failure (see {@link #getReason()}) allows failures to be told apart without parsing messages,
+ * e.g. by metrics.
  *
  * @author Vlad Kolotov
  */
 public class CharacteristicFormatException extends RuntimeException {
 
+    /**
+     * Reasons of characteristic format failures.
+     */
+    public enum Reason {
+        /**
+         * A value does not have enough data for a field.
+         */
+        NOT_ENOUGH_DATA,
+        /**
+         * A characteristic is unknown or its specification does not allow it to be read.
+         */
+        NOT_VALID_FOR_READ,
+        /**
+         * A characteristic is unknown or its specification does not allow it to be written.
+         */
+        NOT_VALID_FOR_WRITE,
+        /**
+         * A characteristic is not known.
+         */
+        UNKNOWN_CHARACTERISTIC,
+        /**
+         * A field or message format is not supported.
+         */
+        UNSUPPORTED_FORMAT,
+        /**
+         * An operation is not supported for a characteristic, e.g. by a custom parser.
+         */
+        UNSUPPORTED_OPERATION,
+        /**
+         * A value is longer than allowed.
+         */
+        VALUE_TOO_LONG,
+        /**
+         * A field value is not valid for its field.
+         */
+        INVALID_VALUE,
+        /**
+         * An encoded message is malformed or belongs to another characteristic.
+         */
+        MALFORMED_MESSAGE,
+        /**
+         * The reason is not specified.
+         */
+        OTHER
+    }
+
+    private final Reason reason;
+
     public CharacteristicFormatException() {
         super();
+        reason = Reason.OTHER;
     }
 
     public CharacteristicFormatException(String message) {
         super(message);
+        reason = Reason.OTHER;
+    }
+
+    public CharacteristicFormatException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
     }
 
     public CharacteristicFormatException(String message, Throwable cause) {
         super(message, cause);
+        reason = Reason.OTHER;
     }
 
     public CharacteristicFormatException(Throwable cause) {
         super(cause);
+        reason = Reason.OTHER;
     }
 
     protected CharacteristicFormatException(String message, Throwable cause, boolean enableSuppression,
             boolean writableStackTrace) {
         super(message, cause, enableSuppression, writableStackTrace);
+        reason = Reason.OTHER;
+    }
+
+    /**
+     * Returns the reason of the failure.
+     * @return failure reason
+     */
+    public Reason getReason() {
+        return reason;
     }
 }
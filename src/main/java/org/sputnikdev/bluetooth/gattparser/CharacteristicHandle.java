@@ -0,0 +1,190 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException.Reason;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.CharacteristicLayout;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A handle of a GATT characteristic which binds the characteristic specification, its validity,
+ * the characteristic parser (see {@link BluetoothGattParser#registerParser(String, CharacteristicParser)})
+ * and the field layout, so that values are parsed and serialized with no registry lookups.
+ * <br>A handle is created by {@link BluetoothGattParser#getHandle(String)}, it is advised to obtain a handle once
+ * (e.g. when a device gets connected) and reuse it. The handle gets bound again automatically if any specification
+ * is overridden (see {@link BluetoothGattParser#loadExtensionsFromFolder(String)}) or a parser is registered.
+ * Parse and serialize operations are measured the same way as operations of {@link BluetoothGattParser}.
+ * <br>Threadsafe.
+ */
+public final class CharacteristicHandle {
+
+    private final BluetoothGattParser gattParser;
+    private final String characteristicUUID;
+    private volatile Binding binding;
+
+    CharacteristicHandle(BluetoothGattParser gattParser, String characteristicUUID, Binding binding) {
+        this.gattParser = gattParser;
+        this.characteristicUUID = characteristicUUID;
+        this.binding = binding;
+    }
+
+    /**
+     * Returns UUID of the characteristic (in its short form, e.g. "2A37").
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns the characteristic specification.
+     * @return characteristic specification
+     */
+    public Characteristic getCharacteristic() {
+        return getBinding().characteristic;
+    }
+
+    /**
+     * Returns the characteristic parser.
+     * @return characteristic parser
+     */
+    public CharacteristicParser getParser() {
+        return getBinding().parser;
+    }
+
+    /**
+     * Returns field specifications of the characteristic, see {@link BluetoothGattParser#getFields(String)}.
+     * @return field specifications
+     */
+    public List<Field> getFields() {
+        CharacteristicLayout layout = getBinding().layout;
+        return layout != null ? layout.getFields() : Collections.emptyList();
+    }
+
+    /**
+     * Checks whether the characteristic is valid for read operation, see {@link #parse(byte[])}.
+     * @return true if the characteristic is valid for read operation
+     */
+    public boolean isValidForRead() {
+        return getBinding().characteristic.isValidForRead();
+    }
+
+    /**
+     * Checks whether the characteristic is valid for write operation, see {@link #serialize(GattRequest)}.
+     * @return true if the characteristic is valid for write operation
+     */
+    public boolean isValidForWrite() {
+        return getBinding().characteristic.isValidForWrite();
+    }
+
+    /**
+     * Performs parsing of a characteristic value, see {@link BluetoothGattParser#parse(String, byte[])}.
+     * @param raw byte array of data received from bluetooth device
+     * @return a map of parsed characteristic fields represented by {@link GattResponse}
+     * @throws CharacteristicFormatException if the characteristic cannot be parsed
+     */
+    public GattResponse parse(byte[] raw) throws CharacteristicFormatException {
+        Binding binding = getBinding();
+        return gattParser.parse(characteristicUUID, binding.characteristic, binding.parser, raw);
+    }
+
+    /**
+     * Returns a request for a write operation, see {@link BluetoothGattParser#prepare(String)}.
+     * @return a GATT request
+     */
+    public GattRequest prepare() {
+        return new GattRequest(characteristicUUID, getFields());
+    }
+
+    /**
+     * Performs serialization of a GATT request, see {@link BluetoothGattParser#serialize(GattRequest)}.
+     * @param gattRequest a GATT request object
+     * @return serialized fields as an array of bytes ready to send to a bluetooth device
+     * @throws IllegalArgumentException if provided GATT request is not valid
+     */
+    public byte[] serialize(GattRequest gattRequest) {
+        return serialize(gattRequest, true);
+    }
+
+    /**
+     * Performs serialization of a GATT request, see {@link BluetoothGattParser#serialize(GattRequest, boolean)}.
+     * @param gattRequest a GATT request object
+     * @param strict dictates whether validation has to be performed before serialization
+     *               (see {@link BluetoothGattParser#validate(GattRequest)})
+     * @return serialized fields as an array of bytes ready to send to a bluetooth device
+     * @throws IllegalArgumentException if provided GATT request is not valid and strict parameter is set to true
+     */
+    public byte[] serialize(GattRequest gattRequest, boolean strict) {
+        Binding binding = getBinding();
+        if (strict && !gattParser.validate(gattRequest)) {
+            throw new IllegalArgumentException("GATT request is not valid");
+        }
+        if (strict && !binding.characteristic.isValidForWrite()) {
+            throw new CharacteristicFormatException(
+                    Reason.NOT_VALID_FOR_WRITE, "Characteristic is not valid for write: " + characteristicUUID);
+        }
+        return gattParser.serialize(characteristicUUID, binding.parser, gattRequest, false);
+    }
+
+    private Binding getBinding() {
+        Binding binding = this.binding;
+        if (!gattParser.isCurrent(binding)) {
+            binding = gattParser.bind(characteristicUUID);
+            this.binding = binding;
+        }
+        return binding;
+    }
+
+    /**
+     * Resolved characteristic specification, parser and layout. Immutable.
+     */
+    static final class Binding {
+
+        private final int generation;
+        private final int parsersVersion;
+        private final Characteristic characteristic;
+        private final CharacteristicParser parser;
+        private final CharacteristicLayout layout;
+
+        Binding(int generation, int parsersVersion, Characteristic characteristic, CharacteristicParser parser,
+                CharacteristicLayout layout) {
+            this.generation = generation;
+            this.parsersVersion = parsersVersion;
+            this.characteristic = characteristic;
+            this.parser = parser;
+            this.layout = layout;
+        }
+
+        int getGeneration() {
+            return generation;
+        }
+
+        int getParsersVersion() {
+            return parsersVersion;
+        }
+
+    }
+
+}
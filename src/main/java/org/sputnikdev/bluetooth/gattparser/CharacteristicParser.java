@@ -20,6 +20,7 @@ package org.sputnikdev.bluetooth.gattparser;
  * #L%
  */
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 
@@ -56,4 +57,24 @@ public interface CharacteristicParser {
      */
     byte[] serialize(Collection<FieldHolder> fieldHolders) throws CharacteristicFormatException;
 
+    /**
+     * Write operation. This method serialises characteristic fields into a raw array of bytes ready to send
+     * to a bluetooth device limiting the result to a given number of bytes. Unlike
+     * {@link #serialize(Collection)}, this method does not assume the default ATT MTU, so that long values
+     * can be written by using a negotiated MTU or the ATT long write procedure.
+     * The default implementation truncates the result of {@link #serialize(Collection)}, parsers that cap
+     * their result should override this method.
+     *
+     * @param fieldHolders a collection of field holders populated with user input
+     * @param maxLength maximum number of bytes in the resulting array
+     * @return a raw array of bytes which is ready to be sent to a bluetooth device
+     * @throws CharacteristicFormatException if provided fields cannot be serialized,
+     * see {@link BluetoothGattParser#isValidForWrite(String)}
+     */
+    default byte[] serialize(Collection<FieldHolder> fieldHolders, int maxLength)
+            throws CharacteristicFormatException {
+        byte[] data = serialize(fieldHolders);
+        return data.length > maxLength ? Arrays.copyOf(data, maxLength) : data;
+    }
+
 }
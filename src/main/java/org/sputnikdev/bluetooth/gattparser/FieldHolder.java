@@ -31,6 +31,8 @@ import org.apache.commons.beanutils.converters.FloatConverter;
 import org.apache.commons.beanutils.converters.IntegerConverter;
 import org.apache.commons.beanutils.converters.LongConverter;
 import org.apache.commons.beanutils.converters.StringConverter;
+import org.sputnikdev.bluetooth.gattparser.num.FixedPointDecimal;
+import org.sputnikdev.bluetooth.gattparser.num.Int128;
 import org.sputnikdev.bluetooth.gattparser.num.TwosComplementNumberFormatter;
 import org.sputnikdev.bluetooth.gattparser.spec.Enumeration;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
@@ -38,10 +40,12 @@ import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
 import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
 import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
 
-import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 
 /**
@@ -54,6 +58,7 @@ public class FieldHolder {
 
     private final Field field;
     private Object value;
+    private Object repeatedValues;
 
     /**
      * Creates a new field holder for a given GATT field and its raw value.
@@ -182,6 +187,29 @@ public class FieldHolder {
                 : def;
     }
 
+    /**
+     * Returns an exact fixed-point decimal representation of the field or a default value in case if the field is
+     * not an integer field, or its scaled value cannot be represented exactly by a {@link FixedPointDecimal}.
+     * Unlike {@link #getBigDecimal(BigDecimal)} and {@link #getDouble(Double)}, the value is computed from the raw
+     * integer value with integer arithmetic only.
+     * @param def the default value to be returned if the field cannot be converted
+     * @return a fixed-point decimal representation of the field
+     */
+    public FixedPointDecimal getFixedPointDecimal(FixedPointDecimal def) {
+        long raw;
+        if (value instanceof Integer || value instanceof Long) {
+            raw = ((Number) value).longValue();
+        } else if (value instanceof Int128 && ((Int128) value).isLong()) {
+            raw = ((Int128) value).longValue();
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE) {
+            raw = ((BigInteger) value).longValue();
+        } else {
+            return def;
+        }
+        FixedPointDecimal result = getFixedPointDecimal(field, raw);
+        return result != null ? result : def;
+    }
+
     /**
      * Returns a Float representation of the field or a default value in case if the field cannot
      * be converted to a Float.
@@ -239,7 +267,7 @@ public class FieldHolder {
      * @return an array representation of the field
      */
     public byte[] getBytes(byte[] def) {
-        return new ArrayConverter(byte[].class, new ByteConverter()).convert(byte[].class, value);
+        return new ArrayConverter(byte[].class, new ByteConverter()).convert(byte[].class, getRawValue());
     }
 
     /**
@@ -278,6 +306,15 @@ public class FieldHolder {
         return getBigDecimal(null);
     }
 
+    /**
+     * Returns an exact fixed-point decimal representation of the field or null in case if the field cannot
+     * be converted to a fixed-point decimal.
+     * @return a fixed-point decimal representation of the field
+     */
+    public FixedPointDecimal getFixedPointDecimal() {
+        return getFixedPointDecimal(null);
+    }
+
     /**
      * Returns a Float representation of the field or null in case if the field cannot
      * be converted to a Float.
@@ -324,32 +361,159 @@ public class FieldHolder {
     }
 
     /**
-     * Returns field raw value.
+     * Returns field raw value. Integer fields wider than 64 bits are kept as {@link Int128} internally
+     * and converted into {@link BigInteger} by this method, use {@link #getInt128()} to avoid the conversion.
      * @return field raw value
      */
     public Object getRawValue() {
+        if (value instanceof Int128) {
+            return ((Int128) value).toBigInteger();
+        } else if (value instanceof ByteBuffer) {
+            return copy((ByteBuffer) value);
+        }
         return value;
     }
 
+    /**
+     * Returns a read-only view of a struct field value. Struct fields of parsed characteristics are not copied
+     * from the payload, i.e. the view shares its content with the byte array given to the parser,
+     * use {@link #getRawValue()} or {@link #getBytes()} to get an own copy of the value.
+     * @return a read-only view of the struct field value or null if the value is not a struct (byte array)
+     */
+    public ByteBuffer getByteBuffer() {
+        if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).asReadOnlyBuffer();
+        } else if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value).asReadOnlyBuffer();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the raw (unscaled) value of an integer field, or a struct field of up to 16 bytes read as
+     * an unsigned little-endian number, as an {@link Int128}, no {@link BigInteger} is created.
+     * @return the raw value as a 128-bit integer or null if the field is not an integer or does not fit
+     */
+    public Int128 getInt128() {
+        if (value instanceof Int128) {
+            return (Int128) value;
+        } else if (value instanceof Integer || value instanceof Long) {
+            return Int128.valueOf(((Number) value).longValue());
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() <= 128) {
+            return Int128.valueOf((BigInteger) value);
+        } else if (value instanceof byte[] && ((byte[]) value).length <= 16 && field.getFormat().isStruct()) {
+            byte[] data = (byte[]) value;
+            return Int128.read(data, 0, data.length * 8, false);
+        } else if (value instanceof ByteBuffer && ((ByteBuffer) value).remaining() <= 16
+                && field.getFormat().isStruct()) {
+            ByteBuffer data = (ByteBuffer) value;
+            return Int128.read(data.array(), (data.arrayOffset() + data.position()) * 8, data.remaining() * 8, false);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of values of the field. Repeated fields (see {@link Field#isRepeated()}) of parsed
+     * characteristics hold all values of the rest of the payload, the raw value is the first of them.
+     * @return number of values of a repeated field, 1 for a regular field with a value set, 0 otherwise
+     */
+    public int getRepeatedCount() {
+        if (repeatedValues instanceof int[]) {
+            return ((int[]) repeatedValues).length;
+        } else if (repeatedValues instanceof long[]) {
+            return ((long[]) repeatedValues).length;
+        } else if (repeatedValues instanceof double[]) {
+            return ((double[]) repeatedValues).length;
+        }
+        return value != null ? 1 : 0;
+    }
+
+    /**
+     * Returns raw (unscaled) values of an integer field as an int array,
+     * see {@link #getRepeatedCount()}.
+     * @return raw values or null if the field is not an integer that fits an int
+     */
+    public int[] getIntArray() {
+        if (repeatedValues instanceof int[]) {
+            return ((int[]) repeatedValues).clone();
+        } else if (repeatedValues == null && value instanceof Integer) {
+            return new int[] {(Integer) value};
+        }
+        return null;
+    }
+
+    /**
+     * Returns raw (unscaled) values of an integer field as a long array,
+     * see {@link #getRepeatedCount()}.
+     * @return raw values or null if the field is not an integer that fits a long
+     */
+    public long[] getLongArray() {
+        if (repeatedValues instanceof int[]) {
+            int[] values = (int[]) repeatedValues;
+            long[] result = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i];
+            }
+            return result;
+        } else if (repeatedValues instanceof long[]) {
+            return ((long[]) repeatedValues).clone();
+        } else if (repeatedValues == null && (value instanceof Integer || value instanceof Long)) {
+            return new long[] {((Number) value).longValue()};
+        }
+        return null;
+    }
+
+    /**
+     * Returns values of a numeric field as a double array, see {@link #getRepeatedCount()}.
+     * Values are scaled the same way as {@link #getDouble()} does.
+     * @return values or null if the field is not a number
+     */
+    public double[] getDoubleArray() {
+        double[] result;
+        if (repeatedValues instanceof int[]) {
+            int[] values = (int[]) repeatedValues;
+            result = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i];
+            }
+        } else if (repeatedValues instanceof long[]) {
+            long[] values = (long[]) repeatedValues;
+            result = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i];
+            }
+        } else if (repeatedValues instanceof double[]) {
+            result = ((double[]) repeatedValues).clone();
+        } else {
+            Double single = isNumber() ? getDouble(null) : null;
+            return single != null ? new double[] {single} : null;
+        }
+        double multiplier = getMultiplier();
+        double offset = getOffset();
+        for (int i = 0; i < result.length; i++) {
+            result[i] = result[i] * multiplier + offset;
+        }
+        return result;
+    }
+
     /**
      * Returns field enumeration according to the field value.
      * @return fields enumeration according to the field value
      */
     public Enumeration getEnumeration() {
+        Int128 rawKey = getEnumerationKey();
+        if (rawKey != null) {
+            return FlagUtils.getEnumeration(field, rawKey).orElse(null);
+        }
         BigInteger key;
-        if (field.getFormat().isStruct() && value instanceof byte[]) {
-            byte[] data = (byte[]) value;
+        if (field.getFormat().isStruct() && isStructValue()) {
+            byte[] data = getStruct();
             key = new TwosComplementNumberFormatter().deserializeBigInteger(BitSet.valueOf(data),
                     data.length * 8, false);
         } else if (field.getFormat().isString() && value instanceof String) {
-            String encoding = field.getFormat().getType() == FieldType.UTF8S ? "UTF-8" : "UTF-16";
-            try {
-                byte[] data = ((String) value).getBytes(encoding);
-                key = new TwosComplementNumberFormatter().deserializeBigInteger(BitSet.valueOf(data),
-                        data.length * 8, false);
-            } catch (UnsupportedEncodingException e) {
-                throw new IllegalStateException(e);
-            }
+            byte[] data = ((String) value).getBytes(getCharset());
+            key = new TwosComplementNumberFormatter().deserializeBigInteger(BitSet.valueOf(data),
+                    data.length * 8, false);
         } else {
             key = getBigInteger();
         }
@@ -540,13 +704,8 @@ public class FieldHolder {
             if (field.getFormat().isStruct()) {
                 this.value = new TwosComplementNumberFormatter().serialize(key, key.bitLength(), false).toByteArray();
             } else if (field.getFormat().isString()) {
-                String encoding = field.getFormat().getType() == FieldType.UTF8S ? "UTF-8" : "UTF-16";
-                try {
-                    this.value = new String(new TwosComplementNumberFormatter().serialize(key, key.bitLength(), false)
-                            .toByteArray(), encoding);
-                } catch (UnsupportedEncodingException e) {
-                    throw new IllegalStateException(e);
-                }
+                this.value = new String(new TwosComplementNumberFormatter().serialize(key, key.bitLength(), false)
+                        .toByteArray(), getCharset());
             } else {
                 setBigInteger(key);
             }
@@ -561,6 +720,14 @@ public class FieldHolder {
         this.value = value;
     }
 
+    /**
+     * Sets all values of a repeated field.
+     * @param values an int[], long[] or double[] array of raw values
+     */
+    void setRepeatedValues(Object values) {
+        repeatedValues = values;
+    }
+
     /**
      * Checks whether field value is set.
      * @return true if field value is set, false otherwise
@@ -575,6 +742,15 @@ public class FieldHolder {
     }
 
     private double getMultiplier() {
+        return getMultiplier(field);
+    }
+
+    /**
+     * Returns a combined multiplier (decimal exponent, binary exponent and multiplier) of a given field.
+     * @param field GATT field specification
+     * @return combined multiplier, 1 if none is set
+     */
+    public static double getMultiplier(Field field) {
         double multiplier = 1;
         if (field.getDecimalExponent() != null) {
             multiplier = Math.pow(10, field.getDecimalExponent());
@@ -596,9 +772,91 @@ public class FieldHolder {
      * @return offset as double if set, 0 if not present
      */
     private double getOffset() {
+        return getOffset(field);
+    }
+
+    /**
+     * Returns offset-to-be-added of a given field.
+     * @param field GATT field specification
+     * @return offset, 0 if none is set
+     */
+    public static double getOffset(Field field) {
         return (field.getOffset() != null) ? field.getOffset() : 0;
     }
 
+    /**
+     * Scales a raw integer value of a given field (decimal exponent, binary exponent, multiplier and offset) exactly.
+     * Negative binary exponents are exact too as 2<sup>-n</sup> = 5<sup>n</sup> &times; 10<sup>-n</sup>.
+     * @param field GATT field specification
+     * @param raw raw value of the field
+     * @return scaled value or null if it cannot be represented by a {@link FixedPointDecimal} without overflow
+     */
+    public static FixedPointDecimal getFixedPointDecimal(Field field, long raw) {
+        try {
+            long unscaled = raw;
+            int scale = 0;
+            if (field.getMultiplier() != null && field.getMultiplier() != 0) {
+                unscaled = Math.multiplyExact(unscaled, field.getMultiplier());
+            }
+            if (field.getDecimalExponent() != null) {
+                scale = -field.getDecimalExponent();
+            }
+            if (field.getBinaryExponent() != null) {
+                int binaryExponent = field.getBinaryExponent();
+                if (binaryExponent >= 0) {
+                    unscaled = Math.multiplyExact(unscaled, pow(2, binaryExponent));
+                } else {
+                    unscaled = Math.multiplyExact(unscaled, pow(5, -binaryExponent));
+                    scale -= binaryExponent;
+                }
+            }
+            double offset = getOffset(field);
+            if (offset != 0) {
+                int offsetScale = getDecimalScale(offset);
+                if (offsetScale < 0) {
+                    return null;
+                }
+                long offsetUnscaled = Math.round(offset * pow(10, offsetScale));
+                if (offsetScale > scale) {
+                    unscaled = Math.multiplyExact(unscaled, pow(10, offsetScale - scale));
+                    scale = offsetScale;
+                } else {
+                    offsetUnscaled = Math.multiplyExact(offsetUnscaled, pow(10, scale - offsetScale));
+                }
+                unscaled = Math.addExact(unscaled, offsetUnscaled);
+            }
+            return FixedPointDecimal.valueOf(unscaled, scale);
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the smallest number of decimal places which represents a given double value
+     * as it is written in a specification (i.e. the shortest decimal string), -1 if the value has too many digits.
+     */
+    private static int getDecimalScale(double value) {
+        for (int scale = 0; scale < 16; scale++) {
+            double power = pow(10, scale);
+            double scaled = value * power;
+            if (Math.abs(scaled) >= (1L << 53)) {
+                break;
+            }
+            if (Math.round(scaled) / power == value) {
+                return scale;
+            }
+        }
+        return -1;
+    }
+
+    private static long pow(long base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result = Math.multiplyExact(result, base);
+        }
+        return result;
+    }
+
     private AbstractConverter getConverter() {
         FieldFormat fieldFormat = field.getFormat();
         int size = fieldFormat.getSize();
@@ -629,9 +887,37 @@ public class FieldHolder {
         }
     }
 
+    private Int128 getEnumerationKey() {
+        if (value instanceof Integer || value instanceof Long || value instanceof Int128) {
+            // enumeration keys are matched against scaled values
+            return getMultiplier() == 1.0 && getOffset() == 0.0 ? getInt128() : null;
+        }
+        return isStructValue() ? getInt128() : null;
+    }
+
+    private Charset getCharset() {
+        return field.getFormat().getType() == FieldType.UTF8S ? StandardCharsets.UTF_8 : StandardCharsets.UTF_16;
+    }
+
+    private boolean isStructValue() {
+        return value instanceof byte[] || value instanceof ByteBuffer;
+    }
+
+    private byte[] getStruct() {
+        return value instanceof ByteBuffer ? copy((ByteBuffer) value) : (byte[]) value;
+    }
+
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
     private Object prepareValue() {
-        if (field.getFormat().isStruct() && value instanceof byte[]) {
-            byte[] data = (byte[]) value;
+        if (value instanceof Int128) {
+            return ((Int128) value).toBigInteger();
+        } else if (field.getFormat().isStruct() && isStructValue()) {
+            byte[] data = getStruct();
             return new TwosComplementNumberFormatter().deserializeBigInteger(BitSet.valueOf(data),
                     data.length * 8, false);
         } else {
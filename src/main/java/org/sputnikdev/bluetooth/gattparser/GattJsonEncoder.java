@@ -0,0 +1,360 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.Enumeration;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes parsed characteristic values (see {@link GattResponse}) into JSON, writing straight to an
+ * {@link Appendable} or {@link OutputStream} without reflection or an intermediate JSON tree.
+ * <br>An encoder is created for a characteristic by {@link BluetoothGattParser#getJsonEncoder(String)}, field names,
+ * units and enumeration labels of the characteristic are escaped once when the encoder is created. It is advised
+ * to create an encoder per characteristic once and reuse it.
+ * <br>Each field is encoded as an object containing the field value (with multipliers, exponents and offsets applied),
+ * its unit and enumeration label if any, e.g.:
+ * <pre>
+ * {"Heart Rate Measurement Value (uint8)":{"value":74,
+ *     "unit":"org.bluetooth.unit.period.beats_per_minute"}}
+ * </pre>
+ * Struct values are encoded as hex strings, non-finite numbers as nulls.
+ * <br>Threadsafe.
+ */
+public final class GattJsonEncoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String NULL = "null";
+
+    private final String characteristicUUID;
+    private final Map<Field, FieldToken> tokens = new IdentityHashMap<>();
+
+    GattJsonEncoder(String characteristicUUID, List<Field> fields) {
+        this.characteristicUUID = characteristicUUID;
+        for (Field field : fields) {
+            tokens.put(field, new FieldToken(field));
+        }
+    }
+
+    /**
+     * Returns UUID of the characteristic.
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Encodes a parsed characteristic value into a JSON string.
+     * @param response parsed characteristic value
+     * @return JSON string
+     */
+    public String encode(GattResponse response) {
+        StringBuilder builder = new StringBuilder(32 * response.getSize());
+        try {
+            encode(response, builder);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Encodes a parsed characteristic value into JSON and appends it to a given appendable.
+     * @param response parsed characteristic value
+     * @param out an appendable to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void encode(GattResponse response, Appendable out) throws IOException {
+        write(response, new AppendableOutput(out));
+    }
+
+    /**
+     * Encodes a parsed characteristic value into JSON and writes it to a given stream in UTF-8.
+     * The stream is not flushed or closed.
+     * @param response parsed characteristic value
+     * @param out a stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void encode(GattResponse response, OutputStream out) throws IOException {
+        StreamOutput output = new StreamOutput(out);
+        write(response, output);
+        output.flush();
+    }
+
+    private void write(GattResponse response, Output out) throws IOException {
+        out.write('{');
+        boolean first = true;
+        for (FieldHolder holder : response.getFieldHolders()) {
+            Object value = holder.getRawValue();
+            if (value == null) {
+                continue;
+            }
+            FieldToken token = tokens.get(holder.getField());
+            if (token == null) {
+                // a field of a different specification, e.g. the characteristic has been reloaded
+                token = new FieldToken(holder.getField());
+            }
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write(token.name);
+            writeValue(token, value, out);
+            if (token.unit != null) {
+                out.write(token.unit);
+            }
+            Token label = token.getLabel(holder, value);
+            if (label != null) {
+                out.write(label);
+            }
+            out.write('}');
+        }
+        out.write('}');
+    }
+
+    private static void writeValue(FieldToken token, Object value, Output out) throws IOException {
+        if (value instanceof Integer || value instanceof Long) {
+            if (token.scaled) {
+                writeDouble(((Number) value).doubleValue() * token.multiplier + token.offset, out);
+            } else {
+                out.writeAscii(value.toString());
+            }
+        } else if (value instanceof Float && !token.scaled) {
+            float number = (Float) value;
+            out.writeAscii(Float.isFinite(number) ? Float.toString(number) : NULL);
+        } else if (value instanceof Float || value instanceof Double) {
+            writeDouble(((Number) value).doubleValue() * token.multiplier + token.offset, out);
+        } else if (value instanceof BigInteger) {
+            if (token.scaled) {
+                out.writeAscii(new BigDecimal((BigInteger) value).multiply(BigDecimal.valueOf(token.multiplier))
+                        .add(BigDecimal.valueOf(token.offset)).toString());
+            } else {
+                out.writeAscii(value.toString());
+            }
+        } else if (value instanceof Boolean) {
+            out.writeAscii(value.toString());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.write('"');
+            for (byte b : bytes) {
+                out.write(HEX[(b >> 4) & 0xF]);
+                out.write(HEX[b & 0xF]);
+            }
+            out.write('"');
+        } else {
+            out.writeQuoted(value.toString());
+        }
+    }
+
+    private static void writeDouble(double value, Output out) throws IOException {
+        out.writeAscii(Double.isFinite(value) ? Double.toString(value) : NULL);
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            escape(value.charAt(i), builder);
+        }
+        return builder.append('"').toString();
+    }
+
+    private static void escape(char character, StringBuilder builder) {
+        switch (character) {
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            case '\r':
+                builder.append("\\r");
+                break;
+            case '\t':
+                builder.append("\\t");
+                break;
+            default:
+                if (character < 0x20) {
+                    builder.append("\\u00").append(HEX[character >> 4]).append(HEX[character & 0xF]);
+                } else {
+                    builder.append(character);
+                }
+                break;
+        }
+    }
+
+    private static final class Token {
+        private final String text;
+        private final byte[] bytes;
+
+        private Token(String text) {
+            this.text = text;
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class FieldToken {
+        private final Token name;
+        private final Token unit;
+        private final Map<Long, Token> labels = new HashMap<>();
+        private final boolean enumerated;
+        private final double multiplier;
+        private final double offset;
+        private final boolean scaled;
+
+        private FieldToken(Field field) {
+            name = new Token(quote(field.getName()) + ":{\"value\":");
+            unit = field.getUnit() != null ? new Token(",\"unit\":" + quote(field.getUnit().trim())) : null;
+            enumerated = field.hasEnumerations();
+            if (enumerated) {
+                for (Enumeration enumeration : field.getEnumerations().getEnumerations()) {
+                    if (enumeration.getKey() != null && enumeration.getValue() != null
+                            && enumeration.getKey().bitLength() < Long.SIZE) {
+                        labels.putIfAbsent(enumeration.getKey().longValue(), createLabel(enumeration.getValue()));
+                    }
+                }
+            }
+            multiplier = FieldHolder.getMultiplier(field);
+            offset = FieldHolder.getOffset(field);
+            scaled = multiplier != 1.0 || offset != 0.0;
+        }
+
+        private Token getLabel(FieldHolder holder, Object value) {
+            if (!enumerated) {
+                return null;
+            }
+            if (value instanceof Integer || value instanceof Long) {
+                return labels.get(((Number) value).longValue());
+            }
+            // struct and string keys are rare, resolving them the same way as field holders do
+            String label = holder.getEnumerationValue();
+            return label != null ? createLabel(label) : null;
+        }
+
+        private static Token createLabel(String label) {
+            return new Token(",\"label\":" + quote(label));
+        }
+    }
+
+    private interface Output {
+        void write(char character) throws IOException;
+
+        void write(Token token) throws IOException;
+
+        void writeAscii(String value) throws IOException;
+
+        void writeQuoted(String value) throws IOException;
+    }
+
+    private static final class AppendableOutput implements Output {
+        private final Appendable out;
+
+        private AppendableOutput(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char character) throws IOException {
+            out.append(character);
+        }
+
+        @Override
+        public void write(Token token) throws IOException {
+            out.append(token.text);
+        }
+
+        @Override
+        public void writeAscii(String value) throws IOException {
+            out.append(value);
+        }
+
+        @Override
+        public void writeQuoted(String value) throws IOException {
+            out.append(quote(value));
+        }
+    }
+
+    private static final class StreamOutput implements Output {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[256];
+        private int position;
+
+        private StreamOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char character) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) character;
+        }
+
+        @Override
+        public void write(Token token) throws IOException {
+            write(token.bytes);
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - position) {
+                flush();
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        @Override
+        public void writeAscii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                write(value.charAt(i));
+            }
+        }
+
+        @Override
+        public void writeQuoted(String value) throws IOException {
+            write(quote(value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Represents a chunk of a serialized GATT characteristic value ready to be sent to a bluetooth device.
+ * If a value fits into a single ATT Write Request, then it is represented by a single fragment with zero offset,
+ * otherwise the value is split into a number of fragments to be sent via ATT Prepare Write Requests
+ * (at their corresponding offsets) followed by an ATT Execute Write Request.
+ * See {@link BluetoothGattParser#serialize(GattRequest, boolean, int)}.
+ */
+public class GattWriteFragment {
+
+    private final int offset;
+    private final byte[] value;
+
+    GattWriteFragment(int offset, byte[] value) {
+        this.offset = offset;
+        this.value = value;
+    }
+
+    /**
+     * Returns the offset of this fragment within the characteristic value.
+     * @return the offset of this fragment
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the fragment data.
+     * @return the fragment data
+     */
+    public byte[] getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "GattWriteFragment{offset=" + offset + ", value=" + Arrays.toString(value) + "}";
+    }
+
+}
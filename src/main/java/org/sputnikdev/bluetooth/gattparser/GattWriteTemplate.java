@@ -0,0 +1,292 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.num.IEEE11073FloatingPointNumberFormatter;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
+
+import java.util.Arrays;
+
+/**
+ * A precompiled write template of a GATT characteristic. A template is compiled from a {@link GattRequest}
+ * (see {@link BluetoothGattParser#compile(GattRequest, String...)}) where all fields but "variable" ones are
+ * frozen into a prebuilt image of bytes. Variable fields become slots which are addressed by their indexes
+ * (in the order they were specified when compiling the template). Producing a new value is a matter of copying
+ * the image and patching slots, no field holders or maps are involved:
+ * <pre>
+ * {@code
+ *
+ * GattRequest request = parser.prepare("2A39");
+ * GattWriteTemplate template = parser.compile(request, "Heart Rate Control Point");
+ * byte[] data = template.newPayload().setInteger(0, 1).getValue();
+ * }
+ * </pre>
+ * Immutable and threadsafe. Payloads are not threadsafe, a new payload should be created for each write.
+ */
+public class GattWriteTemplate {
+
+    private static final IEEE11073FloatingPointNumberFormatter IEEE_11073_FORMATTER =
+            new IEEE11073FloatingPointNumberFormatter();
+
+    private final String characteristicUUID;
+    private final byte[] image;
+    private final Slot[] slots;
+
+    GattWriteTemplate(String characteristicUUID, byte[] image, Field[] fields, int[] offsets) {
+        this.characteristicUUID = characteristicUUID;
+        this.image = image;
+        slots = new Slot[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            slots[i] = new Slot(fields[i], offsets[i]);
+        }
+    }
+
+    /**
+     * Returns associated to this template GATT characteristic UUID.
+     * @return GATT characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns the number of variable fields (slots) in this template.
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Returns a slot index by its field name.
+     * @param name field name
+     * @return slot index or -1 if there is no slot for a given field
+     */
+    public int getSlotIndex(String name) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].field.getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the GATT field specification of a slot.
+     * @param slot slot index
+     * @return GATT field specification
+     */
+    public Field getSlotField(int slot) {
+        return slots[slot].field;
+    }
+
+    /**
+     * Returns the length of payloads produced by this template.
+     * @return payload length in bytes
+     */
+    public int getLength() {
+        return image.length;
+    }
+
+    /**
+     * Creates a new payload which is initialized with the prebuilt image (all slots are set to zero).
+     * @return a new payload
+     */
+    public Payload newPayload() {
+        return new Payload(image.clone());
+    }
+
+    /**
+     * A characteristic value produced by a template. Slot values are written straight into
+     * the underlying array of bytes.
+     */
+    public final class Payload {
+
+        private final byte[] data;
+
+        private Payload(byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Sets a Boolean value for a slot.
+         * @param slot slot index
+         * @param value slot value
+         * @return this payload
+         */
+        public Payload setBoolean(int slot, boolean value) {
+            Slot target = slots[slot];
+            if (target.type != FieldType.BOOLEAN) {
+                throw new IllegalArgumentException("Slot is not of boolean type: " + target.field.getName());
+            }
+            write(data, target.offset, target.size, value ? 1 : 0);
+            return this;
+        }
+
+        /**
+         * Sets an Integer value for a slot.
+         * @param slot slot index
+         * @param value slot value
+         * @return this payload
+         */
+        public Payload setInteger(int slot, int value) {
+            return setLong(slot, value);
+        }
+
+        /**
+         * Sets a Long value for a slot.
+         * @param slot slot index
+         * @param value slot value
+         * @return this payload
+         */
+        public Payload setLong(int slot, long value) {
+            Slot target = slots[slot];
+            if (target.type == FieldType.FLOAT_IEE754 || target.type == FieldType.FLOAT_IEE11073) {
+                return setDouble(slot, value);
+            }
+            target.validate(value);
+            long raw = target.scaled ? Math.round((value - target.valueOffset) / target.multiplier) : value;
+            target.writeReal(data, raw);
+            return this;
+        }
+
+        /**
+         * Sets a Float value for a slot.
+         * @param slot slot index
+         * @param value slot value
+         * @return this payload
+         */
+        public Payload setFloat(int slot, float value) {
+            return setDouble(slot, value);
+        }
+
+        /**
+         * Sets a Double value for a slot.
+         * @param slot slot index
+         * @param value slot value
+         * @return this payload
+         */
+        public Payload setDouble(int slot, double value) {
+            Slot target = slots[slot];
+            target.validate(value);
+            double adjusted = (value - target.valueOffset) / target.multiplier;
+            if (target.type == FieldType.FLOAT_IEE754) {
+                if (target.size == 32) {
+                    write(data, target.offset, target.size, Float.floatToRawIntBits((float) adjusted));
+                } else {
+                    write(data, target.offset, target.size, Double.doubleToRawLongBits(adjusted));
+                }
+            } else if (target.type == FieldType.FLOAT_IEE11073) {
+                write(data, target.offset, target.size, target.size == 16
+                        ? IEEE_11073_FORMATTER.encodeSFloat(adjusted) : IEEE_11073_FORMATTER.encodeFloat(adjusted));
+            } else {
+                target.writeReal(data, Math.round(adjusted));
+            }
+            return this;
+        }
+
+        /**
+         * Returns the characteristic value ready to send to a bluetooth device.
+         * Note that the returned array is not copied.
+         * @return the characteristic value
+         */
+        public byte[] getValue() {
+            return data;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(data);
+        }
+    }
+
+    static void write(byte[] data, int offset, int size, long value) {
+        int written = 0;
+        while (written < size) {
+            int position = offset + written;
+            int shift = position & 7;
+            int length = Math.min(8 - shift, size - written);
+            int mask = ((1 << length) - 1) << shift;
+            int bits = (int) (value >>> written) << shift;
+            data[position >> 3] = (byte) ((data[position >> 3] & ~mask) | (bits & mask));
+            written += length;
+        }
+    }
+
+    private static final class Slot {
+
+        private final Field field;
+        private final FieldType type;
+        private final int offset;
+        private final int size;
+        private final double multiplier;
+        private final double valueOffset;
+        private final boolean scaled;
+        private final Double minimum;
+        private final Double maximum;
+        private final long rawMinimum;
+        private final long rawMaximum;
+
+        private Slot(Field field, int offset) {
+            this.field = field;
+            this.offset = offset;
+            type = field.getFormat().getType();
+            size = field.getFormat().getSize();
+            multiplier = FieldHolder.getMultiplier(field);
+            valueOffset = FieldHolder.getOffset(field);
+            scaled = multiplier != 1.0 || valueOffset != 0.0;
+            minimum = field.getMinimum();
+            maximum = field.getMaximum();
+            if (size >= Long.SIZE) {
+                rawMinimum = Long.MIN_VALUE;
+                rawMaximum = Long.MAX_VALUE;
+            } else if (type == FieldType.SINT) {
+                rawMinimum = -(1L << (size - 1));
+                rawMaximum = (1L << (size - 1)) - 1;
+            } else {
+                rawMinimum = 0;
+                rawMaximum = (1L << size) - 1;
+            }
+        }
+
+        private void validate(double value) {
+            if (maximum != null && maximum < value) {
+                throw new IllegalArgumentException("Value [" + value + "] is greater than maximum: " + maximum);
+            }
+            if (minimum != null && minimum > value) {
+                throw new IllegalArgumentException("Value [" + value + "] is less than minimum: " + minimum);
+            }
+        }
+
+        private void writeReal(byte[] data, long value) {
+            if (type != FieldType.UINT && type != FieldType.SINT) {
+                throw new IllegalArgumentException("Slot is not a number: " + field.getName());
+            }
+            if (value < rawMinimum || value > rawMaximum) {
+                throw new IllegalArgumentException("Value [" + value + "] does not fit into "
+                        + field.getFormat().getName() + " field: " + field.getName());
+            }
+            write(data, offset, size, value);
+        }
+    }
+
+}
@@ -22,17 +22,22 @@ package org.sputnikdev.bluetooth.gattparser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException.Reason;
 import org.sputnikdev.bluetooth.gattparser.num.FloatingPointNumberFormatter;
+import org.sputnikdev.bluetooth.gattparser.num.Int128;
 import org.sputnikdev.bluetooth.gattparser.num.RealNumberFormatter;
 import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
 import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.CharacteristicLayout;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
 import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
 import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
 
-import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
@@ -52,6 +57,12 @@ import java.util.Set;
  */
 public class GenericCharacteristicParser implements CharacteristicParser {
 
+    /**
+     * Maximum length of a characteristic value which can be sent in a single ATT Write Request
+     * with the default ATT MTU (23 bytes).
+     */
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 20;
+
     private final Logger logger = LoggerFactory.getLogger(GenericCharacteristicParser.class);
     private final BluetoothGattSpecificationReader reader;
 
@@ -66,45 +77,72 @@ public class GenericCharacteristicParser implements CharacteristicParser {
 
         validate(characteristic);
 
-        int offset = 0;
-        List<Field> fields = characteristic.getValue().getFields();
-        Set<String> requires = FlagUtils.getReadFlags(fields, raw);
+        // referenced characteristics are inlined, so that data is parsed in a single pass
+        CharacteristicLayout layout = reader.getLayout(characteristic);
+        Field repeated = RepeatedFieldDecoder.getRepeatedField(layout.getFields());
+        parse(layout, 0, layout.getEntryCount(), characteristic.getValue().getFields(), raw, 0, repeated, result);
+        return result;
+    }
+
+    /**
+     * Parses layout entries of a characteristic (or a referenced characteristic) which value starts
+     * at a given offset. Requirements of fields are checked against flags of the characteristic they belong to.
+     * @return offset of the data following the characteristic value
+     *     or {@link FieldFormat#FULL_SIZE} if the rest of the data has been consumed
+     */
+    private int parse(CharacteristicLayout layout, int from, int to, List<Field> fields, byte[] raw, int offset,
+                      Field repeated, LinkedHashMap<String, FieldHolder> result) {
+        Set<String> requires = FlagUtils.getReadFlags(fields, raw, offset);
         requires.add("Mandatory");
-        for (Field field : fields) {
+        int index = from;
+        while (index < to) {
+            Field field = layout.getEntry(index);
+            int next = layout.getReferenceEnd(index);
             List<String> requirements = field.getRequirements();
             if (requirements != null && !requirements.isEmpty() && !requires.containsAll(requirements)) {
-                // skipping field as per requirement in the Flags field
+                // skipping field (or referenced characteristic) as per requirement in the Flags field
+                index = next;
                 continue;
             }
-            if (field.getReference() != null) {
-                LinkedHashMap<String, FieldHolder> subCharacteristic =
-                        parse(reader.getCharacteristicByType(field.getReference().trim()), getRemainder(raw, offset));
-                result.putAll(subCharacteristic);
-                int size = getSize(subCharacteristic.values());
-                if (size == FieldFormat.FULL_SIZE) {
-                    break;
+            Characteristic referenced = layout.getReferencedCharacteristic(index);
+            if (referenced != null) {
+                validate(referenced);
+                offset = parse(layout, index + 1, next, referenced.getValue().getFields(), raw, offset,
+                        repeated, result);
+                if (offset == FieldFormat.FULL_SIZE) {
+                    return FieldFormat.FULL_SIZE;
                 }
-                offset += size;
+            } else if (FlagUtils.isFlagsField(field)) {
+                // skipping flags field
+                offset += field.getFormat().getSize();
             } else {
-                if (FlagUtils.isFlagsField(field)) {
-                    // skipping flags field
-                    offset += field.getFormat().getSize();
-                    continue;
-                }
                 FieldFormat fieldFormat = field.getFormat();
-                result.put(field.getName(), parseField(field, raw, offset));
+                FieldHolder holder = parseField(field, raw, offset);
+                result.put(field.getName(), holder);
+                if (field == repeated) {
+                    // repeated field takes the rest of the data
+                    holder.setRepeatedValues(RepeatedFieldDecoder.decode(field, raw, offset));
+                    return FieldFormat.FULL_SIZE;
+                }
                 if (fieldFormat.getSize() == FieldFormat.FULL_SIZE) {
                     // full size field, e.g. a string
-                    break;
+                    return FieldFormat.FULL_SIZE;
                 }
-                offset += field.getFormat().getSize();
+                offset += fieldFormat.getSize();
             }
+            index = next;
         }
-        return result;
+        return offset;
     }
 
     @Override
     public byte[] serialize(Collection<FieldHolder> fieldHolders) throws CharacteristicFormatException {
+        return serialize(fieldHolders, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    @Override
+    public byte[] serialize(Collection<FieldHolder> fieldHolders, int maxLength)
+            throws CharacteristicFormatException {
         BitSet bitSet = new BitSet();
         int offset = 0;
 
@@ -122,7 +160,45 @@ public class GenericCharacteristicParser implements CharacteristicParser {
         // BitSet does not keep 0, fields could be set all to 0, resulting bitSet to be of 0 length,
         // however data array must not be empty, hence forcing to return an array with first byte of 0 value
         byte[] data = bitSet.isEmpty() ? new byte[] {0} : bitSet.toByteArray();
-        return data.length > 20 ? Arrays.copyOf(bitSet.toByteArray(), 20) : data;
+        return data.length > maxLength ? Arrays.copyOf(data, maxLength) : data;
+    }
+
+    GattWriteTemplate compile(String characteristicUUID, Collection<FieldHolder> fieldHolders,
+                              List<String> variables) {
+        BitSet bitSet = new BitSet();
+        int offset = 0;
+        Field[] slotFields = new Field[variables.size()];
+        int[] slotOffsets = new int[variables.size()];
+
+        for (FieldHolder holder : fieldHolders) {
+            Field field = holder.getField();
+            int slot = variables.indexOf(field.getName());
+            if (slot >= 0) {
+                FieldFormat fieldFormat = field.getFormat();
+                if (!isTemplateSlot(fieldFormat)) {
+                    throw new IllegalArgumentException("Field cannot be a variable field of a write template: "
+                            + field.getName());
+                }
+                slotFields[slot] = field;
+                slotOffsets[slot] = offset;
+                offset += fieldFormat.getSize();
+            } else if (holder.isValueSet()) {
+                int size = field.getFormat().getSize();
+                BitSet serialized = serialize(holder);
+                if (size == FieldFormat.FULL_SIZE) {
+                    size = serialized.length();
+                }
+                concat(bitSet, serialized, offset, size);
+                offset += size;
+            }
+        }
+        for (int i = 0; i < slotFields.length; i++) {
+            if (slotFields[i] == null) {
+                throw new IllegalArgumentException("Unknown field: " + variables.get(i));
+            }
+        }
+        byte[] image = Arrays.copyOf(bitSet.toByteArray(), Math.max(1, (offset + 7) / 8));
+        return new GattWriteTemplate(characteristicUUID, image, slotFields, slotOffsets);
     }
 
     Object parse(Field field, byte[] raw, int offset) {
@@ -136,9 +212,9 @@ public class GenericCharacteristicParser implements CharacteristicParser {
                     BluetoothGattParserFactory.getIEEE754FloatingPointNumberFormatter(), raw, offset, size);
             case FLOAT_IEE11073: return deserializeFloat(
                     BluetoothGattParserFactory.getIEEE11073FloatingPointNumberFormatter(), raw, offset, size);
-            case UTF8S: return deserializeString(raw, offset, "UTF-8");
-            case UTF16S: return deserializeString(raw, offset, "UTF-16");
-            case STRUCT: return BitSet.valueOf(raw).get(offset, offset + raw.length * 8).toByteArray();
+            case UTF8S: return decodeString(raw, offset, StandardCharsets.UTF_8);
+            case UTF16S: return decodeString(raw, offset, StandardCharsets.UTF_16);
+            case STRUCT: return sliceStruct(raw, offset);
             default:
                 throw new IllegalStateException("Unsupported field format: " + fieldFormat.getType());
         }
@@ -170,14 +246,25 @@ public class GenericCharacteristicParser implements CharacteristicParser {
                     BluetoothGattParserFactory.getIEEE754FloatingPointNumberFormatter(), holder);
             case FLOAT_IEE11073: return serializeFloat(
                     BluetoothGattParserFactory.getIEEE11073FloatingPointNumberFormatter(), holder);
-            case UTF8S: return serializeString(holder, "UTF-8");
-            case UTF16S: return serializeString(holder, "UTF-16");
-            case STRUCT: return BitSet.valueOf((byte[]) holder.getRawValue());
+            case UTF8S: return serializeString(holder, StandardCharsets.UTF_8);
+            case UTF16S: return serializeString(holder, StandardCharsets.UTF_16);
+            case STRUCT: return BitSet.valueOf(holder.getByteBuffer());
             default:
                 throw new IllegalStateException("Unsupported field format: " + fieldFormat.getType());
         }
     }
 
+    private boolean isTemplateSlot(FieldFormat fieldFormat) {
+        switch (fieldFormat.getType()) {
+            case BOOLEAN: return true;
+            case UINT:
+            case SINT: return fieldFormat.getSize() <= 64;
+            case FLOAT_IEE754: return fieldFormat.getSize() == 32 || fieldFormat.getSize() == 64;
+            case FLOAT_IEE11073: return fieldFormat.getSize() == 16 || fieldFormat.getSize() == 32;
+            default: return false;
+        }
+    }
+
     private Boolean parseBoolean(byte[] raw, int offset) {
         return BitSet.valueOf(raw).get(offset);
     }
@@ -185,7 +272,7 @@ public class GenericCharacteristicParser implements CharacteristicParser {
     private FieldHolder parseField(Field field, byte[] raw, int offset) {
         FieldFormat fieldFormat = field.getFormat();
         if (fieldFormat.getSize() != FieldFormat.FULL_SIZE && offset + fieldFormat.getSize() > raw.length * 8) {
-            throw new CharacteristicFormatException(
+            throw new CharacteristicFormatException(Reason.NOT_ENOUGH_DATA,
                     "Not enough bits to parse field \"" + field.getName() + "\". "
                             + "Data length: " + raw.length + " bytes. "
                             + "Looks like your device does not conform SIG specification.");
@@ -198,23 +285,11 @@ public class GenericCharacteristicParser implements CharacteristicParser {
     private void validate(Characteristic characteristic) {
         if (!characteristic.isValidForRead()) {
             logger.error("Characteristic cannot be parsed: \"{}\".", characteristic.getName());
-            throw new CharacteristicFormatException("Characteristic cannot be parsed: \"" +
-                    characteristic.getName() + "\".");
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic cannot be parsed: \"" + characteristic.getName() + "\".");
         }
     }
 
-    private int getSize(Collection<FieldHolder> holders) {
-        int size = 0;
-        for (FieldHolder holder : holders) {
-            Field field = holder.getField();
-            if (field.getFormat().getSize() == FieldFormat.FULL_SIZE) {
-                return FieldFormat.FULL_SIZE;
-            }
-            size += field.getFormat().getSize();
-        }
-        return size;
-    }
-
     private BitSet serializeReal(FieldHolder holder) {
         RealNumberFormatter realNumberFormatter = BluetoothGattParserFactory.getTwosComplementNumberFormatter();
         int size = holder.getField().getFormat().getSize();
@@ -235,6 +310,9 @@ public class GenericCharacteristicParser implements CharacteristicParser {
             return realNumberFormatter.deserializeInteger(BitSet.valueOf(raw).get(offset, toIndex), size, signed);
         } else if ((signed && size <= 64) || (!signed && size < 64)) {
             return realNumberFormatter.deserializeLong(BitSet.valueOf(raw).get(offset, toIndex), size, signed);
+        } else if (size <= 128) {
+            // BigInteger is created on demand, see FieldHolder.getRawValue()
+            return Int128.read(raw, offset, size, signed);
         } else {
             return realNumberFormatter.deserializeBigInteger(BitSet.valueOf(raw).get(offset, toIndex), size, signed);
         }
@@ -266,27 +344,67 @@ public class GenericCharacteristicParser implements CharacteristicParser {
         }
     }
 
-    private String deserializeString(byte[] raw, int offset, String encoding) {
-        try {
-            return new String(BitSet.valueOf(raw).get(offset, offset + raw.length * 8).toByteArray(), encoding);
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
-        }
+    private BitSet serializeString(FieldHolder holder, Charset charset) {
+        return BitSet.valueOf(holder.getString(null).getBytes(charset));
     }
 
-    private BitSet serializeString(FieldHolder holder, String encoding) {
-        try {
-            return BitSet.valueOf(holder.getString(null).getBytes(encoding));
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
+    /**
+     * Decodes a string field which occupies the remainder of a payload starting at a given bit offset.
+     * The string is decoded straight from the payload (if the offset is byte aligned) and ends at the first
+     * null terminator (a zero byte, or a zero code unit for UTF-16), so that null padding is dropped.
+     * A shared string cache is used if it is set, see {@link BluetoothGattParserFactory#setStringCache}.
+     * @param raw payload
+     * @param offset bit offset of a string field
+     * @param charset charset of the string
+     * @return decoded string
+     */
+    static String decodeString(byte[] raw, int offset, Charset charset) {
+        byte[] data = raw;
+        int start = offset >>> 3;
+        if ((offset & 7) != 0) {
+            data = sliceStruct(raw, offset).array();
+            start = 0;
         }
+        if (start >= data.length) {
+            return "";
+        }
+        int unit = StandardCharsets.UTF_16.equals(charset) ? 2 : 1;
+        int end = start;
+        while (end + unit <= data.length && (data[end] != 0 || unit == 2 && data[end + 1] != 0)) {
+            end += unit;
+        }
+        if (end + unit > data.length && end < data.length && data[data.length - 1] != 0) {
+            // an odd trailing byte of UTF-16
+            end = data.length;
+        }
+        StringCache cache = BluetoothGattParserFactory.getStringCache();
+        return cache != null ? cache.get(data, start, end - start, charset)
+                : new String(data, start, end - start, charset);
     }
 
-    private byte[] getRemainder(byte[] raw, int offset) {
-        byte[] remained = BitSet.valueOf(raw).get(offset, raw.length * 8).toByteArray();
-        byte[] remainedWithTrailingZeros = new byte[(raw.length - (int) Math.ceil(offset / 8.0))];
-        System.arraycopy(remained, 0, remainedWithTrailingZeros, 0, remained.length);
-        return remainedWithTrailingZeros;
+    /**
+     * Returns the remainder of a payload starting at a given bit offset as a struct value. If the offset is byte
+     * aligned (which is normally the case), the result is a view over the payload, no bytes are copied.
+     * Unlike a BitSet based conversion, trailing zero bytes are kept.
+     * @param raw payload
+     * @param offset bit offset of a struct field
+     * @return struct value
+     */
+    static ByteBuffer sliceStruct(byte[] raw, int offset) {
+        int start = offset >>> 3;
+        int shift = offset & 7;
+        if (start >= raw.length) {
+            return ByteBuffer.wrap(new byte[0]);
+        }
+        if (shift == 0) {
+            return ByteBuffer.wrap(raw, start, raw.length - start).slice();
+        }
+        byte[] shifted = new byte[raw.length - start];
+        for (int i = 0; i < shifted.length; i++) {
+            int next = start + i + 1 < raw.length ? raw[start + i + 1] & 0xFF : 0;
+            shifted[i] = (byte) (((raw[start + i] & 0xFF) >>> shift) | (next << (8 - shift)));
+        }
+        return ByteBuffer.wrap(shifted);
     }
 
 }
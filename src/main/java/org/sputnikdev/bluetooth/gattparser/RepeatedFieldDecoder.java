@@ -0,0 +1,295 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
+import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decodes values of a repeated field (see {@link Field#isRepeated()}), e.g. RR-Interval values of
+ * the Heart Rate Measurement characteristic, into caller-provided primitive arrays. Values are decoded in one pass
+ * with no field holders and boxed values, so that the same array can be reused for every notification.
+ * <br>A decoder is created by {@link BluetoothGattParser#getRepeatedFieldDecoder(String)}. Values are decoded as per
+ * the characteristic specification, the decoder is bound to the current specification of the characteristic,
+ * it must be created again if the specification is reloaded.
+ * <br>Threadsafe.
+ */
+public final class RepeatedFieldDecoder {
+
+    private final String characteristicUUID;
+    private final Field field;
+    private final List<Field> fields;
+    private final int[] sizes;
+    private final boolean conditional;
+    private final ValueType type;
+    private final int size;
+    private final boolean signed;
+    private final double multiplier;
+    private final double offset;
+
+    RepeatedFieldDecoder(String characteristicUUID, List<Field> fields) {
+        this.characteristicUUID = characteristicUUID;
+        this.fields = fields;
+        field = getRepeatedField(fields);
+        if (field == null) {
+            throw new IllegalArgumentException("Characteristic does not have a repeated field: " + characteristicUUID);
+        }
+        sizes = new int[fields.size() - 1];
+        boolean conditional = false;
+        for (int i = 0; i < fields.size(); i++) {
+            Field preceding = fields.get(i);
+            List<String> requirements = preceding.getRequirements();
+            conditional |= requirements != null && !requirements.isEmpty();
+            if (i < sizes.length) {
+                sizes[i] = preceding.getFormat().getSize();
+                if (sizes[i] == FieldFormat.FULL_SIZE) {
+                    throw new IllegalArgumentException("Repeated field \"" + field.getName()
+                            + "\" follows a variable size field: " + preceding.getName());
+                }
+            }
+        }
+        this.conditional = conditional;
+        type = getType(field);
+        size = field.getFormat().getSize();
+        signed = field.getFormat().getType() == FieldType.SINT;
+        multiplier = FieldHolder.getMultiplier(field);
+        offset = FieldHolder.getOffset(field);
+    }
+
+    /**
+     * Returns UUID of the characteristic.
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns the repeated field specification.
+     * @return repeated field specification
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns the last field of a characteristic if it is a repeated field of a supported format.
+     * @param fields field specifications of a characteristic
+     * @return the repeated field or null if there is none
+     */
+    static Field getRepeatedField(List<Field> fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        Field last = fields.get(fields.size() - 1);
+        return last.isRepeated() && last.getReference() == null && getType(last) != null ? last : null;
+    }
+
+    /**
+     * Returns the number of values of the repeated field in a given characteristic value.
+     * @param raw byte array of data received from bluetooth device
+     * @return number of values, 0 if the field is not present
+     */
+    public int getCount(byte[] raw) {
+        return getCount(raw, getOffset(raw));
+    }
+
+    private int getCount(byte[] raw, int start) {
+        return start < 0 ? 0 : getCount(raw, start, size);
+    }
+
+    private static int getCount(byte[] raw, int start, int size) {
+        return Math.max(0, (raw.length * 8 - start) / size);
+    }
+
+    /**
+     * Decodes raw (unscaled) values of the repeated field into a given array.
+     * Values which do not fit the array are skipped.
+     * @param raw byte array of data received from bluetooth device
+     * @param target an array to decode values into
+     * @return number of decoded values
+     * @throws IllegalStateException if the field format is not an integer that fits an int
+     */
+    public int decode(byte[] raw, int[] target) {
+        if (type != ValueType.INT) {
+            throw new IllegalStateException("Field values do not fit int: " + field.getName());
+        }
+        int start = getOffset(raw);
+        int count = Math.min(getCount(raw, start), target.length);
+        decode(raw, start, size, signed, target, count);
+        return count;
+    }
+
+    /**
+     * Decodes raw (unscaled) values of the repeated field into a given array.
+     * Values which do not fit the array are skipped.
+     * @param raw byte array of data received from bluetooth device
+     * @param target an array to decode values into
+     * @return number of decoded values
+     * @throws IllegalStateException if the field format is not an integer
+     */
+    public int decode(byte[] raw, long[] target) {
+        if (type != ValueType.INT && type != ValueType.LONG) {
+            throw new IllegalStateException("Field is not an integer: " + field.getName());
+        }
+        int start = getOffset(raw);
+        int count = Math.min(getCount(raw, start), target.length);
+        decode(raw, start, size, signed, target, count);
+        return count;
+    }
+
+    /**
+     * Decodes values of the repeated field into a given array. Values are scaled the same way as
+     * {@link FieldHolder#getDouble()} does, i.e. multipliers, exponents and offsets are applied.
+     * Values which do not fit the array are skipped.
+     * @param raw byte array of data received from bluetooth device
+     * @param target an array to decode values into
+     * @return number of decoded values
+     */
+    public int decode(byte[] raw, double[] target) {
+        int start = getOffset(raw);
+        int count = Math.min(getCount(raw, start), target.length);
+        decode(raw, start, type, size, signed, target, count);
+        if (multiplier != 1 || offset != 0) {
+            for (int i = 0; i < count; i++) {
+                target[i] = target[i] * multiplier + offset;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Decodes all values of a repeated field starting from a given offset till the end of data.
+     * @param field repeated field specification
+     * @param raw raw data
+     * @param offset bit offset of the first value
+     * @return raw values as an int[], long[] or double[] array depending on the field format
+     */
+    static Object decode(Field field, byte[] raw, int offset) {
+        ValueType type = getType(field);
+        int size = field.getFormat().getSize();
+        boolean signed = field.getFormat().getType() == FieldType.SINT;
+        int count = getCount(raw, offset, size);
+        if (type == ValueType.INT) {
+            int[] values = new int[count];
+            decode(raw, offset, size, signed, values, count);
+            return values;
+        } else if (type == ValueType.LONG) {
+            long[] values = new long[count];
+            decode(raw, offset, size, signed, values, count);
+            return values;
+        }
+        double[] values = new double[count];
+        decode(raw, offset, type, size, signed, values, count);
+        return values;
+    }
+
+    private static void decode(byte[] raw, int offset, int size, boolean signed, int[] target, int count) {
+        for (int i = 0; i < count; i++, offset += size) {
+            target[i] = TypedCharacteristicParser.readInt(raw, offset, size, signed);
+        }
+    }
+
+    private static void decode(byte[] raw, int offset, int size, boolean signed, long[] target, int count) {
+        for (int i = 0; i < count; i++, offset += size) {
+            target[i] = TypedCharacteristicParser.readLong(raw, offset, size, signed);
+        }
+    }
+
+    private static void decode(byte[] raw, int offset, ValueType type, int size, boolean signed,
+                               double[] target, int count) {
+        for (int i = 0; i < count; i++, offset += size) {
+            switch (type) {
+                case INT:
+                    target[i] = TypedCharacteristicParser.readInt(raw, offset, size, signed);
+                    break;
+                case LONG:
+                    target[i] = TypedCharacteristicParser.readLong(raw, offset, size, signed);
+                    break;
+                case IEEE754:
+                    target[i] = size == Float.SIZE ? TypedCharacteristicParser.readFloat(raw, offset)
+                            : TypedCharacteristicParser.readDouble(raw, offset);
+                    break;
+                default:
+                    target[i] = size == 16 ? TypedCharacteristicParser.readSFloat11073(raw, offset)
+                            : TypedCharacteristicParser.readFloat11073(raw, offset);
+                    break;
+            }
+        }
+    }
+
+    private int getOffset(byte[] raw) {
+        Set<String> requires = null;
+        if (conditional) {
+            requires = FlagUtils.getReadFlags(fields, raw);
+            requires.add("Mandatory");
+            if (!isPresent(field, requires)) {
+                return -1;
+            }
+        }
+        int start = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (requires == null || isPresent(fields.get(i), requires)) {
+                start += sizes[i];
+            }
+        }
+        return start;
+    }
+
+    private static boolean isPresent(Field field, Set<String> requires) {
+        List<String> requirements = field.getRequirements();
+        return requirements == null || requirements.isEmpty() || requires.containsAll(requirements);
+    }
+
+    private static ValueType getType(Field field) {
+        FieldFormat format = field.getFormat();
+        if (format == null) {
+            return null;
+        }
+        int size = format.getSize();
+        switch (format.getType()) {
+            case UINT:
+            case SINT:
+                if (size <= 0 || size > Long.SIZE) {
+                    return null;
+                }
+                // the same types as raw values of field holders have
+                boolean signed = format.getType() == FieldType.SINT;
+                return size < Integer.SIZE || (signed && size == Integer.SIZE) ? ValueType.INT : ValueType.LONG;
+            case FLOAT_IEE754:
+                return size == Float.SIZE || size == Double.SIZE ? ValueType.IEEE754 : null;
+            case FLOAT_IEE11073:
+                return size == 16 || size == Float.SIZE ? ValueType.IEEE11073 : null;
+            default:
+                return null;
+        }
+    }
+
+    private enum ValueType {
+        INT, LONG, IEEE754, IEEE11073
+    }
+
+}
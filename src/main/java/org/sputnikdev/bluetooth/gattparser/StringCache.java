@@ -0,0 +1,166 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.charset.Charset;
+
+/**
+ * A bounded cache of decoded string field values. Device names, model numbers, manufacturer names etc. are
+ * received over and over again with exactly the same bytes, the cache lets them share a single String instance
+ * and skips decoding if the bytes of a string field are equal to the bytes of a cached value.
+ * <br>The cache is direct-mapped: each value is stored in a slot chosen by a hash of its bytes, a new value
+ * replaces an older one in the same slot, hence the memory consumption is bounded by the capacity
+ * and the maximum length of cached values. Lookups are lock-free, the cache is threadsafe.
+ * <br>The cache is disabled by default, see {@link BluetoothGattParserFactory#setStringCache(StringCache)}.
+ */
+public final class StringCache {
+
+    /**
+     * The default maximum length (in bytes) of cached values.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private static final int MAX_CAPACITY = 1 << 20;
+
+    private final Entry[] entries;
+    private final int maxLength;
+
+    /**
+     * Creates a new cache holding up to a given number of values of up to {@link #DEFAULT_MAX_LENGTH} bytes.
+     * @param capacity maximum number of cached values (rounded up to a power of two)
+     */
+    public StringCache(int capacity) {
+        this(capacity, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a new cache.
+     * @param capacity maximum number of cached values (rounded up to a power of two)
+     * @param maxLength maximum length (in bytes) of cached values, longer values are decoded but not cached
+     */
+    public StringCache(int capacity, int maxLength) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be in range 1.." + MAX_CAPACITY + ": " + capacity);
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Maximum length must not be negative: " + maxLength);
+        }
+        int slots = 1;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        entries = new Entry[slots];
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns a string decoded from a given range of bytes, a cached instance is returned if the same bytes
+     * have already been decoded with the same charset.
+     * @param data an array of bytes
+     * @param offset index of the first byte to decode
+     * @param length number of bytes to decode
+     * @param charset charset to decode bytes with
+     * @return decoded string
+     */
+    public String get(byte[] data, int offset, int length, Charset charset) {
+        if (length > maxLength) {
+            return new String(data, offset, length, charset);
+        }
+        int hash = hash(data, offset, length);
+        int index = hash & (entries.length - 1);
+        Entry entry = entries[index];
+        if (entry != null && entry.matches(hash, data, offset, length, charset)) {
+            return entry.value;
+        }
+        String value = new String(data, offset, length, charset);
+        // entries are immutable, a racing reader sees either an old entry, a new one or nothing
+        entries[index] = new Entry(hash, copyOf(data, offset, length), charset, value);
+        return value;
+    }
+
+    /**
+     * Returns the number of slots of the cache, i.e. the maximum number of cached values.
+     * @return capacity of the cache
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the maximum length (in bytes) of cached values.
+     * @return maximum length of cached values
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Removes all cached values.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    private static int hash(byte[] data, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + data[i];
+        }
+        // spreading higher bits as slots are chosen by lower bits
+        return hash ^ (hash >>> 16);
+    }
+
+    private static byte[] copyOf(byte[] data, int offset, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return copy;
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final Charset charset;
+        private final String value;
+
+        private Entry(int hash, byte[] bytes, Charset charset, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.charset = charset;
+            this.value = value;
+        }
+
+        private boolean matches(int hash, byte[] data, int offset, int length, Charset charset) {
+            if (this.hash != hash || bytes.length != length || !this.charset.equals(charset)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != data[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
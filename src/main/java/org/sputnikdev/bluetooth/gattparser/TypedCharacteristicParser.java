@@ -0,0 +1,304 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException.Reason;
+import org.sputnikdev.bluetooth.gattparser.num.IEEE11073FloatingPointNumberFormatter;
+import org.sputnikdev.bluetooth.gattparser.num.Int128;
+import org.sputnikdev.bluetooth.gattparser.spec.Bit;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.Enumeration;
+import org.sputnikdev.bluetooth.gattparser.spec.Enumerations;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A base class for characteristic parsers which decode a characteristic value into a typed object.
+ * <br>Implementations for bundled characteristics are generated at build time from GATT XML specification files
+ * (see the "org.sputnikdev.bluetooth.gattparser.decoder" package), each of them reads fields of its characteristic
+ * with straight-line code and produces exactly the same result as {@link GenericCharacteristicParser}.
+ * Typed values can be obtained without any map lookups via {@link #decode(byte[])}.
+ * <br>Serialization is delegated to another parser (normally the default one). Parsing is delegated too
+ * if the provided characteristic specification does not match the one the parser was generated from
+ * (e.g. the characteristic has been overridden by a user-defined specification). Specifications are compared
+ * by field signatures (see {@link #getSignature(Field)}): names, formats, requirements and flag bits of fields
+ * in order of their appearance. Exponents and multipliers are not a part of the signature as decoded values are
+ * scaled by {@link FieldHolder} according to the provided specification.
+ *
+ * @param <T> type of a decoded characteristic value
+ */
+public abstract class TypedCharacteristicParser<T> implements CharacteristicParser {
+
+    private static final IEEE11073FloatingPointNumberFormatter IEEE_11073_FORMATTER =
+            new IEEE11073FloatingPointNumberFormatter();
+
+    private final CharacteristicParser delegate;
+    private final String type;
+    private final String[] fieldSignatures;
+    private volatile Characteristic verified;
+
+    /**
+     * Creates a new parser.
+     * @param delegate a parser to delegate serialization and parsing of unknown specifications to
+     * @param type characteristic type the parser was generated for
+     * @param fieldSignatures signatures (see {@link #getSignature(Field)}) of all fields of the characteristic
+     *                        in order of their appearance
+     */
+    protected TypedCharacteristicParser(CharacteristicParser delegate, String type, String... fieldSignatures) {
+        this.delegate = delegate;
+        this.type = type;
+        this.fieldSignatures = fieldSignatures;
+    }
+
+    /**
+     * Decodes a characteristic value into a typed object.
+     * @param raw byte array of data received from bluetooth device
+     * @return decoded characteristic value
+     * @throws CharacteristicFormatException if provided data cannot be parsed
+     */
+    public abstract T decode(byte[] raw) throws CharacteristicFormatException;
+
+    /**
+     * Returns a parser which serialization is delegated to.
+     * @return a delegate parser
+     */
+    public CharacteristicParser getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Parses a characteristic value into field holders. The value is decoded once by {@link #decode(byte[])},
+     * then present fields are copied into a new map of field holders. The copy boxes primitive values
+     * and allocates a holder per field, so {@link #decode(byte[])} should be preferred on hot paths.
+     * @param characteristic characteristic specification
+     * @param raw byte array of data received from bluetooth device
+     * @return parsed fields
+     * @throws CharacteristicFormatException if provided data cannot be parsed
+     */
+    @Override
+    public LinkedHashMap<String, FieldHolder> parse(Characteristic characteristic, byte[] raw)
+            throws CharacteristicFormatException {
+        if (!matches(characteristic)) {
+            return delegate.parse(characteristic, raw);
+        }
+        LinkedHashMap<String, FieldHolder> result = new LinkedHashMap<>();
+        List<Field> fields = characteristic.getValue().getFields();
+        collect(decode(raw), fields, result);
+        if (!fields.isEmpty() && fields.get(fields.size() - 1).isRepeated()) {
+            collectRepeated(fields, raw, result);
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] serialize(Collection<FieldHolder> fieldHolders) throws CharacteristicFormatException {
+        return delegate.serialize(fieldHolders);
+    }
+
+    @Override
+    public byte[] serialize(Collection<FieldHolder> fieldHolders, int maxLength)
+            throws CharacteristicFormatException {
+        return delegate.serialize(fieldHolders, maxLength);
+    }
+
+    /**
+     * Puts present fields of a decoded value into the resulting map of field holders.
+     * @param value decoded value
+     * @param fields field specifications of the characteristic
+     * @param result resulting map of field holders
+     */
+    protected abstract void collect(T value, List<Field> fields, LinkedHashMap<String, FieldHolder> result);
+
+    /**
+     * Decodes all values of a repeated field (see {@link Field#isRepeated()}), the first one is decoded
+     * by {@link #decode(byte[])} as a regular field.
+     * @param fields field specifications of the characteristic
+     * @param raw byte array of data received from bluetooth device
+     * @param result resulting map of field holders
+     */
+    private static void collectRepeated(List<Field> fields, byte[] raw, LinkedHashMap<String, FieldHolder> result) {
+        Field repeated = RepeatedFieldDecoder.getRepeatedField(fields);
+        FieldHolder holder = repeated != null ? result.get(repeated.getName()) : null;
+        if (holder == null) {
+            return;
+        }
+        int offset = 0;
+        for (int i = 0; i < fields.size() - 1; i++) {
+            Field field = fields.get(i);
+            if (field.isFlagField() || result.containsKey(field.getName())) {
+                offset += field.getFormat().getSize();
+            }
+        }
+        holder.setRepeatedValues(RepeatedFieldDecoder.decode(repeated, raw, offset));
+    }
+
+    /**
+     * Returns a signature of a field which determines how the field is decoded: its name, format, requirements
+     * and, for bit fields, sizes of bits along with flags their values require.
+     * The same signatures are computed for bundled characteristics when typed parsers are generated.
+     * @param field field specification
+     * @return field signature
+     */
+    protected static String getSignature(Field field) {
+        StringBuilder signature = new StringBuilder(String.valueOf(field.getName()));
+        signature.append('|');
+        FieldFormat format = field.getFormat();
+        if (format != null) {
+            signature.append(format.getType()).append(format.getSize());
+        }
+        signature.append('|');
+        if (field.getRequirements() != null) {
+            signature.append(String.join(",", field.getRequirements()));
+        }
+        if (field.getBitField() != null && field.getBitField().getBits() != null) {
+            for (Bit bit : field.getBitField().getBits()) {
+                signature.append('|').append(bit.getSize()).append(':');
+                Set<BigInteger> keys = new HashSet<>();
+                Enumerations enumerations = bit.getEnumerations();
+                if (enumerations != null && enumerations.getEnumerations() != null) {
+                    for (Enumeration enumeration : enumerations.getEnumerations()) {
+                        if (keys.add(enumeration.getKey())) {
+                            if (keys.size() > 1) {
+                                signature.append(',');
+                            }
+                            signature.append(enumeration.getKey()).append('=').append(enumeration.getRequires());
+                        }
+                    }
+                }
+            }
+        }
+        return signature.toString();
+    }
+
+    protected static void put(LinkedHashMap<String, FieldHolder> result, Field field, Object value) {
+        result.put(field.getName(), new FieldHolder(field, value));
+    }
+
+    protected static void checkSize(byte[] raw, int offset, int size, String fieldName) {
+        if (offset + size > raw.length * 8) {
+            throw new CharacteristicFormatException(Reason.NOT_ENOUGH_DATA,
+                    "Not enough bits to parse field \"" + fieldName + "\". "
+                            + "Data length: " + raw.length + " bytes. "
+                            + "Looks like your device does not conform SIG specification.");
+        }
+    }
+
+    /**
+     * Reads up to 64 bits (little-endian, least significant bit first) at a given bit offset,
+     * missing bits are read as zeros, see {@link Int128#readBits(byte[], int, int)}.
+     * @param raw raw data
+     * @param offset bit offset
+     * @param size number of bits
+     * @return unsigned value of the bits
+     */
+    protected static long readBits(byte[] raw, int offset, int size) {
+        return Int128.readBits(raw, offset, size);
+    }
+
+    protected static boolean readBoolean(byte[] raw, int offset) {
+        return readBits(raw, offset, 1) != 0;
+    }
+
+    protected static int readInt(byte[] raw, int offset, int size, boolean signed) {
+        int value = (int) readBits(raw, offset, size);
+        if (signed && size > 1 && size < Integer.SIZE) {
+            int shift = Integer.SIZE - size;
+            value = value << shift >> shift;
+        }
+        return value;
+    }
+
+    protected static long readLong(byte[] raw, int offset, int size, boolean signed) {
+        long value = readBits(raw, offset, size);
+        if (signed && size > 1 && size < Long.SIZE) {
+            int shift = Long.SIZE - size;
+            value = value << shift >> shift;
+        }
+        return value;
+    }
+
+    protected static BigInteger readBigInteger(byte[] raw, int offset, int size, boolean signed) {
+        return BluetoothGattParserFactory.getTwosComplementNumberFormatter().deserializeBigInteger(
+                BitSet.valueOf(raw).get(offset, offset + size), size, signed);
+    }
+
+    protected static float readFloat(byte[] raw, int offset) {
+        return Float.intBitsToFloat((int) readBits(raw, offset, Float.SIZE));
+    }
+
+    protected static double readDouble(byte[] raw, int offset) {
+        return Double.longBitsToDouble(readBits(raw, offset, Double.SIZE));
+    }
+
+    protected static float readSFloat11073(byte[] raw, int offset) {
+        return IEEE_11073_FORMATTER.decodeSFloat((int) readBits(raw, offset, 16));
+    }
+
+    protected static float readFloat11073(byte[] raw, int offset) {
+        return IEEE_11073_FORMATTER.decodeFloat((int) readBits(raw, offset, Float.SIZE));
+    }
+
+    protected static String readString(byte[] raw, int offset, String encoding) {
+        Charset charset = "UTF-8".equals(encoding) ? StandardCharsets.UTF_8
+                : "UTF-16".equals(encoding) ? StandardCharsets.UTF_16 : Charset.forName(encoding);
+        return GenericCharacteristicParser.decodeString(raw, offset, charset);
+    }
+
+    protected static byte[] readStruct(byte[] raw, int offset) {
+        ByteBuffer struct = GenericCharacteristicParser.sliceStruct(raw, offset);
+        byte[] result = new byte[struct.remaining()];
+        struct.get(result);
+        return result;
+    }
+
+    boolean matches(Characteristic characteristic) {
+        if (characteristic == verified) {
+            return true;
+        }
+        if (characteristic.getType() == null || !type.equals(characteristic.getType().trim())
+                || characteristic.getValue() == null) {
+            return false;
+        }
+        List<Field> fields = characteristic.getValue().getFields();
+        if (fields.size() != fieldSignatures.length) {
+            return false;
+        }
+        for (int i = 0; i < fieldSignatures.length; i++) {
+            if (!fieldSignatures[i].equals(getSignature(fields.get(i)))) {
+                return false;
+            }
+        }
+        verified = characteristic;
+        return true;
+    }
+
+}
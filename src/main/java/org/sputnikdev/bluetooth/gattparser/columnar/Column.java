@@ -0,0 +1,540 @@
+package org.sputnikdev.bluetooth.gattparser.columnar;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column of a {@link ColumnarBatch}: a vector of values of a single characteristic field
+ * and a presence bitmap (a bit is set if the field is present in the corresponding row).
+ * <br>Values of absent fields are stored as zeros (nulls for reference types).
+ * Getters of backing arrays return arrays which may be longer than the column size, they are valid until
+ * the batch is cleared and they must not be modified.
+ */
+public abstract class Column {
+
+    /**
+     * Column types.
+     */
+    public enum Type {
+        /**
+         * Boolean values stored as a bitmap, see {@link BooleanColumn}.
+         */
+        BOOLEAN,
+        /**
+         * Integers up to 32 bits, see {@link IntColumn}.
+         */
+        INT,
+        /**
+         * Integers up to 64 bits, see {@link LongColumn}.
+         */
+        LONG,
+        /**
+         * Floating point numbers, see {@link DoubleColumn}.
+         */
+        DOUBLE,
+        /**
+         * Dictionary-encoded strings, see {@link StringColumn}.
+         */
+        STRING,
+        /**
+         * Byte arrays (structs and integers longer than 64 bits), see {@link BytesColumn}.
+         */
+        BYTES
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String name;
+    private final Type type;
+    private long[] presence;
+    private int size;
+
+    Column(String name, Type type) {
+        this.name = name;
+        this.type = type;
+        presence = new long[getWords(INITIAL_CAPACITY)];
+    }
+
+    Column(String name, Type type, int size, long[] presence) {
+        this.name = name;
+        this.type = type;
+        this.size = size;
+        this.presence = presence;
+    }
+
+    /**
+     * Returns column name (a characteristic field name).
+     * @return column name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns column type.
+     * @return column type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of values (rows) in the column.
+     * @return the number of values
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Checks whether a value is present in a given row.
+     * @param row row index
+     * @return true if the value is present, false if the field is absent
+     */
+    public boolean isPresent(int row) {
+        checkRow(row);
+        return (presence[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * Returns the number of absent values.
+     * @return the number of absent values
+     */
+    public int getNullCount() {
+        int present = 0;
+        for (int i = 0; i < getWords(size); i++) {
+            present += Long.bitCount(presence[i]);
+        }
+        return size - present;
+    }
+
+    /**
+     * Returns the presence bitmap: bit "row % 64" of word "row / 64" is set if the value is present.
+     * @return the presence bitmap (backing array)
+     */
+    public long[] getPresenceBitmap() {
+        return presence;
+    }
+
+    /**
+     * Returns a value of a given row as an object.
+     * @param row row index
+     * @return the value or null if it is absent
+     */
+    public Object getObject(int row) {
+        return isPresent(row) ? get(row) : null;
+    }
+
+    abstract Object get(int row);
+
+    abstract void set(int row, Object value);
+
+    abstract void grow(int capacity);
+
+    void append(Object value) {
+        int row = size;
+        if (getWords(row + 1) > presence.length) {
+            int capacity = presence.length * 2 * Long.SIZE;
+            presence = Arrays.copyOf(presence, getWords(capacity));
+            grow(capacity);
+        }
+        if (value != null) {
+            presence[row >>> 6] |= 1L << row;
+        } else {
+            presence[row >>> 6] &= ~(1L << row);
+        }
+        set(row, value);
+        size = row + 1;
+    }
+
+    void clear() {
+        Arrays.fill(presence, 0);
+        size = 0;
+    }
+
+    int getCapacity() {
+        return presence.length * Long.SIZE;
+    }
+
+    static int getWords(int bits) {
+        return (bits + Long.SIZE - 1) >>> 6;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    /**
+     * A column of boolean values stored as a bitmap.
+     */
+    public static final class BooleanColumn extends Column {
+
+        private long[] values;
+
+        BooleanColumn(String name) {
+            super(name, Type.BOOLEAN);
+            values = new long[getWords(getCapacity())];
+        }
+
+        BooleanColumn(String name, int size, long[] presence, long[] values) {
+            super(name, Type.BOOLEAN, size, presence);
+            this.values = values;
+        }
+
+        /**
+         * Returns a value of a given row.
+         * @param row row index
+         * @return the value, false if it is absent
+         */
+        public boolean getBoolean(int row) {
+            return (values[row >>> 6] & 1L << row) != 0;
+        }
+
+        /**
+         * Returns the value bitmap: bit "row % 64" of word "row / 64" is set if the value is true.
+         * @return the value bitmap (backing array)
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        Object get(int row) {
+            return getBoolean(row);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (Boolean.TRUE.equals(value)) {
+                values[row >>> 6] |= 1L << row;
+            } else {
+                values[row >>> 6] &= ~(1L << row);
+            }
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, getWords(capacity));
+        }
+    }
+
+    /**
+     * A column of integer values up to 32 bits.
+     */
+    public static final class IntColumn extends Column {
+
+        private int[] values;
+
+        IntColumn(String name) {
+            super(name, Type.INT);
+            values = new int[getCapacity()];
+        }
+
+        IntColumn(String name, int size, long[] presence, int[] values) {
+            super(name, Type.INT, size, presence);
+            this.values = values;
+        }
+
+        /**
+         * Returns a value of a given row.
+         * @param row row index
+         * @return the value, 0 if it is absent
+         */
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        /**
+         * Returns values.
+         * @return values (backing array)
+         */
+        public int[] getValues() {
+            return values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value != null ? ((Number) value).intValue() : 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * A column of integer values up to 64 bits.
+     */
+    public static final class LongColumn extends Column {
+
+        private long[] values;
+
+        LongColumn(String name) {
+            super(name, Type.LONG);
+            values = new long[getCapacity()];
+        }
+
+        LongColumn(String name, int size, long[] presence, long[] values) {
+            super(name, Type.LONG, size, presence);
+            this.values = values;
+        }
+
+        /**
+         * Returns a value of a given row.
+         * @param row row index
+         * @return the value, 0 if it is absent
+         */
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        /**
+         * Returns values.
+         * @return values (backing array)
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value != null ? ((Number) value).longValue() : 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * A column of floating point values.
+     */
+    public static final class DoubleColumn extends Column {
+
+        private double[] values;
+
+        DoubleColumn(String name) {
+            super(name, Type.DOUBLE);
+            values = new double[getCapacity()];
+        }
+
+        DoubleColumn(String name, int size, long[] presence, double[] values) {
+            super(name, Type.DOUBLE, size, presence);
+            this.values = values;
+        }
+
+        /**
+         * Returns a value of a given row.
+         * @param row row index
+         * @return the value, 0 if it is absent
+         */
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        /**
+         * Returns values.
+         * @return values (backing array)
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value != null ? ((Number) value).doubleValue() : 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * A column of dictionary-encoded strings. Each row holds a code of a string in the dictionary
+     * (-1 if the value is absent).
+     */
+    public static final class StringColumn extends Column {
+
+        private final List<String> dictionary;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int[] values;
+
+        StringColumn(String name) {
+            super(name, Type.STRING);
+            dictionary = new ArrayList<>();
+            values = new int[getCapacity()];
+        }
+
+        StringColumn(String name, int size, long[] presence, List<String> dictionary, int[] values) {
+            super(name, Type.STRING, size, presence);
+            this.dictionary = new ArrayList<>(dictionary);
+            for (int i = 0; i < dictionary.size(); i++) {
+                codes.put(dictionary.get(i), i);
+            }
+            this.values = values;
+        }
+
+        /**
+         * Returns a value of a given row.
+         * @param row row index
+         * @return the value, null if it is absent
+         */
+        public String getString(int row) {
+            int code = values[row];
+            return code >= 0 ? dictionary.get(code) : null;
+        }
+
+        /**
+         * Returns dictionary codes of values.
+         * @return codes (backing array)
+         */
+        public int[] getCodes() {
+            return values;
+        }
+
+        /**
+         * Returns the dictionary of distinct values.
+         * @return the dictionary
+         */
+        public List<String> getDictionary() {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        @Override
+        Object get(int row) {
+            return getString(row);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value == null) {
+                values[row] = -1;
+                return;
+            }
+            String string = value.toString();
+            Integer code = codes.get(string);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(string);
+                codes.put(string, code);
+            }
+            values[row] = code;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            dictionary.clear();
+            codes.clear();
+        }
+    }
+
+    /**
+     * A column of byte arrays, it holds struct fields and integers longer than 64 bits
+     * (as two's complement big-endian byte arrays, see {@link BigInteger#toByteArray()}).
+     */
+    public static final class BytesColumn extends Column {
+
+        private byte[][] values;
+
+        BytesColumn(String name) {
+            super(name, Type.BYTES);
+            values = new byte[getCapacity()][];
+        }
+
+        BytesColumn(String name, int size, long[] presence, byte[][] values) {
+            super(name, Type.BYTES, size, presence);
+            this.values = values;
+        }
+
+        /**
+         * Returns a value of a given row.
+         * @param row row index
+         * @return the value, null if it is absent
+         */
+        public byte[] getBytes(int row) {
+            return values[row];
+        }
+
+        /**
+         * Returns values.
+         * @return values (backing array)
+         */
+        public byte[][] getValues() {
+            return values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value instanceof BigInteger ? ((BigInteger) value).toByteArray() : (byte[]) value;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            Arrays.fill(values, null);
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.sputnikdev.bluetooth.gattparser.columnar;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.CharacteristicDecoder;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of decoded values of a single characteristic in a columnar layout: a column per characteristic field
+ * (see {@link Column}) plus the {@link #DEVICE_COLUMN} column holding device identifiers.
+ * Column types are chosen by field formats: booleans are stored as bitmaps, integers as int[] or long[],
+ * floating point numbers as double[], strings are dictionary-encoded, structs are stored as byte arrays.
+ * Raw values are stored, i.e. multipliers and exponents are not applied
+ * (see {@link org.sputnikdev.bluetooth.gattparser.BluetoothGattParser#getFields(String)}).
+ * <br>A batch is either filled with values decoded by a {@link CharacteristicDecoder}
+ * or read from a file (see {@link ColumnarFile}), the latter cannot be modified.
+ * <br>Not threadsafe.
+ */
+public final class ColumnarBatch {
+
+    public static final String DEVICE_COLUMN = "device";
+
+    private final String characteristicUUID;
+    private final CharacteristicDecoder decoder;
+    private final List<Column> columns;
+    // decoded value index per column, -1 for the device column
+    private final int[] valueIndexes;
+    private int rowCount;
+
+    /**
+     * Creates a new empty batch.
+     * @param decoder a decoder of the characteristic
+     */
+    public ColumnarBatch(CharacteristicDecoder decoder) {
+        this.characteristicUUID = decoder.getCharacteristicUUID();
+        this.decoder = decoder;
+        List<Column> columns = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        columns.add(new Column.StringColumn(DEVICE_COLUMN));
+        indexes.add(-1);
+        List<Field> fields = decoder.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (FlagUtils.isFlagsField(field) || field.getReference() != null || field.getFormat() == null) {
+                continue;
+            }
+            columns.add(createColumn(field.getName(), field.getFormat()));
+            indexes.add(i);
+        }
+        this.columns = Collections.unmodifiableList(columns);
+        valueIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    ColumnarBatch(String characteristicUUID, List<Column> columns, int rowCount) {
+        this.characteristicUUID = characteristicUUID;
+        this.decoder = null;
+        this.columns = Collections.unmodifiableList(columns);
+        this.valueIndexes = null;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Returns UUID of the characteristic.
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns all columns, the device column goes first.
+     * @return all columns
+     */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns a column by its name.
+     * @param name column name (a characteristic field name or {@link #DEVICE_COLUMN})
+     * @return the column or null if there is no such column
+     */
+    public Column getColumn(String name) {
+        for (Column column : columns) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a characteristic value and appends it as a new row.
+     * @param device an identifier of a bluetooth device, can be null
+     * @param raw byte array of data received from the bluetooth device
+     * @throws CharacteristicFormatException if provided data cannot be parsed
+     * @throws IllegalStateException if the batch has been read from a file
+     */
+    public void add(String device, byte[] raw) throws CharacteristicFormatException {
+        if (decoder == null) {
+            throw new IllegalStateException("Batch is read-only: " + characteristicUUID);
+        }
+        Object[] values = decoder.decode(raw);
+        for (int i = 0; i < valueIndexes.length; i++) {
+            int index = valueIndexes[i];
+            columns.get(i).append(index >= 0 ? values[index] : device);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Removes all rows (including dictionaries of string columns).
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.clear();
+        }
+        rowCount = 0;
+    }
+
+    private static Column createColumn(String name, FieldFormat format) {
+        int size = format.getSize();
+        switch (format.getType()) {
+            case BOOLEAN:
+                return new Column.BooleanColumn(name);
+            case UINT:
+                return size < Integer.SIZE ? new Column.IntColumn(name)
+                        : size < Long.SIZE ? new Column.LongColumn(name) : new Column.BytesColumn(name);
+            case SINT:
+                return size <= Integer.SIZE ? new Column.IntColumn(name)
+                        : size <= Long.SIZE ? new Column.LongColumn(name) : new Column.BytesColumn(name);
+            case FLOAT_IEE754:
+            case FLOAT_IEE11073:
+                return new Column.DoubleColumn(name);
+            case UTF8S:
+            case UTF16S:
+                return new Column.StringColumn(name);
+            default:
+                return new Column.BytesColumn(name);
+        }
+    }
+
+}
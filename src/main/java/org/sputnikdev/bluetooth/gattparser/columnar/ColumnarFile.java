@@ -0,0 +1,229 @@
+package org.sputnikdev.bluetooth.gattparser.columnar;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes columnar batches (see {@link ColumnarBatch}) from/to files of a simple columnar format.
+ * <br>All numbers are big-endian, strings are in modified UTF-8 (see {@link DataOutputStream#writeUTF(String)}):
+ * <pre>
+ * file:    magic ("GCOL", int), version (short), characteristic UUID (string),
+ *          row count (int), column count (int), column...
+ * column:  name (string), type (byte, see {@link Column.Type}), presence bitmap (long * ceil(rows / 64)), values
+ * values:  BOOLEAN - value bitmap (long * ceil(rows / 64))
+ *          INT     - int * rows
+ *          LONG    - long * rows
+ *          DOUBLE  - double * rows
+ *          STRING  - dictionary size (int), dictionary (string * size), codes (int * rows, -1 if absent)
+ *          BYTES   - (length (int, -1 if absent), bytes) * rows
+ * </pre>
+ * Columns are stored one after another, so that a single column can be processed without materializing rows.
+ */
+public final class ColumnarFile {
+
+    public static final String EXTENSION = ".gcol";
+
+    static final int MAGIC = 0x47434F4C;
+    static final short VERSION = 1;
+
+    private ColumnarFile() { }
+
+    /**
+     * Writes a batch into a new file.
+     * @param batch a batch to write
+     * @param file a file to create
+     * @throws IOException if the file already exists or an I/O error occurs
+     */
+    public static void write(ColumnarBatch batch, Path file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)))) {
+            int rows = batch.getRowCount();
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeUTF(batch.getCharacteristicUUID());
+            output.writeInt(rows);
+            output.writeInt(batch.getColumns().size());
+            for (Column column : batch.getColumns()) {
+                output.writeUTF(column.getName());
+                output.writeByte(column.getType().ordinal());
+                writeBitmap(output, column.getPresenceBitmap(), rows);
+                switch (column.getType()) {
+                    case BOOLEAN:
+                        writeBitmap(output, ((Column.BooleanColumn) column).getValues(), rows);
+                        break;
+                    case INT:
+                        writeInts(output, ((Column.IntColumn) column).getValues(), rows);
+                        break;
+                    case LONG:
+                        long[] longs = ((Column.LongColumn) column).getValues();
+                        for (int i = 0; i < rows; i++) {
+                            output.writeLong(longs[i]);
+                        }
+                        break;
+                    case DOUBLE:
+                        double[] doubles = ((Column.DoubleColumn) column).getValues();
+                        for (int i = 0; i < rows; i++) {
+                            output.writeDouble(doubles[i]);
+                        }
+                        break;
+                    case STRING:
+                        Column.StringColumn strings = (Column.StringColumn) column;
+                        output.writeInt(strings.getDictionary().size());
+                        for (String string : strings.getDictionary()) {
+                            output.writeUTF(string);
+                        }
+                        writeInts(output, strings.getCodes(), rows);
+                        break;
+                    case BYTES:
+                        byte[][] bytes = ((Column.BytesColumn) column).getValues();
+                        for (int i = 0; i < rows; i++) {
+                            if (bytes[i] != null) {
+                                output.writeInt(bytes[i].length);
+                                output.write(bytes[i]);
+                            } else {
+                                output.writeInt(-1);
+                            }
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported column type: " + column.getType());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a batch from a file.
+     * @param file a file to read
+     * @return a read-only batch
+     * @throws IOException if the file is not a columnar file or an I/O error occurs
+     */
+    public static ColumnarBatch read(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a columnar file: " + file);
+            }
+            short version = input.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported columnar file version: " + version);
+            }
+            String characteristicUUID = input.readUTF();
+            int rows = input.readInt();
+            int count = input.readInt();
+            List<Column> columns = new ArrayList<>(count);
+            for (int c = 0; c < count; c++) {
+                String name = input.readUTF();
+                int type = input.readByte();
+                if (type < 0 || type >= Column.Type.values().length) {
+                    throw new IOException("Unknown column type: " + type);
+                }
+                long[] presence = readBitmap(input, rows);
+                switch (Column.Type.values()[type]) {
+                    case BOOLEAN:
+                        columns.add(new Column.BooleanColumn(name, rows, presence, readBitmap(input, rows)));
+                        break;
+                    case INT:
+                        columns.add(new Column.IntColumn(name, rows, presence, readInts(input, rows)));
+                        break;
+                    case LONG:
+                        long[] longs = new long[rows];
+                        for (int i = 0; i < rows; i++) {
+                            longs[i] = input.readLong();
+                        }
+                        columns.add(new Column.LongColumn(name, rows, presence, longs));
+                        break;
+                    case DOUBLE:
+                        double[] doubles = new double[rows];
+                        for (int i = 0; i < rows; i++) {
+                            doubles[i] = input.readDouble();
+                        }
+                        columns.add(new Column.DoubleColumn(name, rows, presence, doubles));
+                        break;
+                    case STRING:
+                        int size = input.readInt();
+                        List<String> dictionary = new ArrayList<>(size);
+                        for (int i = 0; i < size; i++) {
+                            dictionary.add(input.readUTF());
+                        }
+                        columns.add(new Column.StringColumn(name, rows, presence, dictionary, readInts(input, rows)));
+                        break;
+                    default:
+                        byte[][] bytes = new byte[rows][];
+                        for (int i = 0; i < rows; i++) {
+                            int length = input.readInt();
+                            if (length >= 0) {
+                                bytes[i] = new byte[length];
+                                input.readFully(bytes[i]);
+                            }
+                        }
+                        columns.add(new Column.BytesColumn(name, rows, presence, bytes));
+                        break;
+                }
+            }
+            return new ColumnarBatch(characteristicUUID, columns, rows);
+        }
+    }
+
+    private static void writeBitmap(DataOutputStream output, long[] bitmap, int rows) throws IOException {
+        int words = Column.getWords(rows);
+        for (int i = 0; i < words; i++) {
+            long word = bitmap[i];
+            if (i == words - 1 && rows % Long.SIZE != 0) {
+                // bits beyond the last row are not defined
+                word &= (1L << rows % Long.SIZE) - 1;
+            }
+            output.writeLong(word);
+        }
+    }
+
+    private static long[] readBitmap(DataInputStream input, int rows) throws IOException {
+        long[] bitmap = new long[Math.max(1, Column.getWords(rows))];
+        for (int i = 0; i < Column.getWords(rows); i++) {
+            bitmap[i] = input.readLong();
+        }
+        return bitmap;
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values, int rows) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            output.writeInt(values[i]);
+        }
+    }
+
+    private static int[] readInts(DataInputStream input, int rows) throws IOException {
+        int[] values = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.sputnikdev.bluetooth.gattparser.columnar;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.stream.GattNotification;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A batch decoding sink which decodes GATT notifications into columnar batches (see {@link ColumnarBatch}),
+ * one batch per characteristic, and flushes them into files of a simple columnar format (see {@link ColumnarFile})
+ * in a given directory. A batch is flushed once it reaches the batch size, the rest of batches are flushed
+ * by {@link #flush()} or {@link #close()}.
+ * <br>Files are named as "UUID-timestamp-sequence.gcol", where timestamp is the creation time of the sink.
+ * <br>Notifications that cannot be decoded are rejected with {@link CharacteristicFormatException}
+ * and not added to batches.
+ * <br>Not threadsafe, batches are filled and flushed by the calling thread. File names are unique only within
+ * a sink, hence concurrent sinks should write into different directories.
+ */
+public class ColumnarSink implements Consumer<GattNotification>, Flushable, Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 65536;
+
+    private final BluetoothGattParser parser;
+    private final Path directory;
+    private final int batchSize;
+    private final long timestamp = System.currentTimeMillis();
+    private final Map<String, ColumnarBatch> batches = new HashMap<>();
+    private final List<Path> files = new ArrayList<>();
+    private int sequence;
+
+    /**
+     * Creates a new sink with the default batch size ({@link #DEFAULT_BATCH_SIZE}).
+     * @param parser GATT parser
+     * @param directory a directory to write files to
+     */
+    public ColumnarSink(BluetoothGattParser parser, Path directory) {
+        this(parser, directory, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new sink.
+     * @param parser GATT parser
+     * @param directory a directory to write files to
+     * @param batchSize maximum number of rows in a batch
+     */
+    public ColumnarSink(BluetoothGattParser parser, Path directory, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.parser = parser;
+        this.directory = directory;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Decodes a notification and adds it into the batch of its characteristic.
+     * @param notification a notification to add
+     * @throws CharacteristicFormatException if the notification cannot be decoded
+     * @throws IOException if the batch is full and it cannot be flushed
+     */
+    public void add(GattNotification notification) throws IOException {
+        String characteristicUUID = notification.getCharacteristicUUID();
+        ColumnarBatch batch = batches.get(characteristicUUID);
+        if (batch == null) {
+            batch = new ColumnarBatch(parser.getDecoder(characteristicUUID));
+            batches.put(characteristicUUID, batch);
+        }
+        batch.add(notification.getDevice(), notification.getValue());
+        if (batch.getRowCount() >= batchSize) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Decodes a notification and adds it into the batch of its characteristic.
+     * @param notification a notification to add
+     * @throws CharacteristicFormatException if the notification cannot be decoded
+     * @throws UncheckedIOException if the batch is full and it cannot be flushed
+     */
+    @Override
+    public void accept(GattNotification notification) {
+        try {
+            add(notification);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns batches which are not flushed yet.
+     * @return current batches
+     */
+    public List<ColumnarBatch> getBatches() {
+        return new ArrayList<>(batches.values());
+    }
+
+    /**
+     * Returns all files written so far.
+     * @return written files
+     */
+    public List<Path> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Writes all non-empty batches into files.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        for (ColumnarBatch batch : batches.values()) {
+            if (batch.getRowCount() > 0) {
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * Writes all non-empty batches into files.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void write(ColumnarBatch batch) throws IOException {
+        Path file = directory.resolve(String.format("%s-%d-%06d%s", batch.getCharacteristicUUID(), timestamp,
+                sequence++, ColumnarFile.EXTENSION));
+        ColumnarFile.write(batch, file);
+        files.add(file);
+        batch.clear();
+    }
+
+}
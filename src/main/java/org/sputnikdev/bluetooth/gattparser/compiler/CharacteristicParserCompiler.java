@@ -0,0 +1,133 @@
+package org.sputnikdev.bluetooth.gattparser.compiler;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.metrics.GattFlightRecorder;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A runtime compiler of characteristic parsers. It turns a characteristic specification
+ * (e.g. a user-defined one loaded via
+ * {@link org.sputnikdev.bluetooth.gattparser.BluetoothGattParser#loadExtensionsFromFolder(String)})
+ * into a generated class which reads fields with straight-line code and constant offsets,
+ * the same way as parsers generated at build time for bundled characteristics do
+ * (see {@link org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser}).
+ * <br>The following characteristics cannot be compiled, a fallback parser
+ * (normally {@link org.sputnikdev.bluetooth.gattparser.GenericCharacteristicParser}) is returned for them:
+ * <ul>
+ * <li>characteristics which are not valid for read</li>
+ * <li>characteristics with field references or fields of an unknown format</li>
+ * <li>characteristics with a flags field after a field of a variable size or with flags longer than 64 bits</li>
+ * </ul>
+ * <br>Bytecode is generated with the ASM library which is an optional dependency, if it is not on the classpath,
+ * nothing is compiled. Each generated class is defined in its own class loader,
+ * so that it can be unloaded once its parser is no longer used.
+ */
+public final class CharacteristicParserCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CharacteristicParserCompiler.class);
+
+    private static final boolean AVAILABLE = checkAvailable();
+    private static final String PREFIX = CompiledCharacteristicParser.class.getPackage().getName() + ".Compiled$";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private CharacteristicParserCompiler() { }
+
+    /**
+     * Checks whether the ASM library is available at runtime.
+     * @return true if characteristic parsers can be compiled
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Compiles a characteristic parser for a given characteristic specification.
+     * @param characteristic characteristic specification
+     * @param fallback a parser to delegate serialization to, it is also returned if the characteristic
+     *                 cannot be compiled
+     * @return a compiled parser (see {@link CompiledCharacteristicParser}) or the fallback parser
+     */
+    public static CharacteristicParser compile(Characteristic characteristic, CharacteristicParser fallback) {
+        if (!AVAILABLE || !characteristic.isValidForRead()) {
+            return fallback;
+        }
+        long started = System.nanoTime();
+        DecoderClassGenerator generator = new DecoderClassGenerator(characteristic);
+        if (!generator.resolve()) {
+            logger.debug("Characteristic cannot be compiled, falling back to {}: {}",
+                    fallback.getClass().getSimpleName(), characteristic.getUuid());
+            return fallback;
+        }
+        String className = PREFIX + toIdentifier(characteristic.getType()) + "$" + COUNTER.incrementAndGet();
+        byte[] bytecode = generator.generate(className.replace('.', '/'));
+        CompiledCharacteristicParser parser;
+        try {
+            Class<?> parserClass = new DecoderClassLoader().define(className, bytecode);
+            parser = (CompiledCharacteristicParser) parserClass
+                    .getConstructor(CharacteristicParser.class, Characteristic.class)
+                    .newInstance(fallback, characteristic);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            logger.warn("Could not compile characteristic parser: " + characteristic.getUuid(), ex);
+            return fallback;
+        }
+        if (GattFlightRecorder.isCompileEnabled()) {
+            GattFlightRecorder.compiled(characteristic.getUuid(), className, "decoder", bytecode.length,
+                    System.nanoTime() - started);
+        }
+        return parser;
+    }
+
+    private static String toIdentifier(String type) {
+        StringBuilder identifier = new StringBuilder();
+        for (char c : type.trim().toCharArray()) {
+            identifier.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        return identifier.toString();
+    }
+
+    private static boolean checkAvailable() {
+        try {
+            Class.forName("org.objectweb.asm.ClassWriter");
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            logger.debug("ASM library is not available, characteristic parsers are not compiled");
+            return false;
+        }
+    }
+
+    private static final class DecoderClassLoader extends ClassLoader {
+
+        private DecoderClassLoader() {
+            super(CompiledCharacteristicParser.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.sputnikdev.bluetooth.gattparser.compiler;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A base class for characteristic parsers generated at runtime by {@link CharacteristicParserCompiler}.
+ * A compiled parser decodes a characteristic value into an array of field values indexed by field position
+ * in the characteristic specification, absent fields (and flags fields) are represented by nulls.
+ * <br>A compiled parser is bound to the exact characteristic specification instance it was compiled from,
+ * any other specification (e.g. a reloaded one) is parsed by the delegate parser.
+ */
+public abstract class CompiledCharacteristicParser extends TypedCharacteristicParser<Object[]> {
+
+    private final Characteristic characteristic;
+
+    /**
+     * Creates a new parser.
+     * @param delegate a parser to delegate serialization and parsing of other specifications to
+     * @param characteristic characteristic specification the parser was compiled from
+     */
+    protected CompiledCharacteristicParser(CharacteristicParser delegate, Characteristic characteristic) {
+        super(delegate, characteristic.getType().trim(), getFieldSignatures(characteristic));
+        this.characteristic = characteristic;
+    }
+
+    /**
+     * Returns characteristic specification the parser was compiled from.
+     * @return characteristic specification
+     */
+    public Characteristic getCharacteristic() {
+        return characteristic;
+    }
+
+    @Override
+    public abstract Object[] decode(byte[] raw) throws CharacteristicFormatException;
+
+    @Override
+    public LinkedHashMap<String, FieldHolder> parse(Characteristic characteristic, byte[] raw)
+            throws CharacteristicFormatException {
+        if (characteristic != this.characteristic) {
+            return getDelegate().parse(characteristic, raw);
+        }
+        return super.parse(characteristic, raw);
+    }
+
+    @Override
+    protected void collect(Object[] values, List<Field> fields, LinkedHashMap<String, FieldHolder> result) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                put(result, fields.get(i), values[i]);
+            }
+        }
+    }
+
+    private static String[] getFieldSignatures(Characteristic characteristic) {
+        List<Field> fields = characteristic.getValue().getFields();
+        String[] signatures = new String[fields.size()];
+        for (int i = 0; i < signatures.length; i++) {
+            signatures[i] = getSignature(fields.get(i));
+        }
+        return signatures;
+    }
+
+}
@@ -0,0 +1,485 @@
+package org.sputnikdev.bluetooth.gattparser.compiler;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.spec.Bit;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.Enumeration;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
+import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates bytecode of a {@link CompiledCharacteristicParser} for a given characteristic specification.
+ * The generated decode method replicates {@link org.sputnikdev.bluetooth.gattparser.GenericCharacteristicParser}:
+ * flags are read once into local variables, fields are read one by one with no loops and no map lookups,
+ * offsets are constants up to the first optional field.
+ */
+final class DecoderClassGenerator implements Opcodes {
+
+    private static final String MANDATORY = "Mandatory";
+    private static final String BASE = Type.getInternalName(CompiledCharacteristicParser.class);
+    private static final String HELPERS = Type.getInternalName(TypedCharacteristicParser.class);
+    private static final String CONSTRUCTOR = Type.getMethodDescriptor(Type.VOID_TYPE,
+            Type.getType(CharacteristicParser.class), Type.getType(Characteristic.class));
+
+    // local variables of the decode method
+    private static final int RAW = 1;
+    private static final int VALUES = 2;
+    private static final int OFFSET = 3;
+    private static final int FLAGS = 4;
+
+    private final List<Field> fields;
+    private final List<Bit> bits = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+    // requirement -> terms {bit index, flag value}, an empty list means the requirement can never be fulfilled
+    private final Map<String, List<int[]>> requirements = new LinkedHashMap<>();
+    private int flagsOffset;
+    private int flagsSize;
+    private boolean usesMore;
+
+    DecoderClassGenerator(Characteristic characteristic) {
+        fields = characteristic.getValue().getFields();
+    }
+
+    /**
+     * Resolves presence conditions and readers of fields.
+     * @return false if the characteristic cannot be compiled
+     */
+    boolean resolve() {
+        int flagsIndex = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (field.getName() == null || field.getReference() != null || getFormat(field) == null) {
+                return false;
+            }
+            if (flagsIndex < 0 && FlagUtils.isFlagsField(field)) {
+                flagsIndex = i;
+            }
+        }
+        if (flagsIndex >= 0 && !resolveFlags(flagsIndex)) {
+            return false;
+        }
+
+        boolean conditionalEnd = false;
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            List<String> conditions = getConditions(field);
+            if (conditions == null) {
+                // never present
+                continue;
+            }
+            FieldFormat format = getFormat(field);
+            Step step = new Step(i, field, format, conditions, conditionalEnd);
+            if (FlagUtils.isFlagsField(field)) {
+                if (format.getSize() == FieldFormat.FULL_SIZE) {
+                    return false;
+                }
+                steps.add(step);
+                continue;
+            }
+            if (!isSupported(format)) {
+                return false;
+            }
+            steps.add(step);
+            if (format.getSize() == FieldFormat.FULL_SIZE) {
+                if (!step.isConditional()) {
+                    break;
+                }
+                conditionalEnd = true;
+                usesMore = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates a class file.
+     * @param className internal name of the generated class
+     * @return class file bytes
+     */
+    byte[] generate(String className) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // only arrays and library types are merged, the generated class is not loaded yet
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, BASE, null);
+
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR, null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitVarInsn(ALOAD, 2);
+        constructor.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", CONSTRUCTOR, false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor decode = writer.visitMethod(ACC_PUBLIC, "decode", "([B)[Ljava/lang/Object;", null, null);
+        decode.visitCode();
+        generateDecode(decode);
+        decode.visitMaxs(0, 0);
+        decode.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private void generateDecode(MethodVisitor method) {
+        push(method, fields.size());
+        method.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+        method.visitVarInsn(ASTORE, VALUES);
+
+        int local = FLAGS;
+        Map<String, Integer> requirementLocals = new HashMap<>();
+        if (requirements.values().stream().anyMatch(terms -> !terms.isEmpty())) {
+            method.visitVarInsn(ALOAD, RAW);
+            push(method, flagsOffset);
+            push(method, flagsSize);
+            method.visitMethodInsn(INVOKESTATIC, HELPERS, "readBits", "([BII)J", false);
+            method.visitVarInsn(LSTORE, FLAGS);
+            local += 2;
+
+            int[] bitLocals = new int[bits.size()];
+            Arrays.fill(bitLocals, -1);
+            int bitOffset = 0;
+            for (int i = 0; i < bits.size(); i++) {
+                int size = bits.get(i).getSize();
+                if (isUsed(i)) {
+                    if (bitOffset >= flagsSize) {
+                        method.visitInsn(ICONST_0);
+                    } else {
+                        method.visitVarInsn(LLOAD, FLAGS);
+                        if (bitOffset > 0) {
+                            push(method, bitOffset);
+                            method.visitInsn(LUSHR);
+                        }
+                        method.visitLdcInsn((1L << size) - 1);
+                        method.visitInsn(LAND);
+                        method.visitInsn(L2I);
+                    }
+                    bitLocals[i] = local++;
+                    method.visitVarInsn(ISTORE, bitLocals[i]);
+                }
+                bitOffset += size;
+            }
+
+            for (Map.Entry<String, List<int[]>> requirement : requirements.entrySet()) {
+                if (requirement.getValue().isEmpty()) {
+                    continue;
+                }
+                int variable = local++;
+                requirementLocals.put(requirement.getKey(), variable);
+                method.visitInsn(ICONST_0);
+                method.visitVarInsn(ISTORE, variable);
+                for (int[] term : requirement.getValue()) {
+                    method.visitVarInsn(ILOAD, bitLocals[term[0]]);
+                    method.visitInsn(I2B);
+                    push(method, term[1]);
+                    Label next = new Label();
+                    method.visitJumpInsn(IF_ICMPNE, next);
+                    method.visitInsn(ICONST_1);
+                    method.visitVarInsn(ISTORE, variable);
+                    method.visitLabel(next);
+                }
+            }
+        }
+        int more = local;
+        if (usesMore) {
+            method.visitInsn(ICONST_1);
+            method.visitVarInsn(ISTORE, more);
+        }
+
+        // constant offset, or -1 once the offset is kept in a local variable
+        int offset = 0;
+        for (Step step : steps) {
+            int size = step.format.getSize();
+            Label skip = null;
+            if (step.isConditional()) {
+                if (offset >= 0) {
+                    push(method, offset);
+                    method.visitVarInsn(ISTORE, OFFSET);
+                    offset = -1;
+                }
+                skip = new Label();
+                for (String condition : step.conditions) {
+                    method.visitVarInsn(ILOAD, requirementLocals.get(condition));
+                    method.visitJumpInsn(IFEQ, skip);
+                }
+                if (step.more) {
+                    method.visitVarInsn(ILOAD, more);
+                    method.visitJumpInsn(IFEQ, skip);
+                }
+            }
+            if (!FlagUtils.isFlagsField(step.field)) {
+                if (size != FieldFormat.FULL_SIZE) {
+                    method.visitVarInsn(ALOAD, RAW);
+                    pushOffset(method, offset);
+                    push(method, size);
+                    method.visitLdcInsn(step.field.getName());
+                    method.visitMethodInsn(INVOKESTATIC, HELPERS, "checkSize", "([BIILjava/lang/String;)V", false);
+                }
+                method.visitVarInsn(ALOAD, VALUES);
+                push(method, step.index);
+                generateRead(method, step.format, offset);
+                method.visitInsn(AASTORE);
+            }
+            if (size != FieldFormat.FULL_SIZE) {
+                if (offset >= 0) {
+                    offset += size;
+                } else {
+                    method.visitIincInsn(OFFSET, size);
+                }
+            } else if (step.isConditional()) {
+                method.visitInsn(ICONST_0);
+                method.visitVarInsn(ISTORE, more);
+            }
+            if (skip != null) {
+                method.visitLabel(skip);
+            }
+        }
+
+        method.visitVarInsn(ALOAD, VALUES);
+        method.visitInsn(ARETURN);
+    }
+
+    private static void generateRead(MethodVisitor method, FieldFormat format, int offset) {
+        int size = format.getSize();
+        method.visitVarInsn(ALOAD, RAW);
+        pushOffset(method, offset);
+        switch (format.getType()) {
+            case BOOLEAN:
+                invokeHelper(method, "readBoolean", "([BI)Z");
+                box(method, "java/lang/Boolean", "Z");
+                break;
+            case UINT:
+            case SINT:
+                boolean signed = format.getType() == FieldType.SINT;
+                push(method, size);
+                method.visitInsn(signed ? ICONST_1 : ICONST_0);
+                if (size < Integer.SIZE || signed && size == Integer.SIZE) {
+                    invokeHelper(method, "readInt", "([BIIZ)I");
+                    box(method, "java/lang/Integer", "I");
+                } else if (size < Long.SIZE || signed && size == Long.SIZE) {
+                    invokeHelper(method, "readLong", "([BIIZ)J");
+                    box(method, "java/lang/Long", "J");
+                } else {
+                    invokeHelper(method, "readBigInteger", "([BIIZ)Ljava/math/BigInteger;");
+                }
+                break;
+            case FLOAT_IEE754:
+                if (size == Float.SIZE) {
+                    invokeHelper(method, "readFloat", "([BI)F");
+                    box(method, "java/lang/Float", "F");
+                } else {
+                    invokeHelper(method, "readDouble", "([BI)D");
+                    box(method, "java/lang/Double", "D");
+                }
+                break;
+            case FLOAT_IEE11073:
+                invokeHelper(method, size == 16 ? "readSFloat11073" : "readFloat11073", "([BI)F");
+                box(method, "java/lang/Float", "F");
+                break;
+            case UTF8S:
+            case UTF16S:
+                method.visitLdcInsn(format.getType() == FieldType.UTF8S ? "UTF-8" : "UTF-16");
+                invokeHelper(method, "readString", "([BILjava/lang/String;)Ljava/lang/String;");
+                break;
+            case STRUCT:
+                invokeHelper(method, "readStruct", "([BI)[B");
+                break;
+            default:
+                throw new IllegalStateException("Unsupported field format: " + format.getName());
+        }
+    }
+
+    private boolean resolveFlags(int flagsIndex) {
+        for (int i = 0; i < flagsIndex; i++) {
+            int size = getFormat(fields.get(i)).getSize();
+            if (size == FieldFormat.FULL_SIZE) {
+                return false;
+            }
+            flagsOffset += size;
+        }
+        Field flagsField = fields.get(flagsIndex);
+        flagsSize = getFormat(flagsField).getSize();
+        if (flagsSize == FieldFormat.FULL_SIZE || flagsSize > Long.SIZE) {
+            return false;
+        }
+        for (Bit bit : flagsField.getBitField().getBits()) {
+            if (bit.getSize() > Integer.SIZE) {
+                return false;
+            }
+            if (bit.getEnumerations() != null) {
+                for (Enumeration enumeration : bit.getEnumerations().getEnumerations()) {
+                    if (enumeration.getKey() == null) {
+                        return false;
+                    }
+                }
+            }
+            bits.add(bit);
+        }
+        return true;
+    }
+
+    // returns requirements of a field which are not always fulfilled or null if the field is never present
+    private List<String> getConditions(Field field) {
+        List<String> conditions = new ArrayList<>();
+        if (field.getRequirements() == null) {
+            return conditions;
+        }
+        for (String requirement : new LinkedHashSet<>(field.getRequirements())) {
+            if (MANDATORY.equals(requirement)) {
+                continue;
+            }
+            if (getTerms(requirement).isEmpty()) {
+                return null;
+            }
+            conditions.add(requirement);
+        }
+        return conditions;
+    }
+
+    // replicates FlagUtils.getReadFlags: a flag value is compared as a byte against the first enumeration key
+    private List<int[]> getTerms(String requirement) {
+        return requirements.computeIfAbsent(requirement, key -> {
+            List<int[]> terms = new ArrayList<>();
+            for (int i = 0; i < bits.size(); i++) {
+                Map<BigInteger, String> flags = new LinkedHashMap<>();
+                if (bits.get(i).getEnumerations() != null) {
+                    for (Enumeration enumeration : bits.get(i).getEnumerations().getEnumerations()) {
+                        flags.putIfAbsent(enumeration.getKey(), enumeration.getRequires());
+                    }
+                }
+                for (Map.Entry<BigInteger, String> flag : flags.entrySet()) {
+                    BigInteger value = flag.getKey();
+                    if (flag.getValue() != null && Arrays.asList(flag.getValue().split(",")).contains(requirement)
+                            && value.bitLength() < Byte.SIZE) {
+                        terms.add(new int[] {i, value.intValue()});
+                    }
+                }
+            }
+            return terms;
+        });
+    }
+
+    private boolean isUsed(int bit) {
+        return requirements.values().stream().flatMap(List::stream).anyMatch(term -> term[0] == bit);
+    }
+
+    private static boolean isSupported(FieldFormat format) {
+        int size = format.getSize();
+        switch (format.getType()) {
+            case BOOLEAN:
+            case UTF8S:
+            case UTF16S:
+            case STRUCT:
+                return true;
+            case UINT:
+            case SINT:
+                return size > 0;
+            case FLOAT_IEE754:
+                return size == Float.SIZE || size == Double.SIZE;
+            case FLOAT_IEE11073:
+                return size == 16 || size == Float.SIZE;
+            default:
+                return false;
+        }
+    }
+
+    private static FieldFormat getFormat(Field field) {
+        try {
+            return field.getFormat();
+        } catch (IllegalStateException ex) {
+            // malformed size
+            return null;
+        }
+    }
+
+    private static void invokeHelper(MethodVisitor method, String name, String descriptor) {
+        method.visitMethodInsn(INVOKESTATIC, HELPERS, name, descriptor, false);
+    }
+
+    private static void box(MethodVisitor method, String type, String primitive) {
+        method.visitMethodInsn(INVOKESTATIC, type, "valueOf", "(" + primitive + ")L" + type + ";", false);
+    }
+
+    private static void pushOffset(MethodVisitor method, int offset) {
+        if (offset >= 0) {
+            push(method, offset);
+        } else {
+            method.visitVarInsn(ILOAD, OFFSET);
+        }
+    }
+
+    private static void push(MethodVisitor method, int value) {
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.visitIntInsn(SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    private static final class Step {
+        private final int index;
+        private final Field field;
+        private final FieldFormat format;
+        private final List<String> conditions;
+        private final boolean more;
+
+        private Step(int index, Field field, FieldFormat format, List<String> conditions, boolean more) {
+            this.index = index;
+            this.field = field;
+            this.format = format;
+            this.conditions = conditions;
+            this.more = more;
+        }
+
+        private boolean isConditional() {
+            return !conditions.isEmpty() || more;
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a single characteristic recorded by {@link GattMetricsRegistry}: operation counts,
+ * payload size and latency histograms and failure counts by cause.
+ * <br>Threadsafe.
+ */
+public class CharacteristicMetrics {
+
+    private final String characteristicUUID;
+    private final Histogram parsePayloadSize = new Histogram();
+    private final Histogram parseLatency = new Histogram();
+    private final Histogram serializePayloadSize = new Histogram();
+    private final Histogram serializeLatency = new Histogram();
+    private final ConcurrentMap<String, LongAdder> parseFailures = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> serializeFailures = new ConcurrentHashMap<>();
+
+    CharacteristicMetrics(String characteristicUUID) {
+        this.characteristicUUID = characteristicUUID;
+    }
+
+    /**
+     * Returns characteristic UUID.
+     * @return short characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns the number of successfully parsed values.
+     * @return the number of successfully parsed values
+     */
+    public long getParseCount() {
+        return parseLatency.getCount();
+    }
+
+    /**
+     * Returns the number of successfully serialized values.
+     * @return the number of successfully serialized values
+     */
+    public long getSerializeCount() {
+        return serializeLatency.getCount();
+    }
+
+    /**
+     * Returns a histogram of sizes (in bytes) of parsed values.
+     * @return a histogram of sizes of parsed values
+     */
+    public Histogram getParsePayloadSize() {
+        return parsePayloadSize;
+    }
+
+    /**
+     * Returns a histogram of parse latency in nanoseconds.
+     * @return a histogram of parse latency
+     */
+    public Histogram getParseLatency() {
+        return parseLatency;
+    }
+
+    /**
+     * Returns a histogram of sizes (in bytes) of serialized values.
+     * @return a histogram of sizes of serialized values
+     */
+    public Histogram getSerializePayloadSize() {
+        return serializePayloadSize;
+    }
+
+    /**
+     * Returns a histogram of serialization latency in nanoseconds.
+     * @return a histogram of serialization latency
+     */
+    public Histogram getSerializeLatency() {
+        return serializeLatency;
+    }
+
+    /**
+     * Returns the number of values which could not be parsed.
+     * @return the number of parse failures
+     */
+    public long getParseFailureCount() {
+        return sum(parseFailures);
+    }
+
+    /**
+     * Returns the number of values which could not be serialized.
+     * @return the number of serialization failures
+     */
+    public long getSerializeFailureCount() {
+        return sum(serializeFailures);
+    }
+
+    /**
+     * Returns the number of parse failures by cause, see {@link GattMetricsRegistry#getCause(RuntimeException)}.
+     * @return the number of parse failures by cause
+     */
+    public Map<String, Long> getParseFailures() {
+        return snapshot(parseFailures);
+    }
+
+    /**
+     * Returns the number of serialization failures by cause,
+     * see {@link GattMetricsRegistry#getCause(RuntimeException)}.
+     * @return the number of serialization failures by cause
+     */
+    public Map<String, Long> getSerializeFailures() {
+        return snapshot(serializeFailures);
+    }
+
+    @Override
+    public String toString() {
+        return "CharacteristicMetrics{characteristicUUID=" + characteristicUUID
+                + ", parseCount=" + getParseCount() + ", parseFailures=" + getParseFailures()
+                + ", parseLatency=" + parseLatency
+                + ", serializeCount=" + getSerializeCount() + ", serializeFailures=" + getSerializeFailures()
+                + ", serializeLatency=" + serializeLatency + "}";
+    }
+
+    void parsed(int payloadSize, long nanos) {
+        parsePayloadSize.record(payloadSize);
+        parseLatency.record(nanos);
+    }
+
+    void serialized(int payloadSize, long nanos) {
+        serializePayloadSize.record(payloadSize);
+        serializeLatency.record(nanos);
+    }
+
+    void failed(GattParserMetrics.Operation operation, String cause) {
+        ConcurrentMap<String, LongAdder> failures =
+                operation == GattParserMetrics.Operation.PARSE ? parseFailures : serializeFailures;
+        LongAdder counter = failures.get(cause);
+        if (counter == null) {
+            counter = failures.computeIfAbsent(cause, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    void reset() {
+        parsePayloadSize.reset();
+        parseLatency.reset();
+        serializePayloadSize.reset();
+        serializeLatency.reset();
+        parseFailures.clear();
+        serializeFailures.clear();
+    }
+
+    private static long sum(Map<String, LongAdder> failures) {
+        long total = 0;
+        for (LongAdder counter : failures.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> failures) {
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : failures.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+}
@@ -0,0 +1,182 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the parser. This class must be accessed only via {@link GattFlightRecorder},
+ * so that it does not get loaded if the JFR API is not available.
+ */
+final class FlightRecorderEvents {
+
+    private static final String PREFIX = "org.sputnikdev.bluetooth.gattparser.";
+
+    // event types are looked up once, so that checking whether an event is enabled does not allocate
+    private static final EventType SPEC_LOAD = EventType.getEventType(SpecLoadEvent.class);
+    private static final EventType REGISTRY_READ = EventType.getEventType(RegistryReadEvent.class);
+    private static final EventType COMPILE = EventType.getEventType(CompileEvent.class);
+    private static final EventType SLOW_DECODE = EventType.getEventType(SlowDecodeEvent.class);
+
+    private FlightRecorderEvents() { }
+
+    static boolean isSpecLoadEnabled() {
+        return SPEC_LOAD.isEnabled();
+    }
+
+    static void specLoaded(String file, long size, String uuid, long nanos) {
+        SpecLoadEvent event = new SpecLoadEvent();
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.size = size;
+            event.uuid = uuid;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    static boolean isRegistryReadEnabled() {
+        return REGISTRY_READ.isEnabled();
+    }
+
+    static void registryRead(String file, int entries, long nanos) {
+        RegistryReadEvent event = new RegistryReadEvent();
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.entries = entries;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    static boolean isCompileEnabled() {
+        return COMPILE.isEnabled();
+    }
+
+    static void compiled(String uuid, String parserType, String kind, int length, long nanos) {
+        CompileEvent event = new CompileEvent();
+        if (event.shouldCommit()) {
+            event.uuid = uuid;
+            event.parserType = parserType;
+            event.kind = kind;
+            event.length = length;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    static boolean isSlowDecodeEnabled() {
+        return SLOW_DECODE.isEnabled();
+    }
+
+    static void slowDecode(String uuid, String parserType, int payloadLength, boolean failed, long nanos) {
+        SlowDecodeEvent event = new SlowDecodeEvent();
+        if (event.shouldCommit()) {
+            event.uuid = uuid;
+            event.parserType = parserType;
+            event.payloadLength = payloadLength;
+            event.failed = failed;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Name(PREFIX + "SpecLoad")
+    @Label("GATT Specification Load")
+    @Category({"Bluetooth", "GATT Parser"})
+    @Description("A GATT specification file has been read and parsed")
+    @StackTrace(false)
+    static final class SpecLoadEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("File Size")
+        @DataAmount
+        long size;
+        @Label("UUID")
+        String uuid;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name(PREFIX + "RegistryRead")
+    @Label("GATT Registry Read")
+    @Category({"Bluetooth", "GATT Parser"})
+    @Description("A GATT specification registry has been read")
+    @StackTrace(false)
+    static final class RegistryReadEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("Entries")
+        int entries;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name(PREFIX + "Compile")
+    @Label("GATT Codec Compilation")
+    @Category({"Bluetooth", "GATT Parser"})
+    @Description("A precompiled codec of a characteristic has been built")
+    @StackTrace(false)
+    static final class CompileEvent extends Event {
+        @Label("Characteristic UUID")
+        String uuid;
+        @Label("Parser Type")
+        String parserType;
+        @Label("Kind")
+        String kind;
+        @Label("Length")
+        @DataAmount
+        int length;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name(PREFIX + "SlowDecode")
+    @Label("Slow GATT Decode")
+    @Category({"Bluetooth", "GATT Parser"})
+    @Description("Parsing of a characteristic value took longer than the threshold of the parser")
+    static final class SlowDecodeEvent extends Event {
+        @Label("Characteristic UUID")
+        String uuid;
+        @Label("Parser Type")
+        String parserType;
+        @Label("Payload Length")
+        @DataAmount
+        int payloadLength;
+        @Label("Failed")
+        boolean failed;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+}
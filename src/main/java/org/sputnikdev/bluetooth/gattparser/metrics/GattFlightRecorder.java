@@ -0,0 +1,157 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Java Flight Recorder integration of the parser. The parser emits the following events
+ * (all in the "Bluetooth / GATT Parser" category):
+ * <ul>
+ * <li>"org.sputnikdev.bluetooth.gattparser.SpecLoad" - a GATT specification file has been loaded
+ * (file, file size, UUID, elapsed time)</li>
+ * <li>"org.sputnikdev.bluetooth.gattparser.RegistryRead" - a GATT specification registry has been read
+ * (file, number of entries, elapsed time)</li>
+ * <li>"org.sputnikdev.bluetooth.gattparser.Compile" - a precompiled codec (e.g. a write template) has been built
+ * (characteristic UUID, parser type, kind, length, elapsed time)</li>
+ * <li>"org.sputnikdev.bluetooth.gattparser.SlowDecode" - parsing of a characteristic value took longer than
+ * the threshold of the parser, see
+ * {@link org.sputnikdev.bluetooth.gattparser.BluetoothGattParser#setSlowDecodeThreshold(long,
+ * java.util.concurrent.TimeUnit)} (characteristic UUID, parser type, payload length, elapsed time)</li>
+ * </ul>
+ * <br>Events are emitted only if the JFR API is available at runtime (Java 8u262+, Java 11+)
+ * and they are enabled in a running recording, otherwise methods of this class do nothing.
+ * Elapsed time is measured by the parser and carried by events as a field, event duration is not used.
+ */
+public final class GattFlightRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(GattFlightRecorder.class);
+
+    private static final boolean AVAILABLE = checkAvailable();
+
+    private GattFlightRecorder() { }
+
+    /**
+     * Checks whether the JFR API is available at runtime.
+     * @return true if the JFR API is available
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Checks whether specification load events are being recorded.
+     * @return true if specification load events are being recorded
+     */
+    public static boolean isSpecLoadEnabled() {
+        return AVAILABLE && FlightRecorderEvents.isSpecLoadEnabled();
+    }
+
+    /**
+     * Records a specification load event.
+     * @param file specification file
+     * @param size file size in bytes or -1 if unknown
+     * @param uuid UUID of a loaded service or characteristic, null if the file could not be loaded
+     * @param nanos elapsed time in nanoseconds
+     */
+    public static void specLoaded(String file, long size, String uuid, long nanos) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.specLoaded(file, size, uuid, nanos);
+        }
+    }
+
+    /**
+     * Checks whether registry read events are being recorded.
+     * @return true if registry read events are being recorded
+     */
+    public static boolean isRegistryReadEnabled() {
+        return AVAILABLE && FlightRecorderEvents.isRegistryReadEnabled();
+    }
+
+    /**
+     * Records a registry read event.
+     * @param file registry file
+     * @param entries number of entries in the registry
+     * @param nanos elapsed time in nanoseconds
+     */
+    public static void registryRead(String file, int entries, long nanos) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.registryRead(file, entries, nanos);
+        }
+    }
+
+    /**
+     * Checks whether compilation events are being recorded.
+     * @return true if compilation events are being recorded
+     */
+    public static boolean isCompileEnabled() {
+        return AVAILABLE && FlightRecorderEvents.isCompileEnabled();
+    }
+
+    /**
+     * Records a compilation event.
+     * @param uuid characteristic UUID
+     * @param parserType class name of a characteristic parser
+     * @param kind kind of a compiled codec, e.g. "write template"
+     * @param length length of the compiled codec, e.g. size of a template value in bytes
+     * @param nanos elapsed time in nanoseconds
+     */
+    public static void compiled(String uuid, String parserType, String kind, int length, long nanos) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.compiled(uuid, parserType, kind, length, nanos);
+        }
+    }
+
+    /**
+     * Checks whether slow decode events are being recorded.
+     * @return true if slow decode events are being recorded
+     */
+    public static boolean isSlowDecodeEnabled() {
+        return AVAILABLE && FlightRecorderEvents.isSlowDecodeEnabled();
+    }
+
+    /**
+     * Records a slow decode event.
+     * @param uuid characteristic UUID
+     * @param parserType class name of a characteristic parser
+     * @param payloadLength length of a characteristic value in bytes
+     * @param failed true if the value could not be parsed
+     * @param nanos elapsed time in nanoseconds
+     */
+    public static void slowDecode(String uuid, String parserType, int payloadLength, boolean failed, long nanos) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.slowDecode(uuid, parserType, payloadLength, failed, nanos);
+        }
+    }
+
+    private static boolean checkAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            FlightRecorderEvents.isSlowDecodeEnabled();
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            logger.debug("JFR API is not available, flight recorder events are disabled");
+            return false;
+        }
+    }
+
+}
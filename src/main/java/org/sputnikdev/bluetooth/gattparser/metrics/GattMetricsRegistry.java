@@ -0,0 +1,114 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException.Reason;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in-memory implementation of {@link GattParserMetrics} which records metrics per characteristic,
+ * see {@link CharacteristicMetrics}. Recording is lock-free.
+ * <pre>
+ * {@code
+ *
+ * GattMetricsRegistry registry = new GattMetricsRegistry();
+ * BluetoothGattParserFactory.getDefault().setMetrics(registry);
+ * ...
+ * registry.getMetrics("2A19").getParseLatency().getValueAtPercentile(99);
+ * }
+ * </pre>
+ * <br>Threadsafe.
+ */
+public class GattMetricsRegistry implements GattParserMetrics {
+
+    private final ConcurrentMap<String, CharacteristicMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void parsed(String characteristicUUID, int payloadSize, long nanos) {
+        getOrCreate(characteristicUUID).parsed(payloadSize, nanos);
+    }
+
+    @Override
+    public void serialized(String characteristicUUID, int payloadSize, long nanos) {
+        getOrCreate(characteristicUUID).serialized(payloadSize, nanos);
+    }
+
+    @Override
+    public void failed(String characteristicUUID, Operation operation, RuntimeException error) {
+        getOrCreate(characteristicUUID).failed(operation, getCause(error));
+    }
+
+    /**
+     * Returns metrics of a characteristic.
+     * @param characteristicUUID short characteristic UUID
+     * @return metrics of a characteristic or null if nothing has been recorded for the characteristic
+     */
+    public CharacteristicMetrics getMetrics(String characteristicUUID) {
+        return metrics.get(characteristicUUID);
+    }
+
+    /**
+     * Returns metrics of all characteristics recorded so far.
+     * @return metrics of all characteristics
+     */
+    public Collection<CharacteristicMetrics> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * Resets all recorded metrics.
+     */
+    public void reset() {
+        metrics.values().forEach(CharacteristicMetrics::reset);
+    }
+
+    /**
+     * Returns a cause of a failure which failures are grouped by: the name of the {@link Reason} of a
+     * {@link CharacteristicFormatException}, otherwise the simple class name of the error.
+     * @param error an error thrown by the parser
+     * @return a cause of the failure
+     */
+    public static String getCause(RuntimeException error) {
+        if (error instanceof CharacteristicFormatException) {
+            return ((CharacteristicFormatException) error).getReason().name();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    private CharacteristicMetrics getOrCreate(String characteristicUUID) {
+        CharacteristicMetrics characteristicMetrics = metrics.get(characteristicUUID);
+        if (characteristicMetrics == null) {
+            characteristicMetrics = metrics.computeIfAbsent(characteristicUUID, CharacteristicMetrics::new);
+        }
+        return characteristicMetrics;
+    }
+
+}
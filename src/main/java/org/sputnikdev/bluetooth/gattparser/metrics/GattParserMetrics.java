@@ -0,0 +1,91 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A metrics SPI of {@link org.sputnikdev.bluetooth.gattparser.BluetoothGattParser},
+ * see {@link org.sputnikdev.bluetooth.gattparser.BluetoothGattParser#setMetrics(GattParserMetrics)}.
+ * <br>The parser notifies an implementation of this interface about each parse and serialize operation of
+ * a characteristic. Implementations are called on threads performing these operations, therefore they must be
+ * threadsafe and should not block. See {@link GattMetricsRegistry} for a default implementation.
+ * <br>The parser does not measure anything (including latency) if {@link #isEnabled()} returns false,
+ * so that the {@link #NOOP} implementation (which is used by default) costs nothing.
+ */
+public interface GattParserMetrics {
+
+    /**
+     * A metrics implementation which does not record anything.
+     */
+    GattParserMetrics NOOP = new GattParserMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void parsed(String characteristicUUID, int payloadSize, long nanos) { }
+
+        @Override
+        public void serialized(String characteristicUUID, int payloadSize, long nanos) { }
+
+        @Override
+        public void failed(String characteristicUUID, Operation operation, RuntimeException error) { }
+    };
+
+    /**
+     * An operation performed by the parser.
+     */
+    enum Operation {
+        PARSE, SERIALIZE
+    }
+
+    /**
+     * Checks whether metrics should be recorded.
+     * @return true if the parser should measure and report operations, false otherwise
+     */
+    boolean isEnabled();
+
+    /**
+     * Called when a characteristic value has been parsed.
+     * @param characteristicUUID short characteristic UUID
+     * @param payloadSize size of the raw value in bytes
+     * @param nanos time spent on parsing in nanoseconds
+     */
+    void parsed(String characteristicUUID, int payloadSize, long nanos);
+
+    /**
+     * Called when a characteristic value has been serialized.
+     * @param characteristicUUID short characteristic UUID
+     * @param payloadSize size of the serialized value in bytes
+     * @param nanos time spent on serialization in nanoseconds
+     */
+    void serialized(String characteristicUUID, int payloadSize, long nanos);
+
+    /**
+     * Called when a characteristic value could not be parsed or serialized.
+     * @param characteristicUUID short characteristic UUID
+     * @param operation failed operation
+     * @param error an error thrown by the parser, usually {@link
+     * org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException}
+     */
+    void failed(String characteristicUUID, Operation operation, RuntimeException error);
+
+}
@@ -0,0 +1,244 @@
+package org.sputnikdev.bluetooth.gattparser.num;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.math.BigDecimal;
+
+/**
+ * An exact decimal number represented by an unscaled long value and a scale, i.e. the value of the number is
+ * unscaledValue &times; 10<sup>-scale</sup>. This is a lightweight alternative to {@link BigDecimal} for scaled
+ * GATT fields (see decimal/binary exponents and multipliers of fields), it is computed from a raw integer value with
+ * integer arithmetic only, conversion to {@link BigDecimal} or double is performed only when requested.
+ * <br>Similar to {@link BigDecimal}, {@link #equals(Object)} takes scale into account (2.0 is not equal to 2.00),
+ * whereas {@link #compareTo(FixedPointDecimal)} compares numeric values.
+ */
+public final class FixedPointDecimal extends Number implements Comparable<FixedPointDecimal> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long[] LONG_POWERS_OF_TEN = new long[19];
+    // powers of ten which are exactly representable as doubles
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+    private static final long MAX_EXACT_DOUBLE_INTEGER = 1L << 53;
+
+    static {
+        LONG_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++) {
+            LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+        }
+        DOUBLE_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++) {
+            DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long unscaledValue;
+    private final int scale;
+
+    private FixedPointDecimal(long unscaledValue, int scale) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+    }
+
+    /**
+     * Creates a new decimal number of a given unscaled value and scale.
+     * @param unscaledValue unscaled value
+     * @param scale scale, number of digits after the decimal point (negative scale multiplies by powers of ten)
+     * @return a new decimal number
+     */
+    public static FixedPointDecimal valueOf(long unscaledValue, int scale) {
+        return new FixedPointDecimal(unscaledValue, scale);
+    }
+
+    /**
+     * Returns unscaled value of the number.
+     * @return unscaled value
+     */
+    public long getUnscaledValue() {
+        return unscaledValue;
+    }
+
+    /**
+     * Returns scale of the number.
+     * @return scale
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Converts the number into a {@link BigDecimal}, the conversion is exact.
+     * @return BigDecimal representation of the number
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaledValue, scale);
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        if (scale <= 0) {
+            return -scale < LONG_POWERS_OF_TEN.length ? unscaledValue * LONG_POWERS_OF_TEN[-scale]
+                    : toBigDecimal().longValue();
+        }
+        return scale < LONG_POWERS_OF_TEN.length ? unscaledValue / LONG_POWERS_OF_TEN[scale] : 0;
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    /**
+     * Converts the number into a double. The result is correctly rounded, the conversion is done with a single
+     * floating point operation if the unscaled value and the power of ten are exactly representable as doubles.
+     * @return double representation of the number
+     */
+    @Override
+    public double doubleValue() {
+        if (Math.abs(unscaledValue) <= MAX_EXACT_DOUBLE_INTEGER && Math.abs(scale) < DOUBLE_POWERS_OF_TEN.length) {
+            double power = DOUBLE_POWERS_OF_TEN[Math.abs(scale)];
+            return scale >= 0 ? unscaledValue / power : unscaledValue * power;
+        }
+        return toBigDecimal().doubleValue();
+    }
+
+    /**
+     * Returns the number with a given scale if it can be represented exactly, i.e. without rounding and overflow.
+     * @param newScale a new scale
+     * @return the number with the new scale or null if it cannot be represented exactly
+     */
+    public FixedPointDecimal withScale(int newScale) {
+        if (newScale == scale) {
+            return this;
+        }
+        long rescaled = rescale(unscaledValue, scale, newScale);
+        return rescaled != Long.MIN_VALUE ? new FixedPointDecimal(rescaled, newScale) : null;
+    }
+
+    @Override
+    public int compareTo(FixedPointDecimal other) {
+        if (scale == other.scale) {
+            return Long.compare(unscaledValue, other.unscaledValue);
+        }
+        int signum = Long.signum(unscaledValue);
+        int otherSignum = Long.signum(other.unscaledValue);
+        if (signum != otherSignum) {
+            return Integer.compare(signum, otherSignum);
+        }
+        int commonScale = Math.max(scale, other.scale);
+        long value = rescale(unscaledValue, scale, commonScale);
+        long otherValue = rescale(other.unscaledValue, other.scale, commonScale);
+        if (value != Long.MIN_VALUE && otherValue != Long.MIN_VALUE) {
+            return Long.compare(value, otherValue);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof FixedPointDecimal)) {
+            return false;
+        }
+        FixedPointDecimal that = (FixedPointDecimal) object;
+        return unscaledValue == that.unscaledValue && scale == that.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(unscaledValue) + scale;
+    }
+
+    /**
+     * Returns a plain string representation of the number (without an exponent field),
+     * e.g. "-0.05", "12.340", "1500".
+     * @return a plain string representation of the number
+     */
+    @Override
+    public String toString() {
+        if (scale == 0) {
+            return Long.toString(unscaledValue);
+        }
+        if (scale < 0) {
+            StringBuilder builder = new StringBuilder(Long.toString(unscaledValue));
+            if (unscaledValue != 0) {
+                for (int i = 0; i < -scale; i++) {
+                    builder.append('0');
+                }
+            }
+            return builder.toString();
+        }
+        String digits = unscaledValue == Long.MIN_VALUE ? "9223372036854775808"
+                : Long.toString(Math.abs(unscaledValue));
+        StringBuilder builder = new StringBuilder(digits.length() + scale + 3);
+        if (unscaledValue < 0) {
+            builder.append('-');
+        }
+        int point = digits.length() - scale;
+        if (point > 0) {
+            builder.append(digits, 0, point).append('.').append(digits, point, digits.length());
+        } else {
+            builder.append("0.");
+            for (int i = point; i < 0; i++) {
+                builder.append('0');
+            }
+            builder.append(digits);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Rescales an unscaled value without loss of precision.
+     * @return rescaled value or Long.MIN_VALUE if it cannot be done exactly
+     */
+    static long rescale(long unscaledValue, int scale, int newScale) {
+        if (newScale == scale || unscaledValue == 0) {
+            return unscaledValue;
+        }
+        if (newScale > scale) {
+            int difference = newScale - scale;
+            if (difference >= LONG_POWERS_OF_TEN.length) {
+                return Long.MIN_VALUE;
+            }
+            long power = LONG_POWERS_OF_TEN[difference];
+            long result = unscaledValue * power;
+            if (result / power != unscaledValue || result == Long.MIN_VALUE) {
+                return Long.MIN_VALUE;
+            }
+            return result;
+        }
+        int difference = scale - newScale;
+        if (difference >= LONG_POWERS_OF_TEN.length) {
+            return Long.MIN_VALUE;
+        }
+        long power = LONG_POWERS_OF_TEN[difference];
+        return unscaledValue % power == 0 ? unscaledValue / power : Long.MIN_VALUE;
+    }
+
+}
@@ -45,32 +45,53 @@ public class IEEE11073FloatingPointNumberFormatter implements FloatingPointNumbe
     private static final int SFLOAT_NEGATIVE_INFINITY_SIGNED = 0xFFFFF802;
     private static final int FLOAT_NEGATIVE_INFINITY_SIGNED = 0xFF800002;
 
-    private TwosComplementNumberFormatter twosComplementNumberFormatter = new TwosComplementNumberFormatter();
+    private static final int SFLOAT_MIN_EXPONENT = -8;
+    private static final int SFLOAT_MAX_EXPONENT = 7;
+    // greater mantissas are reserved for special values
+    private static final int SFLOAT_MAX_MANTISSA = 0x07FD;
+    private static final int FLOAT_MIN_EXPONENT = -128;
+    private static final int FLOAT_MAX_EXPONENT = 127;
+    private static final int FLOAT_MAX_MANTISSA = 0x007FFFFD;
+    private static final long OVERFLOW = Long.MIN_VALUE;
+    private static final double LOG10_2 = 0.30102999566398120;
+
+    // powers of ten for all exponents of FLOAT (sint8) and SFLOAT (sint4) and their negations,
+    // indexed by exponent + 128
+    private static final double[] POWERS_OF_TEN = new double[257];
+
+    static {
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = Math.pow(10, i - 128);
+        }
+    }
 
     @Override
     public Float deserializeSFloat(BitSet bits) {
-        BitSet exponentBits = bits.get(12, 16);
-        BitSet mantissaBits = bits.get(0, 12);
-        int exponent = twosComplementNumberFormatter.deserializeInteger(exponentBits, 4, true);
-        int mantissa = twosComplementNumberFormatter.deserializeInteger(mantissaBits, 12, true);
-        if (exponent == 0) {
-            if (mantissa == SFLOAT_NaN) {
-                return Float.NaN;
-            } else if (mantissa == SFLOAT_POSITIVE_INFINITY) {
-                return Float.POSITIVE_INFINITY;
-            } else if (mantissa == SFLOAT_NEGATIVE_INFINITY_SIGNED) {
-                return Float.NEGATIVE_INFINITY;
-            }
-        }
-        return (float) ((double) mantissa * Math.pow(10, exponent));
+        return decodeSFloat((int) toLong(bits));
     }
 
     @Override
     public Float deserializeFloat(BitSet bits) {
-        BitSet exponentBits = bits.get(24, 32);
-        BitSet mantissaBits = bits.get(0, 24);
-        int exponent = twosComplementNumberFormatter.deserializeInteger(exponentBits, 8, true);
-        int mantissa = twosComplementNumberFormatter.deserializeInteger(mantissaBits, 24, true);
+        return decodeFloat((int) toLong(bits));
+    }
+
+    /**
+     * Decodes a 16-bit SFLOAT value. All 65,536 values are precomputed, so decoding is a table lookup.
+     * @param bits SFLOAT value in the lowest 16 bits (higher bits are ignored)
+     * @return decoded value
+     */
+    public float decodeSFloat(int bits) {
+        return SFloatTable.VALUES[bits & 0xFFFF];
+    }
+
+    /**
+     * Decodes a 32-bit FLOAT value.
+     * @param bits FLOAT value
+     * @return decoded value
+     */
+    public float decodeFloat(int bits) {
+        int exponent = bits >> 24;
+        int mantissa = bits << 8 >> 8;
         if (exponent == 0) {
             if (mantissa == FLOAT_NaN) {
                 return Float.NaN;
@@ -80,7 +101,65 @@ public class IEEE11073FloatingPointNumberFormatter implements FloatingPointNumbe
                 return Float.NEGATIVE_INFINITY;
             }
         }
-        return (float) ((double) mantissa * Math.pow(10, exponent));
+        return (float) ((double) mantissa * POWERS_OF_TEN[exponent + 128]);
+    }
+
+    /**
+     * Encodes a value into a 16-bit SFLOAT with the best precision, i.e. an exponent and mantissa pair
+     * with the smallest exponent which can hold the value is chosen.
+     * NaN and infinities are encoded as corresponding special values, values which are too large in magnitude
+     * are encoded as infinities.
+     * @param value a value to encode
+     * @return SFLOAT value in the lowest 16 bits
+     */
+    public int encodeSFloat(double value) {
+        return encodeSFloat(value, -SFLOAT_MIN_EXPONENT);
+    }
+
+    /**
+     * Encodes a value into a 16-bit SFLOAT with a given precision (number of decimal places), the value is rounded
+     * to the precision if needed. A coarser precision is used if the value cannot be held otherwise.
+     * @param value a value to encode
+     * @param precision maximum number of decimal places, e.g. 1 for 36.6, negative values round to tens, hundreds etc.
+     * @return SFLOAT value in the lowest 16 bits
+     */
+    public int encodeSFloat(double value, int precision) {
+        if (Double.isNaN(value)) {
+            return SFLOAT_NaN;
+        }
+        long encoded = Double.isInfinite(value) ? OVERFLOW
+                : encode(value, precision, SFLOAT_MIN_EXPONENT, SFLOAT_MAX_EXPONENT, SFLOAT_MAX_MANTISSA);
+        if (encoded == OVERFLOW) {
+            return value > 0 ? SFLOAT_POSITIVE_INFINITY : SFLOAT_NEGATIVE_INFINITY;
+        }
+        return (int) (encoded >> 32) << 12 & 0xF000 | (int) encoded & 0x0FFF;
+    }
+
+    /**
+     * Encodes a value into a 32-bit FLOAT with the best precision, see {@link #encodeSFloat(double)}.
+     * @param value a value to encode
+     * @return FLOAT value
+     */
+    public int encodeFloat(double value) {
+        return encodeFloat(value, -FLOAT_MIN_EXPONENT);
+    }
+
+    /**
+     * Encodes a value into a 32-bit FLOAT with a given precision, see {@link #encodeSFloat(double, int)}.
+     * @param value a value to encode
+     * @param precision maximum number of decimal places
+     * @return FLOAT value
+     */
+    public int encodeFloat(double value, int precision) {
+        if (Double.isNaN(value)) {
+            return FLOAT_NaN;
+        }
+        long encoded = Double.isInfinite(value) ? OVERFLOW
+                : encode(value, precision, FLOAT_MIN_EXPONENT, FLOAT_MAX_EXPONENT, FLOAT_MAX_MANTISSA);
+        if (encoded == OVERFLOW) {
+            return value > 0 ? FLOAT_POSITIVE_INFINITY : FLOAT_NEGATIVE_INFINITY;
+        }
+        return (int) (encoded >> 32) << 24 | (int) encoded & 0x00FFFFFF;
     }
 
     @Override
@@ -91,12 +170,12 @@ public class IEEE11073FloatingPointNumberFormatter implements FloatingPointNumbe
 
     @Override
     public BitSet serializeSFloat(Float number) {
-        throw new IllegalStateException("Operation not supported");
+        return BitSet.valueOf(new long[] {encodeSFloat(number)});
     }
 
     @Override
     public BitSet serializeFloat(Float number) {
-        throw new IllegalStateException("Operation not supported");
+        return BitSet.valueOf(new long[] {encodeFloat(number) & 0xFFFFFFFFL});
     }
 
     @Override
@@ -104,4 +183,75 @@ public class IEEE11073FloatingPointNumberFormatter implements FloatingPointNumbe
         throw new IllegalStateException("Operation not supported");
     }
 
+    private static long toLong(BitSet bits) {
+        long[] words = bits.toLongArray();
+        return words.length > 0 ? words[0] : 0;
+    }
+
+    /**
+     * Finds the smallest exponent (not less than the precision allows) which keeps the mantissa in range
+     * and strips trailing zeros of the mantissa.
+     * @return exponent in the high 32 bits and mantissa in the low 32 bits, or OVERFLOW
+     */
+    private static long encode(double value, int precision, int minExponent, int maxExponent, int maxMantissa) {
+        int lowest = Math.max(minExponent, Math.min(-precision, maxExponent));
+        int exponent = lowest;
+        double magnitude = Math.abs(value);
+        if (magnitude > 0) {
+            // binary exponent based estimate of log10, off by one at most, which is corrected below
+            int estimate = (int) Math.ceil(Math.getExponent(magnitude / maxMantissa) * LOG10_2);
+            exponent = Math.min(Math.max(lowest, estimate), maxExponent);
+        }
+        long mantissa = round(value, exponent);
+        while (Math.abs(mantissa) > maxMantissa) {
+            if (exponent == maxExponent) {
+                return OVERFLOW;
+            }
+            mantissa = round(value, ++exponent);
+        }
+        // the estimate might be off by one
+        while (exponent > lowest && Math.abs(round(value, exponent - 1)) <= maxMantissa) {
+            mantissa = round(value, --exponent);
+        }
+        while (mantissa != 0 && mantissa % 10 == 0 && exponent < maxExponent) {
+            mantissa /= 10;
+            exponent++;
+        }
+        if (mantissa == 0) {
+            exponent = 0;
+        }
+        return (long) exponent << 32 | mantissa & 0xFFFFFFFFL;
+    }
+
+    private static long round(double value, int exponent) {
+        return Math.round(exponent <= 0
+                ? value * POWERS_OF_TEN[128 - exponent] : value / POWERS_OF_TEN[128 + exponent]);
+    }
+
+    private static float computeSFloat(int bits) {
+        int exponent = bits << 16 >> 28;
+        int mantissa = bits << 20 >> 20;
+        if (exponent == 0) {
+            if (mantissa == SFLOAT_NaN) {
+                return Float.NaN;
+            } else if (mantissa == SFLOAT_POSITIVE_INFINITY) {
+                return Float.POSITIVE_INFINITY;
+            } else if (mantissa == SFLOAT_NEGATIVE_INFINITY_SIGNED) {
+                return Float.NEGATIVE_INFINITY;
+            }
+        }
+        return (float) ((double) mantissa * POWERS_OF_TEN[exponent + 128]);
+    }
+
+    // lazily initialized on the first SFLOAT decoding
+    private static final class SFloatTable {
+        private static final float[] VALUES = new float[1 << 16];
+
+        static {
+            for (int i = 0; i < VALUES.length; i++) {
+                VALUES[i] = computeSFloat(i);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,260 @@
+package org.sputnikdev.bluetooth.gattparser.num;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.math.BigInteger;
+
+/**
+ * An immutable integer number of up to 128 bits represented by two longs, signed values are kept in two's
+ * complement form, unsigned values which do not fit into 127 bits are flagged as unsigned.
+ * This is a lightweight alternative to {@link BigInteger} for wide GATT fields (e.g. uint128, sint128 and
+ * struct fields used as numbers), {@link BigInteger} is produced only on demand, see {@link #toBigInteger()}.
+ * <br>Equality and comparison are numeric, i.e. an unsigned and a signed value are equal if they represent
+ * the same number.
+ */
+public final class Int128 extends Number implements Comparable<Int128> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long high;
+    private final long low;
+    // true only if the value is greater than or equal to 2^127
+    private final boolean unsigned;
+
+    private Int128(long high, long low, boolean unsigned) {
+        this.high = high;
+        this.low = low;
+        this.unsigned = unsigned && high < 0;
+    }
+
+    /**
+     * Creates a new number from its 128-bit two's complement representation.
+     * @param high the most significant 64 bits
+     * @param low the least significant 64 bits
+     * @param signed indicates whether the bits represent a signed number
+     * @return a new number
+     */
+    public static Int128 valueOf(long high, long low, boolean signed) {
+        return new Int128(high, low, !signed);
+    }
+
+    /**
+     * Creates a new number from a long value.
+     * @param value a long value
+     * @return a new number
+     */
+    public static Int128 valueOf(long value) {
+        return new Int128(value >> 63, value, false);
+    }
+
+    /**
+     * Creates a new number from a {@link BigInteger}.
+     * @param value a BigInteger value
+     * @return a new number
+     * @throws ArithmeticException if the value does not fit into 128 bits
+     */
+    public static Int128 valueOf(BigInteger value) {
+        int bitLength = value.bitLength();
+        if (bitLength > 128 || bitLength == 128 && value.signum() < 0) {
+            throw new ArithmeticException("BigInteger out of 128 bit range: " + value);
+        }
+        long low = value.longValue();
+        long high = bitLength < 64 ? low >> 63 : value.shiftRight(64).longValue();
+        return new Int128(high, low, value.signum() > 0);
+    }
+
+    /**
+     * Reads a little-endian number (least significant bit first) of up to 128 bits at a given bit offset,
+     * missing bits are read as zeros.
+     * @param raw raw data
+     * @param offset bit offset
+     * @param size number of bits, must not be greater than 128
+     * @param signed indicates whether the bits represent a signed number
+     * @return a new number
+     */
+    public static Int128 read(byte[] raw, int offset, int size, boolean signed) {
+        if (size > 128) {
+            throw new IllegalArgumentException("size must be less or equal than 128");
+        }
+        if (size == 1) {
+            signed = false;
+        }
+        long low = readBits(raw, offset, Math.min(size, Long.SIZE));
+        long high = size > Long.SIZE ? readBits(raw, offset + Long.SIZE, size - Long.SIZE) : 0;
+        if (signed && size < 128) {
+            if (size > Long.SIZE) {
+                int shift = 128 - size;
+                high = high << shift >> shift;
+            } else {
+                int shift = Long.SIZE - size;
+                low = low << shift >> shift;
+                high = low >> 63;
+            }
+        }
+        return new Int128(high, low, !signed);
+    }
+
+    /**
+     * Reads up to 64 bits (little-endian, least significant bit first) at a given bit offset,
+     * missing bits are read as zeros.
+     * @param raw raw data
+     * @param offset bit offset
+     * @param size number of bits
+     * @return unsigned value of the bits
+     */
+    public static long readBits(byte[] raw, int offset, int size) {
+        long value = 0;
+        int read = 0;
+        while (read < size) {
+            int bit = offset + read;
+            int index = bit >>> 3;
+            int shift = bit & 7;
+            int take = Math.min(8 - shift, size - read);
+            if (index < raw.length) {
+                value |= (long) (((raw[index] & 0xFF) >>> shift) & ((1 << take) - 1)) << read;
+            }
+            read += take;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the most significant 64 bits of the two's complement representation of the number.
+     * @return the most significant 64 bits
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * Returns the least significant 64 bits of the two's complement representation of the number.
+     * @return the least significant 64 bits
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * Checks whether the number can be represented by a long without loss of information.
+     * @return true if the number fits into a long
+     */
+    public boolean isLong() {
+        return !unsigned && high == low >> 63;
+    }
+
+    /**
+     * Returns the signum function of the number.
+     * @return -1, 0 or 1 as the number is negative, zero or positive
+     */
+    public int signum() {
+        if (unsigned) {
+            return 1;
+        }
+        return high != 0 ? Long.signum(high) : low != 0 ? 1 : 0;
+    }
+
+    /**
+     * Converts the number into a {@link BigInteger}.
+     * @return BigInteger representation of the number
+     */
+    public BigInteger toBigInteger() {
+        if (isLong()) {
+            return BigInteger.valueOf(low);
+        }
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[7 - i] = (byte) (high >>> (i * 8));
+            bytes[15 - i] = (byte) (low >>> (i * 8));
+        }
+        return unsigned ? new BigInteger(1, bytes) : new BigInteger(bytes);
+    }
+
+    /**
+     * Checks whether the number is equal to a given {@link BigInteger}, no objects are allocated
+     * if the number fits into a long.
+     * @param value a BigInteger value
+     * @return true if the numbers are equal
+     */
+    public boolean equalsBigInteger(BigInteger value) {
+        if (value == null) {
+            return false;
+        }
+        if (isLong()) {
+            return value.bitLength() < Long.SIZE && value.longValue() == low;
+        }
+        int bitLength = value.bitLength();
+        return bitLength >= Long.SIZE && bitLength <= 128 && value.longValue() == low
+                && value.signum() == signum() && value.shiftRight(64).longValue() == high;
+    }
+
+    @Override
+    public int intValue() {
+        return (int) low;
+    }
+
+    @Override
+    public long longValue() {
+        return low;
+    }
+
+    @Override
+    public float floatValue() {
+        return isLong() ? (float) low : toBigInteger().floatValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return isLong() ? (double) low : toBigInteger().doubleValue();
+    }
+
+    @Override
+    public int compareTo(Int128 other) {
+        if (unsigned != other.unsigned) {
+            return unsigned ? 1 : -1;
+        }
+        int result = Long.compare(high, other.high);
+        return result != 0 ? result : Long.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof Int128)) {
+            return false;
+        }
+        Int128 that = (Int128) object;
+        return high == that.high && low == that.low && unsigned == that.unsigned;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(high) + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        return isLong() ? Long.toString(low) : toBigInteger().toString();
+    }
+
+}
@@ -81,16 +81,22 @@ public class TwosComplementNumberFormatter implements RealNumberFormatter {
             signed = false;
         }
 
+        int length = (size + 7) / 8;
+        if (length == 0) {
+            return BigInteger.ZERO;
+        }
+        // little-endian bits into big-endian bytes, a single BigInteger is created
+        byte[] data = bits.get(0, size).toByteArray();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            bytes[length - 1 - i] = data[i];
+        }
         boolean isNegative = signed && size > 1 && bits.get(size - 1);
-        BigInteger value = isNegative ? BigInteger.ONE.negate() : BigInteger.ZERO;
-        for (int i = 0; i < bits.length() && i < size; i++) {
-            if (isNegative && !bits.get(i)) {
-                value = value.clearBit(i);
-            } else if (!isNegative && bits.get(i)) {
-                value = value.setBit(i);
-            }
+        int extra = length * 8 - size;
+        if (isNegative && extra > 0) {
+            bytes[0] |= (byte) (0xFF << (8 - extra));
         }
-        return value;
+        return signed ? new BigInteger(bytes) : new BigInteger(1, bytes);
     }
 
     @Override
@@ -30,6 +30,7 @@ import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.metrics.GattFlightRecorder;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -42,13 +43,16 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Bluetooth GATT specification reader. Capable of reading Bluetooth SIG GATT specifications for
@@ -80,9 +84,15 @@ public class BluetoothGattSpecificationReader {
     private final BiMap<String, String> servicesRegistry;
     private final BiMap<String, String> characteristicsRegistry;
 
-    private final Map<String, Service> services = new HashMap<>();
-    private final Map<String, Characteristic> characteristicsByUUID = new HashMap<>();
-    private final Map<String, Characteristic> characteristicsByType = new HashMap<>();
+    private final Map<String, Service> services = new ConcurrentHashMap<>();
+    private final Map<String, Characteristic> characteristicsByUUID = new ConcurrentHashMap<>();
+    private final Map<String, Characteristic> characteristicsByType = new ConcurrentHashMap<>();
+    private final Map<Characteristic, CharacteristicLayout> layouts = new ConcurrentHashMap<>();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // explicit locks rather than monitors, so that virtual threads do not pin their carriers while loading specs
+    private final Lock servicesLock = new ReentrantLock();
+    private final Lock characteristicsLock = new ReentrantLock();
 
     /**
      * Creates an instance of GATT specification reader and pre-cache GATT specification files from java classpath
@@ -100,19 +110,23 @@ public class BluetoothGattSpecificationReader {
      * @return GATT service specification
      */
     public Service getService(String uuid) {
-        if (services.containsKey(uuid)) {
-            return services.get(uuid);
-        } else if (servicesRegistry.containsKey(uuid)) {
-            synchronized (services) {
+        Service service = services.get(uuid);
+        if (service == null && servicesRegistry.containsKey(uuid)) {
+            servicesLock.lock();
+            try {
                 // is it still not loaded?
-                if (!services.containsKey(uuid)) {
-                    Service service = loadService(uuid);
-                    addService(service);
-                    return service;
+                service = services.get(uuid);
+                if (service == null) {
+                    service = loadService(uuid);
+                    if (service != null) {
+                        addService(service);
+                    }
                 }
+            } finally {
+                servicesLock.unlock();
             }
         }
-        return null;
+        return service;
     }
 
     /**
@@ -122,19 +136,23 @@ public class BluetoothGattSpecificationReader {
      * @return GATT characteristic specification
      */
     public Characteristic getCharacteristicByUUID(String uuid) {
-        if (characteristicsByUUID.containsKey(uuid)) {
-            return characteristicsByUUID.get(uuid);
-        } else if (characteristicsRegistry.containsKey(uuid)) {
-            synchronized (characteristicsByUUID) {
+        Characteristic characteristic = characteristicsByUUID.get(uuid);
+        if (characteristic == null && characteristicsRegistry.containsKey(uuid)) {
+            characteristicsLock.lock();
+            try {
                 // is it still not loaded?
-                if (!characteristicsByUUID.containsKey(uuid)) {
-                    Characteristic characteristic = loadCharacteristic(uuid);
-                    addCharacteristic(characteristic);
-                    return characteristic;
+                characteristic = characteristicsByUUID.get(uuid);
+                if (characteristic == null) {
+                    characteristic = loadCharacteristic(uuid);
+                    if (characteristic != null) {
+                        addCharacteristic(characteristic);
+                    }
                 }
+            } finally {
+                characteristicsLock.unlock();
             }
         }
-        return null;
+        return characteristic;
     }
 
     /**
@@ -144,20 +162,23 @@ public class BluetoothGattSpecificationReader {
      * @return GATT characteristic specification
      */
     public Characteristic getCharacteristicByType(String type) {
-        if (characteristicsByType.containsKey(type)) {
-            return characteristicsByType.get(type);
-        } else if (characteristicsRegistry.inverse().containsKey(type)) {
-            synchronized (characteristicsByUUID) {
+        Characteristic characteristic = characteristicsByType.get(type);
+        if (characteristic == null && characteristicsRegistry.inverse().containsKey(type)) {
+            characteristicsLock.lock();
+            try {
                 // is it still not loaded?
-                if (!characteristicsByType.containsKey(type)) {
-                    Characteristic characteristic = loadCharacteristic(
-                            characteristicsRegistry.inverse().get(type));
-                    addCharacteristic(characteristic);
-                    return characteristic;
+                characteristic = characteristicsByType.get(type);
+                if (characteristic == null) {
+                    characteristic = loadCharacteristic(characteristicsRegistry.inverse().get(type));
+                    if (characteristic != null) {
+                        addCharacteristic(characteristic);
+                    }
                 }
+            } finally {
+                characteristicsLock.unlock();
             }
         }
-        return null;
+        return characteristic;
     }
 
     /**
@@ -187,19 +208,40 @@ public class BluetoothGattSpecificationReader {
      * @return a list of field specifications for a given characteristic
      */
     public List<Field> getFields(Characteristic characteristic) {
-        List<Field> fields = new ArrayList<>();
         if (characteristic.getValue() == null) {
             return Collections.emptyList();
         }
-        for (Field field : characteristic.getValue().getFields()) {
-            if (field.getReference() == null) {
-                fields.add(field);
-            } else {
-                //TODO prevent recursion loops
-                fields.addAll(getFields(getCharacteristicByType(field.getReference().trim())));
-            }
+        return getLayout(characteristic).getFields();
+    }
+
+    /**
+     * Returns a layout of a given characteristic with field references resolved, see {@link CharacteristicLayout}.
+     * Layouts are resolved once and then cached for the current specification generation
+     * (see {@link #getGeneration()}).
+     *
+     * @param characteristic a GATT characteristic specification object
+     * @return characteristic layout
+     * @throws IllegalStateException if a referenced characteristic cannot be found or references are recursive
+     */
+    public CharacteristicLayout getLayout(Characteristic characteristic) {
+        CharacteristicLayout layout = layouts.get(characteristic);
+        int current = generation.get();
+        if (layout == null || layout.getGeneration() != current) {
+            layout = CharacteristicLayout.resolve(characteristic, this::getCharacteristicByType, current);
+            layouts.put(characteristic, layout);
         }
-        return Collections.unmodifiableList(fields);
+        return layout;
+    }
+
+    /**
+     * Returns generation of the specifications. The generation is incremented every time a service or
+     * a characteristic specification gets overridden (see {@link #loadExtensionsFromFolder(String)}),
+     * so that anything derived from specifications can be checked for being up to date.
+     *
+     * @return specification generation
+     */
+    public int getGeneration() {
+        return generation.get();
     }
 
     /**
@@ -255,12 +297,18 @@ public class BluetoothGattSpecificationReader {
 
     private void addCharacteristic(Characteristic characteristic) {
         validate(characteristic);
-        characteristicsByUUID.put(characteristic.getUuid(), characteristic);
-        characteristicsByType.put(characteristic.getType().trim(), characteristic);
+        Characteristic replacedByUUID = characteristicsByUUID.put(characteristic.getUuid(), characteristic);
+        Characteristic replacedByType = characteristicsByType.put(characteristic.getType().trim(), characteristic);
+        if (replacedByUUID != null || replacedByType != null) {
+            // cached layouts of referencing characteristics become stale and get resolved again
+            generation.incrementAndGet();
+        }
     }
 
     private void addService(Service service) {
-        services.put(service.getUuid(), service);
+        if (services.put(service.getUuid(), service) != null) {
+            generation.incrementAndGet();
+        }
     }
 
     private void validate(Characteristic characteristic) {
@@ -396,6 +444,18 @@ public class BluetoothGattSpecificationReader {
     }
 
     private <T> T getSpec(URL file) {
+        long started = System.nanoTime();
+        T spec = readSpec(file);
+        if (GattFlightRecorder.isSpecLoadEnabled()) {
+            String uuid = spec instanceof Characteristic ? ((Characteristic) spec).getUuid()
+                    : spec instanceof Service ? ((Service) spec).getUuid() : null;
+            GattFlightRecorder.specLoaded(file.toString(), getContentLength(file), uuid,
+                    System.nanoTime() - started);
+        }
+        return spec;
+    }
+
+    private <T> T readSpec(URL file) {
         try {
             XStream xstream = new XStream(new DomDriver());
             xstream.autodetectAnnotations(true);
@@ -422,7 +482,24 @@ public class BluetoothGattSpecificationReader {
         return null;
     }
 
+    private long getContentLength(URL file) {
+        try {
+            return file.openConnection().getContentLengthLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
     private Map<String, String> readRegistryFromClassPath(String fileName) {
+        long started = System.nanoTime();
+        Map<String, String> registry = readRegistry(fileName);
+        if (GattFlightRecorder.isRegistryReadEnabled()) {
+            GattFlightRecorder.registryRead(fileName, registry.size(), System.nanoTime() - started);
+        }
+        return registry;
+    }
+
+    private Map<String, String> readRegistry(String fileName) {
         logger.info("Reading GATT registry from: {}", fileName);
 
         URL serviceRegistry = getClass().getClassLoader().getResource(fileName);
@@ -0,0 +1,197 @@
+package org.sputnikdev.bluetooth.gattparser.spec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A characteristic value layout with field references (see {@link Field#getReference()}) resolved,
+ * i.e. fields of referenced characteristics are inlined into the layout of the referencing characteristic.
+ * <br>The layout is a sequence of entries, an entry is either a regular field or a referencing field which
+ * is followed by entries of the referenced characteristic (see {@link #getReferencedCharacteristic(int)} and
+ * {@link #getReferenceEnd(int)}), so that a characteristic value can be parsed in a single pass.
+ * <br>Fields of the layout (see {@link #getFields()}) have ordinal indexes, so that field values can be kept
+ * in arrays rather than maps, see {@link #getIndex(String)}.
+ * <br>A layout is resolved once per characteristic specification and specification generation, see
+ * {@link BluetoothGattSpecificationReader#getLayout(Characteristic)}. Immutable.
+ */
+public final class CharacteristicLayout {
+
+    private final Characteristic characteristic;
+    private final Field[] entries;
+    private final Characteristic[] references;
+    private final int[] ends;
+    private final List<Field> fields;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int generation;
+
+    private CharacteristicLayout(Characteristic characteristic, List<Field> entries,
+                                 List<Characteristic> references, List<Integer> ends, List<Field> fields,
+                                 int generation) {
+        this.characteristic = characteristic;
+        this.generation = generation;
+        this.entries = entries.toArray(new Field[entries.size()]);
+        this.references = references.toArray(new Characteristic[references.size()]);
+        this.ends = new int[ends.size()];
+        for (int i = 0; i < this.ends.length; i++) {
+            this.ends[i] = ends.get(i);
+        }
+        this.fields = Collections.unmodifiableList(fields);
+        for (int i = 0; i < fields.size(); i++) {
+            indexes.put(fields.get(i).getName(), i);
+        }
+    }
+
+    /**
+     * Resolves a layout of a given characteristic.
+     * @param characteristic characteristic specification
+     * @param resolver a function to look up referenced characteristics by their types
+     * @return resolved layout
+     * @throws IllegalStateException if a referenced characteristic cannot be found
+     *     or references are recursive (e.g. a characteristic references itself)
+     */
+    public static CharacteristicLayout resolve(Characteristic characteristic,
+                                               Function<String, Characteristic> resolver) {
+        return resolve(characteristic, resolver, 0);
+    }
+
+    static CharacteristicLayout resolve(Characteristic characteristic, Function<String, Characteristic> resolver,
+                                        int generation) {
+        List<Field> entries = new ArrayList<>();
+        List<Characteristic> references = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        if (characteristic.getValue() != null) {
+            Set<String> path = new HashSet<>();
+            path.add(characteristic.getType() != null ? characteristic.getType().trim() : null);
+            inline(characteristic, resolver, path, entries, references, ends, fields);
+        }
+        return new CharacteristicLayout(characteristic, entries, references, ends, fields, generation);
+    }
+
+    /**
+     * Returns the characteristic specification.
+     * @return characteristic specification
+     */
+    public Characteristic getCharacteristic() {
+        return characteristic;
+    }
+
+    /**
+     * Returns field specifications with references resolved, referencing fields are not included.
+     * @return immutable list of field specifications
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns ordinal index of a field in the list of fields (see {@link #getFields()}).
+     * If several fields have the same name, index of the last one is returned, i.e. of the field that a map
+     * of parsed fields keeps (see {@link org.sputnikdev.bluetooth.gattparser.GattResponse}).
+     * @param fieldName field name
+     * @return field index or -1 if the layout does not have such a field
+     */
+    public int getIndex(String fieldName) {
+        Integer index = indexes.get(fieldName);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns generation of the specification the layout was resolved from,
+     * see {@link BluetoothGattSpecificationReader#getGeneration()}.
+     * @return specification generation
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the number of layout entries.
+     * @return number of entries
+     */
+    public int getEntryCount() {
+        return entries.length;
+    }
+
+    /**
+     * Returns a field of a given entry, either a regular field or a referencing field.
+     * @param index entry index
+     * @return field specification
+     */
+    public Field getEntry(int index) {
+        return entries[index];
+    }
+
+    /**
+     * Returns a characteristic referenced by a given entry, its fields are the following entries.
+     * @param index entry index
+     * @return referenced characteristic or null if the entry is a regular field
+     */
+    public Characteristic getReferencedCharacteristic(int index) {
+        return references[index];
+    }
+
+    /**
+     * Returns index of the first entry after entries of a characteristic referenced by a given entry.
+     * @param index entry index
+     * @return index of the entry following the referenced characteristic, or index + 1 for a regular field
+     */
+    public int getReferenceEnd(int index) {
+        return ends[index];
+    }
+
+    private static void inline(Characteristic characteristic, Function<String, Characteristic> resolver,
+                               Set<String> path, List<Field> entries, List<Characteristic> references,
+                               List<Integer> ends, List<Field> fields) {
+        for (Field field : characteristic.getValue().getFields()) {
+            int index = entries.size();
+            entries.add(field);
+            ends.add(index + 1);
+            if (field.getReference() == null) {
+                references.add(null);
+                fields.add(field);
+                continue;
+            }
+            String type = field.getReference().trim();
+            Characteristic referenced = resolver.apply(type);
+            if (referenced == null || referenced.getValue() == null) {
+                throw new IllegalStateException("Referenced characteristic is not found: " + type);
+            }
+            if (!path.add(type)) {
+                throw new IllegalStateException("Recursive reference to characteristic \"" + type
+                        + "\" in field: " + field.getName());
+            }
+            references.add(referenced);
+            inline(referenced, resolver, path, entries, references, ends, fields);
+            ends.set(index, entries.size());
+            path.remove(type);
+        }
+    }
+
+}
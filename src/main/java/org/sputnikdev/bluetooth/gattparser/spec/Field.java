@@ -68,6 +68,8 @@ public class Field {
     private boolean unknown;
     @XStreamAsAttribute
     private boolean system;
+    @XStreamAsAttribute
+    private boolean repeated;
 
     public String getName() {
         return name != null ? name.trim() : null;
@@ -133,6 +135,17 @@ public class Field {
         return system;
     }
 
+    /**
+     * Checks whether the field is repeated, i.e. the rest of a characteristic value is a sequence of values
+     * of the field format (e.g. RR-Interval values of the Heart Rate Measurement characteristic).
+     * This is an extension to official GATT specifications. Only the last field of a characteristic
+     * of a fixed size numeric format can be repeated, the flag is ignored otherwise.
+     * @return true if the field is repeated
+     */
+    public boolean isRepeated() {
+        return repeated;
+    }
+
     public boolean isFlagField() {
         return FlagUtils.isFlagsField(this);
     }
@@ -21,6 +21,7 @@ package org.sputnikdev.bluetooth.gattparser.spec;
  */
 
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.num.Int128;
 
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -43,8 +44,20 @@ public final class FlagUtils {
     private FlagUtils() { }
 
     public static Set<String> getReadFlags(List<Field> fields, byte[] data) {
+        return getReadFlags(fields, data, 0);
+    }
+
+    /**
+     * Reads flags of a characteristic which value starts at a given bit offset of data,
+     * e.g. a characteristic referenced by a field of another characteristic.
+     * @param fields fields of the characteristic
+     * @param data raw data
+     * @param offset bit offset of the characteristic value
+     * @return flags (requirements) set in the flags field of the characteristic
+     */
+    public static Set<String> getReadFlags(List<Field> fields, byte[] data, int offset) {
         Set<String> flags = new HashSet<>();
-        int index = 0;
+        int index = offset;
         for (Field field : fields) {
             if (isFlagsField(field)) {
                 int[] values = parseReadFlags(field, data, index);
@@ -88,6 +101,18 @@ public final class FlagUtils {
                 .filter(e -> key.equals(e.getKey())).findAny();
     }
 
+    public static Optional<Enumeration> getEnumeration(Field field, Int128 key) {
+        if (key == null || field.getEnumerations() == null || field.getEnumerations().getEnumerations() == null) {
+            return Optional.empty();
+        }
+        for (Enumeration enumeration : field.getEnumerations().getEnumerations()) {
+            if (key.equalsBigInteger(enumeration.getKey())) {
+                return Optional.of(enumeration);
+            }
+        }
+        return Optional.empty();
+    }
+
     public static List<Enumeration> getEnumerations(Field field, String value) {
         if (value == null) {
             return Collections.emptyList();
@@ -0,0 +1,201 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicDecoder;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A stateful decoder which detects changes of characteristic values between consecutive notifications
+ * of a device. Previous raw values and decoded fields are kept per device and characteristic.
+ * <br>A notification is decoded only if its raw value differs from the previous one of the same device
+ * and characteristic, otherwise it is dropped straight away. If only some fields are of interest
+ * (see {@link #watch(String, String...)}) and the characteristic has a static layout (all fields are mandatory
+ * and of a fixed size), only bit ranges of the watched fields are compared.
+ * <br>Notifications that cannot be decoded are rejected with {@link CharacteristicFormatException},
+ * the previous state is kept in this case.
+ * <br>Not threadsafe. As previous values are compared per device, all notifications of a device must go through
+ * the same detector in the order they were received, e.g. a detector can be owned by a lane of
+ * {@link GattDecodingScheduler} since the lane preserves the order of its devices.
+ */
+public class ChangeDetector {
+
+    private static final String MANDATORY = "Mandatory";
+
+    private final BluetoothGattParser parser;
+    private final CharacteristicStates<CharacteristicState> states;
+
+    /**
+     * Creates a new detector.
+     * @param parser GATT parser
+     */
+    public ChangeDetector(BluetoothGattParser parser) {
+        this.parser = parser;
+        states = new CharacteristicStates<>(parser, decoder -> new CharacteristicState(decoder, null));
+    }
+
+    /**
+     * Restricts change detection of a characteristic to a given set of fields, changes of other fields are ignored.
+     * By default all fields are watched. Previous values of the characteristic are reset.
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @param fieldNames names of fields to watch
+     * @return this detector
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     * @throws IllegalArgumentException if the characteristic does not have a field with a given name
+     */
+    public ChangeDetector watch(String characteristicUUID, String... fieldNames) {
+        CharacteristicDecoder decoder = parser.getDecoder(characteristicUUID);
+        int[] indexes = CharacteristicStates.getIndexes(decoder, fieldNames, field -> true, "field");
+        states.put(decoder, new CharacteristicState(decoder, indexes));
+        return this;
+    }
+
+    /**
+     * Detects changed fields of a notification in comparison to the previous notification of the same device
+     * and characteristic. All present fields are reported as changed for the first notification.
+     * @param notification a raw GATT notification
+     * @return changed fields (in order of the characteristic fields), an empty list if nothing has changed
+     * @throws CharacteristicFormatException if the notification cannot be decoded
+     */
+    public List<FieldChange> detect(GattNotification notification) {
+        CharacteristicState state = states.get(notification.getCharacteristicUUID());
+        return state.detect(notification.getDevice(), notification.getValue());
+    }
+
+    /**
+     * Forgets previous values of a device, e.g. when the device gets disconnected.
+     * @param device an identifier of a bluetooth device
+     */
+    public void reset(String device) {
+        for (CharacteristicState state : states.values()) {
+            state.devices.remove(device);
+        }
+    }
+
+    /**
+     * Forgets previous values of all devices.
+     */
+    public void reset() {
+        for (CharacteristicState state : states.values()) {
+            state.devices.clear();
+        }
+    }
+
+    private static final class DeviceState {
+        private byte[] raw;
+        private Object[] values;
+    }
+
+    private static final class CharacteristicState {
+
+        private final CharacteristicDecoder decoder;
+        private final int[] indexes;
+        // bit ranges of the watched fields if the layout is static, null otherwise
+        private final byte[] mask;
+        private final Map<String, DeviceState> devices = new HashMap<>();
+
+        private CharacteristicState(CharacteristicDecoder decoder, int[] indexes) {
+            this.decoder = decoder;
+            if (indexes != null) {
+                this.indexes = indexes;
+                mask = getMask(decoder.getFields(), indexes);
+            } else {
+                this.indexes = new int[decoder.getFields().size()];
+                Arrays.setAll(this.indexes, i -> i);
+                mask = null;
+            }
+        }
+
+        private List<FieldChange> detect(String device, byte[] raw) {
+            DeviceState previous = devices.get(device);
+            if (previous != null && !isChanged(previous.raw, raw)) {
+                return Collections.emptyList();
+            }
+            Object[] values = decoder.decode(raw);
+            List<FieldChange> changes = new ArrayList<>();
+            for (int index : indexes) {
+                Object oldValue = previous != null ? previous.values[index] : null;
+                if (!Objects.deepEquals(oldValue, values[index])) {
+                    changes.add(new FieldChange(decoder.getFields().get(index), oldValue, values[index]));
+                }
+            }
+            if (previous == null) {
+                previous = new DeviceState();
+                devices.put(device, previous);
+            }
+            previous.raw = raw.clone();
+            previous.values = values;
+            return changes;
+        }
+
+        private boolean isChanged(byte[] previous, byte[] raw) {
+            if (mask == null || previous.length != raw.length) {
+                return !Arrays.equals(previous, raw);
+            }
+            for (int i = 0; i < raw.length; i++) {
+                // a field of the full size (e.g. a string) is the last one, its mask spans till the end
+                int bits = i < mask.length ? mask[i] : mask[mask.length - 1] == -1 ? -1 : 0;
+                if (((previous[i] ^ raw[i]) & bits) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static byte[] getMask(List<Field> fields, int[] indexes) {
+            int[] offsets = new int[fields.size() + 1];
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                FieldFormat format = field.getFormat();
+                List<String> requirements = field.getRequirements();
+                boolean mandatory = requirements == null || requirements.isEmpty()
+                        || requirements.size() == 1 && MANDATORY.equals(requirements.get(0));
+                boolean last = i == fields.size() - 1;
+                if (!mandatory || format == null || format.getSize() == 0
+                        || format.getSize() == FieldFormat.FULL_SIZE && !last) {
+                    return null;
+                }
+                offsets[i + 1] = offsets[i] + Math.max(format.getSize(), 0);
+            }
+            byte[] mask = new byte[(offsets[fields.size()] + 7) / 8 + 1];
+            for (int index : indexes) {
+                int end = fields.get(index).getFormat().getSize() == FieldFormat.FULL_SIZE
+                        ? mask.length * 8 : offsets[index + 1];
+                for (int bit = offsets[index]; bit < end; bit++) {
+                    mask[bit >>> 3] |= 1 << (bit & 7);
+                }
+            }
+            return mask;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicDecoder;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * States of stateful stream stages (e.g. {@link ChangeDetector}) kept per characteristic.
+ * States are keyed by short characteristic UUIDs, and additionally cached by UUIDs as they come in notifications
+ * (e.g. in the full form), so that a state of a notification is found by a single map lookup.
+ * A state is created by a given factory when a notification of the characteristic arrives first,
+ * unless it has been configured explicitly (see {@link #put(CharacteristicDecoder, Object)}).
+ * <br>Not threadsafe.
+ *
+ * @param <S> state type
+ */
+final class CharacteristicStates<S> {
+
+    private final BluetoothGattParser parser;
+    private final Function<CharacteristicDecoder, S> factory;
+    private final Map<String, S> states = new HashMap<>();
+    private final Map<String, S> notified = new HashMap<>();
+
+    CharacteristicStates(BluetoothGattParser parser, Function<CharacteristicDecoder, S> factory) {
+        this.parser = parser;
+        this.factory = factory;
+    }
+
+    S get(String characteristicUUID) {
+        S state = notified.get(characteristicUUID);
+        if (state == null) {
+            CharacteristicDecoder decoder = parser.getDecoder(characteristicUUID);
+            state = states.get(decoder.getCharacteristicUUID());
+            if (state == null) {
+                state = factory.apply(decoder);
+                states.put(decoder.getCharacteristicUUID(), state);
+            }
+            notified.put(characteristicUUID, state);
+        }
+        return state;
+    }
+
+    void put(CharacteristicDecoder decoder, S state) {
+        states.put(decoder.getCharacteristicUUID(), state);
+        notified.clear();
+    }
+
+    Collection<S> values() {
+        return states.values();
+    }
+
+    /**
+     * Resolves indexes of fields (in the order of decoded values) by their names.
+     * @param decoder characteristic decoder
+     * @param fieldNames field names
+     * @param filter a condition which resolved fields must meet
+     * @param description description of the fields for error messages, e.g. "numeric field"
+     * @return field indexes
+     * @throws IllegalArgumentException if a field is not found or does not meet the condition
+     */
+    static int[] getIndexes(CharacteristicDecoder decoder, String[] fieldNames, Predicate<Field> filter,
+                            String description) {
+        int[] indexes = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            indexes[i] = decoder.getIndex(fieldNames[i]);
+            if (indexes[i] < 0 || !filter.test(decoder.getFields().get(indexes[i]))) {
+                throw new IllegalArgumentException("Characteristic " + decoder.getCharacteristicUUID()
+                        + " does not have " + description + ": " + fieldNames[i]);
+            }
+        }
+        return indexes;
+    }
+
+}
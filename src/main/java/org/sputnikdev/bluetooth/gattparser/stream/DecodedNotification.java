@@ -0,0 +1,59 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+
+/**
+ * Represents a decoded GATT notification: a source notification and its parsed fields.
+ */
+public class DecodedNotification {
+
+    private final GattNotification notification;
+    private final GattResponse response;
+
+    /**
+     * Creates a new decoded notification.
+     * @param notification a source notification
+     * @param response parsed fields
+     */
+    public DecodedNotification(GattNotification notification, GattResponse response) {
+        this.notification = notification;
+        this.response = response;
+    }
+
+    /**
+     * Returns the source notification.
+     * @return the source notification
+     */
+    public GattNotification getNotification() {
+        return notification;
+    }
+
+    /**
+     * Returns parsed fields of the notification.
+     * @return parsed fields
+     */
+    public GattResponse getResponse() {
+        return response;
+    }
+
+}
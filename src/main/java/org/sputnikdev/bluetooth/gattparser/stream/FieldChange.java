@@ -0,0 +1,72 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+/**
+ * Represents a change of a field value between two consecutive notifications of a device,
+ * see {@link ChangeDetector}. Values are raw, i.e. the same as raw values of field holders
+ * (see {@link org.sputnikdev.bluetooth.gattparser.FieldHolder#getRawValue()}).
+ */
+public class FieldChange {
+
+    private final Field field;
+    private final Object oldValue;
+    private final Object newValue;
+
+    /**
+     * Creates a new field change.
+     * @param field field specification
+     * @param oldValue previous field value, null if the field was absent
+     * @param newValue current field value, null if the field is absent
+     */
+    public FieldChange(Field field, Object oldValue, Object newValue) {
+        this.field = field;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    /**
+     * Returns field specification.
+     * @return field specification
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns previous field value.
+     * @return previous field value, null if the field was absent (or there was no previous notification)
+     */
+    public Object getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * Returns current field value.
+     * @return current field value, null if the field is absent
+     */
+    public Object getNewValue() {
+        return newValue;
+    }
+
+}
@@ -0,0 +1,384 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * A <a href="http://www.reactive-streams.org/">Reactive Streams</a> processor which decodes raw GATT notifications
+ * into parsed characteristic fields by using {@link BluetoothGattParser}.
+ * On Java 9+ it can be adapted to {@link java.util.concurrent.Flow.Processor} via
+ * {@code org.reactivestreams.FlowAdapters}.
+ * <br>The processor is demand-driven: it never requests more notifications from upstream than it can hold
+ * in its bounded buffer (in-flight and decoded notifications), decoded notifications are emitted only when
+ * the downstream subscriber has requested them.
+ * <br>Notifications are decoded in parallel by a number of serial lanes running on the provided executor.
+ * If per-device ordering is enabled (default), notifications of a device are always handled by the same lane,
+ * hence they are emitted in the order they were received. Otherwise notifications are distributed between lanes
+ * evenly and the order is not guaranteed.
+ * <br>Notifications that cannot be parsed ({@link CharacteristicFormatException}) are routed to an error handler
+ * (see {@link #setErrorHandler(BiConsumer)}) and dropped. If the error handler is not set, upstream is cancelled,
+ * notifications which are already decoded are delivered and then the stream is terminated with the exception.
+ * <br>The processor supports a single subscriber.
+ */
+public class GattDecodingProcessor implements Processor<GattNotification, DecodedNotification> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final BluetoothGattParser parser;
+    private final Executor executor;
+    private final Lane[] lanes;
+    private final boolean ordered;
+    private final int bufferSize;
+    private final int replenishThreshold;
+    private volatile BiConsumer<GattNotification, CharacteristicFormatException> errorHandler;
+
+    private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Subscriber<? super DecodedNotification>> downstream = new AtomicReference<>();
+    private final Queue<DecodedNotification> decoded = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile boolean failed;
+
+    // accessed only by the upstream (serial by the spec)
+    private int nextLane;
+
+    // accessed only within the drain loop
+    private boolean started;
+    private boolean upstreamCancelled;
+    private boolean terminated;
+    private int consumed;
+
+    /**
+     * Creates a new processor with default settings: the number of lanes equals to the number of processors,
+     * buffer size is {@link #DEFAULT_BUFFER_SIZE}, per-device ordering is enabled.
+     * @param parser GATT parser
+     * @param executor executor to run decoding lanes
+     */
+    public GattDecodingProcessor(BluetoothGattParser parser, Executor executor) {
+        this(parser, executor, Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * Creates a new processor.
+     * @param parser GATT parser
+     * @param executor executor to run decoding lanes
+     * @param parallelism number of decoding lanes
+     * @param bufferSize maximum number of notifications which are requested from upstream but not yet
+     *                   delivered downstream
+     * @param ordered dictates whether notifications of a device must be emitted in the order they were received
+     */
+    public GattDecodingProcessor(BluetoothGattParser parser, Executor executor, int parallelism, int bufferSize,
+                                 boolean ordered) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.parser = parser;
+        this.executor = executor;
+        this.ordered = ordered;
+        this.bufferSize = bufferSize;
+        replenishThreshold = bufferSize - (bufferSize >> 2);
+        lanes = new Lane[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * Sets an error handler for notifications that cannot be parsed. Such notifications are dropped and the stream
+     * continues. If the handler is not set, the stream is terminated with the error once already decoded
+     * notifications are delivered. If the handler throws an exception, the stream is terminated with that exception.
+     * @param errorHandler error handler
+     */
+    public void setErrorHandler(BiConsumer<GattNotification, CharacteristicFormatException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super DecodedNotification> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+        if (downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new DownstreamSubscription());
+            drain();
+        } else {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long count) { }
+
+                @Override
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("Processor supports only one subscriber"));
+        }
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (upstream.compareAndSet(null, subscription)) {
+            drain();
+        } else {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onNext(GattNotification notification) {
+        if (done || cancelled) {
+            return;
+        }
+        inFlight.incrementAndGet();
+        Lane lane;
+        if (ordered) {
+            lane = lanes[GattNotification.getLaneIndex(notification.getDevice(), lanes.length)];
+        } else {
+            lane = lanes[nextLane];
+            nextLane = nextLane + 1 == lanes.length ? 0 : nextLane + 1;
+        }
+        lane.offer(notification);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // delivering already decoded notifications first
+        error.compareAndSet(null, throwable);
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private void decode(GattNotification notification) {
+        try {
+            if (!cancelled && !failed) {
+                GattResponse response = parser.parse(notification.getCharacteristicUUID(), notification.getValue());
+                decoded.offer(new DecodedNotification(notification, response));
+            } else {
+                dropped.incrementAndGet();
+            }
+        } catch (CharacteristicFormatException ex) {
+            BiConsumer<GattNotification, CharacteristicFormatException> handler = errorHandler;
+            dropped.incrementAndGet();
+            if (handler != null) {
+                try {
+                    handler.accept(notification, ex);
+                } catch (RuntimeException handlerError) {
+                    // the lane must keep draining its queue, the stream is terminated instead
+                    failDecoding(handlerError);
+                }
+            } else {
+                failDecoding(ex);
+            }
+        } catch (RuntimeException ex) {
+            dropped.incrementAndGet();
+            failDecoding(ex);
+        } finally {
+            inFlight.decrementAndGet();
+            drain();
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        if (error.compareAndSet(null, throwable)) {
+            // decoding errors are signalled eagerly
+            cancelled = true;
+        }
+    }
+
+    private void failDecoding(Throwable throwable) {
+        if (error.compareAndSet(null, throwable)) {
+            // notifications decoded so far are delivered before the error, the rest is dropped
+            failed = true;
+            done = true;
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            Subscriber<? super DecodedNotification> subscriber = downstream.get();
+            Subscription subscription = upstream.get();
+            if (subscriber != null && subscription != null && !terminated) {
+                if (cancelled) {
+                    cancelUpstream(subscription);
+                    decoded.clear();
+                    Throwable throwable = error.get();
+                    if (throwable != null) {
+                        terminated = true;
+                        subscriber.onError(throwable);
+                    }
+                } else {
+                    if (failed) {
+                        cancelUpstream(subscription);
+                    } else if (!started) {
+                        started = true;
+                        subscription.request(bufferSize);
+                    }
+                    emit(subscriber, subscription);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    private void emit(Subscriber<? super DecodedNotification> subscriber, Subscription subscription) {
+        long demand = requested.get();
+        long emitted = 0;
+        while (emitted != demand && !cancelled) {
+            DecodedNotification notification = decoded.poll();
+            if (notification == null) {
+                break;
+            }
+            subscriber.onNext(notification);
+            emitted++;
+        }
+        if (emitted > 0 && demand != Long.MAX_VALUE) {
+            requested.addAndGet(-emitted);
+        }
+        if (cancelled) {
+            // cancelled while emitting, it is handled in the next iteration of the drain loop
+            return;
+        }
+        consumed += (int) emitted + dropped.getAndSet(0);
+        if (done) {
+            if (inFlight.get() == 0 && decoded.isEmpty()) {
+                terminated = true;
+                Throwable throwable = error.get();
+                if (throwable != null) {
+                    subscriber.onError(throwable);
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+        } else if (consumed >= replenishThreshold) {
+            subscription.request(consumed);
+            consumed = 0;
+        }
+    }
+
+    private void cancelUpstream(Subscription subscription) {
+        if (!upstreamCancelled) {
+            upstreamCancelled = true;
+            subscription.cancel();
+        }
+    }
+
+    private final class DownstreamSubscription implements Subscription {
+
+        @Override
+        public void request(long count) {
+            if (count <= 0) {
+                fail(new IllegalArgumentException("Requested number of elements must be positive: " + count));
+            } else {
+                for (;;) {
+                    long current = requested.get();
+                    long updated = current + count;
+                    if (updated < 0) {
+                        updated = Long.MAX_VALUE;
+                    }
+                    if (requested.compareAndSet(current, updated)) {
+                        break;
+                    }
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private final Queue<GattNotification> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger scheduled = new AtomicInteger();
+
+        private void offer(GattNotification notification) {
+            queue.offer(notification);
+            if (scheduled.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    // nothing is going to drain the queue, notifications are dropped and the stream is terminated
+                    scheduled.set(0);
+                    while (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                        inFlight.decrementAndGet();
+                    }
+                    failDecoding(ex);
+                    drain();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (;;) {
+                GattNotification notification;
+                while ((notification = queue.poll()) != null) {
+                    decode(notification);
+                }
+                missed = scheduled.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+}
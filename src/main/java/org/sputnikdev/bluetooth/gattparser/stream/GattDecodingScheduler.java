@@ -0,0 +1,298 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A scheduler which decodes GATT notifications of many devices by using a shared {@link BluetoothGattParser}
+ * on multiple cores while preserving the order of notifications for each device.
+ * <br>Device identifiers are hashed to lanes, each lane is a single thread draining its own bounded lock-free
+ * ring buffer in batches. Decoded notifications are passed to a listener on the lane thread in the order they were
+ * submitted for each device. A lane queue is bounded, so that a chatty device can only fill the lane it is hashed to:
+ * once the lane is full, further notifications of every device sharing that lane are rejected
+ * (see {@link #submit(GattNotification)}), while devices of other lanes are not delayed. The more lanes there are,
+ * the fewer devices share the backpressure of a chatty one. Queue depth and lag of each lane are exposed via
+ * {@link #getMetrics()}.
+ * <br>Lane threads are created by a provided thread factory, e.g. a virtual thread factory can be used on Java 21+.
+ * <br>Threadsafe.
+ */
+public class GattDecodingScheduler {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final AtomicInteger SCHEDULER_COUNTER = new AtomicInteger();
+
+    private final Logger logger = LoggerFactory.getLogger(GattDecodingScheduler.class);
+
+    private final BluetoothGattParser parser;
+    private final Consumer<DecodedNotification> listener;
+    private final int batchSize;
+    private final Lane[] lanes;
+    private volatile BiConsumer<GattNotification, RuntimeException> errorHandler;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new scheduler with default settings: the number of lanes equals to the number of processors,
+     * lane capacity is {@link #DEFAULT_CAPACITY}, batch size is {@link #DEFAULT_BATCH_SIZE},
+     * lanes run on daemon platform threads.
+     * @param parser GATT parser
+     * @param listener a listener of decoded notifications
+     */
+    public GattDecodingScheduler(BluetoothGattParser parser, Consumer<DecodedNotification> listener) {
+        this(parser, listener, Runtime.getRuntime().availableProcessors(), DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE,
+                getDefaultThreadFactory());
+    }
+
+    /**
+     * Creates a new scheduler.
+     * @param parser GATT parser
+     * @param listener a listener of decoded notifications
+     * @param lanes number of lanes
+     * @param capacity maximum number of notifications waiting in a lane (rounded up to a power of two)
+     * @param batchSize maximum number of notifications a lane decodes before refreshing its metrics
+     * @param threadFactory a factory for lane threads
+     */
+    public GattDecodingScheduler(BluetoothGattParser parser, Consumer<DecodedNotification> listener, int lanes,
+                                 int capacity, int batchSize, ThreadFactory threadFactory) {
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("Number of lanes must be positive: " + lanes);
+        }
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        this.parser = parser;
+        this.listener = listener;
+        this.batchSize = batchSize;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(i, capacity, threadFactory);
+        }
+        for (Lane lane : this.lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Sets an error handler for notifications that cannot be decoded. By default such notifications are logged.
+     * @param errorHandler error handler
+     */
+    public void setErrorHandler(BiConsumer<GattNotification, RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Submits a notification for decoding.
+     * @param notification a notification to decode
+     * @return true if the notification is accepted, false if its lane is full or the scheduler is shut down
+     */
+    public boolean submit(GattNotification notification) {
+        if (!running) {
+            return false;
+        }
+        return lanes[getLaneIndex(notification.getDevice())].offer(notification);
+    }
+
+    /**
+     * Returns the number of lanes.
+     * @return the number of lanes
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns an index of a lane which handles notifications of a given device.
+     * @param device an identifier of a bluetooth device
+     * @return lane index
+     */
+    public int getLaneIndex(String device) {
+        return GattNotification.getLaneIndex(device, lanes.length);
+    }
+
+    /**
+     * Returns a snapshot of metrics of all lanes.
+     * @return metrics of all lanes
+     */
+    public List<LaneMetrics> getMetrics() {
+        List<LaneMetrics> metrics = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            metrics.add(lane.getMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops accepting new notifications. Already submitted notifications are still decoded.
+     */
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+    }
+
+    /**
+     * Waits until all lanes are terminated after a shutdown request.
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return true if all lanes are terminated, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(lane.thread, remaining);
+            }
+            if (lane.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ThreadFactory getDefaultThreadFactory() {
+        int scheduler = SCHEDULER_COUNTER.incrementAndGet();
+        AtomicInteger laneCounter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("gatt-decoding-" + scheduler + "-lane-" + laneCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final MpscRingBuffer<GattNotification> buffer;
+        private final Thread thread;
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile boolean parked;
+        private volatile long processed;
+        private volatile long failed;
+        private volatile long lag;
+        private volatile long maxLag;
+
+        private Lane(int index, int capacity, ThreadFactory threadFactory) {
+            this.index = index;
+            buffer = new MpscRingBuffer<>(capacity);
+            thread = threadFactory.newThread(this);
+        }
+
+        private boolean offer(GattNotification notification) {
+            if (!buffer.offer(notification, System.nanoTime())) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while (running || !buffer.isEmpty()) {
+                if (drain() == 0) {
+                    parked = true;
+                    if (running && buffer.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        private int drain() {
+            int drained = 0;
+            long processedInBatch = 0;
+            long failedInBatch = 0;
+            long batchLag = 0;
+            long batchMaxLag = maxLag;
+            GattNotification notification;
+            while (drained < batchSize && (notification = buffer.peek()) != null) {
+                batchLag = System.nanoTime() - buffer.peekTimestamp();
+                buffer.remove();
+                batchMaxLag = Math.max(batchMaxLag, batchLag);
+                drained++;
+                if (decode(notification)) {
+                    processedInBatch++;
+                } else {
+                    failedInBatch++;
+                }
+            }
+            if (drained > 0) {
+                // single writer, hence plain increments are safe
+                processed += processedInBatch;
+                failed += failedInBatch;
+                lag = batchLag;
+                maxLag = batchMaxLag;
+            }
+            return drained;
+        }
+
+        private boolean decode(GattNotification notification) {
+            DecodedNotification decoded;
+            try {
+                GattResponse response = parser.parse(notification.getCharacteristicUUID(), notification.getValue());
+                decoded = new DecodedNotification(notification, response);
+            } catch (RuntimeException ex) {
+                BiConsumer<GattNotification, RuntimeException> handler = errorHandler;
+                if (handler != null) {
+                    handler.accept(notification, ex);
+                } else {
+                    logger.warn("Could not decode notification: {} / {}", notification.getDevice(),
+                            notification.getCharacteristicUUID(), ex);
+                }
+                return false;
+            }
+            try {
+                listener.accept(decoded);
+            } catch (RuntimeException ex) {
+                logger.error("Notification listener error", ex);
+            }
+            return true;
+        }
+
+        private LaneMetrics getMetrics() {
+            return new LaneMetrics(index, buffer.size(), buffer.capacity(), processed, rejected.get(), failed,
+                    lag, maxLag);
+        }
+    }
+
+}
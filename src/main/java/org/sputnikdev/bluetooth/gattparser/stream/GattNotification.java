@@ -0,0 +1,81 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Represents a raw GATT characteristic value (e.g. a notification or a read response) received from
+ * a bluetooth device.
+ */
+public class GattNotification {
+
+    private final String device;
+    private final String characteristicUUID;
+    private final byte[] value;
+
+    /**
+     * Creates a new notification.
+     * @param device an identifier of a bluetooth device (e.g. MAC address)
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @param value byte array of data received from the bluetooth device
+     */
+    public GattNotification(String device, String characteristicUUID, byte[] value) {
+        this.device = device;
+        this.characteristicUUID = characteristicUUID;
+        this.value = value;
+    }
+
+    /**
+     * Returns an identifier of the bluetooth device.
+     * @return an identifier of the bluetooth device
+     */
+    public String getDevice() {
+        return device;
+    }
+
+    /**
+     * Returns UUID of the GATT characteristic.
+     * @return UUID of the GATT characteristic
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns data received from the bluetooth device.
+     * @return data received from the bluetooth device
+     */
+    public byte[] getValue() {
+        return value;
+    }
+
+    /**
+     * Returns an index of a lane (out of a given number of lanes) for a device so that all notifications of
+     * the device are handled by the same lane.
+     * @param device an identifier of a bluetooth device
+     * @param lanes number of lanes
+     * @return lane index
+     */
+    static int getLaneIndex(String device, int lanes) {
+        int hash = device != null ? device.hashCode() : 0;
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes;
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A snapshot of metrics of a decoding lane, see {@link GattDecodingScheduler#getMetrics()}.
+ */
+public class LaneMetrics {
+
+    private final int lane;
+    private final int queueDepth;
+    private final int capacity;
+    private final long processed;
+    private final long rejected;
+    private final long failed;
+    private final long lag;
+    private final long maxLag;
+
+    LaneMetrics(int lane, int queueDepth, int capacity, long processed, long rejected, long failed,
+                long lag, long maxLag) {
+        this.lane = lane;
+        this.queueDepth = queueDepth;
+        this.capacity = capacity;
+        this.processed = processed;
+        this.rejected = rejected;
+        this.failed = failed;
+        this.lag = lag;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Returns lane index.
+     * @return lane index
+     */
+    public int getLane() {
+        return lane;
+    }
+
+    /**
+     * Returns the number of notifications waiting in the lane queue.
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the maximum number of notifications the lane queue can hold.
+     * @return queue capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of decoded notifications.
+     * @return the number of decoded notifications
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Returns the number of notifications rejected because the lane queue was full.
+     * @return the number of rejected notifications
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of notifications that could not be decoded.
+     * @return the number of failed notifications
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns how long (in nanoseconds) the most recently decoded notification waited in the lane queue.
+     * @return lag in nanoseconds
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * Returns the maximum time (in nanoseconds) a notification waited in the lane queue.
+     * @return maximum lag in nanoseconds
+     */
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public String toString() {
+        return "LaneMetrics{lane=" + lane + ", queueDepth=" + queueDepth + ", capacity=" + capacity
+                + ", processed=" + processed + ", rejected=" + rejected + ", failed=" + failed
+                + ", lag=" + lag + ", maxLag=" + maxLag + "}";
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free multi-producer single-consumer ring buffer. Each element is stored along with
+ * a timestamp of when it was added.
+ *
+ * @param <T> element type
+ */
+final class MpscRingBuffer<T> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final long[] timestamps;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        elements = new Object[size];
+        timestamps = new long[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element, can be called by multiple threads.
+     * @param element element
+     * @param timestamp timestamp of the element
+     * @return true if added, false if the buffer is full
+     */
+    boolean offer(T element, long timestamp) {
+        long position = tail.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    timestamps[index] = timestamp;
+                    // a volatile write, so that a consumer going to sleep cannot miss the element
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Returns a timestamp of the next element, must be called only by the consumer thread and only if
+     * the buffer is not empty (see {@link #peek()}).
+     * @return timestamp of the next element
+     */
+    long peekTimestamp() {
+        return timestamps[(int) head & mask];
+    }
+
+    /**
+     * Returns the next element without removing it, must be called only by the consumer thread.
+     * @return the next element or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    T peek() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        return (T) elements[index];
+    }
+
+    /**
+     * Removes the next element, must be called only by the consumer thread after a successful {@link #peek()}.
+     */
+    void remove() {
+        long position = head;
+        int index = (int) position & mask;
+        elements[index] = null;
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+    }
+
+    /**
+     * Returns the number of elements in the buffer, can be called by any thread.
+     * @return the number of elements
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+}
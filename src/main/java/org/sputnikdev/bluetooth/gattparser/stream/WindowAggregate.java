@@ -0,0 +1,167 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.util.List;
+
+/**
+ * A snapshot of aggregated numeric fields of a characteristic of a device over a time window,
+ * see {@link WindowedAggregator}. Values are scaled, i.e. multipliers, exponents and offsets are applied.
+ * Fields are accessed by their indexes in the field list (see {@link #getFields()}).
+ */
+public class WindowAggregate {
+
+    private final String device;
+    private final String characteristicUUID;
+    private final long start;
+    private final long end;
+    private final List<Field> fields;
+    private final long[] counts;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final double[] last;
+
+    WindowAggregate(String device, String characteristicUUID, long start, long end, List<Field> fields,
+                    long[] counts, double[] min, double[] max, double[] sum, double[] last) {
+        this.device = device;
+        this.characteristicUUID = characteristicUUID;
+        this.start = start;
+        this.end = end;
+        this.fields = fields;
+        this.counts = counts;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.last = last;
+    }
+
+    /**
+     * Returns an identifier of the bluetooth device.
+     * @return an identifier of the bluetooth device
+     */
+    public String getDevice() {
+        return device;
+    }
+
+    /**
+     * Returns UUID of the GATT characteristic.
+     * @return UUID of the GATT characteristic
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Returns the window start timestamp (inclusive).
+     * @return window start
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the window end timestamp (exclusive).
+     * @return window end
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns aggregated fields.
+     * @return aggregated fields
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns index of a field by its name.
+     * @param fieldName field name
+     * @return field index or -1 if the field is not aggregated
+     */
+    public int getFieldIndex(String fieldName) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).getName().equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of values of a field in the window.
+     * @param index field index
+     * @return the number of values
+     */
+    public long getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns the minimum value of a field in the window.
+     * @param index field index
+     * @return the minimum value, NaN if there are no values
+     */
+    public double getMin(int index) {
+        return counts[index] > 0 ? min[index] : Double.NaN;
+    }
+
+    /**
+     * Returns the maximum value of a field in the window.
+     * @param index field index
+     * @return the maximum value, NaN if there are no values
+     */
+    public double getMax(int index) {
+        return counts[index] > 0 ? max[index] : Double.NaN;
+    }
+
+    /**
+     * Returns the sum of values of a field in the window.
+     * @param index field index
+     * @return the sum of values
+     */
+    public double getSum(int index) {
+        return sum[index];
+    }
+
+    /**
+     * Returns the mean value of a field in the window.
+     * @param index field index
+     * @return the mean value, NaN if there are no values
+     */
+    public double getMean(int index) {
+        return counts[index] > 0 ? sum[index] / counts[index] : Double.NaN;
+    }
+
+    /**
+     * Returns the last value of a field in the window (e.g. for downsampling).
+     * @param index field index
+     * @return the last value, NaN if there are no values
+     */
+    public double getLast(int index) {
+        return counts[index] > 0 ? last[index] : Double.NaN;
+    }
+
+}
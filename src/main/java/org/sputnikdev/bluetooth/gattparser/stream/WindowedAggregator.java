@@ -0,0 +1,298 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicDecoder;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A streaming aggregation stage which maintains min/max/sum/count/last accumulators of numeric fields
+ * per device, characteristic and field over time windows, and emits aggregate snapshots
+ * (see {@link WindowAggregate}) to a listener once windows are closed.
+ * <br>Windows are aligned to multiples of the slide. Tumbling windows are created when the window size equals
+ * the slide, sliding windows are created when the window size is a multiple of the slide (e.g. a 5 minutes window
+ * every minute). A tumbling window combined with {@link WindowAggregate#getMean(int)} or
+ * {@link WindowAggregate#getLast(int)} can be used for downsampling.
+ * <br>Accumulators are kept in primitive arrays per slide (pane) and merged when a window is emitted,
+ * so that adding a reading does not allocate anything apart from decoding. Values are scaled, i.e. multipliers,
+ * exponents and offsets are applied.
+ * <br>Timestamps of a device are expected to be non-decreasing, readings older than the current slide of the device
+ * are dropped (see {@link #getDropped()}). Windows are closed when a newer reading of the same device
+ * and characteristic arrives, or by {@link #advance(long)} and {@link #flush()}.
+ * <br>Not threadsafe. Windows of a device are advanced by its own readings, so all readings of a device must be added
+ * to the same aggregator. Devices can be partitioned between several aggregators, e.g. an aggregator per lane of
+ * {@link GattDecodingScheduler}, aggregate snapshots are independent per device.
+ */
+public class WindowedAggregator {
+
+    private final BluetoothGattParser parser;
+    private final long slide;
+    private final int panes;
+    private final Consumer<WindowAggregate> listener;
+    private final CharacteristicStates<CharacteristicWindows> characteristics;
+    private long dropped;
+
+    /**
+     * Creates a new aggregator of tumbling windows.
+     * @param parser GATT parser
+     * @param windowSize window size (in units of timestamps, e.g. milliseconds)
+     * @param listener a listener of aggregate snapshots
+     */
+    public WindowedAggregator(BluetoothGattParser parser, long windowSize, Consumer<WindowAggregate> listener) {
+        this(parser, windowSize, windowSize, listener);
+    }
+
+    /**
+     * Creates a new aggregator of sliding windows.
+     * @param parser GATT parser
+     * @param windowSize window size (in units of timestamps, e.g. milliseconds)
+     * @param slide window slide, the window size must be a multiple of the slide
+     * @param listener a listener of aggregate snapshots
+     */
+    public WindowedAggregator(BluetoothGattParser parser, long windowSize, long slide,
+                              Consumer<WindowAggregate> listener) {
+        if (slide <= 0 || windowSize % slide != 0 || windowSize / slide > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window size must be a multiple of slide: " + windowSize + "/" + slide);
+        }
+        this.parser = parser;
+        this.slide = slide;
+        this.panes = (int) (windowSize / slide);
+        this.listener = listener;
+        characteristics = new CharacteristicStates<>(parser, decoder -> new CharacteristicWindows(decoder, null));
+    }
+
+    /**
+     * Restricts aggregation of a characteristic to a given set of numeric fields. By default all numeric fields
+     * (apart from flags) are aggregated. Accumulated values of the characteristic are discarded.
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @param fieldNames names of fields to aggregate
+     * @return this aggregator
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     * @throws IllegalArgumentException if the characteristic does not have a numeric field with a given name
+     */
+    public WindowedAggregator aggregate(String characteristicUUID, String... fieldNames) {
+        CharacteristicDecoder decoder = parser.getDecoder(characteristicUUID);
+        int[] indexes = CharacteristicStates.getIndexes(decoder, fieldNames, WindowedAggregator::isNumeric,
+                "numeric field");
+        characteristics.put(decoder, new CharacteristicWindows(decoder, indexes));
+        return this;
+    }
+
+    /**
+     * Decodes a notification and adds its numeric fields to windows of the device.
+     * Windows which end at or before the slide of the timestamp are emitted.
+     * @param notification a raw GATT notification
+     * @param timestamp time of the notification
+     * @throws CharacteristicFormatException if the notification cannot be decoded
+     */
+    public void add(GattNotification notification, long timestamp) {
+        CharacteristicWindows windows = characteristics.get(notification.getCharacteristicUUID());
+        windows.add(notification.getDevice(), notification.getValue(), Math.floorDiv(timestamp, slide));
+    }
+
+    /**
+     * Emits all windows of all devices which end at or before the slide of a given timestamp,
+     * e.g. to close windows of devices which stopped sending notifications.
+     * @param timestamp current time
+     */
+    public void advance(long timestamp) {
+        long pane = Math.floorDiv(timestamp, slide);
+        for (CharacteristicWindows windows : characteristics.values()) {
+            for (DeviceWindows device : windows.devices.values()) {
+                if (pane > device.current) {
+                    windows.advance(device, pane);
+                }
+            }
+        }
+    }
+
+    /**
+     * Emits all windows containing accumulated values and discards accumulated values.
+     */
+    public void flush() {
+        for (CharacteristicWindows windows : characteristics.values()) {
+            for (DeviceWindows device : windows.devices.values()) {
+                windows.advance(device, device.current + panes);
+            }
+            windows.devices.clear();
+        }
+    }
+
+    /**
+     * Returns the number of readings dropped because they were older than the current slide of their device.
+     * @return the number of dropped readings
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private static boolean isNumeric(Field field) {
+        FieldFormat format = field.getFormat();
+        return format != null && format.isNumber() && !FlagUtils.isFlagsField(field);
+    }
+
+    private final class DeviceWindows {
+        private final String device;
+        private long current = Long.MIN_VALUE;
+        private final long[] paneIds = new long[panes];
+        private final long[] counts;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+        private final double[] last;
+
+        private DeviceWindows(String device, int fields) {
+            this.device = device;
+            Arrays.fill(paneIds, Long.MIN_VALUE);
+            counts = new long[panes * fields];
+            min = new double[panes * fields];
+            max = new double[panes * fields];
+            sum = new double[panes * fields];
+            last = new double[panes * fields];
+        }
+    }
+
+    private final class CharacteristicWindows {
+
+        private final CharacteristicDecoder decoder;
+        private final int[] indexes;
+        private final List<Field> fields;
+        private final double[] multipliers;
+        private final double[] offsets;
+        private final Map<String, DeviceWindows> devices = new LinkedHashMap<>();
+
+        private CharacteristicWindows(CharacteristicDecoder decoder, int[] indexes) {
+            this.decoder = decoder;
+            List<Field> all = decoder.getFields();
+            if (indexes == null) {
+                indexes = IntStream.range(0, all.size()).filter(i -> isNumeric(all.get(i))).toArray();
+            }
+            this.indexes = indexes;
+            List<Field> fields = new ArrayList<>();
+            multipliers = new double[indexes.length];
+            offsets = new double[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                Field field = all.get(indexes[i]);
+                fields.add(field);
+                multipliers[i] = FieldHolder.getMultiplier(field);
+                offsets[i] = FieldHolder.getOffset(field);
+            }
+            this.fields = Collections.unmodifiableList(fields);
+        }
+
+        private void add(String device, byte[] raw, long pane) {
+            DeviceWindows windows = devices.get(device);
+            if (windows != null && pane < windows.current) {
+                dropped++;
+                return;
+            }
+            Object[] values = decoder.decode(raw);
+            if (windows == null) {
+                windows = new DeviceWindows(device, indexes.length);
+                devices.put(device, windows);
+                windows.current = pane;
+            } else if (pane > windows.current) {
+                advance(windows, pane);
+            }
+            int slot = (int) Math.floorMod(pane, (long) panes);
+            int base = slot * indexes.length;
+            if (windows.paneIds[slot] != pane) {
+                windows.paneIds[slot] = pane;
+                Arrays.fill(windows.counts, base, base + indexes.length, 0);
+                Arrays.fill(windows.sum, base, base + indexes.length, 0);
+            }
+            for (int i = 0; i < indexes.length; i++) {
+                Object value = values[indexes[i]];
+                if (!(value instanceof Number)) {
+                    continue;
+                }
+                double scaled = ((Number) value).doubleValue() * multipliers[i] + offsets[i];
+                int cell = base + i;
+                if (windows.counts[cell]++ == 0) {
+                    windows.min[cell] = scaled;
+                    windows.max[cell] = scaled;
+                } else {
+                    windows.min[cell] = Math.min(windows.min[cell], scaled);
+                    windows.max[cell] = Math.max(windows.max[cell], scaled);
+                }
+                windows.sum[cell] += scaled;
+                windows.last[cell] = scaled;
+            }
+        }
+
+        private void advance(DeviceWindows windows, long pane) {
+            // windows ending after the last pane with data are empty
+            long end = Math.min(pane, windows.current + panes);
+            for (long closing = windows.current; closing < end; closing++) {
+                emit(windows, closing);
+            }
+            windows.current = pane;
+        }
+
+        private void emit(DeviceWindows windows, long lastPane) {
+            int size = indexes.length;
+            long[] counts = new long[size];
+            double[] min = new double[size];
+            double[] max = new double[size];
+            double[] sum = new double[size];
+            double[] last = new double[size];
+            boolean empty = true;
+            for (long pane = lastPane - panes + 1; pane <= lastPane; pane++) {
+                int slot = (int) Math.floorMod(pane, (long) panes);
+                if (windows.paneIds[slot] != pane) {
+                    continue;
+                }
+                int base = slot * size;
+                for (int i = 0; i < size; i++) {
+                    long count = windows.counts[base + i];
+                    if (count == 0) {
+                        continue;
+                    }
+                    empty = false;
+                    min[i] = counts[i] == 0 ? windows.min[base + i] : Math.min(min[i], windows.min[base + i]);
+                    max[i] = counts[i] == 0 ? windows.max[base + i] : Math.max(max[i], windows.max[base + i]);
+                    counts[i] += count;
+                    sum[i] += windows.sum[base + i];
+                    last[i] = windows.last[base + i];
+                }
+            }
+            if (!empty) {
+                listener.accept(new WindowAggregate(windows.device, decoder.getCharacteristicUUID(),
+                        (lastPane - panes + 1) * slide, (lastPane + 1) * slide, fields, counts, min, max, sum, last));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,424 @@
+package org.sputnikdev.bluetooth.gattparser.wire;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException.Reason;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes parsed characteristic values (see {@link GattResponse}) into a compact binary format and decodes them back
+ * into {@link WireMessage} views. Messages are self-describing given the same GATT specification on both sides,
+ * a message layout is as follows (all numbers are little-endian):
+ * <pre>
+ * version      : 1 byte, currently 1
+ * UUID         : unsigned varint, numeric value of the (short) characteristic UUID
+ * spec hash    : 4 bytes, hash of names, formats and scaling of the characteristic fields (see {@link #getSpecHash()})
+ * presence     : (number of fields + 7) / 8 bytes, a bit per field (see {@link BluetoothGattParser#getFields(String)})
+ * values       : values of present fields in field order
+ * </pre>
+ * Values are raw (multipliers, exponents and offsets are not applied) and packed according to their field formats:
+ * booleans take one byte, integers take the least number of bytes to hold their format size (e.g. uint12 takes
+ * 2 bytes, sint24 takes 3 bytes), IEEE-754 and IEEE-11073 floats are written as IEEE-754 floats (float64 as double),
+ * strings (UTF-8) and structs are prefixed with their length as an unsigned varint.
+ * <br>A codec is bound to the current specification of the characteristic, messages of a different specification
+ * are rejected by {@link #decode(ByteBuffer)}. Use {@link #getCharacteristicUUID(ByteBuffer)} to find a codec
+ * for a message.
+ * <br>Threadsafe.
+ */
+public final class WireCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int HASH_SIZE = 4;
+
+    private final String characteristicUUID;
+    private final long characteristicId;
+    private final List<Field> fields;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final byte[] kinds;
+    private final byte[] widths;
+    private final boolean[] signed;
+    private final int specHash;
+
+    /**
+     * Creates a new codec for a given characteristic.
+     * @param parser GATT parser
+     * @param characteristicUUID UUID of a GATT characteristic
+     * @throws CharacteristicFormatException if the characteristic is not valid for read
+     */
+    public WireCodec(BluetoothGattParser parser, String characteristicUUID) {
+        if (!parser.isValidForRead(characteristicUUID)) {
+            throw new CharacteristicFormatException(Reason.NOT_VALID_FOR_READ,
+                    "Characteristic is not valid for read: " + characteristicUUID);
+        }
+        fields = parser.getFields(characteristicUUID);
+        characteristicId = getCharacteristicId(parser.getCharacteristic(characteristicUUID).getUuid().trim());
+        this.characteristicUUID = Long.toHexString(characteristicId).toUpperCase();
+        kinds = new byte[fields.size()];
+        widths = new byte[fields.size()];
+        signed = new boolean[fields.size()];
+        StringBuilder descriptor = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            indexes.putIfAbsent(field.getName(), i);
+            FieldFormat format = field.getFormat();
+            kinds[i] = getKind(format);
+            signed[i] = format != null && format.getType() == FieldType.SINT;
+            widths[i] = (byte) (format != null && format.getSize() > 0 ? (format.getSize() + 7) / 8 : 0);
+            descriptor.append(field.getName()).append('|').append(format != null ? format.getName() : null)
+                    .append('|').append(field.getDecimalExponent()).append('|').append(field.getBinaryExponent())
+                    .append('|').append(field.getMultiplier()).append('|').append(field.getOffset()).append(';');
+        }
+        specHash = descriptor.toString().hashCode();
+    }
+
+    /**
+     * Returns UUID of the characteristic (in its short form, e.g. "2A37").
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return characteristicUUID;
+    }
+
+    /**
+     * Reads UUID of the characteristic of a message starting at the current position of a given buffer.
+     * The buffer position is not changed.
+     * @param in a buffer to read from
+     * @return characteristic UUID (in its short form, e.g. "2A37")
+     * @throws CharacteristicFormatException if the message is malformed
+     */
+    public static String getCharacteristicUUID(ByteBuffer in) {
+        ByteBuffer buffer = in.duplicate();
+        try {
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new CharacteristicFormatException(Reason.UNSUPPORTED_FORMAT,
+                        "Unsupported message version: " + version);
+            }
+            return Long.toHexString(getVarint(buffer)).toUpperCase();
+        } catch (RuntimeException e) {
+            if (e instanceof CharacteristicFormatException) {
+                throw e;
+            }
+            throw new CharacteristicFormatException(Reason.MALFORMED_MESSAGE, "Malformed message");
+        }
+    }
+
+    /**
+     * Returns field specifications in the order of encoded values.
+     * @return field specifications
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the hash of the characteristic specification. It is computed from names, formats, exponents,
+     * multipliers and offsets of the characteristic fields.
+     * @return specification hash
+     */
+    public int getSpecHash() {
+        return specHash;
+    }
+
+    /**
+     * Encodes a parsed characteristic value.
+     * @param response parsed characteristic value
+     * @return encoded message
+     * @throws CharacteristicFormatException if a field value does not match its field format
+     */
+    public byte[] encode(GattResponse response) {
+        int capacity = 16 + 8 * fields.size();
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                encode(response, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    /**
+     * Encodes a parsed characteristic value into a given buffer starting at its current position.
+     * The position is advanced by the number of written bytes, the buffer byte order is not changed.
+     * @param response parsed characteristic value
+     * @param out a buffer to write to
+     * @return the number of written bytes
+     * @throws BufferOverflowException if there is not enough space in the buffer
+     * @throws CharacteristicFormatException if a field value does not match its field format
+     */
+    public int encode(GattResponse response, ByteBuffer out) {
+        ByteOrder order = out.order();
+        int start = out.position();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            out.put((byte) VERSION);
+            putVarint(out, characteristicId);
+            out.putInt(specHash);
+            int presence = out.position();
+            int presenceSize = (fields.size() + 7) / 8;
+            for (int i = 0; i < presenceSize; i++) {
+                out.put((byte) 0);
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                FieldHolder holder = response.get(fields.get(i).getName());
+                if (holder == null || !holder.isValueSet() || kinds[i] == WireMessage.NONE) {
+                    continue;
+                }
+                putValue(out, i, holder.getRawValue());
+                out.put(presence + (i >>> 3), (byte) (out.get(presence + (i >>> 3)) | 1 << (i & 7)));
+            }
+        } finally {
+            out.order(order);
+        }
+        return out.position() - start;
+    }
+
+    /**
+     * Decodes a message starting at the current position of a given buffer. The buffer content is not copied,
+     * values are read from the buffer on access, therefore the buffer content must not be changed while
+     * the message is in use. The buffer position is advanced to the end of the message.
+     * @param in a buffer to read from
+     * @return decoded message
+     * @throws CharacteristicFormatException if the message is malformed or it does not match
+     *     the characteristic specification
+     */
+    public WireMessage decode(ByteBuffer in) {
+        ByteBuffer buffer = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new CharacteristicFormatException(Reason.UNSUPPORTED_FORMAT,
+                        "Unsupported message version: " + version);
+            }
+            long id = getVarint(buffer);
+            if (id != characteristicId) {
+                throw new CharacteristicFormatException(Reason.MALFORMED_MESSAGE,
+                        "Message of a different characteristic: "
+                        + Long.toHexString(id).toUpperCase() + ", expected: " + characteristicUUID);
+            }
+            int hash = buffer.getInt();
+            if (hash != specHash) {
+                throw new CharacteristicFormatException(Reason.MALFORMED_MESSAGE,
+                        "Message of a different specification of characteristic: "
+                        + characteristicUUID);
+            }
+            int presence = buffer.position();
+            buffer.position(presence + (fields.size() + 7) / 8);
+            int[] offsets = new int[fields.size()];
+            int[] lengths = new int[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                if ((buffer.get(presence + (i >>> 3)) & 1 << (i & 7)) == 0) {
+                    offsets[i] = -1;
+                    continue;
+                }
+                int length = getLength(kinds[i], widths[i], buffer);
+                offsets[i] = buffer.position();
+                lengths[i] = length;
+                buffer.position(buffer.position() + length);
+            }
+            in.position(buffer.position());
+            return new WireMessage(this, buffer, offsets, lengths);
+        } catch (RuntimeException e) {
+            if (e instanceof CharacteristicFormatException) {
+                throw e;
+            }
+            throw new CharacteristicFormatException(Reason.MALFORMED_MESSAGE,
+                    "Malformed message of characteristic: " + characteristicUUID);
+        }
+    }
+
+    int getFieldIndex(String fieldName) {
+        return indexes.getOrDefault(fieldName, -1);
+    }
+
+    byte getKind(int index) {
+        return kinds[index];
+    }
+
+    private static byte getKind(FieldFormat format) {
+        if (format == null) {
+            return WireMessage.NONE;
+        }
+        int size = format.getSize();
+        switch (format.getType()) {
+            case BOOLEAN:
+                return WireMessage.BOOLEAN;
+            case UINT:
+                return size < Integer.SIZE ? WireMessage.INT
+                        : size < Long.SIZE ? WireMessage.LONG : WireMessage.BIG_INTEGER;
+            case SINT:
+                return size <= Integer.SIZE ? WireMessage.INT
+                        : size <= Long.SIZE ? WireMessage.LONG : WireMessage.BIG_INTEGER;
+            case FLOAT_IEE754:
+                return size == Double.SIZE ? WireMessage.DOUBLE : WireMessage.FLOAT;
+            case FLOAT_IEE11073:
+                return WireMessage.FLOAT;
+            case UTF8S:
+            case UTF16S:
+                return WireMessage.STRING;
+            default:
+                return WireMessage.BYTES;
+        }
+    }
+
+    boolean isSigned(int index) {
+        return signed[index];
+    }
+
+    private void putValue(ByteBuffer out, int index, Object value) {
+        switch (kinds[index]) {
+            case WireMessage.BOOLEAN:
+                out.put((byte) (toBoolean(index, value) ? 1 : 0));
+                break;
+            case WireMessage.INT:
+            case WireMessage.LONG:
+                long number = toNumber(index, value).longValue();
+                for (int i = 0; i < widths[index]; i++) {
+                    out.put((byte) (number >>> i * 8));
+                }
+                break;
+            case WireMessage.BIG_INTEGER:
+                Number big = toNumber(index, value);
+                byte[] bytes = (big instanceof BigInteger ? (BigInteger) big : BigInteger.valueOf(big.longValue()))
+                        .toByteArray();
+                byte sign = (byte) (bytes[0] < 0 ? 0xFF : 0);
+                for (int i = 0; i < widths[index]; i++) {
+                    out.put(i < bytes.length ? bytes[bytes.length - 1 - i] : sign);
+                }
+                break;
+            case WireMessage.FLOAT:
+                out.putFloat(toNumber(index, value).floatValue());
+                break;
+            case WireMessage.DOUBLE:
+                out.putDouble(toNumber(index, value).doubleValue());
+                break;
+            case WireMessage.STRING:
+                putBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+                break;
+            case WireMessage.BYTES:
+                if (!(value instanceof byte[])) {
+                    throw unexpected(index, value);
+                }
+                putBytes(out, (byte[]) value);
+                break;
+            default:
+                throw new IllegalStateException("Unknown kind: " + kinds[index]);
+        }
+    }
+
+    private boolean toBoolean(int index, Object value) {
+        if (!(value instanceof Boolean)) {
+            throw unexpected(index, value);
+        }
+        return (Boolean) value;
+    }
+
+    private Number toNumber(int index, Object value) {
+        if (!(value instanceof Number)) {
+            throw unexpected(index, value);
+        }
+        return (Number) value;
+    }
+
+    private CharacteristicFormatException unexpected(int index, Object value) {
+        return new CharacteristicFormatException(Reason.INVALID_VALUE,
+                "Unexpected value of field \"" + fields.get(index).getName()
+                + "\": " + value.getClass().getName());
+    }
+
+    private static long getCharacteristicId(String uuid) {
+        try {
+            return Long.parseLong(uuid.length() < 8 ? uuid : uuid.substring(0, 8), 16);
+        } catch (NumberFormatException e) {
+            throw new CharacteristicFormatException(Reason.UNSUPPORTED_FORMAT,
+                    "Characteristic UUID is not supported: " + uuid);
+        }
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        putVarint(out, bytes.length);
+        out.put(bytes);
+    }
+
+    private static int getLength(byte kind, int width, ByteBuffer in) {
+        switch (kind) {
+            case WireMessage.BOOLEAN:
+                return 1;
+            case WireMessage.INT:
+            case WireMessage.LONG:
+            case WireMessage.BIG_INTEGER:
+                return width;
+            case WireMessage.FLOAT:
+                return Float.BYTES;
+            case WireMessage.DOUBLE:
+                return Double.BYTES;
+            case WireMessage.STRING:
+            case WireMessage.BYTES:
+                long length = getVarint(in);
+                if (length > in.remaining()) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return (int) length;
+            default:
+                throw new IllegalStateException("Unknown kind: " + kind);
+        }
+    }
+
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte current = in.get();
+            value |= (long) (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+        }
+        throw new CharacteristicFormatException(Reason.MALFORMED_MESSAGE, "Malformed varint");
+    }
+
+}
@@ -0,0 +1,254 @@
+package org.sputnikdev.bluetooth.gattparser.wire;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A message decoded by {@link WireCodec#decode(ByteBuffer)}. It is a view over the buffer the message was decoded
+ * from, values are read from the buffer on access. Fields are accessed by their indexes in the field list
+ * (see {@link #getFields()}) or by their names. Values are raw, i.e. the same as raw values of field holders
+ * (see {@link org.sputnikdev.bluetooth.gattparser.FieldHolder#getRawValue()}).
+ * <br>Accessing an absent field or a field with an incompatible type results in {@link IllegalStateException}.
+ */
+public final class WireMessage {
+
+    static final byte NONE = 0;
+    static final byte BOOLEAN = 1;
+    static final byte INT = 2;
+    static final byte LONG = 3;
+    static final byte BIG_INTEGER = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte STRING = 7;
+    static final byte BYTES = 8;
+
+    private final WireCodec codec;
+    private final ByteBuffer buffer;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    WireMessage(WireCodec codec, ByteBuffer buffer, int[] offsets, int[] lengths) {
+        this.codec = codec;
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Returns UUID of the characteristic.
+     * @return characteristic UUID
+     */
+    public String getCharacteristicUUID() {
+        return codec.getCharacteristicUUID();
+    }
+
+    /**
+     * Returns field specifications in the order of values.
+     * @return field specifications
+     */
+    public List<Field> getFields() {
+        return codec.getFields();
+    }
+
+    /**
+     * Returns index of a field by its name.
+     * @param fieldName field name
+     * @return field index or -1 if there is no such field
+     */
+    public int getFieldIndex(String fieldName) {
+        return codec.getFieldIndex(fieldName);
+    }
+
+    /**
+     * Checks whether a field is present in the message.
+     * @param index field index
+     * @return true if the field is present, false otherwise
+     */
+    public boolean isPresent(int index) {
+        return offsets[index] >= 0;
+    }
+
+    /**
+     * Checks whether a field is present in the message.
+     * @param fieldName field name
+     * @return true if the field is present, false otherwise
+     */
+    public boolean isPresent(String fieldName) {
+        int index = getFieldIndex(fieldName);
+        return index >= 0 && isPresent(index);
+    }
+
+    /**
+     * Returns value of a boolean field.
+     * @param index field index
+     * @return field value
+     */
+    public boolean getBoolean(int index) {
+        return buffer.get(getOffset(index, BOOLEAN)) != 0;
+    }
+
+    /**
+     * Returns value of an integer field which raw value is an Integer.
+     * @param index field index
+     * @return field value
+     */
+    public int getInt(int index) {
+        return (int) readLong(index, getOffset(index, INT));
+    }
+
+    /**
+     * Returns value of an integer field which raw value is an Integer or a Long.
+     * @param index field index
+     * @return field value
+     */
+    public long getLong(int index) {
+        return readLong(index, getOffset(index, INT, LONG));
+    }
+
+    /**
+     * Returns value of an integer field of any size.
+     * @param index field index
+     * @return field value
+     */
+    public BigInteger getBigInteger(int index) {
+        if (codec.getKind(index) != BIG_INTEGER) {
+            return BigInteger.valueOf(getLong(index));
+        }
+        int offset = getOffset(index, BIG_INTEGER);
+        byte[] bytes = new byte[lengths[index]];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[bytes.length - 1 - i] = buffer.get(offset + i);
+        }
+        return codec.isSigned(index) ? new BigInteger(bytes) : new BigInteger(1, bytes);
+    }
+
+    /**
+     * Returns value of a floating point field.
+     * @param index field index
+     * @return field value
+     */
+    public double getDouble(int index) {
+        if (codec.getKind(index) == FLOAT) {
+            return buffer.getFloat(getOffset(index, FLOAT));
+        }
+        return buffer.getDouble(getOffset(index, DOUBLE));
+    }
+
+    /**
+     * Returns value of a string field.
+     * @param index field index
+     * @return field value
+     */
+    public String getString(int index) {
+        int offset = getOffset(index, STRING);
+        byte[] bytes = new byte[lengths[index]];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns value of a struct field as a read-only slice of the message buffer (no data is copied).
+     * @param index field index
+     * @return field value
+     */
+    public ByteBuffer getBytes(int index) {
+        int offset = getOffset(index, BYTES);
+        ByteBuffer slice = buffer.asReadOnlyBuffer();
+        slice.limit(offset + lengths[index]).position(offset);
+        return slice.slice();
+    }
+
+    /**
+     * Returns a field value of the same type as the field holder raw value
+     * (see {@link org.sputnikdev.bluetooth.gattparser.FieldHolder#getRawValue()}).
+     * @param index field index
+     * @return field value or null if the field is absent
+     */
+    public Object getObject(int index) {
+        if (!isPresent(index)) {
+            return null;
+        }
+        switch (codec.getKind(index)) {
+            case BOOLEAN: return getBoolean(index);
+            case INT: return getInt(index);
+            case LONG: return getLong(index);
+            case BIG_INTEGER: return getBigInteger(index);
+            case FLOAT: return (float) getDouble(index);
+            case DOUBLE: return getDouble(index);
+            case STRING: return getString(index);
+            case BYTES:
+                ByteBuffer slice = getBytes(index);
+                byte[] bytes = new byte[slice.remaining()];
+                slice.get(bytes);
+                return bytes;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a field value of the same type as the field holder raw value.
+     * @param fieldName field name
+     * @return field value or null if the field is absent or there is no such field
+     */
+    public Object getObject(String fieldName) {
+        int index = getFieldIndex(fieldName);
+        return index >= 0 ? getObject(index) : null;
+    }
+
+    private long readLong(int index, int offset) {
+        int length = lengths[index];
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (long) (buffer.get(offset + i) & 0xFF) << i * 8;
+        }
+        if (codec.isSigned(index) && length < Long.BYTES) {
+            int shift = Long.SIZE - length * 8;
+            value = value << shift >> shift;
+        }
+        return value;
+    }
+
+    private int getOffset(int index, byte kind) {
+        return getOffset(index, kind, kind);
+    }
+
+    private int getOffset(int index, byte kind, byte other) {
+        byte actual = codec.getKind(index);
+        if (actual != kind && actual != other) {
+            throw new IllegalStateException("Field \"" + codec.getFields().get(index).getName()
+                    + "\" is not of a requested type");
+        }
+        if (offsets[index] < 0) {
+            throw new IllegalStateException("Field \"" + codec.getFields().get(index).getName() + "\" is absent");
+        }
+        return offsets[index];
+    }
+
+}
@@ -0,0 +1,555 @@
+/**
+ * Generates typed decoders (see org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser) for bundled
+ * GATT characteristics. For each characteristic that can be resolved statically (no references to other
+ * characteristics, all field formats are known, valid for read) two classes are generated:
+ * a value class with a typed property per field and a decoder with straight-line field reads
+ * which replicates the logic of GenericCharacteristicParser.
+ */
+class GattDecoderGenerator {
+
+    static final String PACKAGE = 'org.sputnikdev.bluetooth.gattparser.decoder'
+    static final String MANDATORY = 'Mandatory'
+    static final String OPTIONAL = 'Optional'
+    static final int FULL_SIZE = -1
+
+    static final Set<String> RESERVED = ['abstract', 'assert', 'boolean', 'break', 'byte', 'case', 'catch', 'char',
+            'class', 'const', 'continue', 'default', 'do', 'double', 'else', 'enum', 'extends', 'final', 'finally',
+            'float', 'for', 'goto', 'if', 'implements', 'import', 'instanceof', 'int', 'interface', 'long', 'native',
+            'new', 'package', 'private', 'protected', 'public', 'return', 'short', 'static', 'strictfp', 'super',
+            'switch', 'synchronized', 'this', 'throw', 'throws', 'transient', 'try', 'void', 'volatile', 'while',
+            'true', 'false', 'null', 'raw', 'offset', 'more', 'flags', 'value', 'result', 'fields'] as Set
+
+    static generate(project) {
+        String output = "$project.build.directory/generated-sources/gatt-decoders"
+        generate("$project.basedir/src/main/resources/gatt/characteristic", output)
+        project.addCompileSourceRoot(output)
+    }
+
+    static generate(String inputFolderName, String outputFolderName) {
+        File packageFolder = new File(outputFolderName, PACKAGE.replace('.', '/'))
+        packageFolder.deleteDir()
+        packageFolder.mkdirs()
+
+        XmlParser parser = new XmlParser(false, false)
+        parser.setFeature('http://apache.org/xml/features/disallow-doctype-decl', true)
+        parser.trimWhitespace = false
+
+        Map<String, String> decoders = new TreeMap<>()
+        Set<String> classNames = new HashSet<>()
+        new File(inputFolderName).listFiles().findAll { it.name.endsWith('.xml') }.sort { it.name }.each { file ->
+            Map spec = readSpec(parser.parse(file))
+            if (spec == null) {
+                return
+            }
+            if (!classNames.add(spec.className)) {
+                throw new IllegalStateException("GATT decoder generation failed. Duplicate class name: "
+                        + spec.className + " ($file.name)")
+            }
+            new File(packageFolder, "${spec.className}.java").write(generateValue(spec, file.name), 'UTF-8')
+            new File(packageFolder, "${spec.className}Decoder.java").write(generateDecoder(spec), 'UTF-8')
+            decoders.put(spec.uuid, spec.className)
+        }
+        new File(packageFolder, 'GattDecoders.java').write(generateRegistry(decoders), 'UTF-8')
+    }
+
+    static Map readSpec(Node xml) {
+        String type = xml.attributes()['type']
+        String uuid = xml.attributes()['uuid']
+        Node value = xml.Value ? xml.Value[0] : null
+        if (type == null || uuid == null || value == null || !value.Field) {
+            return null
+        }
+        List<Map> fields = value.Field.collect { Node node -> readField(node) }
+        if (fields.any { it.name == null || it.reference || it.format == null }) {
+            return null
+        }
+        if (!isValidForRead(fields)) {
+            return null
+        }
+        Map spec = [type: type.trim(), uuid: uuid.trim().toUpperCase(), name: xml.attributes()['name'],
+                className: toClassName(type.trim()), fields: fields]
+        return resolve(spec) ? spec : null
+    }
+
+    static Map readField(Node node) {
+        Map field = [:]
+        field.name = node.attributes()['name']?.trim()
+        field.requirements = node.Requirement.collect { it.text() }
+        field.reference = node.Reference ? node.Reference[0].text() : null
+        field.format = node.Format ? resolveFormat(node.Format[0].text()) : null
+        field.bitField = node.BitField ? true : false
+        field.bits = node.BitField ? node.BitField[0].Bit.collect { Node bit ->
+            Map<BigInteger, String> flags = new LinkedHashMap<>()
+            if (bit.Enumerations) {
+                bit.Enumerations[0].Enumeration.each { Node enumeration ->
+                    BigInteger key = new BigInteger(enumeration.attributes()['key'])
+                    if (!flags.containsKey(key)) {
+                        flags.put(key, enumeration.attributes()['requires'])
+                    }
+                }
+            }
+            [size: Integer.parseInt(bit.attributes()['size']), flags: flags]
+        } : []
+        field.flags = 'flags'.equalsIgnoreCase(field.name) && field.bitField
+        return field
+    }
+
+    // replicates TypedCharacteristicParser.getSignature
+    static String signature(Map field) {
+        StringBuilder result = new StringBuilder(field.name)
+        result << '|' << field.format.type << field.format.size
+        result << '|' << field.requirements.join(',')
+        field.bits.each { Map bit ->
+            result << '|' << bit.size << ':' << bit.flags.collect { key, requires -> "$key=$requires" }.join(',')
+        }
+        return result.toString()
+    }
+
+    // replicates FieldFormat.valueOf
+    static Map resolveFormat(String format) {
+        String name = format.toLowerCase()
+        switch (name) {
+            case 'boolean': return [type: 'BOOLEAN', size: 1]
+            case 'nibble': return [type: 'UINT', size: 4]
+            case 'float32': return [type: 'FLOAT_IEE754', size: 32]
+            case 'float64': return [type: 'FLOAT_IEE754', size: 64]
+            case 'sfloat': return [type: 'FLOAT_IEE11073', size: 16]
+            case 'float': return [type: 'FLOAT_IEE11073', size: 32]
+            case 'utf8s': return [type: 'UTF8S', size: FULL_SIZE]
+            case 'utf16s': return [type: 'UTF16S', size: FULL_SIZE]
+            case 'struct':
+            case 'reg-cert-data-list': return [type: 'STRUCT', size: FULL_SIZE]
+        }
+        String fieldType = name.startsWith('uint') || name.endsWith('bit') ? 'UINT'
+                : name.startsWith('sint') ? 'SINT' : null
+        if (fieldType == null) {
+            return null
+        }
+        try {
+            int size = Integer.parseInt(name.replace('uint', '').replace('sint', '').replace('bit', ''))
+            return size > 0 ? [type: fieldType, size: size] : null
+        } catch (NumberFormatException ignore) {
+            return null
+        }
+    }
+
+    // replicates BluetoothGattSpecificationReader.validate
+    static boolean isValidForRead(List<Map> fields) {
+        Map flagsField = fields.findAll { it.flags }.with { it ? it.last() : null }
+        Set<String> readFlags = new HashSet<>()
+        flagsField?.bits?.each { bit -> bit.flags.values().each { if (it != null) readFlags.add(it) } }
+        Set<String> requirements = new HashSet<>()
+        fields.eachWithIndex { Map field, int index ->
+            if (field.bitField || field.requirements.isEmpty() || field.requirements.contains(MANDATORY)) {
+                return
+            }
+            if (field.requirements.size() == 1 && field.requirements.contains(OPTIONAL)
+                    && index == fields.size() - 1) {
+                return
+            }
+            requirements.addAll(field.requirements)
+        }
+        return readFlags.containsAll(requirements)
+    }
+
+    /**
+     * Resolves Java types, names and presence conditions of fields.
+     * Returns false if the characteristic cannot be decoded by a generated decoder.
+     */
+    static boolean resolve(Map spec) {
+        List<Map> fields = spec.fields
+        // flags are read from the first flags field (see FlagUtils.getReadFlags)
+        int flagsIndex = fields.findIndexOf { it.flags }
+        spec.flagsOffset = 0
+        spec.flagsSize = 0
+        spec.bits = []
+        if (flagsIndex >= 0) {
+            for (int i = 0; i < flagsIndex; i++) {
+                if (fields[i].format.size == FULL_SIZE) {
+                    return false
+                }
+                spec.flagsOffset += fields[i].format.size
+            }
+            Map flagsField = fields[flagsIndex]
+            spec.flagsSize = flagsField.format.size
+            if (spec.flagsSize == FULL_SIZE || spec.flagsSize > 64) {
+                return false
+            }
+            int bitOffset = 0
+            for (Map bit : flagsField.bits) {
+                if (bit.size > 32) {
+                    return false
+                }
+                spec.bits << [offset: bitOffset, size: bit.size, flags: bit.flags]
+                bitOffset += bit.size
+            }
+        }
+
+        spec.requirements = [:]
+        Set<String> names = new HashSet<>()
+        spec.values = []
+        boolean terminated = false
+        boolean conditionalEnd = false
+        fields.eachWithIndex { Map field, int index ->
+            if (terminated) {
+                field.skipped = true
+                return
+            }
+            List<String> conditions = []
+            boolean never = false
+            for (String requirement : field.requirements.unique()) {
+                if (requirement == MANDATORY) {
+                    continue
+                }
+                String condition = getRequirement(spec, requirement)
+                if (condition == null) {
+                    never = true
+                    break
+                }
+                conditions << condition
+            }
+            if (never) {
+                field.skipped = true
+                return
+            }
+            if (conditionalEnd) {
+                conditions << 'more'
+            }
+            field.condition = conditions.join(' && ')
+            if (field.flags) {
+                if (field.format.size == FULL_SIZE) {
+                    throw new IllegalStateException('Flags field of a full size: ' + spec.type)
+                }
+                return
+            }
+            Map javaType = getJavaType(field.format)
+            if (javaType == null) {
+                spec.unsupported = true
+                return
+            }
+            field.javaType = field.condition ? javaType.boxed : javaType.primitive
+            field.primitive = !field.condition && javaType.primitive != javaType.boxed
+            field.reader = javaType.reader
+            field.index = index
+            field.javaName = toFieldName(field.name, names)
+            spec.values << field
+            if (field.format.size == FULL_SIZE) {
+                if (field.condition) {
+                    conditionalEnd = true
+                } else {
+                    terminated = true
+                }
+            }
+        }
+        spec.usesMore = conditionalEnd
+        return !spec.unsupported
+    }
+
+    // returns a boolean variable name for a requirement or null if the requirement can never be fulfilled
+    static String getRequirement(Map spec, String requirement) {
+        if (spec.requirements.containsKey(requirement)) {
+            return spec.requirements[requirement]?.variable
+        }
+        List<String> terms = []
+        spec.bits.eachWithIndex { Map bit, int index ->
+            bit.flags.each { BigInteger key, String requires ->
+                if (requires != null && requires.split(',').contains(requirement)
+                        && key >= Byte.MIN_VALUE && key <= Byte.MAX_VALUE) {
+                    bit.used = true
+                    terms << "(byte) bit$index == $key".toString()
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            spec.requirements[requirement] = null
+            return null
+        }
+        String variable = "req${spec.requirements.findAll { it.value != null }.size()}"
+        spec.requirements[requirement] = [variable: variable, expression: terms.join(' || ')]
+        return variable
+    }
+
+    static Map getJavaType(Map format) {
+        int size = format.size
+        switch (format.type) {
+            case 'BOOLEAN':
+                return [primitive: 'boolean', boxed: 'Boolean', reader: 'readBoolean(raw, offset)']
+            case 'UINT':
+            case 'SINT':
+                boolean signed = format.type == 'SINT'
+                if ((signed && size <= 32) || (!signed && size < 32)) {
+                    return [primitive: 'int', boxed: 'Integer', reader: "readInt(raw, offset, $size, $signed)"]
+                } else if ((signed && size <= 64) || (!signed && size < 64)) {
+                    return [primitive: 'long', boxed: 'Long', reader: "readLong(raw, offset, $size, $signed)"]
+                }
+                return [primitive: 'BigInteger', boxed: 'BigInteger',
+                        reader: "readBigInteger(raw, offset, $size, $signed)"]
+            case 'FLOAT_IEE754':
+                if (size == 32) {
+                    return [primitive: 'float', boxed: 'Float', reader: 'readFloat(raw, offset)']
+                } else if (size == 64) {
+                    return [primitive: 'double', boxed: 'Double', reader: 'readDouble(raw, offset)']
+                }
+                return null
+            case 'FLOAT_IEE11073':
+                if (size == 16) {
+                    return [primitive: 'float', boxed: 'Float', reader: 'readSFloat11073(raw, offset)']
+                } else if (size == 32) {
+                    return [primitive: 'float', boxed: 'Float', reader: 'readFloat11073(raw, offset)']
+                }
+                return null
+            case 'UTF8S':
+                return [primitive: 'String', boxed: 'String', reader: 'readString(raw, offset, "UTF-8")']
+            case 'UTF16S':
+                return [primitive: 'String', boxed: 'String', reader: 'readString(raw, offset, "UTF-16")']
+            case 'STRUCT':
+                return [primitive: 'byte[]', boxed: 'byte[]', reader: 'readStruct(raw, offset)']
+        }
+        return null
+    }
+
+    static String generateValue(Map spec, String fileName) {
+        String className = spec.className
+        StringBuilder out = new StringBuilder()
+        out << header()
+        List<String> imports = []
+        if (spec.values.any { it.javaType == 'BigInteger' }) {
+            imports << 'java.math.BigInteger'
+        }
+        if (spec.values.any { it.javaType == 'byte[]' }) {
+            imports << 'java.util.Arrays'
+        }
+        imports.each { out << "import ${it};\n" }
+        if (imports) {
+            out << '\n'
+        }
+        out << '/**\n'
+        out << " * A decoded value of the \"${comment(spec.name)}\" characteristic (${spec.uuid}).\n"
+        out << " * Properties of optional fields are null if the fields are not present in the value.\n"
+        out << " * <br>Generated from ${fileName}, see {@link ${className}Decoder}.\n"
+        out << ' */\n'
+        out << "public final class ${className} {\n\n"
+        out << "    public static final String UUID = \"${literal(spec.uuid)}\";\n"
+        out << "    public static final String TYPE = \"${literal(spec.type)}\";\n"
+        if (spec.values) {
+            out << '\n'
+        }
+        spec.values.each { out << "    private final ${it.javaType} ${it.javaName};\n" }
+        out << '\n'
+        out << "    ${className}(${spec.values.collect { "${it.javaType} ${it.javaName}" }.join(',\n            ')}) {\n"
+        spec.values.each { out << "        this.${it.javaName} = ${it.javaName};\n" }
+        out << '    }\n\n'
+        out << '    /**\n'
+        out << '     * Decodes a characteristic value.\n'
+        out << '     * @param raw byte array of data received from bluetooth device\n'
+        out << '     * @return decoded characteristic value\n'
+        out << '     * @throws org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException '
+        out << 'if provided data cannot be parsed\n'
+        out << '     */\n'
+        out << "    public static ${className} decode(byte[] raw) {\n"
+        out << "        return ${className}Decoder.read(raw);\n"
+        out << '    }\n'
+        spec.values.each { Map field ->
+            String getter = (field.javaType == 'boolean' ? 'is' : 'get') + capitalize(field.javaName)
+            out << '\n    /**\n'
+            out << "     * Returns the raw value of the \"${comment(field.name)}\" field.\n"
+            out << "     * @return the raw value of the field${field.primitive || !field.condition ? '' : ' or null if it is not present'}\n"
+            out << '     */\n'
+            out << "    public ${field.javaType} ${getter}() {\n"
+            out << "        return ${field.javaName};\n"
+            out << '    }\n'
+        }
+        out << '\n    @Override\n'
+        out << '    public String toString() {\n'
+        out << "        return \"${className}{\""
+        spec.values.eachWithIndex { Map field, int index ->
+            String value = field.javaType == 'byte[]' ? "Arrays.toString(${field.javaName})" : field.javaName
+            out << "\n                + \"${index > 0 ? ', ' : ''}${field.javaName}=\" + ${value}"
+        }
+        out << " + \"}\";\n"
+        out << '    }\n\n'
+        out << '}\n'
+        return out.toString()
+    }
+
+    static String generateDecoder(Map spec) {
+        String className = spec.className
+        StringBuilder out = new StringBuilder()
+        out << header()
+        out << 'import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;\n'
+        out << 'import org.sputnikdev.bluetooth.gattparser.FieldHolder;\n'
+        out << 'import org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser;\n'
+        out << 'import org.sputnikdev.bluetooth.gattparser.spec.Field;\n\n'
+        if (spec.values.any { it.javaType == 'BigInteger' }) {
+            out << 'import java.math.BigInteger;\n'
+        }
+        out << 'import java.util.LinkedHashMap;\n'
+        out << 'import java.util.List;\n\n'
+        out << '/**\n'
+        out << " * A generated parser of the \"${comment(spec.name)}\" characteristic (${spec.uuid}).\n"
+        out << ' */\n'
+        out << "public final class ${className}Decoder extends TypedCharacteristicParser<${className}> {\n\n"
+        out << "    public ${className}Decoder(CharacteristicParser delegate) {\n"
+        out << "        super(delegate, ${className}.TYPE"
+        spec.fields.each { out << ",\n                \"${literal(signature(it))}\"" }
+        out << ');\n'
+        out << '    }\n\n'
+        out << '    @Override\n'
+        out << "    public ${className} decode(byte[] raw) {\n"
+        out << '        return read(raw);\n'
+        out << '    }\n\n'
+        out << '    @Override\n'
+        out << "    protected void collect(${className} value, List<Field> fields,\n"
+        out << '                           LinkedHashMap<String, FieldHolder> result) {\n'
+        spec.values.each { Map field ->
+            String getter = 'value.' + (field.javaType == 'boolean' ? 'is' : 'get') + capitalize(field.javaName) + '()'
+            if (field.condition) {
+                out << "        if (${getter} != null) {\n"
+                out << "            put(result, fields.get(${field.index}), ${getter});\n"
+                out << '        }\n'
+            } else {
+                out << "        put(result, fields.get(${field.index}), ${getter});\n"
+            }
+        }
+        out << '    }\n\n'
+        out << "    static ${className} read(byte[] raw) {\n"
+        List activeRequirements = spec.requirements.findAll { it.value != null }.collect { it }
+        if (activeRequirements) {
+            out << "        long flags = readBits(raw, ${spec.flagsOffset}, ${spec.flagsSize});\n"
+            spec.bits.eachWithIndex { Map bit, int index ->
+                if (bit.used) {
+                    String mask = '0x' + Long.toHexString((1L << bit.size) - 1) + 'L'
+                    String value = bit.offset >= spec.flagsSize ? '0'
+                            : bit.offset == 0 ? "(int) (flags & ${mask})"
+                            : "(int) (flags >>> ${bit.offset} & ${mask})"
+                    out << "        int bit${index} = ${value};\n"
+                }
+            }
+            activeRequirements.each { entry ->
+                out << "        boolean ${entry.value.variable} = ${entry.value.expression}; // ${comment(entry.key)}\n"
+            }
+        }
+        if (spec.usesMore) {
+            out << '        boolean more = true;\n'
+        }
+        out << '        int offset = 0;\n'
+        spec.fields.each { Map field ->
+            if (field.skipped) {
+                return
+            }
+            int size = field.format.size
+            if (field.flags) {
+                if (field.condition) {
+                    out << "        if (${field.condition}) {\n"
+                    out << "            offset += ${size};\n"
+                    out << '        }\n'
+                } else {
+                    out << "        offset += ${size};\n"
+                }
+                return
+            }
+            String indent = field.condition ? '            ' : '        '
+            if (field.condition) {
+                out << "        ${field.javaType} ${field.javaName} = null;\n"
+                out << "        if (${field.condition}) {\n"
+            }
+            if (size != FULL_SIZE) {
+                out << "${indent}checkSize(raw, offset, ${size}, \"${literal(field.name)}\");\n"
+            }
+            out << indent << (field.condition ? '' : "${field.javaType} ") << "${field.javaName} = ${field.reader};\n"
+            if (size != FULL_SIZE) {
+                out << "${indent}offset += ${size};\n"
+            } else if (field.condition) {
+                out << "${indent}more = false;\n"
+            }
+            if (field.condition) {
+                out << '        }\n'
+            }
+        }
+        out << "        return new ${className}(${spec.values.collect { it.javaName }.join(',\n                ')});\n"
+        out << '    }\n\n'
+        out << '}\n'
+        return out.toString()
+    }
+
+    static String generateRegistry(Map<String, String> decoders) {
+        StringBuilder out = new StringBuilder()
+        out << header()
+        out << 'import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;\n'
+        out << 'import org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser;\n\n'
+        out << 'import java.util.LinkedHashMap;\n'
+        out << 'import java.util.Map;\n\n'
+        out << '/**\n'
+        out << ' * A registry of generated parsers of bundled characteristics.\n'
+        out << ' */\n'
+        out << 'public final class GattDecoders {\n\n'
+        out << '    private GattDecoders() { }\n\n'
+        out << '    /**\n'
+        out << '     * Creates generated parsers of bundled characteristics.\n'
+        out << '     * @param delegate a parser to delegate serialization and parsing of unknown specifications to\n'
+        out << '     * @return generated parsers by characteristic UUID\n'
+        out << '     */\n'
+        out << '    public static Map<String, TypedCharacteristicParser<?>> create(CharacteristicParser delegate) {\n'
+        out << '        Map<String, TypedCharacteristicParser<?>> decoders = new LinkedHashMap<>();\n'
+        decoders.each { uuid, className ->
+            out << "        decoders.put(${className}.UUID, new ${className}Decoder(delegate));\n"
+        }
+        out << '        return decoders;\n'
+        out << '    }\n\n'
+        out << '}\n'
+        return out.toString()
+    }
+
+    static String header() {
+        return "package ${PACKAGE};\n\n// Generated by GattDecoderGenerator, do not edit.\n\n"
+    }
+
+    static String toClassName(String type) {
+        int index = type.lastIndexOf('characteristic.')
+        String name = index >= 0 ? type.substring(index + 'characteristic.'.length()) : type
+        name = name.split(/[^A-Za-z0-9]+/).findAll { it }.collect { capitalize(it) }.join('')
+        return Character.isDigit(name.charAt(0)) ? 'Characteristic' + name : name
+    }
+
+    static String toFieldName(String fieldName, Set<String> names) {
+        List<String> parts = fieldName.split(/[^A-Za-z0-9]+/).findAll { it }
+        StringBuilder builder = new StringBuilder()
+        parts.eachWithIndex { String part, int index ->
+            boolean upperCase = part.length() > 1 && part == part.toUpperCase()
+            if (index == 0) {
+                builder << (upperCase ? part.toLowerCase() : uncapitalize(part))
+            } else {
+                builder << capitalize(upperCase ? part.toLowerCase() : part)
+            }
+        }
+        String name = builder.length() > 0 ? builder.toString() : 'field'
+        if (Character.isDigit(name.charAt(0))) {
+            name = 'field' + name
+        }
+        if (RESERVED.contains(name) || name ==~ /(bit|req)\d+/) {
+            name += 'Value'
+        }
+        String unique = name
+        for (int i = 2; !names.add(unique); i++) {
+            unique = name + i
+        }
+        return unique
+    }
+
+    static String capitalize(String value) {
+        return value.substring(0, 1).toUpperCase() + value.substring(1)
+    }
+
+    static String uncapitalize(String value) {
+        return value.substring(0, 1).toLowerCase() + value.substring(1)
+    }
+
+    static String literal(String value) {
+        return value.replace('\\', '\\\\').replace('"', '\\"')
+    }
+
+    static String comment(String value) {
+        return (value ?: '').replace('*/', '*&#47;').replace('\n', ' ').trim()
+    }
+
+}
@@ -21,6 +21,7 @@ package org.sputnikdev.bluetooth.gattparser;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -88,7 +89,7 @@ public class BluetoothGattParserTest {
         assertNotNull(response);
 
         verify(defaultParser, times(1)).parse(characteristic, data);
-        verify(specificationReader, times(2)).getCharacteristicByUUID(CHARACTERISTIC_UUID);
+        verify(specificationReader, times(1)).getCharacteristicByUUID(CHARACTERISTIC_UUID);
     }
 
     @Test(expected = CharacteristicFormatException.class)
@@ -107,7 +108,7 @@ public class BluetoothGattParserTest {
         assertNotNull(response);
 
         verify(defaultParser, times(0)).parse(characteristic, data);
-        verify(specificationReader, times(2)).getCharacteristicByUUID(CHARACTERISTIC_UUID);
+        verify(specificationReader, times(1)).getCharacteristicByUUID(CHARACTERISTIC_UUID);
         verify(customParser, times(1)).parse(characteristic, data);
     }
 
@@ -246,4 +247,58 @@ public class BluetoothGattParserTest {
         assertArrayEquals(data, parser.serialize("[fe, 3d, 32, 37, 2e, 36, 20, 48, 3d, 39, 32, e, 36, 0]", 16));
     }
 
+    @Test
+    public void testSerializeMtu() {
+        byte[] value = new byte[100];
+        doReturn(true).when(parser).validate(gattRequest);
+        when(defaultParser.serialize(gattRequest.getAllFieldHolders(), Integer.MAX_VALUE)).thenReturn(value);
+
+        List<GattWriteFragment> fragments = parser.serialize(gattRequest, true, 247);
+        assertEquals(1, fragments.size());
+        assertEquals(0, fragments.get(0).getOffset());
+        assertArrayEquals(value, fragments.get(0).getValue());
+
+        verify(defaultParser, times(0)).serialize(gattRequest.getAllFieldHolders());
+
+        fragments = parser.serialize(gattRequest, true, BluetoothGattParser.DEFAULT_ATT_MTU);
+        assertEquals(6, fragments.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSerializeMtuTooSmall() {
+        parser.serialize(gattRequest, false, 22);
+    }
+
+    @Test
+    public void testFragment() {
+        byte[] value = new byte[300];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+
+        assertEquals(1, parser.fragment(new byte[20], 23).size());
+        assertEquals(1, parser.fragment(new byte[244], 247).size());
+        assertEquals(2, parser.fragment(new byte[245], 247).size());
+
+        List<GattWriteFragment> fragments = parser.fragment(value, 247);
+        assertEquals(2, fragments.size());
+        assertEquals(0, fragments.get(0).getOffset());
+        assertEquals(242, fragments.get(0).getValue().length);
+        assertEquals(242, fragments.get(1).getOffset());
+        assertEquals(58, fragments.get(1).getValue().length);
+        assertEquals((byte) 242, fragments.get(1).getValue()[0]);
+        assertEquals((byte) 299, fragments.get(1).getValue()[57]);
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testFragmentTooLong() {
+        parser.fragment(new byte[BluetoothGattParser.MAX_ATTRIBUTE_VALUE_LENGTH + 1], 247);
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testCompileCustomParser() {
+        parser.registerParser(CHARACTERISTIC_UUID, mock(CharacteristicParser.class));
+        parser.compile(new GattRequest(CHARACTERISTIC_UUID, Arrays.asList(MockUtils.mockField("Field1"))));
+    }
+
 }
@@ -0,0 +1,208 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CharacteristicBindingTest {
+
+    private static final String EXTENSION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Characteristic name=\"Test Temperature\" type=\"org.sputnikdev.test_temperature\" uuid=\"FFF2\">\n"
+            + "  <Value>\n"
+            + "    <Field name=\"Temperature\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>sint16</Format>\n"
+            + "      <DecimalExponent>-2</DecimalExponent>\n"
+            + "      <Offset>-73</Offset>\n"
+            + "    </Field>\n"
+            + "  </Value>\n"
+            + "</Characteristic>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @Test
+    public void testConstructorBinding() {
+        CharacteristicBinding<HeartRate> binding = parser.bind("2A37", HeartRate.class);
+        assertEquals("2A37", binding.getCharacteristicUUID());
+        assertSame(HeartRate.class, binding.getType());
+
+        HeartRate heartRate = binding.parse(new byte[] {0x10, 74, 0x10, 0x02});
+        assertEquals(74, heartRate.value);
+        assertNull(heartRate.energyExpended);
+        assertEquals(0x0210, (int) heartRate.rrInterval);
+
+        heartRate = binding.parse(new byte[] {0x08, 60, 0x05, 0x00});
+        assertEquals(60, heartRate.value);
+        assertEquals(5, (int) heartRate.energyExpended);
+        assertNull(heartRate.rrInterval);
+    }
+
+    @Test
+    public void testFieldBinding() {
+        Temperature temperature = parser.bind("2A6E", Temperature.class).parse(new byte[] {(byte) 0xF6, 0x08});
+        assertEquals(22.94, temperature.temperature, 0.0001);
+        assertEquals(2294, temperature.raw);
+
+        BatteryLevel batteryLevel = parser.bind("2A19", BatteryLevel.class).parse(new byte[] {51});
+        assertEquals(51, batteryLevel.level);
+    }
+
+    @Test
+    public void testOffset() throws Exception {
+        File characteristics = folder.newFolder("characteristic");
+        folder.newFolder("service");
+        Files.write(new File(characteristics, "org.sputnikdev.test_temperature.xml").toPath(),
+                EXTENSION.getBytes(StandardCharsets.UTF_8));
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        reader.loadExtensionsFromFolder(folder.getRoot().getAbsolutePath());
+        BluetoothGattParser parser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+
+        Offset offset = parser.bind("FFF2", Offset.class).parse(new byte[] {(byte) 0xF6, 0x08});
+        assertEquals(-50.06, offset.value, 0.0001);
+        assertEquals(-50, offset.rounded);
+        assertEquals(new BigDecimal("-50.06"), offset.decimal.setScale(2, RoundingMode.HALF_UP));
+        assertEquals(BigInteger.valueOf(-50), offset.integer);
+        assertEquals(parser.parse("FFF2", new byte[] {(byte) 0xF6, 0x08}).get("Temperature").getDouble(),
+                offset.decimal.doubleValue(), 0.0001);
+    }
+
+    @Test
+    public void testCustomParser() {
+        BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+        BluetoothGattParser parser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+        Characteristic characteristic = reader.getCharacteristicByUUID("2A19");
+        CharacteristicParser custom = mock(CharacteristicParser.class);
+        LinkedHashMap<String, FieldHolder> result = new LinkedHashMap<>();
+        result.put("Level", new FieldHolder(characteristic.getValue().getFields().get(0), 42));
+        when(custom.parse(eq(characteristic), any(byte[].class))).thenReturn(result);
+        parser.registerParser("2A19", custom);
+
+        assertEquals(42, parser.bind("2A19", BatteryLevel.class).parse(new byte[] {51}).level);
+    }
+
+    @Test
+    public void testGetDecoder() {
+        BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+        BluetoothGattParser parser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+        CharacteristicDecoder decoder = parser.getDecoder("2A37");
+        assertTrue(decoder.isCompiled());
+        assertSame(decoder, parser.getDecoder("2A37"));
+        assertSame(decoder, parser.getDecoder("00002a37-0000-1000-8000-00805f9b34fb"));
+
+        // registering a parser invalidates cached decoders
+        parser.registerParser("2A19", mock(CharacteristicParser.class));
+        CharacteristicDecoder recompiled = parser.getDecoder("2A37");
+        assertNotSame(decoder, recompiled);
+        assertSame(recompiled, parser.getDecoder("2A37"));
+        assertArrayEquals(decoder.decode(new byte[] {0x10, 74, 0x10, 0x02}),
+                recompiled.decode(new byte[] {0x10, 74, 0x10, 0x02}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        parser.bind("2A19", Unknown.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncompatibleType() {
+        parser.bind("2A19", Incompatible.class);
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testInvalidCharacteristic() {
+        parser.bind("FFFF", BatteryLevel.class);
+    }
+
+    static final class HeartRate {
+        private final int value;
+        private final Integer energyExpended;
+        private final Integer rrInterval;
+
+        HeartRate(@GattField("Heart Rate Measurement Value (uint8)") int value,
+                  @GattField("Energy Expended") Integer energyExpended,
+                  @GattField("RR-Interval") Integer rrInterval) {
+            this.value = value;
+            this.energyExpended = energyExpended;
+            this.rrInterval = rrInterval;
+        }
+    }
+
+    static final class Temperature {
+        @GattField("Temperature")
+        private double temperature;
+        @GattField("Temperature")
+        private Object raw;
+    }
+
+    static final class Offset {
+        @GattField("Temperature")
+        private double value;
+        @GattField("Temperature")
+        private long rounded;
+        @GattField("Temperature")
+        private BigDecimal decimal;
+        @GattField("Temperature")
+        private BigInteger integer;
+    }
+
+    static final class BatteryLevel {
+        private int level;
+        // not bound
+        private String description;
+
+        private BatteryLevel() { }
+    }
+
+    static final class Unknown {
+        @GattField("Unknown")
+        private int level;
+    }
+
+    static final class Incompatible {
+        private boolean level;
+    }
+
+}
@@ -0,0 +1,153 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sputnikdev.bluetooth.gattparser.compiler.CompiledCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.metrics.GattParserMetrics;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CharacteristicHandleTest {
+
+    private static final String BATTERY_LEVEL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Characteristic name=\"Battery Level\" type=\"org.bluetooth.characteristic.battery_level\""
+            + " uuid=\"2A19\">\n"
+            + "  <Value>\n"
+            + "    <Field name=\"Custom Level\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>uint8</Format>\n"
+            + "    </Field>\n"
+            + "  </Value>\n"
+            + "</Characteristic>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+    private final BluetoothGattParser parser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+
+    @Test
+    public void testParse() {
+        CharacteristicHandle handle = parser.getHandle("00002a19-0000-1000-8000-00805f9b34fb");
+        assertEquals("2A19", handle.getCharacteristicUUID());
+        assertSame(parser.getCharacteristic("2A19"), handle.getCharacteristic());
+        assertSame(parser.getFields("2A19"), handle.getFields());
+        assertTrue(handle.isValidForRead());
+        assertEquals(parser.isValidForWrite("2A19"), handle.isValidForWrite());
+        assertEquals(51, (int) handle.parse(new byte[] {51}).get("Level").getInteger());
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testParseNotValidForRead() {
+        parser.getHandle("2A63").parse(new byte[] {0});
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testUnknownCharacteristic() {
+        parser.getHandle("FFFF");
+    }
+
+    @Test
+    public void testSerialize() {
+        CharacteristicHandle handle = parser.getHandle("2A39");
+        GattRequest request = handle.prepare();
+        request.setField("Heart Rate Control Point", 1);
+        assertArrayEquals(new byte[] {1}, handle.serialize(request));
+        assertArrayEquals(parser.serialize(request), handle.serialize(request));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSerializeNotValid() {
+        CharacteristicHandle handle = parser.getHandle("2A39");
+        handle.serialize(handle.prepare());
+    }
+
+    @Test
+    public void testMetrics() {
+        GattParserMetrics metrics = mock(GattParserMetrics.class);
+        when(metrics.isEnabled()).thenReturn(true);
+        parser.setMetrics(metrics);
+        parser.getHandle("2A19").parse(new byte[] {51});
+        verify(metrics).parsed(eq("2A19"), eq(1), anyLong());
+    }
+
+    @Test
+    public void testRegisterParser() {
+        CharacteristicHandle handle = parser.getHandle("2A19");
+        CharacteristicParser custom = mock(CharacteristicParser.class);
+        LinkedHashMap<String, FieldHolder> result = new LinkedHashMap<>();
+        when(custom.parse(any(), any())).thenReturn(result);
+        parser.registerParser("2A19", custom);
+
+        assertSame(custom, handle.getParser());
+        assertTrue(handle.parse(new byte[] {51}).getFieldHolders().isEmpty());
+        verify(custom).parse(handle.getCharacteristic(), new byte[] {51});
+    }
+
+    @Test
+    public void testCompileParser() {
+        CharacteristicHandle handle = parser.getHandle("2A19");
+        assertTrue(handle.getParser() instanceof GenericCharacteristicParser);
+
+        CharacteristicParser compiled = parser.compileParser("2A19");
+        assertTrue(compiled instanceof CompiledCharacteristicParser);
+        assertSame(compiled, handle.getParser());
+        assertEquals(51, (int) handle.parse(new byte[] {51}).get("Level").getInteger());
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        CharacteristicHandle handle = parser.getHandle("2A19");
+        assertEquals(51, (int) handle.parse(new byte[] {51}).get("Level").getInteger());
+
+        File characteristics = folder.newFolder("characteristic");
+        folder.newFolder("service");
+        Files.write(new File(characteristics, "org.bluetooth.characteristic.battery_level.xml").toPath(),
+                BATTERY_LEVEL.getBytes(StandardCharsets.UTF_8));
+        parser.loadExtensionsFromFolder(folder.getRoot().getAbsolutePath());
+
+        assertSame(parser.getCharacteristic("2A19"), handle.getCharacteristic());
+        assertEquals("Custom Level", handle.getFields().get(0).getName());
+        GattResponse response = handle.parse(new byte[] {51});
+        assertFalse(response.contains("Level"));
+        assertEquals(51, (int) response.get("Custom Level").getInteger());
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.sputnikdev.bluetooth.gattparser.compiler.CharacteristicParserCompiler;
+import org.sputnikdev.bluetooth.gattparser.decoder.GattDecoders;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+/**
+ * A throughput benchmark of the interpreting parser ({@link GenericCharacteristicParser}),
+ * parsers compiled at runtime ({@link CharacteristicParserCompiler}) and parsers generated at build time
+ * ({@link GattDecoders}). NaN is reported if a characteristic is not supported by a parser.
+ * The benchmark is not run as part of the build, run it with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     org.sputnikdev.bluetooth.gattparser.CharacteristicParserBenchmark [seconds per measurement]
+ * </pre>
+ */
+public final class CharacteristicParserBenchmark {
+
+    private static final Object[][] PAYLOADS = {
+        {"2A19", new byte[] {51}},
+        {"2A37", new byte[] {0x10, 74, 0x10, 0x02}},
+        {"2A1C", new byte[] {0x06, (byte) 0xA8, 0x0E, 0x00, (byte) 0xFE, (byte) 0xE2, 0x07, 0x0B, 0x17, 0x0E, 0x1C,
+            0x00, 0x02}},
+        {"2A5B", new byte[] {0x03, 0x10, 0x20, 0x30, 0x40, 0x00, 0x01, 0x11, 0x22, 0x33, 0x44, 0x00, 0x02}},
+    };
+
+    private static volatile Object sink;
+
+    private CharacteristicParserBenchmark() { }
+
+    public static void main(String[] args) {
+        long duration = (args.length > 0 ? Long.parseLong(args[0]) : 2) * 1_000_000_000L;
+        BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+        GenericCharacteristicParser generic = new GenericCharacteristicParser(reader);
+
+        System.out.printf("%-6s %16s %16s %16s%n", "UUID", "generic ops/s", "compiled ops/s", "generated ops/s");
+        for (Object[] payload : PAYLOADS) {
+            String uuid = (String) payload[0];
+            byte[] raw = (byte[]) payload[1];
+            Characteristic characteristic = reader.getCharacteristicByUUID(uuid);
+            CharacteristicParser compiled = CharacteristicParserCompiler.compile(characteristic, generic);
+            if (compiled == generic) {
+                // not supported by the compiler
+                compiled = null;
+            }
+            CharacteristicParser generated = GattDecoders.create(generic).get(uuid);
+            // warm up
+            measure(generic, characteristic, raw, duration);
+            measure(compiled, characteristic, raw, duration);
+            measure(generated, characteristic, raw, duration);
+            System.out.printf("%-6s %,16.0f %,16.0f %,16.0f%n", uuid,
+                    measure(generic, characteristic, raw, duration),
+                    measure(compiled, characteristic, raw, duration),
+                    measure(generated, characteristic, raw, duration));
+        }
+    }
+
+    private static double measure(CharacteristicParser parser, Characteristic characteristic, byte[] raw,
+                                  long duration) {
+        if (parser == null) {
+            return Double.NaN;
+        }
+        long operations = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                sink = parser.parse(characteristic, raw);
+            }
+            operations += 1000;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < duration);
+        return operations * 1e9 / elapsed;
+    }
+
+}
@@ -26,6 +26,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.sputnikdev.bluetooth.gattparser.num.FixedPointDecimal;
+import org.sputnikdev.bluetooth.gattparser.num.Int128;
 import org.sputnikdev.bluetooth.gattparser.spec.Enumeration;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
@@ -243,6 +245,50 @@ public class FieldHolderTest {
         assertArrayEquals(expected, (byte[]) fieldHolder.getRawValue());
     }
 
+    @Test
+    public void testInt128() {
+        mockField(null, null, null, null);
+        BigInteger wide = new BigInteger("-123456789012345678901234567890");
+        FieldHolder fieldHolder = new FieldHolder(field, Int128.valueOf(wide));
+        assertEquals(wide, fieldHolder.getRawValue());
+        assertEquals(wide, fieldHolder.getBigInteger());
+        assertEquals(wide.toString(), fieldHolder.getString());
+        assertEquals(Int128.valueOf(wide), fieldHolder.getInt128());
+
+        assertEquals(Int128.valueOf(5), new FieldHolder(field, 5).getInt128());
+        assertEquals(Int128.valueOf(-5), new FieldHolder(field, -5L).getInt128());
+        assertEquals(Int128.valueOf(wide), new FieldHolder(field, wide).getInt128());
+        assertNull(new FieldHolder(field, "5").getInt128());
+        assertNull(new FieldHolder(field, 5.0F).getInt128());
+
+        when(field.getFormat().isStruct()).thenReturn(true);
+        assertEquals(Int128.valueOf(0x0201), new FieldHolder(field, new byte[] {1, 2}).getInt128());
+        assertNull(new FieldHolder(field, new byte[17]).getInt128());
+    }
+
+    @Test
+    public void testGetEnumerationInt128() {
+        mockField(null, null, null, null);
+        BigInteger wide = BigInteger.ONE.shiftLeft(127).add(BigInteger.TEN);
+        Enumeration enumerationWide = mock(Enumeration.class);
+        when(enumerationWide.getKey()).thenReturn(wide);
+        Enumeration enumerationTen = mock(Enumeration.class);
+        when(enumerationTen.getKey()).thenReturn(BigInteger.TEN);
+        List<Enumeration> enums = new ArrayList<>();
+        enums.add(enumerationWide);
+        enums.add(enumerationTen);
+        when(field.getEnumerations().getEnumerations()).thenReturn(enums);
+
+        assertEquals(enumerationWide, new FieldHolder(field, Int128.valueOf(wide)).getEnumeration());
+        assertEquals(enumerationTen, new FieldHolder(field, Int128.valueOf(10)).getEnumeration());
+        assertEquals(enumerationTen, new FieldHolder(field, 10).getEnumeration());
+        assertNull(new FieldHolder(field, Int128.valueOf(11)).getEnumeration());
+
+        // enumerations are matched against scaled values
+        mockField(null, null, 2, null);
+        assertEquals(enumerationTen, new FieldHolder(field, 5).getEnumeration());
+    }
+
     @Test
     public void testGetSetEnumerationString() {
         when(field.getFormat().isString()).thenReturn(true);
@@ -352,6 +398,42 @@ public class FieldHolderTest {
         assertEquals(value, new FieldHolder(field, value).getRawValue());
     }
 
+    @Test
+    public void testGetFixedPointDecimal() {
+        assertGetFixedPointDecimal("5", null, null, null, null, 5);
+        assertGetFixedPointDecimal("-5", null, null, null, null, -5L);
+        assertGetFixedPointDecimal("12345", null, null, null, null, new BigInteger("12345"));
+        // energy meter: 0.001 kWh resolution
+        assertGetFixedPointDecimal("123456789.012", -3, null, null, null, 123456789012L);
+        assertGetFixedPointDecimal("1500", 2, null, null, null, 15);
+        assertGetFixedPointDecimal("0.0125", -4, null, 5, null, 25);
+        // 1/1024 s resolution is exact in decimal
+        assertGetFixedPointDecimal("0.0009765625", null, -10, null, null, 1);
+        assertGetFixedPointDecimal("80", null, 4, null, null, 5);
+        assertGetFixedPointDecimal("-22.55", -2, null, null, -40.0, 1745);
+        assertGetFixedPointDecimal("273.65", -1, null, null, 273.15, 5);
+        assertGetFixedPointDecimal("0.3", -1, null, null, 0.1, 2);
+
+        assertGetFixedPointDecimal(null, null, null, null, null, 0.1F);
+        assertGetFixedPointDecimal(null, null, null, null, null, "5");
+        assertGetFixedPointDecimal(null, null, null, null, null, null);
+        assertGetFixedPointDecimal(null, null, null, null, null, BigInteger.ONE.shiftLeft(64));
+        // overflow
+        assertGetFixedPointDecimal(null, null, 2, null, null, Long.MAX_VALUE);
+        assertGetFixedPointDecimal(null, null, null, 10, null, Long.MIN_VALUE);
+    }
+
+    @Test
+    public void testGetFixedPointDecimalMatchesBigDecimal() {
+        mockField(-2, null, 3, null);
+        for (long raw = -100000; raw <= 100000; raw += 7) {
+            FieldHolder fieldHolder = new FieldHolder(field, raw);
+            FixedPointDecimal decimal = fieldHolder.getFixedPointDecimal();
+            assertEquals(0, fieldHolder.getBigDecimal().compareTo(decimal.toBigDecimal()));
+            assertEquals(fieldHolder.getDouble(), decimal.doubleValue(), 1e-9);
+        }
+    }
+
     @Test
     public void testGetFloat() {
         assertGetFloat(0.1F, null, null, null, null, 0.1);
@@ -667,6 +749,14 @@ public class FieldHolderTest {
         assertEquals(expected, fieldHolder.getBigInteger(null));
     }
 
+    private void assertGetFixedPointDecimal(String expected, Integer decimalExponent, Integer binaryExponent,
+            Integer multiplier, Double offset, Object value) {
+        FieldHolder fieldHolder = new FieldHolder(field, value);
+        mockField(decimalExponent, binaryExponent, multiplier, offset);
+        FixedPointDecimal actual = fieldHolder.getFixedPointDecimal();
+        assertEquals(expected, actual != null ? actual.toString() : null);
+    }
+
     private void assertGetBoolean(Boolean expected, Object value) {
         FieldHolder fieldHolder = new FieldHolder(field, value);
         assertEquals(expected, fieldHolder.getBoolean(null));
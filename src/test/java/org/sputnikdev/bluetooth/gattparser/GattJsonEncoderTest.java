@@ -0,0 +1,95 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class GattJsonEncoderTest {
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @Test
+    public void testHeartRateMeasurement() throws IOException {
+        GattJsonEncoder encoder = parser.getJsonEncoder("2A37");
+        GattResponse response = parser.parse("2A37", new byte[] {0x18, 74, 0x10, 0x02, 0x00, 0x04});
+        String json = encoder.encode(response);
+        assertEquals("{\"Heart Rate Measurement Value (uint8)\":{\"value\":74,"
+                + "\"unit\":\"org.bluetooth.unit.period.beats_per_minute\"},"
+                + "\"Energy Expended\":{\"value\":528,\"unit\":\"org.bluetooth.unit.energy.joule\"},"
+                + "\"RR-Interval\":{\"value\":1024,\"unit\":\"org.bluetooth.unit.time.second\"}}", json);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        encoder.encode(response, stream);
+        assertEquals(json, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+
+        StringBuilder builder = new StringBuilder("[");
+        encoder.encode(response, builder);
+        assertEquals("[" + json, builder.toString());
+    }
+
+    @Test
+    public void testScaledValue() {
+        GattResponse response = parser.parse("2A6E", new byte[] {(byte) 0xF6, 0x08});
+        JsonObject json = new JsonParser().parse(parser.getJsonEncoder("2A6E").encode(response)).getAsJsonObject();
+        JsonObject temperature = json.getAsJsonObject("Temperature");
+        assertEquals(response.get("Temperature").getDouble(), temperature.get("value").getAsDouble(), 0);
+        assertEquals(22.94, temperature.get("value").getAsDouble(), 0);
+        assertEquals("org.bluetooth.unit.thermodynamic_temperature.degree_celsius",
+                temperature.get("unit").getAsString());
+    }
+
+    @Test
+    public void testEnumeration() {
+        GattJsonEncoder encoder = parser.getJsonEncoder("2A38");
+        assertEquals("{\"Body Sensor Location\":{\"value\":1,\"label\":\"Chest\"}}",
+                encoder.encode(parser.parse("2A38", new byte[] {0x01})));
+        assertEquals("{\"Body Sensor Location\":{\"value\":100}}",
+                encoder.encode(parser.parse("2A38", new byte[] {100})));
+    }
+
+    @Test
+    public void testEscaping() throws IOException {
+        GattJsonEncoder encoder = parser.getJsonEncoder("2A29");
+        String name = "Acme \"\u00FC\u00DFer\"\\\n\u0001";
+        GattResponse response = parser.parse("2A29", name.getBytes(StandardCharsets.UTF_8));
+        String json = encoder.encode(response);
+        assertEquals("{\"Manufacturer Name\":{\"value\":\"Acme \\\"\u00FC\u00DFer\\\"\\\\\\n\\u0001\"}}", json);
+        assertEquals(name, new JsonParser().parse(json).getAsJsonObject()
+                .getAsJsonObject("Manufacturer Name").get("value").getAsString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        encoder.encode(response, stream);
+        assertEquals(json, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testUnknownCharacteristic() {
+        parser.getJsonEncoder("FFFF");
+    }
+
+}
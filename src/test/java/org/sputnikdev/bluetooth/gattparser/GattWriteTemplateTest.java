@@ -0,0 +1,180 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GattWriteTemplateTest {
+
+    private static final String CHARACTERISTIC_UUID = "2A39";
+
+    private GenericCharacteristicParser parser =
+            new GenericCharacteristicParser(mock(BluetoothGattSpecificationReader.class));
+
+    @Test
+    public void testPayload() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(MockUtils.mockFieldFormat("Op Code", "uint8"));
+        fields.add(MockUtils.mockFieldFormat("Level", "uint16"));
+        fields.add(MockUtils.mockFieldFormat("Delta", "sint12"));
+        fields.add(MockUtils.mockFieldFormat("Enabled", "boolean"));
+        fields.add(MockUtils.mockFieldFormat("Gain", "float32"));
+        fields.add(MockUtils.mockFieldFormat("Tail", "uint8"));
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, fields);
+        request.setField("Op Code", 5);
+        request.setField("Tail", 0x7f);
+
+        GattWriteTemplate template = parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(),
+                Arrays.asList("Level", "Delta", "Enabled", "Gain"));
+        assertEquals(4, template.getSlotCount());
+        assertEquals(1, template.getSlotIndex("Delta"));
+        assertEquals(-1, template.getSlotIndex("Tail"));
+        assertEquals(10, template.getLength());
+
+        byte[] data = template.newPayload().setInteger(0, 0x1234).setInteger(1, -5).setBoolean(2, true)
+                .setFloat(3, 1.5f).getValue();
+
+        request.setField("Level", 0x1234);
+        request.setField("Delta", -5);
+        request.setField("Enabled", true);
+        request.setField("Gain", 1.5f);
+        assertArrayEquals(parser.serialize(request.getAllFieldHolders(), Integer.MAX_VALUE), data);
+
+        GattWriteTemplate.Payload first = template.newPayload();
+        GattWriteTemplate.Payload second = template.newPayload();
+        assertNotSame(first.getValue(), second.getValue());
+        first.setInteger(0, 0xffff);
+        assertEquals(0, second.getValue()[1]);
+    }
+
+    @Test
+    public void testMedicalFloatPayload() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(MockUtils.mockFieldFormat("Op Code", "uint8"));
+        fields.add(MockUtils.mockFieldFormat("Threshold", "SFLOAT"));
+        fields.add(MockUtils.mockFieldFormat("Limit", "FLOAT"));
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, fields);
+        request.setField("Op Code", 1);
+
+        GattWriteTemplate template = parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(),
+                Arrays.asList("Threshold", "Limit"));
+        byte[] data = template.newPayload().setDouble(0, 36.4).setInteger(1, -3640).getValue();
+
+        request.setField("Threshold", 36.4f);
+        request.setField("Limit", -3640f);
+        assertArrayEquals(parser.serialize(request.getAllFieldHolders(), Integer.MAX_VALUE), data);
+        assertArrayEquals(new byte[] {1, 0x6C, (byte) 0xF1, (byte) 0x94, (byte) 0xFE, (byte) 0xFF, 0x01}, data);
+    }
+
+    @Test
+    public void testPayloadOverwrite() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(MockUtils.mockFieldFormat("Field1", "uint4"));
+        fields.add(MockUtils.mockFieldFormat("Field2", "uint4"));
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, fields);
+        request.setField("Field2", 0xA);
+
+        GattWriteTemplate template = parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(),
+                Arrays.asList("Field1"));
+        GattWriteTemplate.Payload payload = template.newPayload();
+        assertArrayEquals(new byte[] {(byte) 0xAF}, payload.setInteger(0, 0xF).getValue());
+        assertArrayEquals(new byte[] {(byte) 0xA3}, payload.setInteger(0, 3).getValue());
+    }
+
+    @Test
+    public void testPayloadScaled() {
+        Field field = MockUtils.mockFieldFormat("Temperature", "sint16");
+        when(field.getDecimalExponent()).thenReturn(-2);
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, Arrays.asList(field));
+
+        GattWriteTemplate template = parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(),
+                Arrays.asList("Temperature"));
+        byte[] data = template.newPayload().setDouble(0, 21.5).getValue();
+
+        request.setField("Temperature", 21.5);
+        assertArrayEquals(parser.serialize(request.getAllFieldHolders()), data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileUnknownField() {
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID,
+                Arrays.asList(MockUtils.mockFieldFormat("Field1", "uint8")));
+        parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(), Arrays.asList("Field2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileVariableString() {
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID,
+                Arrays.asList(MockUtils.mockFieldFormat("Field1", "utf8s")));
+        parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(), Arrays.asList("Field1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPayloadMaximum() {
+        Field field = MockUtils.mockFieldFormat("Field1", "uint8");
+        when(field.getMaximum()).thenReturn(100.0);
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, Arrays.asList(field));
+        GattWriteTemplate template = parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(),
+                Arrays.asList("Field1"));
+        template.newPayload().setInteger(0, 101);
+    }
+
+    @Test
+    public void testPayloadFormatRange() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(MockUtils.mockFieldFormat("Field1", "uint8"));
+        fields.add(MockUtils.mockFieldFormat("Field2", "sint8"));
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, fields);
+        GattWriteTemplate template = parser.compile(CHARACTERISTIC_UUID, request.getAllFieldHolders(),
+                Arrays.asList("Field1", "Field2"));
+        GattWriteTemplate.Payload payload = template.newPayload();
+        assertArrayEquals(new byte[] {(byte) 0xFF, (byte) 0x80}, payload.setInteger(0, 255).setInteger(1, -128)
+                .getValue());
+        assertRejected(payload, 0, 256);
+        assertRejected(payload, 0, -1);
+        assertRejected(payload, 1, 128);
+        assertRejected(payload, 1, -129);
+        assertArrayEquals(new byte[] {(byte) 0xFF, (byte) 0x80}, payload.getValue());
+    }
+
+    private static void assertRejected(GattWriteTemplate.Payload payload, int slot, int value) {
+        try {
+            payload.setInteger(slot, value);
+            fail("Value must be rejected: " + value);
+        } catch (IllegalArgumentException ignore) {
+            // expected
+        }
+    }
+
+}
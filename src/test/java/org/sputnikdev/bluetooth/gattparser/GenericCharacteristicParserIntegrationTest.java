@@ -21,9 +21,18 @@ package org.sputnikdev.bluetooth.gattparser;
  */
 
 import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.compiler.CompiledCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
 import org.sputnikdev.bluetooth.gattparser.spec.Enumeration;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -419,6 +428,55 @@ public class GenericCharacteristicParserIntegrationTest {
         assertArrayEquals(expected, parser.serialize(request, false));
     }
 
+    @Test
+    public void testCompileParser() {
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        BluetoothGattParser parser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+        assertTrue(parser.compileParser("2A37") instanceof CompiledCharacteristicParser);
+
+        GattResponse response = parser.parse("2A37", new byte[] {0x10, 74, 0x10, 0x02});
+        assertEquals(74, (int) response.get("Heart Rate Measurement Value (uint8)").getInteger());
+        assertEquals(0x0210, (int) response.get("RR-Interval").getInteger());
+        assertFalse(response.contains("Energy Expended"));
+
+        // field references are not supported, the default parser is kept
+        assertTrue(parser.compileParser("2A5A") instanceof GenericCharacteristicParser);
+    }
+
+    @Test
+    public void testConcurrentParse() throws Exception {
+        // a fresh parser, so that specification files are loaded lazily by concurrent threads
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        BluetoothGattParser parser = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+        int threads = 64;
+        int iterations = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int parsed = 0;
+                for (int j = 0; j < iterations; j++) {
+                    assertEquals(j % 100, (int) parser.parse("2A19", new byte[] {(byte) (j % 100)})
+                            .get("Level").getInteger());
+                    assertEquals(74, (int) parser.parse("2A37", new byte[] {20, 74, 13, 3})
+                            .get("Heart Rate Measurement Value (uint8)").getInteger());
+                    assertEquals(2017, (int) parser.parse("2A2B", new byte[] {(byte) 2017, 2017 >> 8, 1, 4, 11,
+                            38, 45, 3, 1, 2}).get("Year").getInteger());
+                    parsed += 3;
+                }
+                return parsed;
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : results) {
+            assertEquals(iterations * 3, (int) result.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(reader.getCharacteristicByUUID("2A19"), parser.getCharacteristic("2A19"));
+    }
+
     private void assertField(Integer expectedValue, String expectedEnum,
                              String characteristicUUID, byte[] data, String fieldName) {
         FieldHolder fieldHolder = parser.parse(characteristicUUID, data).get(fieldName);
@@ -36,6 +36,7 @@ import org.sputnikdev.bluetooth.gattparser.spec.Bit;
 import org.sputnikdev.bluetooth.gattparser.spec.BitField;
 import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
 import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.CharacteristicLayout;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
 
@@ -43,6 +44,8 @@ import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -68,6 +71,7 @@ import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -101,6 +105,8 @@ public class GenericCharacteristicParserTest {
         when(BluetoothGattParserFactory.getIEEE754FloatingPointNumberFormatter()).thenReturn(ieee754NumberFormatter);
         when(BluetoothGattParserFactory.getIEEE11073FloatingPointNumberFormatter()).thenReturn(ieee11073NumberFormatter);
         when(flagField.getName()).thenReturn("fLags");
+        when(reader.getLayout(any(Characteristic.class))).thenAnswer(invocation -> CharacteristicLayout.resolve(
+                (Characteristic) invocation.getArguments()[0], reader::getCharacteristicByType));
     }
 
 
@@ -156,10 +162,12 @@ public class GenericCharacteristicParserTest {
         verify(twosComplementNumberFormatter, times(1)).deserializeLong(bits, 63, false);
         assertParseFormat(0L, "sint64", data);
         verify(twosComplementNumberFormatter, times(1)).deserializeLong(bits, 64, true);
+        // up to 128 bits are read directly into Int128, BigInteger is created on demand
         assertParseFormat(BigInteger.ZERO, "uint64", data);
-        verify(twosComplementNumberFormatter, times(1)).deserializeBigInteger(bits, 64, false);
         assertParseFormat(BigInteger.ZERO, "sint65", data);
-        verify(twosComplementNumberFormatter, times(1)).deserializeBigInteger(bits, 65, true);
+        assertParseFormat(BigInteger.ZERO, "uint128", new byte[16]);
+        verify(twosComplementNumberFormatter, never()).deserializeBigInteger(Matchers.<BitSet>any(), anyInt(),
+                anyBoolean());
 
         assertParseFormat(0.0F, "float32", data);
         verify(ieee754NumberFormatter, times(1)).deserializeFloat(bits);
@@ -193,15 +201,15 @@ public class GenericCharacteristicParserTest {
         when(characteristic.isValidForRead()).thenReturn(true);
 
         when(FlagUtils.isFlagsField(flagsField)).thenReturn(true);
-        when(FlagUtils.getReadFlags(anyList(), any(byte[].class))).thenReturn(
+        when(FlagUtils.getReadFlags(anyList(), any(byte[].class), anyInt())).thenReturn(
                 new HashSet<>(Arrays.asList("C1", "C3", "C4")));
         assertFieldsExist(value, "Field1", "Field4", "Field6");
 
-        when(FlagUtils.getReadFlags(anyList(), any(byte[].class))).thenReturn(
+        when(FlagUtils.getReadFlags(anyList(), any(byte[].class), anyInt())).thenReturn(
                 new HashSet<>(Arrays.asList("C2")));
         assertFieldsExist(value, "Field3", "Field4", "Field6");
 
-        when(FlagUtils.getReadFlags(anyList(), any(byte[].class))).thenReturn(
+        when(FlagUtils.getReadFlags(anyList(), any(byte[].class), anyInt())).thenReturn(
                 new HashSet<>(Arrays.asList("C1", "C2")));
         assertFieldsExist(value, "Field1", "Field2", "Field3", "Field4", "Field6");
     }
@@ -272,7 +280,7 @@ public class GenericCharacteristicParserTest {
         Characteristic referenced = mock(Characteristic.class, RETURNS_DEEP_STUBS);
         when(referenced.getValue().getFields()).thenReturn(innerFields);
         when(referenced.isValidForRead()).thenReturn(true);
-        when(FlagUtils.getReadFlags(anyList(), any(byte[].class))).thenReturn(flags);
+        when(FlagUtils.getReadFlags(anyList(), any(byte[].class), anyInt())).thenReturn(flags);
         when(FlagUtils.isFlagsField(innerFlags)).thenReturn(true);
         when(reader.getCharacteristicByType("org.bluetooth.characteristic_id")).thenReturn(referenced);
 
@@ -384,6 +392,18 @@ public class GenericCharacteristicParserTest {
         //assertEquals(sint128.intValue(), data[24]);
     }
 
+    @Test
+    public void testSerializeMaxLength() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(MockUtils.mockFieldFormat("Field1", "utf8s"));
+        GattRequest request = new GattRequest(CHARACTERISTIC_UUID, fields);
+        request.setField("Field1", "a string which is longer than the default payload");
+
+        assertEquals(20, parser.serialize(request.getAllFieldHolders()).length);
+        assertEquals(30, parser.serialize(request.getAllFieldHolders(), 30).length);
+        assertEquals(49, parser.serialize(request.getAllFieldHolders(), Integer.MAX_VALUE).length);
+    }
+
     @Test
     public void testSerializeZero() throws UnsupportedEncodingException {
         int sint32 = 0;
@@ -512,6 +532,72 @@ public class GenericCharacteristicParserTest {
         assertArrayEquals(data.toByteArray(), serialized);
     }
 
+    @Test
+    public void testParseStructSlice() throws Exception {
+        when(twosComplementNumberFormatter.deserializeInteger(Matchers.<BitSet>any(), anyByte(), anyBoolean()))
+                .thenReturn(1);
+        List<Field> fields = new ArrayList<>();
+        fields.add(MockUtils.mockFieldFormat("Field1", "uint8"));
+        fields.add(MockUtils.mockFieldFormat("Field2", "struct"));
+        when(reader.getFields(characteristic)).thenReturn(fields);
+        when(characteristic.getValue().getFields()).thenReturn(fields);
+        when(characteristic.isValidForRead()).thenReturn(true);
+
+        byte[] raw = {1, 12, 24, 0, 0};
+        FieldHolder struct = parser.parse(characteristic, raw).get("Field2");
+
+        // trailing zeros are kept
+        assertArrayEquals(new byte[] {12, 24, 0, 0}, (byte[]) struct.getRawValue());
+        ByteBuffer view = struct.getByteBuffer();
+        assertTrue(view.isReadOnly());
+        assertEquals(4, view.remaining());
+        assertEquals(12, view.get(0));
+
+        // the view is not copied from the payload, whereas raw values are copies
+        byte[] copy = struct.getBytes();
+        raw[1] = 13;
+        assertEquals(13, struct.getByteBuffer().get(0));
+        assertEquals(12, copy[0]);
+    }
+
+    @Test
+    public void testSliceStruct() {
+        byte[] raw = {(byte) 0b10110101, (byte) 0b01100011, 0};
+        assertEquals(ByteBuffer.wrap(new byte[] {0b01100011, 0}), GenericCharacteristicParser.sliceStruct(raw, 8));
+        assertEquals(ByteBuffer.wrap(new byte[] {(byte) 0b11011010, 0b00110001, 0}),
+                GenericCharacteristicParser.sliceStruct(raw, 1));
+        assertEquals(ByteBuffer.wrap(new byte[] {0b0110, 0}), GenericCharacteristicParser.sliceStruct(raw, 12));
+        assertEquals(0, GenericCharacteristicParser.sliceStruct(raw, 24).remaining());
+    }
+
+    @Test
+    public void testDecodeString() {
+        Charset utf8 = StandardCharsets.UTF_8;
+        Charset utf16 = StandardCharsets.UTF_16;
+        assertEquals("Wahoo", GenericCharacteristicParser.decodeString(bytes(0x01, "Wahoo"), 8, utf8));
+        // null terminator and padding
+        assertEquals("Wahoo", GenericCharacteristicParser.decodeString(bytes(0x01, "Wahoo\0\0\0"), 8, utf8));
+        assertEquals("Wa", GenericCharacteristicParser.decodeString(bytes(0x01, "Wa\0hoo"), 8, utf8));
+        assertEquals("", GenericCharacteristicParser.decodeString(bytes(0x01, ""), 8, utf8));
+        assertEquals("", GenericCharacteristicParser.decodeString(bytes(0x01, ""), 16, utf8));
+        // not byte aligned
+        assertEquals("A", GenericCharacteristicParser.decodeString(new byte[] {0x1F, 0x04}, 4, utf8));
+
+        byte[] utf16Payload = "Wahoo".getBytes(utf16);
+        byte[] padded = Arrays.copyOf(utf16Payload, utf16Payload.length + 4);
+        assertEquals("Wahoo", GenericCharacteristicParser.decodeString(padded, 0, utf16));
+        // zero bytes which are not a whole code unit are not terminators
+        assertEquals("\u0100", GenericCharacteristicParser.decodeString(new byte[] {1, 0}, 0, utf16));
+    }
+
+    private static byte[] bytes(int header, String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[data.length + 1];
+        result[0] = (byte) header;
+        System.arraycopy(data, 0, result, 1, data.length);
+        return result;
+    }
+
     private void assertFieldsExist(Object value, String... fieldNames) {
         Map<String, FieldHolder> values = parser.parse(characteristic, new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0});
         assertEquals(fieldNames.length, values.size());
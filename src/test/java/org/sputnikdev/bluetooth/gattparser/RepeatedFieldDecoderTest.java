@@ -0,0 +1,126 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RepeatedFieldDecoderTest {
+
+    private static final String RR_INTERVAL = "RR-Interval";
+    // flags: uint8 heart rate, RR-Interval values present
+    private static final byte[] RR_INTERVALS = {0x10, 74, 0x10, 0x02, 0x20, 0x03, 0x00, 0x04};
+    // flags: uint8 heart rate, energy expended and RR-Interval values present
+    private static final byte[] ENERGY_EXPENDED = {0x18, 74, 0x2C, 0x01, 0x10, 0x02, 0x20, 0x03};
+
+    private BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @Test
+    public void testParse() {
+        // typed (generated) parser
+        assertRepeated(parser);
+
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        BluetoothGattParser generic = new BluetoothGattParser(reader, new GenericCharacteristicParser(reader));
+        assertRepeated(generic);
+
+        generic.compileParser("2A37");
+        assertRepeated(generic);
+    }
+
+    @Test
+    public void testParseRegularField() {
+        FieldHolder holder = parser.parse("2A37", RR_INTERVALS).get("Heart Rate Measurement Value (uint8)");
+        assertEquals(1, holder.getRepeatedCount());
+        assertArrayEquals(new int[] {74}, holder.getIntArray());
+        assertArrayEquals(new long[] {74}, holder.getLongArray());
+        assertEquals(74, holder.getDoubleArray()[0], 0);
+    }
+
+    @Test
+    public void testDecode() {
+        RepeatedFieldDecoder decoder = parser.getRepeatedFieldDecoder("2A37");
+        assertEquals("2A37", decoder.getCharacteristicUUID());
+        assertEquals(RR_INTERVAL, decoder.getField().getName());
+
+        int[] intervals = new int[16];
+        assertEquals(3, decoder.getCount(RR_INTERVALS));
+        assertEquals(3, decoder.decode(RR_INTERVALS, intervals));
+        assertEquals(0x0210, intervals[0]);
+        assertEquals(0x0320, intervals[1]);
+        assertEquals(0x0400, intervals[2]);
+
+        // the same array is reused
+        assertEquals(2, decoder.getCount(ENERGY_EXPENDED));
+        assertEquals(2, decoder.decode(ENERGY_EXPENDED, intervals));
+        assertEquals(0x0210, intervals[0]);
+        assertEquals(0x0320, intervals[1]);
+
+        long[] longs = new long[2];
+        assertEquals(2, decoder.decode(RR_INTERVALS, longs));
+        assertArrayEquals(new long[] {0x0210, 0x0320}, longs);
+
+        double[] doubles = new double[4];
+        assertEquals(3, decoder.decode(RR_INTERVALS, doubles));
+        assertEquals(0x0400, doubles[2], 0);
+    }
+
+    @Test
+    public void testDecodeAbsent() {
+        RepeatedFieldDecoder decoder = parser.getRepeatedFieldDecoder("2A37");
+        assertEquals(0, decoder.getCount(new byte[] {0x00, 74}));
+        assertEquals(0, decoder.decode(new byte[] {0x00, 74, 0x10, 0x02}, new int[4]));
+        // an incomplete trailing value is ignored
+        assertEquals(1, decoder.decode(new byte[] {0x10, 74, 0x10, 0x02, 0x20}, new int[4]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoRepeatedField() {
+        parser.getRepeatedFieldDecoder("2A19");
+    }
+
+    private static void assertRepeated(BluetoothGattParser parser) {
+        GattResponse response = parser.parse("2A37", RR_INTERVALS);
+        FieldHolder holder = response.get(RR_INTERVAL);
+        assertTrue(holder.getField().isRepeated());
+        // the raw value is the first value
+        assertEquals(0x0210, (int) holder.getInteger());
+        assertEquals(3, holder.getRepeatedCount());
+        assertArrayEquals(new int[] {0x0210, 0x0320, 0x0400}, holder.getIntArray());
+        assertArrayEquals(new long[] {0x0210, 0x0320, 0x0400}, holder.getLongArray());
+        double[] doubles = holder.getDoubleArray();
+        assertEquals(3, doubles.length);
+        assertEquals(0x0400, doubles[2], 0);
+
+        response = parser.parse("2A37", ENERGY_EXPENDED);
+        assertEquals(300, (int) response.get("Energy Expended").getInteger());
+        assertArrayEquals(new int[] {0x0210, 0x0320}, response.get(RR_INTERVAL).getIntArray());
+
+        response = parser.parse("2A37", new byte[] {0x00, 74});
+        assertFalse(response.contains(RR_INTERVAL));
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class StringCacheTest {
+
+    @Test
+    public void testGet() {
+        StringCache cache = new StringCache(16);
+        byte[] payload = "xxWahoo Fitness".getBytes(StandardCharsets.UTF_8);
+        String first = cache.get(payload, 2, 13, StandardCharsets.UTF_8);
+        assertEquals("Wahoo Fitness", first);
+        // equal bytes in another array
+        byte[] other = "Wahoo Fitness".getBytes(StandardCharsets.UTF_8);
+        assertSame(first, cache.get(other, 0, other.length, StandardCharsets.UTF_8));
+
+        // different charset
+        assertNotSame(first, cache.get(other, 0, other.length, StandardCharsets.ISO_8859_1));
+        // different bytes
+        assertEquals("Wahoo Fitnesx", cache.get("Wahoo Fitnesx".getBytes(StandardCharsets.UTF_8), 0, 13,
+                StandardCharsets.UTF_8));
+
+        cache.clear();
+        assertNotSame(first, cache.get(other, 0, other.length, StandardCharsets.UTF_8));
+        assertEquals("", cache.get(other, 0, 0, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBounded() {
+        StringCache cache = new StringCache(5, 4);
+        assertEquals(8, cache.getCapacity());
+        assertEquals(4, cache.getMaxLength());
+        byte[] data = "Model".getBytes(StandardCharsets.UTF_8);
+        // longer values are not cached
+        assertNotSame(cache.get(data, 0, 5, StandardCharsets.UTF_8), cache.get(data, 0, 5, StandardCharsets.UTF_8));
+        assertSame(cache.get(data, 0, 4, StandardCharsets.UTF_8), cache.get(data, 0, 4, StandardCharsets.UTF_8));
+
+        // at most one value per slot is kept
+        StringCache single = new StringCache(1);
+        String first = single.get(data, 0, 1, StandardCharsets.UTF_8);
+        single.get(data, 1, 1, StandardCharsets.UTF_8);
+        assertNotSame(first, single.get(data, 0, 1, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParse() {
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        BluetoothGattParserFactory.setStringCache(new StringCache(16));
+        try {
+            String first = parser.parse("2A29", "Wahoo Fitness\0\0".getBytes(StandardCharsets.UTF_8))
+                    .get("Manufacturer Name").getString();
+            assertEquals("Wahoo Fitness", first);
+            assertSame(first, parser.parse("2A29", "Wahoo Fitness".getBytes(StandardCharsets.UTF_8))
+                    .get("Manufacturer Name").getString());
+            assertSame(first, GenericCharacteristicParser.decodeString(
+                    "Wahoo Fitness".getBytes(StandardCharsets.UTF_8), 0, StandardCharsets.UTF_8));
+        } finally {
+            BluetoothGattParserFactory.setStringCache(null);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new StringCache(0);
+    }
+
+}
@@ -0,0 +1,183 @@
+package org.sputnikdev.bluetooth.gattparser;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sputnikdev.bluetooth.gattparser.compiler.CharacteristicParserCompiler;
+import org.sputnikdev.bluetooth.gattparser.compiler.CompiledCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.decoder.GattDecoders;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TypedCharacteristicParserTest {
+
+    private static final String BATTERY_LEVEL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Characteristic name=\"Battery Level\" type=\"org.bluetooth.characteristic.battery_level\""
+            + " uuid=\"2A19\">\n"
+            + "  <Value>\n"
+            + "    <Field name=\"Level\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>uint16</Format>\n"
+            + "    </Field>\n"
+            + "  </Value>\n"
+            + "</Characteristic>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+    private final GenericCharacteristicParser generic = new GenericCharacteristicParser(reader);
+
+    @Test
+    public void testReadBits() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            byte[] raw = new byte[random.nextInt(12)];
+            random.nextBytes(raw);
+            int offset = random.nextInt(100);
+            int size = 1 + random.nextInt(64);
+            long expected = 0;
+            BitSet bits = BitSet.valueOf(raw).get(offset, offset + size);
+            for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+                expected |= 1L << bit;
+            }
+            assertEquals(expected, TypedCharacteristicParser.readBits(raw, offset, size));
+        }
+    }
+
+    @Test
+    public void testReadSigned() {
+        assertEquals(-1, TypedCharacteristicParser.readInt(new byte[] {(byte) 0xFF}, 0, 8, true));
+        assertEquals(255, TypedCharacteristicParser.readInt(new byte[] {(byte) 0xFF}, 0, 8, false));
+        assertEquals(-2048, TypedCharacteristicParser.readInt(new byte[] {0x00, 0x08}, 0, 12, true));
+        assertEquals(1, TypedCharacteristicParser.readInt(new byte[] {0x01}, 0, 1, true));
+        assertEquals(-1L, TypedCharacteristicParser.readLong(new byte[] {-1, -1, -1, -1, -1, -1}, 0, 48, true));
+        assertEquals(Integer.MIN_VALUE, TypedCharacteristicParser.readInt(new byte[] {0, 0, 0, -128}, 0, 32, true));
+    }
+
+    @Test
+    public void testEquivalence() {
+        Random random = new Random(42);
+        for (Map.Entry<String, TypedCharacteristicParser<?>> entry : GattDecoders.create(generic).entrySet()) {
+            Characteristic characteristic = reader.getCharacteristicByUUID(entry.getKey());
+            assertTrue(entry.getKey(), entry.getValue().matches(characteristic));
+            for (int i = 0; i < 300; i++) {
+                byte[] raw = new byte[random.nextInt(24)];
+                random.nextBytes(raw);
+                assertEquivalent(characteristic, raw, entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledEquivalence() {
+        Random random = new Random(42);
+        for (String uuid : GattDecoders.create(generic).keySet()) {
+            Characteristic characteristic = reader.getCharacteristicByUUID(uuid);
+            CharacteristicParser parser = CharacteristicParserCompiler.compile(characteristic, generic);
+            assertTrue(uuid, parser instanceof CompiledCharacteristicParser);
+            for (int i = 0; i < 300; i++) {
+                byte[] raw = new byte[random.nextInt(24)];
+                random.nextBytes(raw);
+                assertEquivalent(characteristic, raw, (TypedCharacteristicParser<?>) parser);
+            }
+        }
+    }
+
+    @Test
+    public void testOverriddenFormat() throws Exception {
+        BluetoothGattSpecificationReader custom = new BluetoothGattSpecificationReader();
+        TypedCharacteristicParser<?> typed = GattDecoders.create(new GenericCharacteristicParser(custom)).get("2A19");
+        assertTrue(typed.matches(custom.getCharacteristicByUUID("2A19")));
+
+        File characteristics = folder.newFolder("characteristic");
+        folder.newFolder("service");
+        Files.write(new File(characteristics, "org.bluetooth.characteristic.battery_level.xml").toPath(),
+                BATTERY_LEVEL.getBytes(StandardCharsets.UTF_8));
+        custom.loadExtensionsFromFolder(folder.getRoot().getAbsolutePath());
+
+        // same field names, different format
+        Characteristic overridden = custom.getCharacteristicByUUID("2A19");
+        assertFalse(typed.matches(overridden));
+        assertEquals(0x0201, (int) typed.parse(overridden, new byte[] {1, 2}).get("Level").getInteger());
+    }
+
+    private void assertEquivalent(Characteristic characteristic, byte[] raw, TypedCharacteristicParser<?> typed) {
+        String message = characteristic.getUuid() + " " + Arrays.toString(raw);
+        LinkedHashMap<String, FieldHolder> expected = null;
+        RuntimeException expectedError = null;
+        try {
+            expected = generic.parse(characteristic, raw);
+        } catch (RuntimeException ex) {
+            expectedError = ex;
+        }
+        LinkedHashMap<String, FieldHolder> actual;
+        try {
+            actual = typed.parse(characteristic, raw);
+        } catch (RuntimeException ex) {
+            if (expectedError == null) {
+                throw ex;
+            }
+            assertSame(message, expectedError.getClass(), ex.getClass());
+            assertEquals(message, expectedError.getMessage(), ex.getMessage());
+            return;
+        }
+        if (expectedError != null) {
+            // the generic parser fails on IEEE754 zero values (an empty bit set), generated parsers do not
+            assertTrue(message, expectedError instanceof ArrayIndexOutOfBoundsException);
+            return;
+        }
+        assertEquals(message, new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        Iterator<FieldHolder> actualHolders = actual.values().iterator();
+        for (FieldHolder expectedHolder : expected.values()) {
+            FieldHolder actualHolder = actualHolders.next();
+            assertSame(message, expectedHolder.getField(), actualHolder.getField());
+            Object expectedValue = expectedHolder.getRawValue();
+            Object actualValue = actualHolder.getRawValue();
+            if (expectedValue instanceof byte[]) {
+                assertArrayEquals(message, (byte[]) expectedValue, (byte[]) actualValue);
+            } else {
+                assertSame(message, expectedValue.getClass(), actualValue.getClass());
+                assertEquals(message, expectedValue, actualValue);
+            }
+        }
+    }
+
+}
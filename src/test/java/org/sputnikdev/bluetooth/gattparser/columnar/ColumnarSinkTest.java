@@ -0,0 +1,162 @@
+package org.sputnikdev.bluetooth.gattparser.columnar;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.stream.GattNotification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnarSinkTest {
+
+    private static final String HEART_RATE_UINT8 = "Heart Rate Measurement Value (uint8)";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @Test
+    public void testHeartRateMeasurement() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        ColumnarSink sink = new ColumnarSink(parser, directory, 3);
+        sink.accept(new GattNotification("A", "2A37", new byte[] {0x10, 74, 0x10, 0x02}));
+        sink.accept(new GattNotification("B", "2A37", new byte[] {0x08, 60, 0x05, 0x00}));
+        sink.accept(new GattNotification("A", "2A37", new byte[] {0x00, 75}));
+        assertEquals(1, sink.getFiles().size());
+        sink.accept(new GattNotification("C", "2A37", new byte[] {0x00, 76}));
+        assertEquals(1, sink.getBatches().get(0).getRowCount());
+        sink.close();
+        assertEquals(2, sink.getFiles().size());
+        assertTrue(sink.getBatches().get(0).getRowCount() == 0);
+
+        ColumnarBatch batch = ColumnarFile.read(sink.getFiles().get(0));
+        assertEquals("2A37", batch.getCharacteristicUUID());
+        assertEquals(3, batch.getRowCount());
+        assertEquals(Arrays.asList(ColumnarBatch.DEVICE_COLUMN, HEART_RATE_UINT8,
+                "Heart Rate Measurement Value (uint16)", "Energy Expended", "RR-Interval"),
+                Arrays.asList(batch.getColumns().stream().map(Column::getName).toArray()));
+
+        Column.StringColumn devices = (Column.StringColumn) batch.getColumn(ColumnarBatch.DEVICE_COLUMN);
+        assertEquals(Arrays.asList("A", "B"), devices.getDictionary());
+        assertArrayEquals(new int[] {0, 1, 0}, Arrays.copyOf(devices.getCodes(), 3));
+
+        Column.IntColumn heartRate = (Column.IntColumn) batch.getColumn(HEART_RATE_UINT8);
+        assertArrayEquals(new int[] {74, 60, 75}, Arrays.copyOf(heartRate.getValues(), 3));
+        assertEquals(0, heartRate.getNullCount());
+
+        Column.IntColumn energy = (Column.IntColumn) batch.getColumn("Energy Expended");
+        assertEquals(2, energy.getNullCount());
+        assertFalse(energy.isPresent(0));
+        assertTrue(energy.isPresent(1));
+        assertEquals(5, energy.getInt(1));
+        assertNull(energy.getObject(2));
+        assertEquals(0b010L, energy.getPresenceBitmap()[0]);
+
+        batch = ColumnarFile.read(sink.getFiles().get(1));
+        assertEquals(1, batch.getRowCount());
+        assertEquals("C", ((Column.StringColumn) batch.getColumn(ColumnarBatch.DEVICE_COLUMN)).getString(0));
+        assertEquals(76, ((Column.IntColumn) batch.getColumn(HEART_RATE_UINT8)).getInt(0));
+    }
+
+    @Test
+    public void testFieldReferences() throws IOException {
+        // temperature measurement references date time fields, they are parsed by the default parser
+        ColumnarSink sink = new ColumnarSink(parser, folder.getRoot().toPath());
+        sink.add(new GattNotification("A", "2A1C", new byte[] {0x06, (byte) 0xA8, 0x0E, 0x00, (byte) 0xFE,
+            (byte) 0xE2, 0x07, 0x0B, 0x17, 0x0E, 0x1C, 0x00, 0x02}));
+        sink.flush();
+
+        ColumnarBatch batch = ColumnarFile.read(sink.getFiles().get(0));
+        Column.DoubleColumn celsius =
+                (Column.DoubleColumn) batch.getColumn("Temperature Measurement Value (Celsius)");
+        assertEquals(37.52, celsius.getDouble(0), 0.0001);
+        assertFalse(batch.getColumn("Temperature Measurement Value (Fahrenheit)").isPresent(0));
+        assertEquals(2018, ((Column.IntColumn) batch.getColumn("Year")).getInt(0));
+        assertEquals(2, ((Column.IntColumn) batch.getColumn("Temperature Text Description")).getInt(0));
+    }
+
+    @Test
+    public void testGrowth() throws IOException {
+        ColumnarBatch batch = new ColumnarBatch(parser.getDecoder("2A19"));
+        for (int i = 0; i < 200; i++) {
+            batch.add(i % 2 == 0 ? null : "device" + i % 5, new byte[] {(byte) i});
+        }
+        assertEquals(200, batch.getRowCount());
+        Column.IntColumn level = (Column.IntColumn) batch.getColumn("Level");
+        Column devices = batch.getColumn(ColumnarBatch.DEVICE_COLUMN);
+        assertEquals(100, devices.getNullCount());
+
+        Path file = folder.getRoot().toPath().resolve("battery" + ColumnarFile.EXTENSION);
+        ColumnarFile.write(batch, file);
+        ColumnarBatch read = ColumnarFile.read(file);
+        Column.IntColumn readLevel = (Column.IntColumn) read.getColumn("Level");
+        Column.StringColumn readDevices = (Column.StringColumn) read.getColumn(ColumnarBatch.DEVICE_COLUMN);
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, level.getInt(i));
+            assertEquals(i, readLevel.getInt(i));
+            assertEquals(devices.getObject(i), readDevices.getObject(i));
+        }
+        assertEquals(100, readDevices.getNullCount());
+
+        batch.clear();
+        assertEquals(0, batch.getRowCount());
+        assertEquals(0, level.getSize());
+        try {
+            read.add(null, new byte[] {1});
+            fail();
+        } catch (IllegalStateException ignore) {
+            // read-only
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        Path file = folder.newFile("invalid" + ColumnarFile.EXTENSION).toPath();
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6});
+        try {
+            ColumnarFile.read(file);
+            fail();
+        } catch (IOException ignore) {
+            // expected
+        }
+    }
+
+    @Test(expected = CharacteristicFormatException.class)
+    public void testMalformedNotification() throws IOException {
+        new ColumnarSink(parser, folder.getRoot().toPath()).add(new GattNotification("A", "2A37", new byte[] {0x01}));
+    }
+
+}
@@ -0,0 +1,136 @@
+package org.sputnikdev.bluetooth.gattparser.compiler;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class CharacteristicParserCompilerTest {
+
+    private static final String EXTENSION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Characteristic name=\"Test Measurement\" type=\"org.sputnikdev.test_measurement\" uuid=\"FFF1\">\n"
+            + "  <Value>\n"
+            + "    <Field name=\"Flags\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>8bit</Format>\n"
+            + "      <BitField>\n"
+            + "        <Bit index=\"0\" size=\"1\" name=\"Pressure present\">\n"
+            + "          <Enumerations>\n"
+            + "            <Enumeration key=\"0\" value=\"False\"/>\n"
+            + "            <Enumeration key=\"1\" value=\"True\" requires=\"C1\"/>\n"
+            + "          </Enumerations>\n"
+            + "        </Bit>\n"
+            + "      </BitField>\n"
+            + "    </Field>\n"
+            + "    <Field name=\"Temperature\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>sint16</Format>\n"
+            + "      <DecimalExponent>-2</DecimalExponent>\n"
+            + "    </Field>\n"
+            + "    <Field name=\"Pressure\">\n"
+            + "      <Requirement>C1</Requirement>\n"
+            + "      <Format>uint32</Format>\n"
+            + "    </Field>\n"
+            + "    <Field name=\"Location\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>utf8s</Format>\n"
+            + "    </Field>\n"
+            + "  </Value>\n"
+            + "</Characteristic>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+
+    @Test
+    public void testHeartRateMeasurement() {
+        assertTrue(CharacteristicParserCompiler.isAvailable());
+        CharacteristicParser fallback = mock(CharacteristicParser.class);
+        Characteristic heartRate = reader.getCharacteristicByUUID("2A37");
+        CompiledCharacteristicParser parser =
+                (CompiledCharacteristicParser) CharacteristicParserCompiler.compile(heartRate, fallback);
+        assertSame(heartRate, parser.getCharacteristic());
+        assertSame(fallback, parser.getDelegate());
+
+        assertArrayEquals(new Object[] {null, 74, null, null, 0x0210}, parser.decode(new byte[] {0x10, 74, 0x10, 0x02}));
+        assertArrayEquals(new Object[] {null, null, 0x0201, 3, null}, parser.decode(new byte[] {0x09, 1, 2, 3, 0}));
+
+        LinkedHashMap<String, FieldHolder> result = parser.parse(heartRate, new byte[] {0x10, 74, 0x10, 0x02});
+        assertEquals(Arrays.asList("Heart Rate Measurement Value (uint8)", "RR-Interval"),
+                Arrays.asList(result.keySet().toArray()));
+        assertEquals(74, (int) result.get("Heart Rate Measurement Value (uint8)").getInteger());
+    }
+
+    @Test
+    public void testExtension() throws Exception {
+        File characteristics = folder.newFolder("characteristic");
+        folder.newFolder("service");
+        Files.write(new File(characteristics, "org.sputnikdev.test_measurement.xml").toPath(),
+                EXTENSION.getBytes(StandardCharsets.UTF_8));
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        reader.loadExtensionsFromFolder(folder.getRoot().getAbsolutePath());
+        Characteristic characteristic = reader.getCharacteristicByUUID("FFF1");
+        assertTrue(characteristic.isValidForRead());
+
+        CompiledCharacteristicParser parser = (CompiledCharacteristicParser)
+                CharacteristicParserCompiler.compile(characteristic, mock(CharacteristicParser.class));
+        assertArrayEquals(new Object[] {null, -2, null, "Attic"},
+                parser.decode(new byte[] {0x00, -2, -1, 'A', 't', 't', 'i', 'c'}));
+        assertArrayEquals(new Object[] {null, 2, 101325L, "Attic"},
+                parser.decode(new byte[] {0x01, 2, 0, -51, -117, 1, 0, 'A', 't', 't', 'i', 'c'}));
+    }
+
+    @Test
+    public void testFallback() {
+        CharacteristicParser fallback = mock(CharacteristicParser.class);
+        // field references are not supported
+        assertSame(fallback, CharacteristicParserCompiler.compile(reader.getCharacteristicByUUID("2A5A"), fallback));
+
+        Characteristic batteryLevel = reader.getCharacteristicByUUID("2A19");
+        CharacteristicParser parser = CharacteristicParserCompiler.compile(batteryLevel, fallback);
+        assertNotSame(fallback, parser);
+        // a compiled parser is bound to the specification it was compiled from
+        Characteristic heartRate = reader.getCharacteristicByUUID("2A37");
+        parser.parse(heartRate, new byte[] {0, 60});
+        verify(fallback).parse(heartRate, new byte[] {0, 60});
+    }
+
+}
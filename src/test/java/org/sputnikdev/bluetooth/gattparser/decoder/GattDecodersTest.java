@@ -0,0 +1,78 @@
+package org.sputnikdev.bluetooth.gattparser.decoder;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+import org.sputnikdev.bluetooth.gattparser.TypedCharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class GattDecodersTest {
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+    private final BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+
+    @Test
+    public void testHeartRateMeasurement() {
+        HeartRateMeasurement measurement = HeartRateMeasurement.decode(new byte[] {0x10, 74, 0x10, 0x02});
+        assertEquals(74, (int) measurement.getHeartRateMeasurementValueUint8());
+        assertNull(measurement.getHeartRateMeasurementValueUint16());
+        assertNull(measurement.getEnergyExpended());
+        assertEquals(0x0210, (int) measurement.getRrInterval());
+
+        GattResponse response = parser.parse("2A37", new byte[] {0x10, 74, 0x10, 0x02});
+        assertEquals(74, (int) response.get("Heart Rate Measurement Value (uint8)").getInteger());
+        assertEquals(0x0210, (int) response.get("RR-Interval").getInteger());
+        assertFalse(response.contains("Energy Expended"));
+    }
+
+    @Test
+    public void testRegistered() {
+        Map<String, TypedCharacteristicParser<?>> decoders = GattDecoders.create(null);
+        assertTrue(decoders.size() > 100);
+        assertTrue(decoders.get("2A37") instanceof HeartRateMeasurementDecoder);
+        for (String uuid : decoders.keySet()) {
+            assertTrue(uuid, parser.isValidForRead(uuid));
+        }
+    }
+
+    @Test
+    public void testFallback() {
+        CharacteristicParser delegate = mock(CharacteristicParser.class);
+        Characteristic batteryLevel = reader.getCharacteristicByUUID("2A19");
+        new HeartRateMeasurementDecoder(delegate).parse(batteryLevel, new byte[] {1});
+        verify(delegate).parse(batteryLevel, new byte[] {1});
+    }
+
+}
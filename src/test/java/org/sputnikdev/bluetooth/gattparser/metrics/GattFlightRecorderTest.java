@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.GattRequest;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GattFlightRecorderTest {
+
+    private static final String PREFIX = "org.sputnikdev.bluetooth.gattparser.";
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(GattFlightRecorder.isAvailable());
+    }
+
+    @Test
+    public void testSpecEvents() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+            reader.getCharacteristicByUUID("2A19");
+        });
+
+        List<RecordedEvent> registryReads = filter(events, "RegistryRead");
+        assertEquals(2, registryReads.size());
+        assertTrue(registryReads.get(0).getInt("entries") > 0);
+
+        List<RecordedEvent> specLoads = filter(events, "SpecLoad").stream()
+                .filter(event -> "2A19".equals(event.getString("uuid"))).collect(Collectors.toList());
+        assertEquals(1, specLoads.size());
+        assertTrue(specLoads.get(0).getString("file").endsWith("org.bluetooth.characteristic.battery_level.xml"));
+        assertTrue(specLoads.get(0).getLong("size") > 0);
+        assertTrue(specLoads.get(0).getLong("elapsed") > 0);
+    }
+
+    @Test
+    public void testParserEvents() throws IOException {
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        List<RecordedEvent> events;
+        try {
+            parser.setSlowDecodeThreshold(0, TimeUnit.NANOSECONDS);
+            events = record(() -> {
+                parser.parse("2A19", new byte[] {51});
+                GattRequest request = parser.prepare("2A06");
+                request.setField("Alert Level", 1);
+                parser.compile(request);
+            });
+        } finally {
+            parser.setSlowDecodeThreshold(BluetoothGattParser.DEFAULT_SLOW_DECODE_THRESHOLD, TimeUnit.NANOSECONDS);
+        }
+
+        List<RecordedEvent> decodes = filter(events, "SlowDecode");
+        assertEquals(1, decodes.size());
+        assertEquals("2A19", decodes.get(0).getString("uuid"));
+        assertEquals("org.sputnikdev.bluetooth.gattparser.decoder.BatteryLevelDecoder",
+                decodes.get(0).getString("parserType"));
+        assertEquals(1, decodes.get(0).getInt("payloadLength"));
+        assertFalse(decodes.get(0).getBoolean("failed"));
+
+        List<RecordedEvent> compilations = filter(events, "Compile");
+        assertEquals(1, compilations.size());
+        assertEquals("2A06", compilations.get(0).getString("uuid"));
+        assertEquals(1, compilations.get(0).getInt("length"));
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(GattFlightRecorder.isSlowDecodeEnabled());
+        assertFalse(GattFlightRecorder.isSpecLoadEnabled());
+    }
+
+    private static List<RecordedEvent> record(Runnable runnable) throws IOException {
+        Path file = Files.createTempFile("gattparser", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PREFIX + "SpecLoad");
+            recording.enable(PREFIX + "RegistryRead");
+            recording.enable(PREFIX + "Compile");
+            recording.enable(PREFIX + "SlowDecode");
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(PREFIX + name))
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.sputnikdev.bluetooth.gattparser.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.GattRequest;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GattMetricsRegistryTest {
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @After
+    public void tearDown() {
+        parser.setMetrics(null);
+    }
+
+    @Test
+    public void testRecording() {
+        GattMetricsRegistry registry = new GattMetricsRegistry();
+        parser.setMetrics(registry);
+        assertSame(registry, parser.getMetrics());
+
+        for (int i = 0; i < 10; i++) {
+            parser.parse("00002a19-0000-1000-8000-00805f9b34fb", new byte[] {(byte) i});
+        }
+        parser.parse("2A37", new byte[] {20, 74, 13, 3});
+        try {
+            parser.parse("2A37", new byte[] {1});
+            fail();
+        } catch (CharacteristicFormatException ignore) { }
+
+        GattRequest request = parser.prepare("2A06");
+        request.setField("Alert Level", 2);
+        parser.serialize(request);
+        parser.serialize(request, true, 185);
+
+        CharacteristicMetrics batteryLevel = registry.getMetrics("2A19");
+        assertEquals("2A19", batteryLevel.getCharacteristicUUID());
+        assertEquals(10, batteryLevel.getParseCount());
+        assertEquals(1, batteryLevel.getParsePayloadSize().getMax());
+        assertEquals(10, batteryLevel.getParseLatency().getCount());
+        assertEquals(0, batteryLevel.getParseFailureCount());
+
+        CharacteristicMetrics heartRate = registry.getMetrics("2A37");
+        assertEquals(1, heartRate.getParseCount());
+        assertEquals(1, heartRate.getParseFailureCount());
+        assertEquals(Collections.singletonMap("NOT_ENOUGH_DATA", 1L), heartRate.getParseFailures());
+
+        CharacteristicMetrics alertLevel = registry.getMetrics("2A06");
+        assertEquals(0, alertLevel.getParseCount());
+        assertEquals(2, alertLevel.getSerializeCount());
+        assertEquals(1, alertLevel.getSerializePayloadSize().getValueAtPercentile(100));
+        assertEquals(3, registry.getMetrics().size());
+
+        registry.reset();
+        assertEquals(0, batteryLevel.getParseCount());
+        assertEquals(0, heartRate.getParseFailureCount());
+    }
+
+    @Test
+    public void testNoop() {
+        GattMetricsRegistry registry = new GattMetricsRegistry();
+        parser.setMetrics(registry);
+        parser.setMetrics(null);
+        assertSame(GattParserMetrics.NOOP, parser.getMetrics());
+        parser.parse("2A19", new byte[] {51});
+        assertNull(registry.getMetrics("2A19"));
+        assertTrue(registry.getMetrics().isEmpty());
+    }
+
+    @Test
+    public void testFailureReasons() {
+        GattMetricsRegistry registry = new GattMetricsRegistry();
+        parser.setMetrics(registry);
+
+        parse("2A37", new byte[] {1});
+        parse("2A37", new byte[] {1, 72});
+        parse("2A37", new byte[] {0});
+        parse("2AA4", new byte[] {0});
+
+        assertEquals(Collections.singletonMap("NOT_ENOUGH_DATA", 3L), registry.getMetrics("2A37").getParseFailures());
+        assertEquals(Collections.singletonMap("NOT_VALID_FOR_READ", 1L),
+                registry.getMetrics("2AA4").getParseFailures());
+        assertEquals("IllegalStateException", GattMetricsRegistry.getCause(new IllegalStateException()));
+    }
+
+    private void parse(String characteristicUUID, byte[] raw) {
+        try {
+            parser.parse(characteristicUUID, raw);
+            fail();
+        } catch (CharacteristicFormatException ignore) { }
+    }
+
+}
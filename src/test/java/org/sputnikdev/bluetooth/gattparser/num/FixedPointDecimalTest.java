@@ -0,0 +1,104 @@
+package org.sputnikdev.bluetooth.gattparser.num;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FixedPointDecimalTest {
+
+    @Test
+    public void testToString() {
+        assertEquals("0", FixedPointDecimal.valueOf(0, 0).toString());
+        assertEquals("0.00", FixedPointDecimal.valueOf(0, 2).toString());
+        assertEquals("0", FixedPointDecimal.valueOf(0, -2).toString());
+        assertEquals("12.340", FixedPointDecimal.valueOf(12340, 3).toString());
+        assertEquals("-0.05", FixedPointDecimal.valueOf(-5, 2).toString());
+        assertEquals("0.0009765625", FixedPointDecimal.valueOf(9765625, 10).toString());
+        assertEquals("1500", FixedPointDecimal.valueOf(15, -2).toString());
+        assertEquals("-922337203.6854775808", FixedPointDecimal.valueOf(Long.MIN_VALUE, 10).toString());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long unscaled = random.nextLong() >> random.nextInt(64);
+            int scale = random.nextInt(30) - 5;
+            assertEquals(BigDecimal.valueOf(unscaled, scale).toPlainString(),
+                    FixedPointDecimal.valueOf(unscaled, scale).toString());
+        }
+    }
+
+    @Test
+    public void testConversions() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long unscaled = random.nextLong() >> random.nextInt(64);
+            int scale = random.nextInt(30) - 5;
+            FixedPointDecimal decimal = FixedPointDecimal.valueOf(unscaled, scale);
+            BigDecimal expected = BigDecimal.valueOf(unscaled, scale);
+            assertEquals(expected, decimal.toBigDecimal());
+            assertEquals(expected.doubleValue(), decimal.doubleValue(), 0.0);
+            assertEquals(expected.floatValue(), decimal.floatValue(), 0.0);
+            if (scale >= 0) {
+                assertEquals(expected.longValue(), decimal.longValue());
+                assertEquals(expected.intValue(), decimal.intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testCompareTo() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            FixedPointDecimal first = FixedPointDecimal.valueOf(random.nextLong() >> random.nextInt(64),
+                    random.nextInt(30) - 5);
+            FixedPointDecimal second = FixedPointDecimal.valueOf(random.nextLong() >> random.nextInt(64),
+                    random.nextInt(30) - 5);
+            assertEquals(first.toBigDecimal().compareTo(second.toBigDecimal()), first.compareTo(second));
+        }
+        assertEquals(0, FixedPointDecimal.valueOf(2, 0).compareTo(FixedPointDecimal.valueOf(200, 2)));
+        assertEquals(-1, FixedPointDecimal.valueOf(-1, 0).compareTo(FixedPointDecimal.valueOf(1, 5)));
+    }
+
+    @Test
+    public void testEquals() {
+        assertEquals(FixedPointDecimal.valueOf(125, 2), FixedPointDecimal.valueOf(125, 2));
+        assertEquals(FixedPointDecimal.valueOf(125, 2).hashCode(), FixedPointDecimal.valueOf(125, 2).hashCode());
+        assertFalse(FixedPointDecimal.valueOf(2, 0).equals(FixedPointDecimal.valueOf(200, 2)));
+    }
+
+    @Test
+    public void testWithScale() {
+        FixedPointDecimal decimal = FixedPointDecimal.valueOf(1250, 3);
+        assertSame(decimal, decimal.withScale(3));
+        assertEquals(FixedPointDecimal.valueOf(125, 2), decimal.withScale(2));
+        assertEquals(FixedPointDecimal.valueOf(125000, 5), decimal.withScale(5));
+        assertNull(decimal.withScale(1));
+        assertNull(FixedPointDecimal.valueOf(Long.MAX_VALUE / 5, 0).withScale(1));
+    }
+
+}
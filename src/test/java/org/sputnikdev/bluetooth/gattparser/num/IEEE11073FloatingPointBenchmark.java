@@ -0,0 +1,122 @@
+package org.sputnikdev.bluetooth.gattparser.num;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.BitSet;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A throughput benchmark of IEEE-11073 SFLOAT/FLOAT decoding: the original bit slicing implementation
+ * (see {@link IEEE11073FloatingPointNumberFormatterTest#legacyDecode(long, int, int, int)}), the BitSet based API
+ * and the table driven decoding of raw values; followed by encoding via the BitSet based API and into raw values.
+ * The benchmark is not run as part of the build, run it with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     org.sputnikdev.bluetooth.gattparser.num.IEEE11073FloatingPointBenchmark [seconds per measurement]
+ * </pre>
+ */
+public final class IEEE11073FloatingPointBenchmark {
+
+    private static final int[] SFLOATS = {0xF16C, 0xE16C, 0x016C, 0xFE94, 0x07FF, 0x0802, 0xD123, 0x2FFF};
+    private static final int[] FLOATS = {0xFF00016C, 0xFE00016C, 0x0000016C, 0xFFFFFE94, 0x007FFFFF, 0xFD012345};
+    private static final double[] DOUBLES = {36.4, -3.64, 364, 0.0125, 98.6, 1013.25, 0.5, -40};
+
+    private static volatile double sink;
+
+    private IEEE11073FloatingPointBenchmark() { }
+
+    public static void main(String[] args) {
+        long duration = (args.length > 0 ? Long.parseLong(args[0]) : 2) * 1_000_000_000L;
+        IEEE11073FloatingPointNumberFormatter formatter = new IEEE11073FloatingPointNumberFormatter();
+
+        System.out.printf("%-7s %16s %16s %16s%n", "format", "original ops/s", "BitSet ops/s", "table ops/s");
+        report("SFLOAT", SFLOATS, duration,
+            bits -> IEEE11073FloatingPointNumberFormatterTest.legacyDecode(bits, 16, 4, 12),
+            bits -> formatter.deserializeSFloat(BitSet.valueOf(new long[] {bits})),
+            formatter::decodeSFloat);
+        report("FLOAT", FLOATS, duration,
+            bits -> IEEE11073FloatingPointNumberFormatterTest.legacyDecode(bits & 0xFFFFFFFFL, 32, 8, 24),
+            bits -> formatter.deserializeFloat(BitSet.valueOf(new long[] {bits & 0xFFFFFFFFL})),
+            formatter::decodeFloat);
+
+        System.out.printf("%n%-7s %16s %16s%n", "format", "BitSet ops/s", "raw ops/s");
+        report("SFLOAT", duration,
+            value -> formatter.serializeSFloat((float) value).length(),
+            formatter::encodeSFloat);
+        report("FLOAT", duration,
+            value -> formatter.serializeFloat((float) value).length(),
+            formatter::encodeFloat);
+    }
+
+    private static void report(String format, long duration, DoubleToLongFunction... encoders) {
+        double[] results = new double[encoders.length];
+        for (int i = 0; i < encoders.length; i++) {
+            // warm up
+            measure(encoders[i], duration);
+            results[i] = measure(encoders[i], duration);
+        }
+        System.out.printf("%-7s %,16.0f %,16.0f%n", format, results[0], results[1]);
+    }
+
+    private static void report(String format, int[] values, long duration, IntToDoubleFunction... decoders) {
+        double[] results = new double[decoders.length];
+        for (int i = 0; i < decoders.length; i++) {
+            // warm up
+            measure(decoders[i], values, duration);
+            results[i] = measure(decoders[i], values, duration);
+        }
+        System.out.printf("%-7s %,16.0f %,16.0f %,16.0f%n", format, results[0], results[1], results[2]);
+    }
+
+    private static double measure(IntToDoubleFunction decoder, int[] values, long duration) {
+        long operations = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            double sum = 0;
+            for (int i = 0; i < 1000; i++) {
+                sum += decoder.applyAsDouble(values[i % values.length]);
+            }
+            sink = sum;
+            operations += 1000;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < duration);
+        return operations * 1e9 / elapsed;
+    }
+
+    private static double measure(DoubleToLongFunction encoder, long duration) {
+        long operations = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            long sum = 0;
+            for (int i = 0; i < 1000; i++) {
+                sum += encoder.applyAsLong(DOUBLES[i % DOUBLES.length]);
+            }
+            sink = sum;
+            operations += 1000;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < duration);
+        return operations * 1e9 / elapsed;
+    }
+
+}
@@ -21,6 +21,7 @@ package org.sputnikdev.bluetooth.gattparser.num;
  */
 
 import java.util.BitSet;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -28,6 +29,8 @@ import static org.junit.Assert.assertEquals;
 
 public class IEEE11073FloatingPointNumberFormatterTest {
 
+    private static final TwosComplementNumberFormatter TWOS_COMPLEMENT = new TwosComplementNumberFormatter();
+
     private IEEE11073FloatingPointNumberFormatter formatter = new IEEE11073FloatingPointNumberFormatter();
 
     @Test
@@ -85,19 +88,125 @@ public class IEEE11073FloatingPointNumberFormatterTest {
                 formatter.deserializeFloat(BitSet.valueOf(new long[]{IEEE11073FloatingPointNumberFormatter.FLOAT_POSITIVE_INFINITY})), 0.0);
     }
 
+    @Test
+    public void testDecodeSFloat() {
+        // every SFLOAT value decodes exactly as the reference (bit slicing and Math.pow) implementation
+        for (int bits = 0; bits < 1 << 16; bits++) {
+            float expected = legacyDecode(bits, 16, 4, 12);
+            assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(formatter.decodeSFloat(bits)));
+            assertEquals(Float.floatToIntBits(expected),
+                    Float.floatToIntBits(formatter.deserializeSFloat(BitSet.valueOf(new long[] {bits}))));
+        }
+        assertEquals(-2048, formatter.decodeSFloat(IEEE11073FloatingPointNumberFormatter.SFLOAT_NRes), 0.0);
+        assertEquals(Float.NaN, formatter.decodeSFloat(0xFFFF0000 | IEEE11073FloatingPointNumberFormatter.SFLOAT_NaN),
+                0.0);
+    }
+
+    @Test
+    public void testDecodeFloat() {
+        Random random = new Random(11073);
+        int[] mantissas = {0, 1, -1, 0x7FFFFF, IEEE11073FloatingPointNumberFormatter.FLOAT_NaN,
+            IEEE11073FloatingPointNumberFormatter.FLOAT_NRes, IEEE11073FloatingPointNumberFormatter.FLOAT_RESERVED,
+            IEEE11073FloatingPointNumberFormatter.FLOAT_POSITIVE_INFINITY,
+            IEEE11073FloatingPointNumberFormatter.FLOAT_NEGATIVE_INFINITY, 364, -364};
+        for (int exponent = 0; exponent < 256; exponent++) {
+            for (int i = 0; i < mantissas.length + 100; i++) {
+                int mantissa = i < mantissas.length ? mantissas[i] : random.nextInt();
+                int bits = exponent << 24 | mantissa & 0xFFFFFF;
+                float expected = legacyDecode(bits & 0xFFFFFFFFL, 32, 8, 24);
+                assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(formatter.decodeFloat(bits)));
+                BitSet bitSet = BitSet.valueOf(new long[] {bits & 0xFFFFFFFFL});
+                assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(formatter.deserializeFloat(bitSet)));
+            }
+        }
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testDeserializeDouble() throws Exception {
         formatter.deserializeDouble(BitSet.valueOf(new long[]{0b10L}));
     }
 
-    @Test(expected = IllegalStateException.class)
+    @Test
     public void testSerializeSFloat() {
-        formatter.serializeSFloat(0.0F);
+        assertEquals(BitSet.valueOf(new long[] {0b1111000101101100}), formatter.serializeSFloat(36.4F));
+        assertEquals(BitSet.valueOf(new long[] {0b1111111010010100}), formatter.serializeSFloat(-36.4F));
+        assertEquals(BitSet.valueOf(new long[] {0b0010000000000001}), formatter.serializeSFloat(100F));
+        assertEquals(new BitSet(), formatter.serializeSFloat(0.0F));
     }
 
-    @Test(expected = IllegalStateException.class)
+    @Test
     public void testSerializeFloat() {
-        formatter.serializeFloat(0.0F);
+        assertEquals(BitSet.valueOf(new long[] {0b11111111000000000000000101101100L}), formatter.serializeFloat(36.4F));
+        assertEquals(BitSet.valueOf(new long[] {0b11111111111111111111111010010100L}), formatter.serializeFloat(-36.4F));
+        assertEquals(new BitSet(), formatter.serializeFloat(0.0F));
+    }
+
+    @Test
+    public void testEncodeSpecialValues() {
+        assertEquals(IEEE11073FloatingPointNumberFormatter.SFLOAT_NaN, formatter.encodeSFloat(Double.NaN));
+        assertEquals(IEEE11073FloatingPointNumberFormatter.SFLOAT_POSITIVE_INFINITY,
+                formatter.encodeSFloat(Double.POSITIVE_INFINITY));
+        assertEquals(IEEE11073FloatingPointNumberFormatter.SFLOAT_NEGATIVE_INFINITY,
+                formatter.encodeSFloat(Double.NEGATIVE_INFINITY));
+        // out of range
+        assertEquals(IEEE11073FloatingPointNumberFormatter.SFLOAT_POSITIVE_INFINITY, formatter.encodeSFloat(2.1e10));
+        assertEquals(IEEE11073FloatingPointNumberFormatter.SFLOAT_NEGATIVE_INFINITY, formatter.encodeSFloat(-2.1e10));
+        assertEquals(0, formatter.encodeSFloat(1e-12));
+
+        assertEquals(IEEE11073FloatingPointNumberFormatter.FLOAT_NaN, formatter.encodeFloat(Float.NaN));
+        assertEquals(IEEE11073FloatingPointNumberFormatter.FLOAT_POSITIVE_INFINITY,
+                formatter.encodeFloat(Double.POSITIVE_INFINITY));
+        assertEquals(IEEE11073FloatingPointNumberFormatter.FLOAT_NEGATIVE_INFINITY,
+                formatter.encodeFloat(Double.NEGATIVE_INFINITY));
+        assertEquals(IEEE11073FloatingPointNumberFormatter.FLOAT_POSITIVE_INFINITY, formatter.encodeFloat(1e300));
+    }
+
+    @Test
+    public void testEncodePrecision() {
+        assertEquals(36.6, formatter.decodeSFloat(formatter.encodeSFloat(36.64, 1)), 0.00001);
+        assertEquals(37, formatter.decodeSFloat(formatter.encodeSFloat(36.64, 0)), 0.00001);
+        assertEquals(1200, formatter.decodeSFloat(formatter.encodeSFloat(1234, -2)), 0.00001);
+        // the precision cannot be held by SFLOAT
+        assertEquals(1235, formatter.decodeSFloat(formatter.encodeSFloat(1234.5678, 3)), 0.00001);
+        assertEquals(1234.568, formatter.decodeFloat(formatter.encodeFloat(1234.5678, 3)), 0.0001);
+        // the best precision
+        assertEquals(0.001235, formatter.decodeSFloat(formatter.encodeSFloat(0.0012345)), 1e-9);
+        assertEquals(123456.7, formatter.decodeFloat(formatter.encodeFloat(123456.7)), 0.01);
+    }
+
+    @Test
+    public void testSFloatRoundTrip() {
+        for (int bits = 0; bits < 1 << 16; bits++) {
+            int exponent = bits << 16 >> 28;
+            int mantissa = bits << 20 >> 20;
+            if (Math.abs(mantissa) > 2045 && !(exponent == 0 && mantissa != -2048 && mantissa != -2047)) {
+                // reserved or a value which cannot be produced by an encoder
+                continue;
+            }
+            float value = formatter.decodeSFloat(bits);
+            assertEquals(Float.floatToIntBits(value),
+                    Float.floatToIntBits(formatter.decodeSFloat(formatter.encodeSFloat(value))));
+        }
+    }
+
+    @Test
+    public void testFloatRoundTrip() {
+        Random random = new Random(20601);
+        for (int i = 0; i < 1_000_000; i++) {
+            int exponent = random.nextInt(256) - 128;
+            int mantissa = random.nextInt(2 * 0x007FFFFD + 1) - 0x007FFFFD;
+            float value = formatter.decodeFloat(exponent << 24 | mantissa & 0xFFFFFF);
+            // negative zero (an underflow) is encoded as zero
+            assertEquals(value, formatter.decodeFloat(formatter.encodeFloat(value)), 0.0);
+
+            double number = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+            int precision = random.nextInt(8);
+            double decoded = formatter.decodeSFloat(formatter.encodeSFloat(number, precision));
+            int ulpExponent = Math.max(-precision, (int) Math.ceil(Math.log10(Math.abs(number) / 2045)));
+            if (ulpExponent <= 7) {
+                assertEquals(number, decoded, Math.pow(10, ulpExponent) / 2 * 1.0001 + Math.abs(number) * 1e-6);
+            }
+        }
     }
 
     @Test(expected = IllegalStateException.class)
@@ -105,5 +214,23 @@ public class IEEE11073FloatingPointNumberFormatterTest {
         formatter.serializeDouble(0.0);
     }
 
+    // the original bit slicing implementation
+    static float legacyDecode(long value, int size, int exponentSize, int mantissaSize) {
+        BitSet bits = BitSet.valueOf(new long[] {value});
+        int exponent = TWOS_COMPLEMENT.deserializeInteger(bits.get(mantissaSize, size), exponentSize, true);
+        int mantissa = TWOS_COMPLEMENT.deserializeInteger(bits.get(0, mantissaSize), mantissaSize, true);
+        if (exponent == 0) {
+            if (size == 16 && mantissa == IEEE11073FloatingPointNumberFormatter.SFLOAT_NaN
+                    || size == 32 && mantissa == IEEE11073FloatingPointNumberFormatter.FLOAT_NaN) {
+                return Float.NaN;
+            } else if (size == 16 && mantissa == IEEE11073FloatingPointNumberFormatter.SFLOAT_POSITIVE_INFINITY
+                    || size == 32 && mantissa == IEEE11073FloatingPointNumberFormatter.FLOAT_POSITIVE_INFINITY) {
+                return Float.POSITIVE_INFINITY;
+            } else if (size == 16 && mantissa == 0xFFFFF802 || size == 32 && mantissa == 0xFF800002) {
+                return Float.NEGATIVE_INFINITY;
+            }
+        }
+        return (float) ((double) mantissa * Math.pow(10, exponent));
+    }
 
 }
@@ -0,0 +1,111 @@
+package org.sputnikdev.bluetooth.gattparser.num;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Int128Test {
+
+    private static final BigInteger TWO_POW_128 = BigInteger.ONE.shiftLeft(128);
+
+    @Test
+    public void testRead() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            byte[] data = new byte[random.nextInt(18) + 1];
+            random.nextBytes(data);
+            int offset = random.nextInt(8);
+            int size = Math.min(random.nextInt(128) + 1, data.length * 8);
+            for (boolean signed : new boolean[] {false, true}) {
+                BigInteger expected = expected(data, offset, size, signed);
+                Int128 actual = Int128.read(data, offset, size, signed);
+                assertEquals(expected, actual.toBigInteger());
+                assertEquals(expected.toString(), actual.toString());
+                assertEquals(expected.signum(), actual.signum());
+                assertEquals(expected.bitLength() < Long.SIZE, actual.isLong());
+                assertEquals(expected.longValue(), actual.longValue());
+                assertEquals(expected.doubleValue(), actual.doubleValue(), 0.0);
+                assertEquals(actual, Int128.valueOf(expected));
+                assertTrue(actual.equalsBigInteger(expected));
+                assertFalse(actual.equalsBigInteger(expected.add(BigInteger.ONE)));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsigned128() {
+        byte[] data = new byte[16];
+        Arrays.fill(data, (byte) 0xFF);
+        Int128 unsigned = Int128.read(data, 0, 128, false);
+        Int128 signed = Int128.read(data, 0, 128, true);
+        assertEquals(TWO_POW_128.subtract(BigInteger.ONE), unsigned.toBigInteger());
+        assertEquals(BigInteger.ONE.negate(), signed.toBigInteger());
+        assertFalse(unsigned.equals(signed));
+        assertTrue(signed.isLong());
+        assertFalse(unsigned.isLong());
+        assertEquals(1, unsigned.compareTo(signed));
+        assertEquals(unsigned, Int128.valueOf(-1L, -1L, false));
+        assertEquals(signed, Int128.valueOf(-1L));
+        // an unsigned value which fits into 127 bits is equal to the same signed value
+        assertEquals(Int128.valueOf(0, 5, false), Int128.valueOf(0, 5, true));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testValueOfOutOfRange() {
+        Int128.valueOf(TWO_POW_128);
+    }
+
+    @Test
+    public void testCompareTo() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            Int128 first = Int128.valueOf(random.nextLong() >> random.nextInt(64), random.nextLong(),
+                    random.nextBoolean());
+            Int128 second = random.nextBoolean() ? Int128.valueOf(first.getHigh(), random.nextLong(), true)
+                    : Int128.valueOf(random.nextLong(), random.nextLong(), random.nextBoolean());
+            assertEquals(first.toBigInteger().compareTo(second.toBigInteger()), first.compareTo(second));
+            assertEquals(first.toBigInteger().equals(second.toBigInteger()), first.equals(second));
+        }
+    }
+
+    private static BigInteger expected(byte[] data, int offset, int size, boolean signed) {
+        BigInteger value = BigInteger.ZERO;
+        for (int bit = 0; bit < size; bit++) {
+            int index = (offset + bit) / 8;
+            if (index < data.length && (data[index] >> ((offset + bit) % 8) & 1) != 0) {
+                value = value.setBit(bit);
+            }
+        }
+        if (signed && size > 1 && value.testBit(size - 1)) {
+            value = value.subtract(BigInteger.ONE.shiftLeft(size));
+        }
+        return value;
+    }
+
+}
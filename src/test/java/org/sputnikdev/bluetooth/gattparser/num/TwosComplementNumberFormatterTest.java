@@ -22,6 +22,7 @@ package org.sputnikdev.bluetooth.gattparser.num;
 
 import java.math.BigInteger;
 import java.util.BitSet;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -162,6 +163,29 @@ public class TwosComplementNumberFormatterTest {
         assertEquals(bitSetInt, bitSetBigInteger);
     }
 
+    @Test
+    public void testDeserializeBigIntegerWide() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            byte[] data = new byte[random.nextInt(24) + 1];
+            random.nextBytes(data);
+            BitSet bits = BitSet.valueOf(data);
+            int size = random.nextInt(data.length * 8) + 1;
+            for (boolean signed : new boolean[] {false, true}) {
+                BigInteger expected = BigInteger.ZERO;
+                for (int bit = 0; bit < size; bit++) {
+                    if (bits.get(bit)) {
+                        expected = expected.setBit(bit);
+                    }
+                }
+                if (signed && size > 1 && bits.get(size - 1)) {
+                    expected = expected.subtract(BigInteger.ONE.shiftLeft(size));
+                }
+                assertEquals(expected, formatter.deserializeBigInteger(bits, size, signed));
+            }
+        }
+    }
+
     private void assertDeserializeSerialize(int byte1, int size, boolean signed, int expected) {
         BitSet bitSet = getBytes(byte1);
         assertDeserializeSerialize(bitSet, size, signed, expected);
@@ -20,12 +20,23 @@ package org.sputnikdev.bluetooth.gattparser.spec;
  * #L%
  */
 
+import java.io.File;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -33,12 +44,42 @@ import org.mockito.runners.MockitoJUnitRunner;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(MockitoJUnitRunner.class)
 public class BluetoothGattSpecificationReaderTest {
 
+    private static final String RECURSIVE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Characteristic name=\"Test Recursive\" type=\"org.sputnikdev.test_recursive\" uuid=\"FFF2\">\n"
+            + "  <Value>\n"
+            + "    <Field name=\"Level\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>uint8</Format>\n"
+            + "    </Field>\n"
+            + "    <Field name=\"Nested\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Reference>org.sputnikdev.test_recursive</Reference>\n"
+            + "    </Field>\n"
+            + "  </Value>\n"
+            + "</Characteristic>\n";
+
+    private static final String TIME_SOURCE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Characteristic name=\"Time Source\" type=\"org.bluetooth.characteristic.time_source\" uuid=\"2A13\">\n"
+            + "  <Value>\n"
+            + "    <Field name=\"Custom Source\">\n"
+            + "      <Requirement>Mandatory</Requirement>\n"
+            + "      <Format>uint8</Format>\n"
+            + "    </Field>\n"
+            + "  </Value>\n"
+            + "</Characteristic>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Spy
     private BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
 
@@ -70,6 +111,29 @@ public class BluetoothGattSpecificationReaderTest {
                 "Excluded", "Excluded", characteristics.get(2));
     }
 
+    @Test
+    public void testConcurrentLoading() throws Exception {
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Characteristic>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            boolean byType = i % 2 == 0;
+            results.add(executor.submit(() -> {
+                start.await();
+                return byType ? reader.getCharacteristicByType("org.bluetooth.characteristic.battery_level")
+                        : reader.getCharacteristicByUUID("2A19");
+            }));
+        }
+        start.countDown();
+        Characteristic characteristic = reader.getCharacteristicByUUID("2A19");
+        assertNotNull(characteristic);
+        for (Future<Characteristic> result : results) {
+            assertSame(characteristic, result.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
     @Test
     public void testGetBasicCharacteristic() throws Exception {
         Characteristic characteristic = reader.getCharacteristicByUUID("2A19");
@@ -231,6 +295,76 @@ public class BluetoothGattSpecificationReaderTest {
         assertEquals("Adjust Reason", fields.get(8).getName());
     }
 
+    @Test
+    public void testGetLayout() {
+        Characteristic characteristic = reader.getCharacteristicByUUID("2A14");
+        CharacteristicLayout layout = reader.getLayout(characteristic);
+        assertSame(layout, reader.getLayout(characteristic));
+        assertSame(characteristic, layout.getCharacteristic());
+
+        assertEquals(6, layout.getEntryCount());
+        assertEquals("Source", layout.getEntry(0).getName());
+        assertEquals("org.bluetooth.characteristic.time_source", layout.getReferencedCharacteristic(0).getType());
+        assertEquals(2, layout.getReferenceEnd(0));
+        assertEquals("Time Source", layout.getEntry(1).getName());
+        assertNull(layout.getReferencedCharacteristic(1));
+        assertEquals(2, layout.getReferenceEnd(1));
+        assertEquals("Accuracy", layout.getEntry(2).getName());
+        assertEquals(4, layout.getReferenceEnd(2));
+
+        List<Field> fields = layout.getFields();
+        assertSame(fields, reader.getFields(characteristic));
+        assertEquals(4, fields.size());
+        assertEquals("Time Source", fields.get(0).getName());
+        assertEquals("Accuracy", fields.get(1).getName());
+        assertEquals("Days Since Update", fields.get(2).getName());
+        assertEquals("Hours Since Update", fields.get(3).getName());
+    }
+
+    @Test
+    public void testRecursiveReferences() throws Exception {
+        File characteristics = folder.newFolder("characteristic");
+        folder.newFolder("service");
+        Files.write(new File(characteristics, "org.sputnikdev.test_recursive.xml").toPath(),
+                RECURSIVE.getBytes(StandardCharsets.UTF_8));
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        reader.loadExtensionsFromFolder(folder.getRoot().getAbsolutePath());
+        Characteristic characteristic = reader.getCharacteristicByUUID("FFF2");
+        try {
+            reader.getFields(characteristic);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("org.sputnikdev.test_recursive"));
+        }
+    }
+
+    @Test
+    public void testLayoutGeneration() throws Exception {
+        BluetoothGattSpecificationReader reader = new BluetoothGattSpecificationReader();
+        Characteristic characteristic = reader.getCharacteristicByUUID("2A14");
+        CharacteristicLayout layout = reader.getLayout(characteristic);
+        int generation = reader.getGeneration();
+        assertEquals(generation, layout.getGeneration());
+        assertEquals(0, layout.getIndex("Time Source"));
+        assertEquals(3, layout.getIndex("Hours Since Update"));
+        assertEquals(-1, layout.getIndex("Unknown"));
+
+        // overriding a referenced characteristic
+        File characteristics = folder.newFolder("characteristic");
+        folder.newFolder("service");
+        Files.write(new File(characteristics, "org.bluetooth.characteristic.time_source.xml").toPath(),
+                TIME_SOURCE.getBytes(StandardCharsets.UTF_8));
+        reader.loadExtensionsFromFolder(folder.getRoot().getAbsolutePath());
+        assertEquals(generation + 1, reader.getGeneration());
+
+        CharacteristicLayout resolved = reader.getLayout(characteristic);
+        assertNotSame(layout, resolved);
+        assertEquals(generation + 1, resolved.getGeneration());
+        assertEquals(-1, resolved.getIndex("Time Source"));
+        assertEquals(0, resolved.getIndex("Custom Source"));
+        assertSame(resolved.getFields(), reader.getFields(characteristic));
+    }
+
     private void assertCharacteristicAccess(String read, String write, String writeWithoutResponse, String signedWrite,
             String reliableWrite, String notify, String indicate, String writableAuxiliaries, String broadcast,
             CharacteristicAccess characteristicAccess) {
@@ -0,0 +1,123 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChangeDetectorTest {
+
+    private final ChangeDetector detector = new ChangeDetector(BluetoothGattParserFactory.getDefault());
+
+    @Test
+    public void testDetect() {
+        List<FieldChange> changes = detector.detect(new GattNotification("A", "2A19", new byte[] {51}));
+        assertEquals(1, changes.size());
+        assertEquals("Level", changes.get(0).getField().getName());
+        assertNull(changes.get(0).getOldValue());
+        assertEquals(51, changes.get(0).getNewValue());
+
+        assertTrue(detector.detect(new GattNotification("A", "2A19", new byte[] {51})).isEmpty());
+        // other devices are tracked separately
+        assertEquals(1, detector.detect(new GattNotification("B", "2A19", new byte[] {51})).size());
+
+        changes = detector.detect(new GattNotification("A", "2A19", new byte[] {50}));
+        assertEquals(1, changes.size());
+        assertEquals(51, changes.get(0).getOldValue());
+        assertEquals(50, changes.get(0).getNewValue());
+
+        detector.reset("A");
+        assertEquals(1, detector.detect(new GattNotification("A", "2A19", new byte[] {50})).size());
+    }
+
+    @Test
+    public void testOptionalFields() {
+        detector.detect(new GattNotification("A", "2A37", new byte[] {0x08, 74, 0x10, 0x02}));
+        List<FieldChange> changes = detector.detect(new GattNotification("A", "2A37", new byte[] {0x00, 74}));
+        assertEquals(1, changes.size());
+        assertEquals("Energy Expended", changes.get(0).getField().getName());
+        assertEquals(528, changes.get(0).getOldValue());
+        assertNull(changes.get(0).getNewValue());
+    }
+
+    @Test
+    public void testWatchedFields() {
+        detector.watch("2A37", "Heart Rate Measurement Value (uint8)");
+        assertEquals(1, detector.detect(new GattNotification("A", "2A37", new byte[] {0x08, 74, 0x10, 0x02})).size());
+        assertTrue(detector.detect(new GattNotification("A", "2A37", new byte[] {0x08, 74, 0x11, 0x02})).isEmpty());
+        List<FieldChange> changes = detector.detect(new GattNotification("A", "2A37", new byte[] {0x00, 75}));
+        assertEquals(1, changes.size());
+        assertEquals(75, changes.get(0).getNewValue());
+    }
+
+    @Test
+    public void testWatchedBitRanges() {
+        // system ID has a static layout: uint40 manufacturer identifier followed by uint24 OUI
+        detector.watch("2A23", "Organizationally Unique Identifier");
+        byte[] raw = {1, 2, 3, 4, 5, 6, 7, 8};
+        assertEquals(1, detector.detect(new GattNotification("A", "2A23", raw)).size());
+        assertTrue(detector.detect(new GattNotification("A", "2A23", new byte[] {9, 9, 9, 9, 9, 6, 7, 8})).isEmpty());
+        List<FieldChange> changes =
+                detector.detect(new GattNotification("A", "2A23", new byte[] {1, 2, 3, 4, 5, 6, 7, 9}));
+        assertEquals(1, changes.size());
+        assertEquals(0x080706, changes.get(0).getOldValue());
+        assertEquals(0x090706, changes.get(0).getNewValue());
+    }
+
+    @Test
+    public void testWatchedString() {
+        detector.watch("2A29", "Manufacturer Name");
+        assertEquals(1, detector.detect(new GattNotification("A", "2A29", bytes("Acme"))).size());
+        assertTrue(detector.detect(new GattNotification("A", "2A29", bytes("Acme"))).isEmpty());
+        assertEquals(1, detector.detect(new GattNotification("A", "2A29", bytes("Acmf"))).size());
+        assertEquals(1, detector.detect(new GattNotification("A", "2A29", bytes("Acme Inc"))).size());
+    }
+
+    @Test
+    public void testMalformedNotification() {
+        detector.detect(new GattNotification("A", "2A37", new byte[] {0x00, 74}));
+        try {
+            detector.detect(new GattNotification("A", "2A37", new byte[] {0x01}));
+            fail();
+        } catch (CharacteristicFormatException ignore) {
+            // previous state is kept
+        }
+        assertTrue(detector.detect(new GattNotification("A", "2A37", new byte[] {0x00, 74})).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        detector.watch("2A37", "Unknown");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,273 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GattDecodingProcessorTest {
+
+    private static final String BATTERY_LEVEL = "2A19";
+    private static final String UNKNOWN = "FFFF";
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderPerDevice() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, executor, 4, 16, true);
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+
+        int total = 1000;
+        for (int i = 0; i < total; i++) {
+            publisher.emit(new GattNotification("device" + (i % 10), BATTERY_LEVEL, new byte[] {(byte) (i / 10)}));
+        }
+        publisher.complete();
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(total, subscriber.received.size());
+
+        Map<String, Integer> last = new HashMap<>();
+        for (DecodedNotification notification : subscriber.received) {
+            int level = notification.getResponse().get("Level").getInteger();
+            Integer previous = last.put(notification.getNotification().getDevice(), level);
+            assertTrue(previous == null || previous + 1 == level);
+        }
+        assertTrue(publisher.maxOutstanding <= 16);
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, executor, 2, 8, false);
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(2);
+        processor.subscribe(subscriber);
+
+        assertEquals(8, publisher.requested.get());
+        for (int i = 0; i < 8; i++) {
+            publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {(byte) i}));
+        }
+        Thread.sleep(200);
+        assertEquals(2, subscriber.received.size());
+        // nothing is consumed, nothing is requested
+        assertEquals(0, publisher.requested.get());
+
+        subscriber.subscription.request(6);
+        publisher.complete();
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(8, subscriber.received.size());
+        assertTrue(publisher.requested.get() > 0);
+    }
+
+    @Test
+    public void testErrorHandler() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, executor);
+        List<GattNotification> failed = Collections.synchronizedList(new ArrayList<>());
+        processor.setErrorHandler((notification, error) -> failed.add(notification));
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+
+        publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {1}));
+        publisher.emit(new GattNotification("device", UNKNOWN, new byte[] {2}));
+        publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {3}));
+        publisher.complete();
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(2, subscriber.received.size());
+        assertEquals(1, failed.size());
+        assertEquals(UNKNOWN, failed.get(0).getCharacteristicUUID());
+    }
+
+    @Test
+    public void testError() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, executor);
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+
+        publisher.emit(new GattNotification("device", UNKNOWN, new byte[] {2}));
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof CharacteristicFormatException);
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void testErrorAfterDecoded() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, executor);
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(1);
+        processor.subscribe(subscriber);
+
+        publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {1}));
+        publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {2}));
+        publisher.emit(new GattNotification("device", UNKNOWN, new byte[] {3}));
+        while (!publisher.cancelled) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, subscriber.received.size());
+        assertNull(subscriber.error);
+
+        // the second notification is decoded before the failure and must not be lost
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(2, subscriber.received.size());
+        assertTrue(subscriber.error instanceof CharacteristicFormatException);
+    }
+
+    @Test
+    public void testErrorHandlerFailure() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, executor);
+        processor.setErrorHandler((notification, error) -> {
+            throw new IllegalStateException("handler failure");
+        });
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+
+        publisher.emit(new GattNotification("device", UNKNOWN, new byte[] {1}));
+        publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {2}));
+
+        // the stream is terminated only once the lane has drained its queue
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void testRejectedExecution() throws InterruptedException {
+        GattDecodingProcessor processor = new GattDecodingProcessor(parser, command -> {
+            throw new RejectedExecutionException("shut down");
+        });
+        TestPublisher publisher = new TestPublisher(processor);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+
+        publisher.emit(new GattNotification("device", BATTERY_LEVEL, new byte[] {1}));
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof RejectedExecutionException);
+        assertTrue(subscriber.received.isEmpty());
+        assertTrue(publisher.cancelled);
+    }
+
+    private static class TestPublisher implements Subscription {
+
+        private final Subscriber<? super GattNotification> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private volatile long maxOutstanding;
+        private volatile boolean cancelled;
+
+        TestPublisher(Subscriber<? super GattNotification> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        void emit(GattNotification notification) throws InterruptedException {
+            while (requested.get() == 0) {
+                Thread.sleep(1);
+            }
+            requested.decrementAndGet();
+            subscriber.onNext(notification);
+        }
+
+        void complete() {
+            subscriber.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            maxOutstanding = Math.max(maxOutstanding, requested.addAndGet(n));
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class TestSubscriber implements Subscriber<DecodedNotification> {
+
+        private final long initialRequest;
+        private final List<DecodedNotification> received = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Subscription subscription;
+        private volatile Throwable error;
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(DecodedNotification notification) {
+            received.add(notification);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+}
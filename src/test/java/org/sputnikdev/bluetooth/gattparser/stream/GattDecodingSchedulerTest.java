@@ -0,0 +1,174 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GattDecodingSchedulerTest {
+
+    private static final String BATTERY_LEVEL = "2A19";
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @Test
+    public void testOrderPerDevice() throws InterruptedException {
+        int devices = 16;
+        int perDevice = 500;
+        List<DecodedNotification> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(devices * perDevice);
+        GattDecodingScheduler scheduler = new GattDecodingScheduler(parser, notification -> {
+            received.add(notification);
+            latch.countDown();
+        });
+
+        List<Thread> producers = new ArrayList<>();
+        for (int d = 0; d < devices; d++) {
+            String device = "device" + d;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perDevice; i++) {
+                    GattNotification notification = new GattNotification(device, BATTERY_LEVEL,
+                            new byte[] {(byte) (i % 100)});
+                    while (!scheduler.submit(notification)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+
+        Map<String, Integer> last = new HashMap<>();
+        for (DecodedNotification notification : received) {
+            int level = notification.getResponse().get("Level").getInteger();
+            Integer previous = last.put(notification.getNotification().getDevice(), level);
+            assertTrue(previous == null || (previous + 1) % 100 == level);
+        }
+        long processed = scheduler.getMetrics().stream().mapToLong(LaneMetrics::getProcessed).sum();
+        assertEquals(devices * perDevice, processed);
+    }
+
+    @Test
+    public void testChattyDeviceRejected() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<DecodedNotification> received = Collections.synchronizedList(new ArrayList<>());
+        GattDecodingScheduler scheduler = new GattDecodingScheduler(parser, notification -> {
+            if ("chatty".equals(notification.getNotification().getDevice())) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            received.add(notification);
+        }, 2, 4, 2, Thread::new);
+
+        int chattyLane = scheduler.getLaneIndex("chatty");
+        String quiet = null;
+        for (int i = 0; quiet == null; i++) {
+            if (scheduler.getLaneIndex("quiet" + i) != chattyLane) {
+                quiet = "quiet" + i;
+            }
+        }
+
+        assertTrue(scheduler.submit(new GattNotification("chatty", BATTERY_LEVEL, new byte[] {1})));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (scheduler.submit(new GattNotification("chatty", BATTERY_LEVEL, new byte[] {1}))) {
+                accepted++;
+            }
+        }
+        assertEquals(4, accepted);
+        LaneMetrics metrics = scheduler.getMetrics().get(chattyLane);
+        assertEquals(4, metrics.getQueueDepth());
+        assertEquals(6, metrics.getRejected());
+
+        assertTrue(scheduler.submit(new GattNotification(quiet, BATTERY_LEVEL, new byte[] {2})));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(quiet, received.get(0).getNotification().getDevice());
+
+        release.countDown();
+        scheduler.shutdown();
+        assertFalse(scheduler.submit(new GattNotification(quiet, BATTERY_LEVEL, new byte[] {2})));
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(6, received.size());
+    }
+
+    @Test
+    public void testErrorHandler() throws InterruptedException {
+        List<GattNotification> failed = Collections.synchronizedList(new ArrayList<>());
+        GattDecodingScheduler scheduler = new GattDecodingScheduler(parser, notification -> { });
+        scheduler.setErrorHandler((notification, error) -> failed.add(notification));
+
+        scheduler.submit(new GattNotification("device", "FFFF", new byte[] {1}));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, failed.size());
+        assertEquals(1, scheduler.getMetrics().get(scheduler.getLaneIndex("device")).getFailed());
+    }
+
+    @Test
+    public void testRingBuffer() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(i, i));
+            }
+            assertFalse(buffer.offer(5, 5));
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i, (long) buffer.peekTimestamp());
+                assertEquals(Integer.valueOf(i), buffer.peek());
+                buffer.remove();
+            }
+            assertTrue(buffer.isEmpty());
+            assertEquals(null, buffer.peek());
+        }
+    }
+
+}
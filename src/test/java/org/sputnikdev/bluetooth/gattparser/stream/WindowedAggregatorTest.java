@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth.gattparser.stream;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WindowedAggregatorTest {
+
+    private static final String HEART_RATE = "Heart Rate Measurement Value (uint8)";
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+    private final List<WindowAggregate> aggregates = new ArrayList<>();
+
+    @Test
+    public void testTumblingWindows() {
+        WindowedAggregator aggregator = new WindowedAggregator(parser, 60_000, aggregates::add);
+        aggregator.add(heartRate("A", 70), 1_000);
+        aggregator.add(heartRate("A", 80), 2_000);
+        aggregator.add(heartRate("B", 100), 3_000);
+        aggregator.add(heartRate("A", 90), 59_999);
+        assertTrue(aggregates.isEmpty());
+
+        aggregator.add(heartRate("A", 60), 60_000);
+        assertEquals(1, aggregates.size());
+        WindowAggregate aggregate = aggregates.get(0);
+        assertEquals("A", aggregate.getDevice());
+        assertEquals("2A37", aggregate.getCharacteristicUUID());
+        assertEquals(0, aggregate.getStart());
+        assertEquals(60_000, aggregate.getEnd());
+        int index = aggregate.getFieldIndex(HEART_RATE);
+        assertEquals(3, aggregate.getCount(index));
+        assertEquals(70, aggregate.getMin(index), 0);
+        assertEquals(90, aggregate.getMax(index), 0);
+        assertEquals(80, aggregate.getMean(index), 0);
+        assertEquals(90, aggregate.getLast(index), 0);
+        // absent fields
+        int energy = aggregate.getFieldIndex("Energy Expended");
+        assertEquals(0, aggregate.getCount(energy));
+        assertTrue(Double.isNaN(aggregate.getMean(energy)));
+
+        aggregator.advance(120_000);
+        assertEquals(3, aggregates.size());
+        assertEquals("A", aggregates.get(1).getDevice());
+        assertEquals(60_000, aggregates.get(1).getStart());
+        assertEquals(60, aggregates.get(1).getMax(index), 0);
+        assertEquals("B", aggregates.get(2).getDevice());
+        assertEquals(0, aggregates.get(2).getStart());
+
+        // late reading
+        aggregator.add(heartRate("A", 60), 1_000);
+        assertEquals(1, aggregator.getDropped());
+    }
+
+    @Test
+    public void testSlidingWindows() {
+        WindowedAggregator aggregator = new WindowedAggregator(parser, 3_000, 1_000, aggregates::add);
+        aggregator.aggregate("2A37", HEART_RATE);
+        aggregator.add(heartRate("A", 60), 0);
+        aggregator.add(heartRate("A", 90), 1_500);
+        aggregator.add(heartRate("A", 120), 10_000);
+
+        // windows ending at 1, 2, 3 and 4 seconds contain readings
+        assertEquals(4, aggregates.size());
+        long[] counts = {1, 2, 2, 1};
+        double[] means = {60, 75, 75, 90};
+        for (int i = 0; i < aggregates.size(); i++) {
+            WindowAggregate aggregate = aggregates.get(i);
+            assertEquals(1, aggregate.getFields().size());
+            assertEquals((i + 1) * 1_000L, aggregate.getEnd());
+            assertEquals(aggregate.getEnd() - 3_000, aggregate.getStart());
+            assertEquals(counts[i], aggregate.getCount(0));
+            assertEquals(means[i], aggregate.getMean(0), 0);
+        }
+
+        aggregator.flush();
+        assertEquals(7, aggregates.size());
+        assertEquals(120, aggregates.get(6).getSum(0), 0);
+        assertEquals(13_000, aggregates.get(6).getEnd());
+    }
+
+    @Test
+    public void testScaledValues() {
+        WindowedAggregator aggregator = new WindowedAggregator(parser, 1_000, aggregates::add);
+        aggregator.add(new GattNotification("A", "2A6E", new byte[] {(byte) 0xF6, 0x08}), 0);
+        aggregator.add(new GattNotification("A", "2A6E", new byte[] {(byte) 0x00, 0x09}), 10);
+        aggregator.flush();
+        assertEquals(1, aggregates.size());
+        assertEquals(22.94, aggregates.get(0).getMin(0), 0.0001);
+        assertEquals(23.04, aggregates.get(0).getMax(0), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlide() {
+        new WindowedAggregator(parser, 3_000, 2_000, aggregates::add);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonNumericField() {
+        new WindowedAggregator(parser, 1_000, aggregates::add).aggregate("2A29", "Manufacturer Name");
+    }
+
+    private static GattNotification heartRate(String device, int value) {
+        return new GattNotification(device, "2A37", new byte[] {0x00, (byte) value});
+    }
+
+}
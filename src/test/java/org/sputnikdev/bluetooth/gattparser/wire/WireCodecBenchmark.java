@@ -0,0 +1,116 @@
+package org.sputnikdev.bluetooth.gattparser.wire;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import com.google.gson.JsonParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.GattJsonEncoder;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Compares the binary wire format ({@link WireCodec}) with JSON ({@link GattJsonEncoder}) by message size
+ * and throughput of encoding and decoding (decoding includes reading all field values).
+ * The benchmark is not run as part of the build, run it with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     org.sputnikdev.bluetooth.gattparser.wire.WireCodecBenchmark [seconds per measurement]
+ * </pre>
+ */
+public final class WireCodecBenchmark {
+
+    private static final Object[][] PAYLOADS = {
+        {"2A19", new byte[] {51}},
+        {"2A37", new byte[] {0x10, 74, 0x10, 0x02}},
+        {"2A1C", new byte[] {0x06, (byte) 0xA8, 0x0E, 0x00, (byte) 0xFE, (byte) 0xE2, 0x07, 0x0B, 0x17, 0x0E, 0x1C,
+            0x00, 0x02}},
+        {"2A5B", new byte[] {0x03, 0x10, 0x20, 0x30, 0x40, 0x00, 0x01, 0x11, 0x22, 0x33, 0x44, 0x00, 0x02}},
+    };
+
+    private static volatile Object sink;
+
+    private WireCodecBenchmark() { }
+
+    public static void main(String[] args) {
+        long duration = (args.length > 0 ? Long.parseLong(args[0]) : 2) * 1_000_000_000L;
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+        System.out.printf("%-6s %10s %10s %10s %16s %16s %16s %16s%n", "UUID", "raw bytes", "JSON bytes", "wire bytes",
+                "JSON enc ops/s", "wire enc ops/s", "JSON dec ops/s", "wire dec ops/s");
+        for (Object[] payload : PAYLOADS) {
+            String uuid = (String) payload[0];
+            byte[] raw = (byte[]) payload[1];
+            GattResponse response = parser.parse(uuid, raw);
+            GattJsonEncoder json = parser.getJsonEncoder(uuid);
+            WireCodec wire = new WireCodec(parser, uuid);
+            String encodedJson = json.encode(response);
+            byte[] encodedWire = wire.encode(response);
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+            Supplier<Object> jsonEncode = () -> json.encode(response).getBytes(StandardCharsets.UTF_8);
+            Supplier<Object> wireEncode = () -> {
+                buffer.clear();
+                return wire.encode(response, buffer);
+            };
+            JsonParser jsonParser = new JsonParser();
+            Supplier<Object> jsonDecode = () -> jsonParser.parse(new StringReader(encodedJson));
+            ByteBuffer wireBuffer = ByteBuffer.wrap(encodedWire);
+            Supplier<Object> wireDecode = () -> {
+                wireBuffer.rewind();
+                WireMessage message = wire.decode(wireBuffer);
+                Object last = null;
+                for (int i = 0; i < message.getFields().size(); i++) {
+                    last = message.getObject(i);
+                }
+                return last;
+            };
+            // warm up
+            measure(jsonEncode, duration);
+            measure(wireEncode, duration);
+            measure(jsonDecode, duration);
+            measure(wireDecode, duration);
+            System.out.printf("%-6s %10d %10d %10d %,16.0f %,16.0f %,16.0f %,16.0f%n", uuid, raw.length,
+                    encodedJson.getBytes(StandardCharsets.UTF_8).length, encodedWire.length,
+                    measure(jsonEncode, duration), measure(wireEncode, duration),
+                    measure(jsonDecode, duration), measure(wireDecode, duration));
+        }
+    }
+
+    private static double measure(Supplier<Object> operation, long duration) {
+        long operations = 0;
+        long started = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                sink = operation.get();
+            }
+            operations += 1000;
+            elapsed = System.nanoTime() - started;
+        } while (elapsed < duration);
+        return operations * 1e9 / elapsed;
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.sputnikdev.bluetooth.gattparser.wire;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-gatt-parser
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WireCodecTest {
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    @Test
+    public void testHeartRateMeasurement() {
+        WireCodec codec = new WireCodec(parser, "2A37");
+        byte[] raw = {0x18, 74, 0x10, 0x02, 0x00, 0x04};
+        byte[] encoded = codec.encode(parser.parse("2A37", raw));
+        // version, UUID (2 bytes), hash, presence and values: 1 + 2 + 4 + 1 + 1 + 2 + 2
+        assertEquals(13, encoded.length);
+
+        WireMessage message = codec.decode(ByteBuffer.wrap(encoded));
+        assertEquals("2A37", message.getCharacteristicUUID());
+        int heartRate = message.getFieldIndex("Heart Rate Measurement Value (uint8)");
+        assertEquals(74, message.getInt(heartRate));
+        assertEquals(528, message.getObject("Energy Expended"));
+        assertEquals(1024, message.getObject("RR-Interval"));
+        assertFalse(message.isPresent("Heart Rate Measurement Value (uint16)"));
+        assertNull(message.getObject("Heart Rate Measurement Value (uint16)"));
+        assertEquals(-1, message.getFieldIndex("Unknown"));
+        try {
+            message.getDouble(heartRate);
+            fail();
+        } catch (IllegalStateException ignore) {
+            // not a floating point field
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertRoundTrip("2A1C", new byte[] {0x06, (byte) 0xA8, 0x0E, 0x00, (byte) 0xFE, (byte) 0xE2, 0x07, 0x0B, 0x17,
+            0x0E, 0x1C, 0x00, 0x02});
+        assertRoundTrip("2A6E", new byte[] {(byte) 0xF6, (byte) 0xF8});
+        assertRoundTrip("2A23", new byte[] {1, 2, 3, 4, (byte) 0xFF, 6, 7, (byte) 0x88});
+        assertRoundTrip("2A29", "Acme \u00FC".getBytes(StandardCharsets.UTF_8));
+        assertRoundTrip("2A2A", new byte[] {1, 2, 3, 4, 5});
+    }
+
+    @Test
+    public void testStream() {
+        WireCodec heartRate = new WireCodec(parser, "2A37");
+        WireCodec battery = new WireCodec(parser, "2A19");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int length = heartRate.encode(parser.parse("2A37", new byte[] {0x00, 75}), buffer);
+        assertEquals(length, buffer.position());
+        battery.encode(parser.parse("2A19", new byte[] {51}), buffer);
+        buffer.flip();
+
+        assertEquals("2A37", WireCodec.getCharacteristicUUID(buffer));
+        assertEquals(0, buffer.position());
+        WireMessage message = heartRate.decode(buffer);
+        assertEquals(length, buffer.position());
+        assertEquals("2A19", WireCodec.getCharacteristicUUID(buffer));
+        WireMessage level = battery.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        assertEquals(75, message.getObject("Heart Rate Measurement Value (uint8)"));
+        assertEquals(51, level.getObject("Level"));
+    }
+
+    @Test
+    public void testBytesSlice() {
+        WireCodec codec = new WireCodec(parser, "2A2A");
+        ByteBuffer buffer = ByteBuffer.wrap(codec.encode(parser.parse("2A2A", new byte[] {1, 2, 3})));
+        ByteBuffer slice = codec.decode(buffer).getBytes(0);
+        assertTrue(slice.isReadOnly());
+        assertEquals(3, slice.remaining());
+        assertEquals(2, slice.get(1));
+    }
+
+    @Test
+    public void testRejected() {
+        WireCodec codec = new WireCodec(parser, "2A37");
+        byte[] encoded = codec.encode(parser.parse("2A37", new byte[] {0x00, 75}));
+        try {
+            new WireCodec(parser, "2A19").decode(ByteBuffer.wrap(encoded));
+            fail();
+        } catch (CharacteristicFormatException ignore) {
+            // different characteristic
+        }
+        byte[] changed = encoded.clone();
+        changed[3]++;
+        try {
+            codec.decode(ByteBuffer.wrap(changed));
+            fail();
+        } catch (CharacteristicFormatException ignore) {
+            // different specification
+        }
+        try {
+            codec.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length - 1)));
+            fail();
+        } catch (CharacteristicFormatException ignore) {
+            // truncated
+        }
+    }
+
+    private void assertRoundTrip(String uuid, byte[] raw) {
+        GattResponse response = parser.parse(uuid, raw);
+        WireCodec codec = new WireCodec(parser, uuid);
+        WireMessage message = codec.decode(ByteBuffer.wrap(codec.encode(response)));
+        int present = 0;
+        for (int i = 0; i < message.getFields().size(); i++) {
+            FieldHolder holder = response.get(message.getFields().get(i).getName());
+            Object expected = holder != null ? holder.getRawValue() : null;
+            if (expected instanceof byte[]) {
+                assertArrayEquals((byte[]) expected, (byte[]) message.getObject(i));
+            } else {
+                assertEquals(expected, message.getObject(i));
+            }
+            present += expected != null ? 1 : 0;
+        }
+        assertEquals(response.getSize(), present);
+    }
+
+}